@@ -32,64 +32,188 @@
  */
 
 
+
 package anonymous.domain.enlighten.annotation;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Annotation list with slot-indexed lookups.
+ * 
+ * The first annotation of each class is kept in a packed array ordered by the
+ * slots that {@link AnnotationSlots} assigns to the classes, together with a bit
+ * mask of the occupied slots. The position of such an annotation is the number
+ * of occupied slots below its own, so lookups take a mask test and a bit count.
+ * Further annotations of a class that is already present, and annotations of
+ * classes beyond the mask width, follow in insertion order after the masked
+ * ones. As before, getAnnotation returns the first annotation added for a class.
+ * 
+ * Slot numbers differ between processes, so the annotations are serialized as
+ * the plain list of earlier versions, and the order and mask are rebuilt on the
+ * first access after deserialization.
+ */
 public class DefaultAnnotationList implements Serializable {
   private static final long serialVersionUID = 1L;
   
-  private List<ValueAnnotation> annotations;
+  private static final ObjectStreamField[] serialPersistentFields = {
+      new ObjectStreamField("annotations", List.class) };
+  
+  private static final int MASK_SLOTS = 64;
+  
+  private transient ValueAnnotation[] annotations;
+  
+  private transient long slotMask;
+  private transient boolean indexed = true;
   
   public void addAnnotation(ValueAnnotation annotation) {
+    ensureIndexed();
+    int slot = AnnotationSlots.slotOf(annotation.getClass());
+    int insertAt = size();
+    if (slot < MASK_SLOTS && (slotMask & (1L << slot)) == 0) {
+      insertAt = Long.bitCount(slotMask & ((1L << slot) - 1));
+      slotMask |= 1L << slot;
+    }
     if (annotations == null) {
-      annotations = new ArrayList<>();
+      annotations = new ValueAnnotation[] { annotation };
+      return;
     }
-    annotations.add(annotation);
+    ValueAnnotation[] grown = new ValueAnnotation[annotations.length + 1];
+    System.arraycopy(annotations, 0, grown, 0, insertAt);
+    grown[insertAt] = annotation;
+    System.arraycopy(annotations, insertAt, grown, insertAt + 1, annotations.length - insertAt);
+    annotations = grown;
   }
   
   @SuppressWarnings("unchecked")
   public <T extends ValueAnnotation> T getAnnotation(Class<T> annotationClass) {
+    ensureIndexed();
     if (annotations == null) {
       return null;
     }
-    for (ValueAnnotation annotation : annotations) {
-      if (annotation.getClass() == annotationClass) {
-        return (T) annotation;
-      }
-    }
-    return null;
+    int position = findPosition(annotationClass, AnnotationSlots.slotOf(annotationClass));
+    return position >= 0 ? (T) annotations[position] : null;
   }
   
   public boolean removeAnnotation(ValueAnnotation annotation) {
+    ensureIndexed();
     if (annotations == null) {
       return false;
     }
-    boolean removed = annotations.remove(annotation);
-    if (annotations.size() == 0) {
-      annotations = null;
+    for (int i = 0; i < annotations.length; ++i) {
+      if (annotations[i].equals(annotation)) {
+        remove(i);
+        return true;
+      }
     }
-    return removed;
+    return false;
   }
   
   public boolean removeAnnotation(Class<? extends ValueAnnotation> annotationClass) {
+    ensureIndexed();
     if (annotations == null) {
       return false;
     }
-    List<ValueAnnotation> toRemove = new ArrayList<>();
-    for (ValueAnnotation annotation : annotations) {
-      if (annotation.getClass() == annotationClass) {
-        toRemove.add(annotation);
+    int slot = AnnotationSlots.slotOf(annotationClass);
+    int position = findPosition(annotationClass, slot);
+    if (position < 0) {
+      return false;
+    }
+    if (slot < MASK_SLOTS) {
+      slotMask &= ~(1L << slot);
+    }
+    int kept = 0;
+    for (int i = 0; i < annotations.length; ++i) {
+      if (annotations[i].getClass() != annotationClass) {
+        annotations[kept++] = annotations[i];
+      }
+    }
+    annotations = kept > 0 ? Arrays.copyOf(annotations, kept) : null;
+    return true;
+  }
+  
+  public int size() {
+    return annotations == null ? 0 : annotations.length;
+  }
+  
+  private int findPosition(Class<?> annotationClass, int slot) {
+    if (slot < MASK_SLOTS) {
+      long slotBit = 1L << slot;
+      if ((slotMask & slotBit) == 0) {
+        return -1;
       }
+      return Long.bitCount(slotMask & (slotBit - 1));
     }
-    for (ValueAnnotation removed : toRemove) {
-      annotations.remove(removed);
+    return findInTail(annotationClass, Long.bitCount(slotMask));
+  }
+  
+  private int findInTail(Class<?> annotationClass, int from) {
+    for (int i = from; i < annotations.length; ++i) {
+      if (annotations[i].getClass() == annotationClass) {
+        return i;
+      }
     }
-    if (annotations.size() == 0) {
+    return -1;
+  }
+  
+  private void remove(int position) {
+    if (annotations.length == 1) {
       annotations = null;
+      slotMask = 0;
+      return;
     }
-    return toRemove.size() > 0;
+    Class<? extends ValueAnnotation> annotationClass = annotations[position].getClass();
+    int slot = AnnotationSlots.slotOf(annotationClass);
+    int masked = Long.bitCount(slotMask);
+    if (position < masked) {
+      int next = findInTail(annotationClass, masked);
+      if (next >= 0) {
+        annotations[position] = annotations[next];
+        position = next;
+      } else {
+        slotMask &= ~(1L << slot);
+      }
+    }
+    ValueAnnotation[] shrunk = new ValueAnnotation[annotations.length - 1];
+    System.arraycopy(annotations, 0, shrunk, 0, position);
+    System.arraycopy(annotations, position + 1, shrunk, position, shrunk.length - position);
+    annotations = shrunk;
+  }
+  
+  private void ensureIndexed() {
+    if (indexed) {
+      return;
+    }
+    indexed = true;
+    if (annotations == null) {
+      return;
+    }
+    ValueAnnotation[] unordered = annotations;
+    annotations = null;
+    slotMask = 0;
+    for (ValueAnnotation annotation : unordered) {
+      addAnnotation(annotation);
+    }
+  }
+  
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    ensureIndexed();
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("annotations", annotations != null ? new ArrayList<>(Arrays.asList(annotations)) : null);
+    out.writeFields();
+  }
+  
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField fields = in.readFields();
+    @SuppressWarnings("unchecked")
+    List<ValueAnnotation> list = (List<ValueAnnotation>) fields.get("annotations", null);
+    annotations = list != null && !list.isEmpty() ? list.toArray(new ValueAnnotation[list.size()]) : null;
+    indexed = false;
   }
 }
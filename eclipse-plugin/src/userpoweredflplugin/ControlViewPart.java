@@ -1060,6 +1060,7 @@ public class ControlViewPart extends ViewPart {
 							}
 							FilteredFaultLocalization<SourceLocation> ffl = FilteredFaultLocalization
 									.filteredSrcLocFlByInvocationCov(fbFLCore.getCurrentFlResult(),
+											fbFLCore.getTestExecutionProfile(selectedInvocation.getTestName()),
 											fbFLCore.getMethodInvocationNode(selectedInvocation));
 							SwiftUtilities.suspHolderInstance.updateSuspMap(ffl.getSuspiciousness());
 							currentlyQueriedMethod = srcDisplayHandler.getMethodInstance(className, methodNameStr,
@@ -0,0 +1,312 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package anonymous.domain.enlighten.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import anonymous.domain.enlighten.annotation.Annotatable;
+import anonymous.domain.enlighten.annotation.DefaultAnnotationList;
+import anonymous.domain.enlighten.annotation.ValueAnnotation;
+import anonymous.domain.enlighten.data.FSTSerialization;
+
+/**
+ * Compares the slot based {@link DefaultAnnotationList} with the linear list it
+ * replaced, on nodes carrying 0 to 8 annotations of distinct classes. For each
+ * number of annotations the benchmark reports the time per lookup of a present
+ * and of an absent annotation class, the heap retained per node, and the FST
+ * serialized size per node.
+ * 
+ * Usage: AnnotationStoreBenchmark [-n iterations] [-nodes count]
+ */
+public class AnnotationStoreBenchmark {
+  
+  private static final int WARMUP_ITERATIONS = 3;
+  private static final int LOOKUPS_PER_ITERATION = 10000000;
+  private static final int[] ANNOTATION_COUNTS = { 0, 1, 2, 4, 8 };
+  
+  private static final ValueAnnotation[] annotationInstances = {
+      new Annotation0(), new Annotation1(), new Annotation2(), new Annotation3(),
+      new Annotation4(), new Annotation5(), new Annotation6(), new Annotation7() };
+  private static final ValueAnnotation absentAnnotation = new AbsentAnnotation();
+  
+  private int iterations;
+  private int nodeCount;
+  
+  public AnnotationStoreBenchmark(int iterations, int nodeCount) {
+    this.iterations = iterations;
+    this.nodeCount = nodeCount;
+  }
+  
+  public void run() throws Exception {
+    // Registers the absent annotation class after the others, so that lookups of
+    // it fall outside the slot arrays of the benchmark nodes.
+    SlotNode registrationNode = new SlotNode();
+    for (ValueAnnotation annotation : annotationInstances) {
+      registrationNode.addAnnotation(annotation);
+    }
+    registrationNode.addAnnotation(absentAnnotation);
+    System.out.println(String.format("%-8s %6s %12s %12s %12s %12s", 
+        "store", "annots", "ns/hit", "ns/miss", "bytes/node", "fst/node"));
+    for (int annotationCount : ANNOTATION_COUNTS) {
+      for (boolean legacy : new boolean[] { true, false }) {
+        Annotatable[] nodes = createNodes(legacy, annotationCount);
+        long retainedBytes = measureRetainedBytes(legacy, annotationCount);
+        double hitNanos = annotationCount == 0 ? Double.NaN : measureLookup(nodes, true);
+        double missNanos = measureLookup(nodes, false);
+        int serializedSize = FSTSerialization.getConfig().asByteArray(nodes).length;
+        System.out.println(String.format("%-8s %6d %12.2f %12.2f %12.1f %12.1f", 
+            legacy ? "list" : "slots", annotationCount, hitNanos, missNanos, 
+            (double) retainedBytes / nodeCount, (double) serializedSize / nodeCount));
+      }
+    }
+  }
+  
+  private Annotatable[] createNodes(boolean legacy, int annotationCount) {
+    Annotatable[] nodes = new Annotatable[nodeCount];
+    for (int i = 0; i < nodeCount; ++i) {
+      nodes[i] = legacy ? new LegacyNode() : new SlotNode();
+      for (int j = 0; j < annotationCount; ++j) {
+        nodes[i].addAnnotation(annotationInstances[j]);
+      }
+    }
+    return nodes;
+  }
+  
+  private long measureRetainedBytes(boolean legacy, int annotationCount) {
+    long before = usedHeap();
+    Annotatable[] nodes = createNodes(legacy, annotationCount);
+    long after = usedHeap();
+    if (nodes.length != nodeCount) {
+      throw new IllegalStateException();
+    }
+    return after - before;
+  }
+  
+  private double measureLookup(Annotatable[] nodes, boolean present) {
+    int annotationCount = nodes[0] instanceof SlotNode 
+        ? ((SlotNode) nodes[0]).size() : ((LegacyNode) nodes[0]).size();
+    List<Class<? extends ValueAnnotation>> queries = new ArrayList<>();
+    if (present) {
+      for (int j = 0; j < annotationCount; ++j) {
+        queries.add(annotationInstances[j].getClass());
+      }
+    } else {
+      queries.add(AbsentAnnotation.class);
+    }
+    int found = 0;
+    for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+      found += lookup(nodes, queries);
+    }
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < iterations; ++i) {
+      found += lookup(nodes, queries);
+    }
+    long elapsedNanos = System.nanoTime() - startNanos;
+    if (found != (present ? (WARMUP_ITERATIONS + iterations) * LOOKUPS_PER_ITERATION : 0)) {
+      throw new RuntimeException("Unexpected lookup results.");
+    }
+    return (double) elapsedNanos / ((long) iterations * LOOKUPS_PER_ITERATION);
+  }
+  
+  private static int lookup(
+      Annotatable[] nodes, List<Class<? extends ValueAnnotation>> queries) {
+    Random random = new Random(0);
+    int found = 0;
+    for (int i = 0; i < LOOKUPS_PER_ITERATION; ++i) {
+      Annotatable node = nodes[random.nextInt(nodes.length)];
+      if (node.getAnnotation(queries.get(i % queries.size())) != null) {
+        ++found;
+      }
+    }
+    return found;
+  }
+  
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; ++i) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+  
+  public static void main(String[] args) throws Exception {
+    int iterations = 5;
+    int nodeCount = 100000;
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i].equals("-n") && i + 1 < args.length) {
+        iterations = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-nodes") && i + 1 < args.length) {
+        nodeCount = Integer.parseInt(args[++i]);
+      }
+    }
+    new AnnotationStoreBenchmark(iterations, nodeCount).run();
+  }
+  
+  /*
+   * The annotation list as it was before the slot based store: allocated with
+   * its node, one ArrayList, linear scan on every lookup.
+   */
+  private static class LegacyAnnotationList implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private List<ValueAnnotation> annotations;
+    
+    public void addAnnotation(ValueAnnotation annotation) {
+      if (annotations == null) {
+        annotations = new ArrayList<>();
+      }
+      annotations.add(annotation);
+    }
+    
+    @SuppressWarnings("unchecked")
+    public <T extends ValueAnnotation> T getAnnotation(Class<T> annotationClass) {
+      if (annotations == null) {
+        return null;
+      }
+      for (ValueAnnotation annotation : annotations) {
+        if (annotation.getClass() == annotationClass) {
+          return (T) annotation;
+        }
+      }
+      return null;
+    }
+    
+    public int size() {
+      return annotations == null ? 0 : annotations.size();
+    }
+  }
+  
+  private static class LegacyNode implements Annotatable, java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private LegacyAnnotationList annotations = new LegacyAnnotationList();
+
+    @Override
+    public void addAnnotation(ValueAnnotation annotation) {
+      annotations.addAnnotation(annotation);
+    }
+
+    @Override
+    public <T extends ValueAnnotation> T getAnnotation(Class<T> annotationClass) {
+      return annotations.getAnnotation(annotationClass);
+    }
+
+    @Override
+    public boolean removeAnnotation(ValueAnnotation annotation) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAnnotation(Class<? extends ValueAnnotation> annotationClass) {
+      throw new UnsupportedOperationException();
+    }
+    
+    public int size() {
+      return annotations.size();
+    }
+  }
+  
+  private static class SlotNode implements Annotatable, java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private DefaultAnnotationList annotations;
+
+    @Override
+    public void addAnnotation(ValueAnnotation annotation) {
+      if (annotations == null) {
+        annotations = new DefaultAnnotationList();
+      }
+      annotations.addAnnotation(annotation);
+    }
+
+    @Override
+    public <T extends ValueAnnotation> T getAnnotation(Class<T> annotationClass) {
+      return annotations != null ? annotations.getAnnotation(annotationClass) : null;
+    }
+
+    @Override
+    public boolean removeAnnotation(ValueAnnotation annotation) {
+      return annotations != null && annotations.removeAnnotation(annotation);
+    }
+
+    @Override
+    public boolean removeAnnotation(Class<? extends ValueAnnotation> annotationClass) {
+      return annotations != null && annotations.removeAnnotation(annotationClass);
+    }
+    
+    public int size() {
+      return annotations != null ? annotations.size() : 0;
+    }
+  }
+  
+  private static class Annotation0 implements ValueAnnotation {
+    private static final long serialVersionUID = 1L;
+  }
+  
+  private static class Annotation1 implements ValueAnnotation {
+    private static final long serialVersionUID = 1L;
+  }
+  
+  private static class Annotation2 implements ValueAnnotation {
+    private static final long serialVersionUID = 1L;
+  }
+  
+  private static class Annotation3 implements ValueAnnotation {
+    private static final long serialVersionUID = 1L;
+  }
+  
+  private static class Annotation4 implements ValueAnnotation {
+    private static final long serialVersionUID = 1L;
+  }
+  
+  private static class Annotation5 implements ValueAnnotation {
+    private static final long serialVersionUID = 1L;
+  }
+  
+  private static class Annotation6 implements ValueAnnotation {
+    private static final long serialVersionUID = 1L;
+  }
+  
+  private static class Annotation7 implements ValueAnnotation {
+    private static final long serialVersionUID = 1L;
+  }
+  
+  private static class AbsentAnnotation implements ValueAnnotation {
+    private static final long serialVersionUID = 1L;
+  }
+}
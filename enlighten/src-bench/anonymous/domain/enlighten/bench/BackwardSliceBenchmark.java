@@ -0,0 +1,390 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.bench;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Range;
+
+import anonymous.domain.enlighten.deptrack.CompositeDynamicDependency;
+import anonymous.domain.enlighten.deptrack.DynamicDependency;
+import anonymous.domain.enlighten.deptrack.InstructionDependencySource;
+import anonymous.domain.enlighten.deptrack.MethodInvocationAttr;
+import anonymous.domain.enlighten.mcallrepr.JpfStateSnapshotter;
+import anonymous.domain.enlighten.mcallrepr.MemberRefDepAnnotator;
+import anonymous.domain.enlighten.mcallrepr.MemberRefName;
+import anonymous.domain.enlighten.mcallrepr.MethodCallRepr;
+import anonymous.domain.enlighten.mcallrepr.ValueGraphNode;
+import anonymous.domain.enlighten.refpath.RefPath;
+import anonymous.domain.enlighten.slicing.JPFSlicingListener;
+import anonymous.domain.enlighten.slicing.util.BackwardSliceEngine;
+import anonymous.domain.enlighten.slicing.util.DepIdSet;
+import benchsubjects.BenchPrograms;
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.vm.DependencyTrackingInstruction;
+import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.VM;
+
+/**
+ * Replays the backward slices that a QueryFieldSelectorAlt2 session issues, once
+ * with a fresh breadth-first traversal collecting boxed ids per root (as done
+ * before {@link BackwardSliceEngine}) and once with a single engine for the
+ * whole session. The slices are recorded from a program interpreted by JPF
+ * with dependency tracking: on every exit of a method of the program, the
+ * values in the post-states are sliced within the index range of the
+ * invocation, the way incorrect output values are, and every few exits the
+ * same values are sliced without a range, the way incorrect pre-state values
+ * and failures are. Both replays must produce the same slices.
+ * 
+ * Usage: BackwardSliceBenchmark [-n iterations] [-q max-queries] [-cp jpf-classpath]
+ *     [target-class...]
+ * 
+ * Without target classes the programs in {@link BenchPrograms} are run.
+ */
+public class BackwardSliceBenchmark {
+  
+  private static final int WARMUP_ITERATIONS = 2;
+  private static final int MAX_PATHS_PER_INVOCATION = 8;
+  private static final int UNBOUNDED_QUERY_INTERVAL = 8;
+  private static final String SUBJECT_PACKAGE = "benchsubjects.";
+  
+  private static final com.sun.management.ThreadMXBean threadBean = 
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  
+  private String jpfClasspath;
+  private int iterations;
+  private int maxQueries;
+  
+  public BackwardSliceBenchmark(String jpfClasspath, int iterations, int maxQueries) {
+    this.jpfClasspath = jpfClasspath;
+    this.iterations = iterations;
+    this.maxQueries = maxQueries;
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+  }
+  
+  public List<SliceQuery> recordQueries(String targetClass) {
+    QueryRecordingListener listener = new QueryRecordingListener(targetClass, maxQueries);
+    List<String> jpfArgs = new ArrayList<>();
+    jpfArgs.add("+listener=gov.nasa.jpf.vm.JVMForwarder");
+    jpfArgs.add("+search.class=gov.nasa.jpf.search.PathSearch");
+    jpfArgs.add("+nhandler.delegateUnhandledNative = true");
+    jpfArgs.add("+classpath=" + jpfClasspath);
+    jpfArgs.add("+native_classpath=" + jpfClasspath);
+    jpfArgs.add("+target=" + targetClass);
+    Config conf = JPF.createConfig(jpfArgs.toArray(new String[0]));
+    JPF jpf = new JPF(conf);
+    jpf.addVMListener(listener);
+    PrintStream savedStdOut = System.out;
+    System.setOut(new PrintStream(new OutputStream() {
+      @Override
+      public void write(int b) {}
+    }));
+    try {
+      jpf.run();
+    } finally {
+      System.setOut(savedStdOut);
+    }
+    return listener.queries;
+  }
+  
+  public void run(String targetClass) {
+    List<SliceQuery> queries = recordQueries(targetClass);
+    List<Set<Long>> legacySlices = replayLegacy(queries);
+    List<DepIdSet> engineSlices = replayEngine(queries);
+    long totalSliceSize = 0;
+    for (int i = 0; i < queries.size(); ++i) {
+      Set<Long> expected = legacySlices.get(i);
+      DepIdSet actual = engineSlices.get(i);
+      if (expected.size() != actual.size() || !actual.containsAll(expected)) {
+        throw new RuntimeException("Slice " + i + " of " + targetClass + " differs: expected " 
+            + expected.size() + " nodes, got " + actual.size());
+      }
+      totalSliceSize += actual.size();
+    }
+    Measurement legacy = measure(queries, false);
+    Measurement engine = measure(queries, true);
+    System.out.println(String.format("%-50s %8d %10.1f %-8s %12.3f %14.1f",
+        targetClass, queries.size(), 
+        queries.isEmpty() ? 0.0 : (double) totalSliceSize / queries.size(), "legacy", 
+        legacy.elapsedNanos / 1e6 / iterations, (double) legacy.allocatedBytes / iterations));
+    System.out.println(String.format("%-50s %8s %10s %-8s %12.3f %14.1f",
+        "", "", "", "engine", 
+        engine.elapsedNanos / 1e6 / iterations, (double) engine.allocatedBytes / iterations));
+  }
+  
+  private Measurement measure(List<SliceQuery> queries, boolean useEngine) {
+    for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+      replay(queries, useEngine);
+    }
+    Measurement measurement = new Measurement();
+    long threadId = Thread.currentThread().getId();
+    long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < iterations; ++i) {
+      replay(queries, useEngine);
+    }
+    measurement.elapsedNanos = System.nanoTime() - startNanos;
+    measurement.allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+    return measurement;
+  }
+  
+  private static List<? extends Set<Long>> replay(List<SliceQuery> queries, boolean useEngine) {
+    return useEngine ? replayEngine(queries) : replayLegacy(queries);
+  }
+  
+  private static List<DepIdSet> replayEngine(List<SliceQuery> queries) {
+    BackwardSliceEngine engine = new BackwardSliceEngine();
+    List<DepIdSet> slices = new ArrayList<>(queries.size());
+    for (SliceQuery query : queries) {
+      slices.add(engine.slice(query.roots, query.range));
+    }
+    return slices;
+  }
+  
+  private static List<Set<Long>> replayLegacy(List<SliceQuery> queries) {
+    List<Set<Long>> slices = new ArrayList<>(queries.size());
+    for (SliceQuery query : queries) {
+      Set<Long> slice = new HashSet<>();
+      for (DynamicDependency root : query.roots) {
+        slice.addAll(legacySlice(root, query.range));
+      }
+      slices.add(slice);
+    }
+    return slices;
+  }
+  
+  // The traversal of GetDepGraphNodeIds before BackwardSliceEngine.
+  private static Set<Long> legacySlice(DynamicDependency root, Range<Long> range) {
+    Set<Long> slice = new HashSet<>();
+    if (root == null) {
+      return slice;
+    }
+    Deque<DynamicDependency> workingList = new ArrayDeque<>();
+    Set<DynamicDependency> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    workingList.addLast(root);
+    visited.add(root);
+    while (!workingList.isEmpty()) {
+      DynamicDependency dep = workingList.removeFirst();
+      // Instruction sources are shared across executions and have no instance index.
+      if (dep instanceof InstructionDependencySource || !range.contains(dep.getInstanceIndex())) {
+        continue;
+      }
+      slice.add(dep.getInstanceIndex());
+      if (dep instanceof CompositeDynamicDependency) {
+        CompositeDynamicDependency composite = (CompositeDynamicDependency) dep;
+        for (DynamicDependency upStream : composite.getDataDependencies()) {
+          if (!visited.contains(upStream)) {
+            visited.add(upStream);
+            workingList.addLast(upStream);
+          }
+        }
+        DynamicDependency controlDep = composite.getControlDependency();
+        if (controlDep != null && !visited.contains(controlDep)) {
+          visited.add(controlDep);
+          workingList.addLast(controlDep);
+        }
+      }
+    }
+    return slice;
+  }
+  
+  public static void main(String[] args) {
+    int iterations = 5;
+    int maxQueries = 5000;
+    String jpfClasspath = null;
+    List<String> targets = new ArrayList<>();
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i].equals("-n") && i + 1 < args.length) {
+        iterations = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-q") && i + 1 < args.length) {
+        maxQueries = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-cp") && i + 1 < args.length) {
+        jpfClasspath = args[++i];
+      } else {
+        targets.add(args[i]);
+      }
+    }
+    if (jpfClasspath == null) {
+      jpfClasspath = new File(BackwardSliceBenchmark.class.getProtectionDomain()
+          .getCodeSource().getLocation().getPath()).getAbsolutePath();
+    }
+    if (targets.isEmpty()) {
+      for (String program : BenchPrograms.ALL) {
+        targets.add(program);
+      }
+    }
+    BackwardSliceBenchmark benchmark = 
+        new BackwardSliceBenchmark(jpfClasspath, iterations, maxQueries);
+    System.out.println(String.format("%-50s %8s %10s %-8s %12s %14s",
+        "target", "queries", "avg-nodes", "replay", "ms/session", "bytes/session"));
+    for (String target : targets) {
+      benchmark.run(target);
+    }
+  }
+  
+  public static class SliceQuery {
+    
+    private List<DynamicDependency> roots;
+    private Range<Long> range;
+    
+    public SliceQuery(List<DynamicDependency> roots, Range<Long> range) {
+      this.roots = roots;
+      this.range = range;
+    }
+    
+    public List<DynamicDependency> getRoots() {
+      return roots;
+    }
+    
+    public Range<Long> getRange() {
+      return range;
+    }
+  }
+  
+  private static class Measurement {
+    private long elapsedNanos;
+    private long allocatedBytes;
+  }
+  
+  private static class QueryRecordingListener extends JPFSlicingListener {
+    
+    private String targetClass;
+    private int maxQueries;
+    private List<SliceQuery> queries = new ArrayList<>();
+    private Deque<Long> invocationStartIndices = new ArrayDeque<>();
+    private int numExits = 0;
+    
+    public QueryRecordingListener(String targetClass, int maxQueries) {
+      this.targetClass = targetClass;
+      this.maxQueries = maxQueries;
+      setEnableTimeout(false);
+    }
+    
+    @Override
+    public void methodEntered(VM vm, ThreadInfo currentThread, MethodInfo enteredMethod) {
+      if (!isDependencyTrackingStarted() && enteredMethod.getClassName().equals(targetClass)
+          && enteredMethod.getUniqueName().equals("main([Ljava/lang/String;)V")) {
+        startDependencyTracking();
+      }
+      super.methodEntered(vm, currentThread, enteredMethod);
+      if (isDependencyTrackingStarted()) {
+        currentThread.getModifiableTopFrame()
+            .getFrameAttr(MethodInvocationAttr.class).setGenInstrDep(true);
+        if (isSubjectMethod(enteredMethod)) {
+          invocationStartIndices.push(DynamicDependency.getNextInstanceIndex());
+        }
+      }
+    }
+    
+    @Override
+    public void methodExited(VM vm, ThreadInfo currentThread, MethodInfo exitedMethod) {
+      if (!isSubjectMethod(exitedMethod) || invocationStartIndices.isEmpty()) {
+        return;
+      }
+      long startIndex = invocationStartIndices.pop();
+      long endIndex = DynamicDependency.getNextInstanceIndex() - 1;
+      if (queries.size() >= maxQueries) {
+        return;
+      }
+      MethodCallRepr postStates = new JpfStateSnapshotter().fromStackFrame(
+          currentThread, currentThread.getModifiableTopFrame());
+      boolean addUnbounded = ++numExits % UNBOUNDED_QUERY_INTERVAL == 0;
+      for (RefPath valuePath : getValuePaths(postStates)) {
+        List<DynamicDependency> roots = new ArrayList<>();
+        for (RefPath path = valuePath; path != null && path.getLength() != 0; 
+            path = path.getParent()) {
+          roots.add(MemberRefDepAnnotator.getDependency(postStates, path));
+        }
+        queries.add(new SliceQuery(roots, Range.closed(startIndex, endIndex)));
+        if (addUnbounded) {
+          queries.add(new SliceQuery(roots, Range.<Long>all()));
+        }
+      }
+    }
+
+    @Override
+    public void instructionDependencySourceGenerated(
+        DependencyTrackingInstruction insn, InstructionDependencySource depNode) {}
+    
+    private List<RefPath> getValuePaths(MethodCallRepr states) {
+      List<RefPath> valuePaths = new ArrayList<>();
+      LinkedList<RefPath> pathsToVisit = new LinkedList<>();
+      LinkedList<ValueGraphNode> parentObjects = new LinkedList<>();
+      Set<ValueGraphNode> visitedValues = 
+          Collections.newSetFromMap(new IdentityHashMap<ValueGraphNode, Boolean>());
+      for (MemberRefName ref : states.getReferencedValues().keySet()) {
+        parentObjects.add(states);
+        pathsToVisit.add(RefPath.newBuilder().appendMemberRefName(ref).build());
+      }
+      while (!pathsToVisit.isEmpty() && valuePaths.size() < MAX_PATHS_PER_INVOCATION) {
+        RefPath currentPath = pathsToVisit.removeFirst();
+        ValueGraphNode currentObj = 
+            parentObjects.removeFirst().getReferencedValue(currentPath.getTail());
+        if (MemberRefDepAnnotator.getDependency(states, currentPath) != null) {
+          valuePaths.add(currentPath);
+        }
+        if (currentObj == null || !visitedValues.add(currentObj) 
+            || !currentObj.hasReferencedValues()) {
+          continue;
+        }
+        Map<MemberRefName, ValueGraphNode> membersMap = currentObj.getReferencedValues();
+        for (MemberRefName member : membersMap.keySet()) {
+          parentObjects.add(currentObj);
+          pathsToVisit.add(currentPath.append().appendMemberRefName(member).build());
+        }
+      }
+      return valuePaths;
+    }
+    
+    private static boolean isSubjectMethod(MethodInfo method) {
+      return method.getClassName().startsWith(SUBJECT_PACKAGE);
+    }
+  }
+}
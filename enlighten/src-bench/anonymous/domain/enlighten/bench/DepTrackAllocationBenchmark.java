@@ -0,0 +1,284 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.bench;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import anonymous.domain.enlighten.deptrack.DynamicDependency;
+import anonymous.domain.enlighten.deptrack.InstructionDependencySource;
+import anonymous.domain.enlighten.deptrack.MethodInvocationAttr;
+import anonymous.domain.enlighten.slicing.JPFSlicingListener;
+import benchsubjects.BenchPrograms;
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+import gov.nasa.jpf.vm.DependencyTrackingInstruction;
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.VM;
+
+/**
+ * Measures the allocation rate of dependency tracking by interpreting programs
+ * on JPF, once with instruction dependencies generated for every frame and once
+ * without. Only the execution of the target's main method is measured, so class
+ * loading and control dependency analysis are excluded.
+ * 
+ * Usage: DepTrackAllocationBenchmark [-n iterations] [-cp jpf-classpath] [+jpf.key=value...]
+ *     [target-class...]
+ * 
+ * Without target classes the programs in {@link BenchPrograms} are run.
+ * Arguments starting with '+' are passed on to the JPF configuration.
+ */
+public class DepTrackAllocationBenchmark {
+  
+  private static final int WARMUP_ITERATIONS = 2;
+  
+  private static final com.sun.management.ThreadMXBean threadBean = 
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  
+  private String jpfClasspath;
+  private int iterations;
+  private List<String> extraJpfArgs = new ArrayList<>();
+  
+  public DepTrackAllocationBenchmark(String jpfClasspath, int iterations) {
+    this.jpfClasspath = jpfClasspath;
+    this.iterations = iterations;
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+  }
+  
+  public void addJpfArg(String jpfArg) {
+    extraJpfArgs.add(jpfArg);
+  }
+  
+  public Result measure(String targetClass, boolean trackDependencies) {
+    for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+      runOnce(targetClass, trackDependencies);
+    }
+    Result total = new Result(targetClass, trackDependencies);
+    for (int i = 0; i < iterations; ++i) {
+      Result current = runOnce(targetClass, trackDependencies);
+      total.instructions += current.instructions;
+      total.dependencyNodes += current.dependencyNodes;
+      total.allocatedBytes += current.allocatedBytes;
+      total.elapsedNanos += current.elapsedNanos;
+    }
+    return total;
+  }
+  
+  private Result runOnce(String targetClass, boolean trackDependencies) {
+    MeasuringListener listener = new MeasuringListener(targetClass, trackDependencies);
+    List<String> jpfArgs = new ArrayList<>();
+    jpfArgs.add("+listener=gov.nasa.jpf.vm.JVMForwarder");
+    jpfArgs.add("+search.class=gov.nasa.jpf.search.PathSearch");
+    jpfArgs.add("+nhandler.delegateUnhandledNative = true");
+    jpfArgs.add("+classpath=" + jpfClasspath);
+    jpfArgs.add("+native_classpath=" + jpfClasspath);
+    jpfArgs.addAll(extraJpfArgs);
+    jpfArgs.add("+target=" + targetClass);
+    Config conf = JPF.createConfig(jpfArgs.toArray(new String[0]));
+    JPF jpf = new JPF(conf);
+    jpf.addVMListener(listener);
+    PrintStream savedStdOut = System.out;
+    System.setOut(new PrintStream(new OutputStream() {
+      @Override
+      public void write(int b) {}
+    }));
+    try {
+      jpf.run();
+    } finally {
+      System.setOut(savedStdOut);
+    }
+    if (!listener.finished) {
+      throw new RuntimeException("Main method of " + targetClass + " did not complete on JPF");
+    }
+    return listener.result;
+  }
+  
+  public static void main(String[] args) {
+    int iterations = 5;
+    String jpfClasspath = null;
+    List<String> targets = new ArrayList<>();
+    List<String> jpfArgs = new ArrayList<>();
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i].startsWith("+")) {
+        jpfArgs.add(args[i]);
+      } else if (args[i].equals("-n") && i + 1 < args.length) {
+        iterations = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-cp") && i + 1 < args.length) {
+        jpfClasspath = args[++i];
+      } else {
+        targets.add(args[i]);
+      }
+    }
+    if (jpfClasspath == null) {
+      jpfClasspath = new File(DepTrackAllocationBenchmark.class.getProtectionDomain()
+          .getCodeSource().getLocation().getPath()).getAbsolutePath();
+    }
+    if (targets.isEmpty()) {
+      for (String program : BenchPrograms.ALL) {
+        targets.add(program);
+      }
+    }
+    DepTrackAllocationBenchmark benchmark = 
+        new DepTrackAllocationBenchmark(jpfClasspath, iterations);
+    for (String jpfArg : jpfArgs) {
+      benchmark.addJpfArg(jpfArg);
+    }
+    System.out.println(String.format("%-60s %8s %12s %12s %12s %12s %10s",
+        "target", "deptrack", "insns/run", "nodes/run", "bytes/insn", "bytes/node", "ns/insn"));
+    for (String target : targets) {
+      for (boolean trackDependencies : new boolean[] { false, true }) {
+        Result result = benchmark.measure(target, trackDependencies);
+        System.out.println(String.format("%-60s %8s %12d %12d %12.1f %12.1f %10.1f",
+            target, trackDependencies ? "on" : "off",
+            result.instructions / iterations, result.dependencyNodes / iterations,
+            (double) result.allocatedBytes / result.instructions,
+            result.dependencyNodes == 0 ? 0.0 
+                : (double) result.allocatedBytes / result.dependencyNodes,
+            (double) result.elapsedNanos / result.instructions));
+      }
+    }
+  }
+  
+  public static class Result {
+    
+    private String targetClass;
+    private boolean trackDependencies;
+    private long instructions;
+    private long dependencyNodes;
+    private long allocatedBytes;
+    private long elapsedNanos;
+    
+    private Result(String targetClass, boolean trackDependencies) {
+      this.targetClass = targetClass;
+      this.trackDependencies = trackDependencies;
+    }
+    
+    public String getTargetClass() {
+      return targetClass;
+    }
+    
+    public boolean isTrackDependencies() {
+      return trackDependencies;
+    }
+    
+    public long getInstructions() {
+      return instructions;
+    }
+    
+    public long getDependencyNodes() {
+      return dependencyNodes;
+    }
+    
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+    
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+  }
+  
+  private static class MeasuringListener extends JPFSlicingListener {
+    
+    private String targetClass;
+    private boolean trackDependencies;
+    private Result result;
+    private boolean measuring;
+    private boolean finished;
+    private long startBytes;
+    private long startNanos;
+    
+    public MeasuringListener(String targetClass, boolean trackDependencies) {
+      this.targetClass = targetClass;
+      this.trackDependencies = trackDependencies;
+      result = new Result(targetClass, trackDependencies);
+      setEnableTimeout(false);
+    }
+    
+    @Override
+    public void methodEntered(VM vm, ThreadInfo currentThread, MethodInfo enteredMethod) {
+      if (!measuring && !finished && isTargetMain(enteredMethod)) {
+        measuring = true;
+        if (trackDependencies) {
+          startDependencyTracking();
+        }
+        startBytes = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        startNanos = System.nanoTime();
+      }
+      super.methodEntered(vm, currentThread, enteredMethod);
+      if (isDependencyTrackingStarted()) {
+        currentThread.getModifiableTopFrame()
+            .getFrameAttr(MethodInvocationAttr.class).setGenInstrDep(true);
+      }
+    }
+    
+    @Override
+    public void methodExited(VM vm, ThreadInfo currentThread, MethodInfo exitedMethod) {
+      if (measuring && isTargetMain(exitedMethod)) {
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        result.allocatedBytes = 
+            threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - startBytes;
+        if (trackDependencies) {
+          result.dependencyNodes = DynamicDependency.getNextInstanceIndex();
+        }
+        measuring = false;
+        finished = true;
+      }
+    }
+    
+    @Override
+    public void instructionExecuted(VM vm, ThreadInfo currentThread, 
+        Instruction nextInstruction, Instruction executedInstruction) {
+      if (measuring) {
+        ++result.instructions;
+      }
+    }
+
+    @Override
+    public void instructionDependencySourceGenerated(
+        DependencyTrackingInstruction insn, InstructionDependencySource depNode) {}
+    
+    private boolean isTargetMain(MethodInfo method) {
+      return method.getClassName().equals(targetClass) 
+          && method.getUniqueName().equals("main([Ljava/lang/String;)V");
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.bench;
+
+import anonymous.domain.enlighten.data.MethodName;
+import anonymous.domain.enlighten.data.SourceLocation;
+import instr.callback.InstrumentationCallbackListener;
+import instr.callback.memory.MemoryLocation;
+import instr.staticinfo.MethodInfo;
+
+/**
+ * A callback listener that does nothing but count the events it receives, so
+ * that the measured cost is that of the callback dispatch itself.
+ */
+public class EventCountingListener implements InstrumentationCallbackListener {
+  
+  private long methodEvents;
+  private long stateEvents;
+  private long sourceLineEvents;
+  private long memoryEvents;
+  
+  public long getMethodEvents() {
+    return methodEvents;
+  }
+  
+  public long getStateEvents() {
+    return stateEvents;
+  }
+  
+  public long getSourceLineEvents() {
+    return sourceLineEvents;
+  }
+  
+  public long getMemoryEvents() {
+    return memoryEvents;
+  }
+  
+  public long getTotalEvents() {
+    return methodEvents + stateEvents + sourceLineEvents + memoryEvents;
+  }
+  
+  public void reset() {
+    methodEvents = 0;
+    stateEvents = 0;
+    sourceLineEvents = 0;
+    memoryEvents = 0;
+  }
+
+  @Override
+  public void executionStarted(String executionId) {}
+
+  @Override
+  public void methodEntered(MethodName methodName) {
+    ++methodEvents;
+  }
+
+  @Override
+  public void preStates(MethodInfo methodInfo, Object[] params) {
+    ++stateEvents;
+  }
+
+  @Override
+  public void methodExiting(MethodName methodName) {
+    ++methodEvents;
+  }
+
+  @Override
+  public void postStatesNormal(MethodInfo methodInfo, Object retValue, Object[] params) {
+    ++stateEvents;
+  }
+
+  @Override
+  public void methodExceptionExiting(MethodName methodName) {
+    ++methodEvents;
+  }
+
+  @Override
+  public void postStatesException(MethodInfo methodInfo, Object exception, Object[] params) {
+    ++stateEvents;
+  }
+
+  @Override
+  public void executingSourceLine(SourceLocation sourceLocation) {
+    ++sourceLineEvents;
+  }
+
+  @Override
+  public void executionEnded(String executionId) {}
+
+  @Override
+  public void memoryRead(MemoryLocation location) {
+    ++memoryEvents;
+  }
+
+  @Override
+  public void memoryWrite(MemoryLocation location) {
+    ++memoryEvents;
+  }
+}
@@ -0,0 +1,380 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import anonymous.domain.enlighten.data.SourceLocation;
+import anonymous.domain.enlighten.exec.InstrumentationJars;
+import benchsubjects.BenchPrograms;
+import instr.agent.InstrumenterConfig;
+import instr.agent.InstrumenterConfig.CoverageMode;
+import instr.agent.InstrumenterConfig.InstrumenterType;
+import instr.callback.InstrumentationCallback;
+import instr.callback.SingleThreadCallbackImpl;
+import instr.callback.SourceLocationCoverageCollector;
+import instr.staticinfo.SourceLocationDB;
+
+/**
+ * Measures the cost of the instrumentation callbacks in nanoseconds and
+ * allocated bytes per event.
+ * 
+ * The dispatch benchmarks call the {@link InstrumentationCallback} entry points
+ * directly with a {@link SingleThreadCallbackImpl} installed, one event kind at
+ * a time. The subject benchmarks run the programs in {@link BenchPrograms} in a
+ * child JVM under the trace instrumenter, once without the agent and once for
+ * each instrumenter configuration. The cost per event of a configuration is its
+ * overhead over the run without the agent divided by the number of events.
+ * 
+ * Usage: InstrumentationCallbackBenchmark [-n iterations] [-iagent jar] [-callback jar]
+ *     [-dispatch | -subjects]
+ * 
+ * The agent jars default to the paths in {@link InstrumentationJars}. Both
+ * groups of benchmarks are run unless one of them is selected.
+ */
+public class InstrumentationCallbackBenchmark {
+  
+  private static final int WARMUP_ITERATIONS = 3;
+  private static final int DISPATCH_EVENTS = 1000000;
+  private static final int POOL_SIZE = 64;
+  
+  private static final String SUBJECT_PACKAGE = "benchsubjects";
+  
+  private static final com.sun.management.ThreadMXBean threadBean = 
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  
+  private int iterations;
+  
+  public InstrumentationCallbackBenchmark(int iterations) {
+    this.iterations = iterations;
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+  }
+  
+  public void runDispatchBenchmarks() {
+    EventCountingListener listener = new EventCountingListener();
+    InstrumentationCallback.init(new SingleThreadCallbackImpl());
+    InstrumentationCallback.addCallbackListener(listener);
+    SourceLocationCoverageCollector.resetCoverage();
+    InstrumentationCallback.executionStarted("bench");
+    System.out.println(String.format("%-24s %12s %12s", "event", "ns/event", "bytes/event"));
+    try {
+      for (DispatchBenchmark benchmark : createDispatchBenchmarks()) {
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+          benchmark.run(DISPATCH_EVENTS);
+        }
+        listener.reset();
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+          benchmark.run(DISPATCH_EVENTS);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+        long events = (long) DISPATCH_EVENTS * iterations;
+        if (listener.getTotalEvents() != events) {
+          throw new RuntimeException("Benchmark " + benchmark.name + " dispatched " 
+              + listener.getTotalEvents() + " events, expecting " + events);
+        }
+        System.out.println(String.format("%-24s %12.1f %12.1f", benchmark.name, 
+            (double) elapsedNanos / events, (double) allocatedBytes / events));
+      }
+    } finally {
+      InstrumentationCallback.executionEnded("bench");
+      InstrumentationCallback.clearCallbackListeners();
+    }
+  }
+  
+  public void runSubjectBenchmarks(Path workingDir) throws IOException {
+    System.out.println(String.format("%-50s %-10s %12s %12s %12s %12s", 
+        "subject", "config", "events/run", "ns/run", "ns/event", "bytes/event"));
+    for (String subject : BenchPrograms.ALL) {
+      SubjectResult baseline = runSubject(subject, null);
+      printSubjectResult(subject, "none", baseline, null);
+      for (SubjectConfig subjectConfig : SubjectConfig.values()) {
+        Path configFile = workingDir.resolve(subjectConfig.name() + ".config");
+        subjectConfig.createInstrumenterConfig().storeToFile(configFile.toFile());
+        SubjectResult result = runSubject(subject, configFile);
+        printSubjectResult(subject, subjectConfig.getLabel(), result, baseline);
+      }
+    }
+  }
+  
+  private SubjectResult runSubject(String subject, Path instrumenterConfigFile) 
+      throws IOException {
+    List<String> commandComponents = new ArrayList<>();
+    commandComponents.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    commandComponents.add("-cp");
+    commandComponents.add(System.getProperty("java.class.path"));
+    if (instrumenterConfigFile != null) {
+      commandComponents.add("-Xbootclasspath/a:" 
+          + InstrumentationJars.getCallbackJarPath().toAbsolutePath());
+      commandComponents.add("-javaagent:" 
+          + InstrumentationJars.getInstrumenterJarPath().toAbsolutePath()
+          + "=" + instrumenterConfigFile.toAbsolutePath());
+      commandComponents.add("-noverify");
+    }
+    commandComponents.add(InstrumentedSubjectRunner.class.getName());
+    commandComponents.add(subject);
+    commandComponents.add(Integer.toString(iterations));
+    Process runnerProc = new ProcessBuilder(commandComponents)
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+    SubjectResult result = null;
+    try (BufferedReader reader = 
+        new BufferedReader(new InputStreamReader(runnerProc.getInputStream()))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(InstrumentedSubjectRunner.RESULT_PREFIX + " ")) {
+          String[] fields = line.split(" ");
+          result = new SubjectResult();
+          result.events = Long.parseLong(fields[1]);
+          result.elapsedNanos = Long.parseLong(fields[6]);
+          result.allocatedBytes = Long.parseLong(fields[7]);
+        }
+      }
+    }
+    int retVal = 1;
+    try {
+      retVal = runnerProc.waitFor();
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Subject execution aborted.", e);
+    }
+    if (retVal != 0 || result == null) {
+      throw new RuntimeException("Error running subject " + subject 
+          + (instrumenterConfigFile != null ? " with " + instrumenterConfigFile : ""));
+    }
+    return result;
+  }
+  
+  private void printSubjectResult(
+      String subject, String configLabel, SubjectResult result, SubjectResult baseline) {
+    if (baseline == null || result.events == 0) {
+      System.out.println(String.format("%-50s %-10s %12d %12d %12s %12s", subject, configLabel, 
+          result.events / iterations, result.elapsedNanos / iterations, "-", "-"));
+      return;
+    }
+    System.out.println(String.format("%-50s %-10s %12d %12d %12.1f %12.1f", 
+        subject, configLabel, result.events / iterations, result.elapsedNanos / iterations,
+        (double) (result.elapsedNanos - baseline.elapsedNanos) / result.events,
+        (double) (result.allocatedBytes - baseline.allocatedBytes) / result.events));
+  }
+  
+  private static List<DispatchBenchmark> createDispatchBenchmarks() {
+    final String className = BenchPrograms.class.getName();
+    final int[] sourceLocationIds = new int[POOL_SIZE];
+    for (int i = 0; i < POOL_SIZE; ++i) {
+      SourceLocation sourceLocation = SourceLocation.get(className.replace('.', '/') + ".java", i);
+      int id = SourceLocationDB.getSourceLocationId(sourceLocation);
+      sourceLocationIds[i] = id >= 0 ? id : SourceLocationDB.addSourceLocation(sourceLocation);
+    }
+    final Object[] objects = new Object[POOL_SIZE];
+    final int[][] arrays = new int[POOL_SIZE][];
+    for (int i = 0; i < POOL_SIZE; ++i) {
+      objects[i] = new PoolObject(i);
+      arrays[i] = new int[POOL_SIZE];
+    }
+    List<DispatchBenchmark> benchmarks = new ArrayList<>();
+    benchmarks.add(new DispatchBenchmark("entry/exit") {
+      @Override
+      void run(int events) {
+        for (int i = 0; i < events; i += 2) {
+          InstrumentationCallback.entry(className, "run(I)V");
+          InstrumentationCallback.exit(className, "run(I)V");
+        }
+      }
+    });
+    benchmarks.add(new DispatchBenchmark("executeSourceLocation") {
+      @Override
+      void run(int events) {
+        for (int i = 0; i < events; ++i) {
+          InstrumentationCallback.executeSourceLocation(sourceLocationIds[i % POOL_SIZE]);
+        }
+      }
+    });
+    benchmarks.add(new DispatchBenchmark("read/writeInstanceField") {
+      @Override
+      void run(int events) {
+        for (int i = 0; i < events; i += 2) {
+          Object object = objects[(i >> 1) % POOL_SIZE];
+          InstrumentationCallback.readInstanceField(object, "value");
+          InstrumentationCallback.writeInstanceField(object, "next");
+        }
+      }
+    });
+    benchmarks.add(new DispatchBenchmark("read/writeStaticField") {
+      @Override
+      void run(int events) {
+        for (int i = 0; i < events; i += 2) {
+          InstrumentationCallback.readStaticField(className, "sink");
+          InstrumentationCallback.writeStaticField(className, "sink");
+        }
+      }
+    });
+    benchmarks.add(new DispatchBenchmark("read/writeArrayBucket") {
+      @Override
+      void run(int events) {
+        for (int i = 0; i < events; i += 2) {
+          int[] array = arrays[(i >> 1) % POOL_SIZE];
+          InstrumentationCallback.readArrayBucket(array, i % POOL_SIZE);
+          InstrumentationCallback.writeArrayBucket(array, (i + 1) % POOL_SIZE);
+        }
+      }
+    });
+    // newObject reports one memory write per declared field of PoolObject.
+    benchmarks.add(new DispatchBenchmark("newObject") {
+      @Override
+      void run(int events) {
+        for (int i = 0; i < events; i += PoolObject.NUM_FIELDS) {
+          InstrumentationCallback.newObject(objects[(i / PoolObject.NUM_FIELDS) % POOL_SIZE]);
+        }
+      }
+    });
+    return benchmarks;
+  }
+  
+  public static void main(String[] args) throws IOException {
+    int iterations = 5;
+    boolean runDispatch = true;
+    boolean runSubjects = true;
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i].equals("-n") && i + 1 < args.length) {
+        iterations = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-iagent") && i + 1 < args.length) {
+        InstrumentationJars.setInstrumenterJarPath(Paths.get(args[++i]));
+      } else if (args[i].equals("-callback") && i + 1 < args.length) {
+        InstrumentationJars.setCallbackJarPath(Paths.get(args[++i]));
+      } else if (args[i].equals("-dispatch")) {
+        runSubjects = false;
+      } else if (args[i].equals("-subjects")) {
+        runDispatch = false;
+      } else {
+        System.err.println("Unrecognized argument " + args[i]);
+        System.exit(1);
+      }
+    }
+    InstrumentationCallbackBenchmark benchmark = new InstrumentationCallbackBenchmark(iterations);
+    if (runDispatch) {
+      benchmark.runDispatchBenchmarks();
+    }
+    if (runSubjects) {
+      Path workingDir = Files.createTempDirectory("instr-bench");
+      try {
+        benchmark.runSubjectBenchmarks(workingDir);
+      } finally {
+        for (File file : workingDir.toFile().listFiles()) {
+          file.delete();
+        }
+        workingDir.toFile().delete();
+      }
+    }
+  }
+  
+  private static enum SubjectConfig {
+    COVERAGE("coverage", CoverageMode.EVERY_HIT, false, false),
+    // Coverage is reset once per child process, so the measured runs see
+    // disarmed probes.
+    COVERAGE_FIRST_HIT("cov-first", CoverageMode.FIRST_HIT, false, false),
+    COVERAGE_SAMPLED("cov-sample", CoverageMode.SAMPLED_COUNT, false, false),
+    MEMORY("memory", CoverageMode.EVERY_HIT, true, false),
+    STATES("states", CoverageMode.EVERY_HIT, false, true);
+    
+    private String label;
+    private CoverageMode coverageMode;
+    private boolean instrumentMemoryAccess;
+    private boolean instrumentStateCapture;
+    
+    private SubjectConfig(String label, CoverageMode coverageMode, 
+        boolean instrumentMemoryAccess, boolean instrumentStateCapture) {
+      this.label = label;
+      this.coverageMode = coverageMode;
+      this.instrumentMemoryAccess = instrumentMemoryAccess;
+      this.instrumentStateCapture = instrumentStateCapture;
+    }
+    
+    public String getLabel() {
+      return label;
+    }
+    
+    public InstrumenterConfig createInstrumenterConfig() {
+      InstrumenterConfig config = new InstrumenterConfig(InstrumenterType.TRACE_INSTRUMENTER);
+      config.setInstrumentedPackage(SUBJECT_PACKAGE);
+      config.instrumentLineNumber(true);
+      config.setCoverageMode(coverageMode);
+      config.instrumentMemoryAccess(instrumentMemoryAccess);
+      config.instrumentStateCapture(instrumentStateCapture);
+      return config;
+    }
+  }
+  
+  private static abstract class DispatchBenchmark {
+    
+    private String name;
+    
+    DispatchBenchmark(String name) {
+      this.name = name;
+    }
+    
+    abstract void run(int events);
+  }
+  
+  private static class SubjectResult {
+    private long events;
+    private long elapsedNanos;
+    private long allocatedBytes;
+  }
+  
+  private static class PoolObject {
+    
+    private static final int NUM_FIELDS = 2;
+    
+    private int value;
+    private PoolObject next;
+    
+    PoolObject(int value) {
+      this.value = value;
+      next = this;
+    }
+  }
+}
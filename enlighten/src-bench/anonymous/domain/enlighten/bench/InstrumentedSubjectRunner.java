@@ -0,0 +1,101 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+import instr.callback.InstrumentationCallback;
+import instr.callback.SingleThreadCallbackImpl;
+import instr.callback.SourceLocationCoverageCollector;
+
+/**
+ * Runs the main method of a subject class repeatedly with the callbacks of the
+ * trace instrumenter counted by an {@link EventCountingListener}. This is the
+ * child process launched by {@link InstrumentationCallbackBenchmark}, which
+ * attaches the instrumentation agent to it. The first run is not measured since
+ * it includes class loading and instrumentation.
+ * 
+ * Usage: InstrumentedSubjectRunner subject-class iterations
+ * 
+ * The measurements are printed as a single line starting with
+ * {@link #RESULT_PREFIX}.
+ */
+public class InstrumentedSubjectRunner {
+  
+  public static final String RESULT_PREFIX = "RESULT";
+  
+  private static final String EXECUTION_ID = "bench";
+  
+  public static void main(String[] args) throws Exception {
+    if (args.length != 2) {
+      System.err.println("Usage: InstrumentedSubjectRunner subject-class iterations");
+      System.exit(1);
+    }
+    Method subjectMain = Class.forName(args[0]).getMethod("main", String[].class);
+    int iterations = Integer.parseInt(args[1]);
+    com.sun.management.ThreadMXBean threadBean = 
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+    long threadId = Thread.currentThread().getId();
+    
+    EventCountingListener listener = new EventCountingListener();
+    InstrumentationCallback.init(new SingleThreadCallbackImpl());
+    InstrumentationCallback.addCallbackListener(listener);
+    SourceLocationCoverageCollector.resetCoverage();
+    runSubject(subjectMain);
+    listener.reset();
+    long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < iterations; ++i) {
+      runSubject(subjectMain);
+    }
+    long elapsedNanos = System.nanoTime() - startNanos;
+    long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+    System.out.println(RESULT_PREFIX + " " + listener.getTotalEvents() 
+        + " " + listener.getMethodEvents() + " " + listener.getStateEvents()
+        + " " + listener.getSourceLineEvents() + " " + listener.getMemoryEvents()
+        + " " + elapsedNanos + " " + allocatedBytes);
+  }
+  
+  private static void runSubject(Method subjectMain) throws Exception {
+    InstrumentationCallback.executionStarted(EXECUTION_ID);
+    try {
+      subjectMain.invoke(null, (Object) new String[0]);
+    } finally {
+      InstrumentationCallback.executionEnded(EXECUTION_ID);
+    }
+  }
+}
@@ -0,0 +1,593 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import anonymous.domain.enlighten.data.ExecutionProfile;
+import anonymous.domain.enlighten.data.SourceLocation;
+import anonymous.domain.enlighten.data.TestName;
+import anonymous.domain.enlighten.deptrack.DynamicDependency;
+import anonymous.domain.enlighten.deptrack.InstructionDependencySource;
+import anonymous.domain.enlighten.deptrack.MethodInvocationAttr;
+import anonymous.domain.enlighten.exec.InstrumentationJars;
+import anonymous.domain.enlighten.exec.RunTestsWithCoverage;
+import anonymous.domain.enlighten.slicing.FieldSelectionCriterionAlt2;
+import anonymous.domain.enlighten.slicing.FieldSelectorAltListener2;
+import anonymous.domain.enlighten.slicing.JPFSlicingListener;
+import anonymous.domain.enlighten.slicing.SubjectProgramJPFRunner;
+import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
+import anonymous.domain.enlighten.susp.FaultLocalization;
+import benchtests.BenchProgramTests;
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.vm.DependencyTrackingInstruction;
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.StackFrame;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.VM;
+
+/**
+ * Measures the cost of dependency tracking on JPF by running test methods
+ * through {@link SubjectProgramJPFRunner} in four configurations: plain
+ * interpretation, instruction dependencies generated for every frame,
+ * dependencies generated under a {@link JPFSlicingListener} (which adds control
+ * dependency analysis), and a {@link FieldSelectorAltListener2} as used to
+ * select queries. Only the execution of the test method is measured. For each
+ * test and configuration the benchmark reports the interpreted instructions per
+ * second, the host heap peak, the bytes allocated and the dependency nodes
+ * created per run.
+ * 
+ * Without a subject the tests of {@link BenchProgramTests} are run on a subject
+ * created in a temporary directory. The field selector needs an invocation
+ * tree of the test, which is generated with the coverage runner when missing,
+ * so the instrumentation jars must be reachable for that configuration.
+ * 
+ * Results are written as JSON with -json. With -baseline, the throughput of
+ * every test and configuration is compared with a JSON file written earlier,
+ * and the benchmark exits with status 1 if any of them dropped by more than the
+ * threshold ratio (0.1 by default).
+ * 
+ * Usage: JpfInterpretationBenchmark [-n iterations] [-subject subject-dir -data data-dir]
+ *     [-configs plain,deptrack,slicing,field_selector] [-iagent jar] [-callback jar]
+ *     [-json output-file] [-baseline json-file] [-threshold ratio] [test-method...]
+ */
+public class JpfInterpretationBenchmark {
+  
+  private static final int WARMUP_ITERATIONS = 1;
+  private static final double DEFAULT_REGRESSION_THRESHOLD = 0.1;
+  
+  private static final Pattern BASELINE_RESULT_PATTERN = Pattern.compile(
+      "\"test\": \"([^\"]*)\", \"config\": \"([^\"]*)\".*\"instructionsPerSecond\": ([-+.0-9eE]+)");
+  
+  private static final com.sun.management.ThreadMXBean threadBean = 
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  
+  public static enum Configuration {
+    PLAIN("plain"),
+    DEPTRACK("deptrack"),
+    SLICING("slicing"),
+    FIELD_SELECTOR("field_selector");
+    
+    private String name;
+    
+    private Configuration(String name) {
+      this.name = name;
+    }
+    
+    public String getName() {
+      return name;
+    }
+    
+    public static Configuration forName(String name) {
+      for (Configuration config : values()) {
+        if (config.name.equals(name)) {
+          return config;
+        }
+      }
+      throw new IllegalArgumentException("Unknown configuration " + name);
+    }
+  }
+  
+  private SubjectProgram subject;
+  private int iterations;
+  private RunTestsWithCoverage coverageData;
+  private FaultLocalization<SourceLocation> flResult;
+  
+  public JpfInterpretationBenchmark(SubjectProgram subject, int iterations) {
+    this.subject = subject;
+    this.iterations = iterations;
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+  }
+  
+  public List<String> listTestMethods() throws IOException {
+    List<String> testMethods = new ArrayList<>();
+    for (Class<?> testClass : subject.listTestClasses()) {
+      for (Method method : testClass.getMethods()) {
+        if (method.isAnnotationPresent(Test.class)) {
+          testMethods.add(testClass.getName() + "." + method.getName());
+        }
+      }
+    }
+    Collections.sort(testMethods);
+    return testMethods;
+  }
+  
+  /**
+   * Reads, or generates if missing, the invocation trees of the given tests and
+   * the fault localization result that the field selector needs. Returns false
+   * if the coverage data cannot be generated.
+   */
+  public boolean prepareFieldSelection(List<String> testMethods) {
+    coverageData = new RunTestsWithCoverage(subject);
+    try {
+      if (!hasExecutionProfiles(testMethods)) {
+        coverageData.writeInvocationTreeForFailedTests(true);
+        coverageData.generateCoverageData();
+      }
+      flResult = FaultLocalization.getFaultLocalization(
+          coverageData.getTestOutcomes(), coverageData.getSourceLocationCoverageMatrix());
+    } catch (IOException | RuntimeException ex) {
+      System.err.println("Cannot generate coverage data for the field selector: " + ex);
+      return false;
+    }
+    return true;
+  }
+  
+  public boolean hasExecutionProfile(String testMethod) {
+    return Files.exists(getExecutionProfilePath(toTestName(testMethod)));
+  }
+  
+  public Result measure(String testMethod, Configuration config) throws IOException {
+    for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+      runOnce(testMethod, config);
+    }
+    Result total = new Result(testMethod, config);
+    for (int i = 0; i < iterations; ++i) {
+      Result current = runOnce(testMethod, config);
+      total.instructions += current.instructions;
+      total.dependencyNodes += current.dependencyNodes;
+      total.allocatedBytes += current.allocatedBytes;
+      total.elapsedNanos += current.elapsedNanos;
+      total.peakHeapBytes = Math.max(total.peakHeapBytes, current.peakHeapBytes);
+    }
+    total.runs = iterations;
+    return total;
+  }
+  
+  private Result runOnce(String testMethod, Configuration config) throws IOException {
+    TestName testName = toTestName(testMethod);
+    SubjectProgramJPFRunner runner = new SubjectProgramJPFRunner(subject);
+    MeasuringListener listener = new MeasuringListener(
+        testName, new Result(testMethod, config), config == Configuration.DEPTRACK);
+    if (config == Configuration.SLICING) {
+      runner.setJpfVMListener(new TrackingListener(testName));
+    } else if (config == Configuration.FIELD_SELECTOR) {
+      FieldSelectionCriterionAlt2 criterion = new FieldSelectionCriterionAlt2();
+      criterion.executionProfile = 
+          ExecutionProfile.readFromDataFile(getExecutionProfilePath(testName));
+      criterion.flResults = flResult;
+      criterion.correctValues = new HashMap<>();
+      criterion.incorrectOutputValues = new HashMap<>();
+      criterion.incorrectInputValues = new HashMap<>();
+      criterion.incorrectValueRelevantDepIdList = new ArrayList<>();
+      runner.setJpfVMListener(new FieldSelectorAltListener2(subject, criterion));
+    }
+    runner.addAuxiliaryVMListener(listener);
+    List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        heapPools.add(pool);
+      }
+    }
+    System.gc();
+    for (MemoryPoolMXBean pool : heapPools) {
+      pool.resetPeakUsage();
+    }
+    runner.runTestMethod(testMethod);
+    if (!listener.finished) {
+      throw new RuntimeException("Test method " + testMethod + " did not complete on JPF");
+    }
+    for (MemoryPoolMXBean pool : heapPools) {
+      listener.result.peakHeapBytes += pool.getPeakUsage().getUsed();
+    }
+    return listener.result;
+  }
+  
+  private boolean hasExecutionProfiles(List<String> testMethods) {
+    for (String testMethod : testMethods) {
+      if (!hasExecutionProfile(testMethod)) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  private Path getExecutionProfilePath(TestName testName) {
+    return subject.getCoverageDir().resolve(testName.getDescription() + ".tree");
+  }
+  
+  private static TestName toTestName(String testMethod) {
+    int separatorIndex = testMethod.lastIndexOf('.');
+    return new TestName(
+        testMethod.substring(0, separatorIndex), testMethod.substring(separatorIndex + 1));
+  }
+  
+  /**
+   * Creates a subject program around the benchmark tests, with the classes this
+   * benchmark is loaded from as both application and test classes.
+   */
+  public static SubjectProgram createBenchSubject() throws IOException {
+    Path rootDir = Files.createTempDirectory("jpf-bench-subject");
+    SubjectProgram.Info info = SubjectProgram.Info.newSubjectProjectInfo();
+    String classesDir = getCodeSourcePath(BenchProgramTests.class);
+    info.setAppSourcePaths(Arrays.asList(classesDir));
+    info.setTestSourcePaths(Arrays.asList(classesDir));
+    info.setLibPaths(Arrays.asList(
+        getCodeSourcePath(Test.class), getCodeSourcePath(org.hamcrest.Matcher.class)));
+    info.setAppPackage("benchsubjects");
+    info.setTestClassNames(Arrays.asList(BenchProgramTests.class.getName()));
+    info.storeToFile(rootDir.resolve("subject_program.info").toFile());
+    return SubjectProgram.openSubjectProgram(rootDir, rootDir.resolve("data"));
+  }
+  
+  private static String getCodeSourcePath(Class<?> cls) {
+    return new File(cls.getProtectionDomain().getCodeSource().getLocation().getPath())
+        .getAbsolutePath();
+  }
+  
+  public static String toJson(int iterations, List<Result> results) {
+    StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"iterations\": ").append(iterations).append(",\n");
+    json.append("  \"results\": [");
+    for (int i = 0; i < results.size(); ++i) {
+      Result result = results.get(i);
+      json.append(i == 0 ? "\n" : ",\n");
+      json.append(String.format(Locale.ROOT, 
+          "    {\"test\": \"%s\", \"config\": \"%s\", \"instructions\": %d, "
+          + "\"elapsedNanos\": %d, \"instructionsPerSecond\": %.1f, \"allocatedBytes\": %d, "
+          + "\"peakHeapBytes\": %d, \"dependencyNodes\": %d}", 
+          result.testMethod, result.config.getName(), result.instructions / result.runs, 
+          result.elapsedNanos / result.runs, result.getInstructionsPerSecond(), 
+          result.allocatedBytes / result.runs, result.peakHeapBytes, 
+          result.dependencyNodes / result.runs));
+    }
+    json.append("\n  ]\n");
+    json.append("}\n");
+    return json.toString();
+  }
+  
+  /**
+   * Reads the throughput of every test and configuration from a JSON file
+   * written by {@link #toJson}, keyed by "test config".
+   */
+  public static Map<String, Double> readBaseline(Path jsonFile) throws IOException {
+    Map<String, Double> throughputs = new HashMap<>();
+    for (String line : Files.readAllLines(jsonFile, StandardCharsets.UTF_8)) {
+      Matcher matcher = BASELINE_RESULT_PATTERN.matcher(line);
+      if (matcher.find()) {
+        throughputs.put(matcher.group(1) + " " + matcher.group(2), 
+            Double.parseDouble(matcher.group(3)));
+      }
+    }
+    return throughputs;
+  }
+  
+  public static void main(String[] args) throws Exception {
+    int iterations = 3;
+    String subjectDir = null;
+    String dataDir = null;
+    String jsonFile = null;
+    String baselineFile = null;
+    double threshold = DEFAULT_REGRESSION_THRESHOLD;
+    List<Configuration> configs = Arrays.asList(Configuration.values());
+    List<String> testMethods = new ArrayList<>();
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i].equals("-n") && i + 1 < args.length) {
+        iterations = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-subject") && i + 1 < args.length) {
+        subjectDir = args[++i];
+      } else if (args[i].equals("-data") && i + 1 < args.length) {
+        dataDir = args[++i];
+      } else if (args[i].equals("-configs") && i + 1 < args.length) {
+        configs = new ArrayList<>();
+        for (String name : args[++i].split(",")) {
+          configs.add(Configuration.forName(name.trim()));
+        }
+      } else if (args[i].equals("-iagent") && i + 1 < args.length) {
+        InstrumentationJars.setInstrumenterJarPath(Paths.get(args[++i]));
+      } else if (args[i].equals("-callback") && i + 1 < args.length) {
+        InstrumentationJars.setCallbackJarPath(Paths.get(args[++i]));
+      } else if (args[i].equals("-json") && i + 1 < args.length) {
+        jsonFile = args[++i];
+      } else if (args[i].equals("-baseline") && i + 1 < args.length) {
+        baselineFile = args[++i];
+      } else if (args[i].equals("-threshold") && i + 1 < args.length) {
+        threshold = Double.parseDouble(args[++i]);
+      } else if (args[i].startsWith("-")) {
+        System.err.println("Unrecognized argument " + args[i]);
+        System.exit(1);
+      } else {
+        testMethods.add(args[i]);
+      }
+    }
+    SubjectProgram subject;
+    if (subjectDir != null) {
+      Path subjectRoot = Paths.get(subjectDir).toAbsolutePath();
+      subject = SubjectProgram.openSubjectProgram(subjectRoot, 
+          dataDir != null ? Paths.get(dataDir).toAbsolutePath() : subjectRoot.resolve("data"));
+    } else {
+      subject = createBenchSubject();
+    }
+    JpfInterpretationBenchmark benchmark = new JpfInterpretationBenchmark(subject, iterations);
+    if (testMethods.isEmpty()) {
+      testMethods = benchmark.listTestMethods();
+    }
+    if (configs.contains(Configuration.FIELD_SELECTOR) 
+        && !benchmark.prepareFieldSelection(testMethods)) {
+      configs = new ArrayList<>(configs);
+      configs.remove(Configuration.FIELD_SELECTOR);
+    }
+    
+    System.out.println(String.format("%-50s %-14s %12s %12s %12s %12s %12s", "test", 
+        "config", "insns/run", "insns/s", "nodes/run", "MB alloc/run", "MB peak"));
+    List<Result> results = new ArrayList<>();
+    for (String testMethod : testMethods) {
+      for (Configuration config : configs) {
+        if (config == Configuration.FIELD_SELECTOR 
+            && !benchmark.hasExecutionProfile(testMethod)) {
+          continue;
+        }
+        Result result = benchmark.measure(testMethod, config);
+        results.add(result);
+        System.out.println(String.format("%-50s %-14s %12d %12.0f %12d %12.1f %12.1f", 
+            testMethod, config.getName(), result.instructions / result.runs, 
+            result.getInstructionsPerSecond(), result.dependencyNodes / result.runs,
+            result.allocatedBytes / 1e6 / result.runs, result.peakHeapBytes / 1e6));
+      }
+    }
+    String json = toJson(iterations, results);
+    if (jsonFile != null) {
+      Files.write(Paths.get(jsonFile), json.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    if (baselineFile != null) {
+      Map<String, Double> baseline = readBaseline(Paths.get(baselineFile));
+      int regressions = 0;
+      for (Result result : results) {
+        Double baselineThroughput = 
+            baseline.get(result.testMethod + " " + result.config.getName());
+        if (baselineThroughput == null || baselineThroughput <= 0) {
+          continue;
+        }
+        double ratio = result.getInstructionsPerSecond() / baselineThroughput;
+        if (ratio < 1 - threshold) {
+          ++regressions;
+          System.out.println(String.format(Locale.ROOT, 
+              "REGRESSION %s %s: %.0f insns/s, baseline %.0f (%.1f%%)", 
+              result.testMethod, result.config.getName(), result.getInstructionsPerSecond(), 
+              baselineThroughput, (ratio - 1) * 100));
+        }
+      }
+      if (regressions > 0) {
+        System.out.println(regressions + " throughput regression(s) beyond " 
+            + Math.round(threshold * 100) + "%");
+        System.exit(1);
+      }
+      System.out.println("No throughput regression beyond " 
+          + Math.round(threshold * 100) + "%");
+    }
+  }
+  
+  public static class Result {
+    
+    private String testMethod;
+    private Configuration config;
+    private int runs = 1;
+    private long instructions;
+    private long dependencyNodes;
+    private long allocatedBytes;
+    private long elapsedNanos;
+    private long peakHeapBytes;
+    
+    private Result(String testMethod, Configuration config) {
+      this.testMethod = testMethod;
+      this.config = config;
+    }
+    
+    public String getTestMethod() {
+      return testMethod;
+    }
+    
+    public Configuration getConfiguration() {
+      return config;
+    }
+    
+    public long getInstructions() {
+      return instructions;
+    }
+    
+    public long getDependencyNodes() {
+      return dependencyNodes;
+    }
+    
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+    
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+    
+    public long getPeakHeapBytes() {
+      return peakHeapBytes;
+    }
+    
+    public double getInstructionsPerSecond() {
+      return elapsedNanos == 0 ? 0 : instructions * 1e9 / elapsedNanos;
+    }
+  }
+  
+  /*
+   * Measures the execution of the test method. In the deptrack configuration it
+   * also turns on dependency generation for every frame entered by the test,
+   * without the control dependency analysis of JPFSlicingListener.
+   */
+  private static class MeasuringListener extends ListenerAdapter {
+    
+    private TestName testName;
+    private Result result;
+    private boolean generateDependencies;
+    private boolean measuring;
+    private boolean finished;
+    private long startDependencyIndex;
+    private long lastDependencyIndex;
+    private long startBytes;
+    private long startNanos;
+    
+    MeasuringListener(TestName testName, Result result, boolean generateDependencies) {
+      this.testName = testName;
+      this.result = result;
+      this.generateDependencies = generateDependencies;
+    }
+    
+    @Override
+    public void methodEntered(VM vm, ThreadInfo currentThread, MethodInfo enteredMethod) {
+      if (!measuring && !finished && isTestMethod(testName, enteredMethod)) {
+        measuring = true;
+        startDependencyIndex = DynamicDependency.getNextInstanceIndex();
+        lastDependencyIndex = startDependencyIndex;
+        startBytes = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        startNanos = System.nanoTime();
+      }
+      if (measuring && generateDependencies) {
+        StackFrame frame = currentThread.getModifiableTopFrame();
+        MethodInvocationAttr frameAttr = frame.getFrameAttr(MethodInvocationAttr.class);
+        if (frameAttr == null) {
+          frameAttr = new MethodInvocationAttr();
+          frame.addFrameAttr(frameAttr);
+        }
+        frameAttr.setGenInstrDep(true);
+      }
+    }
+    
+    @Override
+    public void methodExited(VM vm, ThreadInfo currentThread, MethodInfo exitedMethod) {
+      if (measuring && isTestMethod(testName, exitedMethod)) {
+        result.elapsedNanos = System.nanoTime() - startNanos;
+        result.allocatedBytes = 
+            threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - startBytes;
+        countDependencyNodes();
+        result.dependencyNodes += lastDependencyIndex - startDependencyIndex;
+        measuring = false;
+        finished = true;
+      }
+    }
+    
+    @Override
+    public void instructionExecuted(VM vm, ThreadInfo currentThread, 
+        Instruction nextInstruction, Instruction executedInstruction) {
+      if (measuring) {
+        ++result.instructions;
+        countDependencyNodes();
+      }
+    }
+    
+    /*
+     * The slicing listeners reset the dependency counter when they start
+     * tracking, which may happen after the measurement started.
+     */
+    private void countDependencyNodes() {
+      long nextIndex = DynamicDependency.getNextInstanceIndex();
+      if (nextIndex < lastDependencyIndex) {
+        result.dependencyNodes += lastDependencyIndex - startDependencyIndex;
+        startDependencyIndex = 0;
+      }
+      lastDependencyIndex = nextIndex;
+    }
+  }
+  
+  private static class TrackingListener extends JPFSlicingListener {
+    
+    private TestName testName;
+    
+    TrackingListener(TestName testName) {
+      this.testName = testName;
+      setEnableTimeout(false);
+    }
+    
+    @Override
+    public void methodEntered(VM vm, ThreadInfo currentThread, MethodInfo enteredMethod) {
+      if (!isDependencyTrackingStarted() && isTestMethod(testName, enteredMethod)) {
+        startDependencyTracking();
+      }
+      super.methodEntered(vm, currentThread, enteredMethod);
+      if (isDependencyTrackingStarted()) {
+        currentThread.getModifiableTopFrame()
+            .getFrameAttr(MethodInvocationAttr.class).setGenInstrDep(true);
+      }
+    }
+
+    @Override
+    public void instructionDependencySourceGenerated(
+        DependencyTrackingInstruction insn, InstructionDependencySource depNode) {}
+  }
+  
+  private static boolean isTestMethod(TestName testName, MethodInfo method) {
+    return method.getName().equals(testName.getTestMethodName()) 
+        && method.getClassName().equals(testName.getTestClassName());
+  }
+}
@@ -0,0 +1,376 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.bench;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import anonymous.domain.enlighten.FeedbackDirectedFLCore;
+import anonymous.domain.enlighten.data.Coverage;
+import anonymous.domain.enlighten.data.SourceLocation;
+import anonymous.domain.enlighten.data.SourceLocationCoverage;
+import anonymous.domain.enlighten.data.TestName;
+import anonymous.domain.enlighten.data.TestOutcomes;
+import anonymous.domain.enlighten.exec.RunTestsWithCoverage;
+import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
+import anonymous.domain.enlighten.susp.FaultLocalization;
+import anonymous.domain.enlighten.susp.OchiaiMetric;
+import anonymous.domain.enlighten.susp.TarantulaMetric;
+import anonymous.domain.enlighten.susp.WeightedOchiai;
+
+/**
+ * Measures spectrum based fault localization on a statement coverage matrix:
+ * scoring with each metric, scoring followed by ranking, rendering the full
+ * ranked list and its top k entries, and the rebuild of the weighted Ochiai
+ * result that {@link FeedbackDirectedFLCore} performs after every feedback.
+ * For each operation the benchmark reports the throughput, the time per
+ * operation and the bytes allocated per operation and per second.
+ * 
+ * The matrix is either synthesized, with every test covering every location
+ * with the given density and all failing tests covering a common set of faulty
+ * locations, or read from the coverage data of an existing subject.
+ * 
+ * Usage: SbflBenchmark [-n iterations] [-tests count] [-locs count] 
+ *     [-failing ratio] [-density ratio] [-feedback count] [-topk k] [-seed seed]
+ *     [-subject subject-dir -data data-dir]
+ */
+public class SbflBenchmark {
+  
+  private static final int WARMUP_ITERATIONS = 3;
+  private static final int FAULTY_LOCATIONS = 3;
+  private static final double PASSING_TESTS_WEIGHT = 0.1;
+  
+  private static final com.sun.management.ThreadMXBean threadBean = 
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  
+  private TestOutcomes testOutcomes;
+  private Map<TestName, SourceLocationCoverage> covMatrix;
+  private int iterations;
+  private int feedbackCount;
+  private int topK;
+  private long seed;
+  
+  // Keeps the results of the measured operations reachable.
+  private long sink;
+  
+  public SbflBenchmark(TestOutcomes testOutcomes, 
+      Map<TestName, SourceLocationCoverage> covMatrix, int iterations, 
+      int feedbackCount, int topK, long seed) {
+    this.testOutcomes = testOutcomes;
+    this.covMatrix = covMatrix;
+    this.iterations = iterations;
+    this.feedbackCount = feedbackCount;
+    this.topK = topK;
+    this.seed = seed;
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+  }
+  
+  public static SbflBenchmark synthesize(int testCount, int locationCount, 
+      double failingRatio, double density, int iterations, int feedbackCount, 
+      int topK, long seed) {
+    Random random = new Random(seed);
+    List<SourceLocation> locations = new ArrayList<>(locationCount);
+    for (int i = 0; i < locationCount; ++i) {
+      locations.add(SourceLocation.get("bench/Synthetic" + (i / 500) + ".java", i % 500 + 1));
+    }
+    TestOutcomes testOutcomes = new TestOutcomes();
+    Map<TestName, SourceLocationCoverage> covMatrix = new HashMap<>();
+    int failingCount = Math.max(1, (int) Math.round(testCount * failingRatio));
+    for (int i = 0; i < testCount; ++i) {
+      TestName test = new TestName("bench.SyntheticTest" + (i / 100), "test" + i);
+      boolean passed = i >= failingCount;
+      SourceLocationCoverage coverage = new SourceLocationCoverage();
+      for (int j = 0; j < locationCount; ++j) {
+        if ((!passed && j < FAULTY_LOCATIONS) || random.nextDouble() < density) {
+          coverage.addCoverage(locations.get(j));
+        }
+      }
+      testOutcomes.addTestOutcome(test, passed);
+      covMatrix.put(test, coverage);
+    }
+    return new SbflBenchmark(
+        testOutcomes, covMatrix, iterations, feedbackCount, topK, seed);
+  }
+  
+  public static SbflBenchmark load(SubjectProgram subject, int iterations, 
+      int feedbackCount, int topK, long seed) throws Exception {
+    RunTestsWithCoverage coverageData = new RunTestsWithCoverage(subject);
+    TestOutcomes testOutcomes = coverageData.getTestOutcomes();
+    Map<TestName, SourceLocationCoverage> covMatrix = 
+        new HashMap<>(coverageData.getSourceLocationCoverageMatrix());
+    covMatrix.keySet().retainAll(testOutcomes.getTestSet());
+    return new SbflBenchmark(
+        testOutcomes, covMatrix, iterations, feedbackCount, topK, seed);
+  }
+  
+  public void run() {
+    Set<SourceLocation> allLocations = new HashSet<>();
+    long coveredCells = 0;
+    int failingCount = 0;
+    for (TestName test : covMatrix.keySet()) {
+      Set<SourceLocation> coverage = covMatrix.get(test).getCoverage();
+      allLocations.addAll(coverage);
+      coveredCells += coverage.size();
+      if (!testOutcomes.isPassed(test)) {
+        ++failingCount;
+      }
+    }
+    System.out.println(String.format("tests=%d failing=%d locations=%d covered-cells=%d", 
+        covMatrix.size(), failingCount, allLocations.size(), coveredCells));
+    System.out.println(String.format("%-22s %12s %12s %14s %12s", 
+        "operation", "ops/s", "ms/op", "bytes/op", "MB/s alloc"));
+    
+    final Map<TestName, Double> testWeights = new HashMap<>();
+    for (TestName test : covMatrix.keySet()) {
+      testWeights.put(test, testOutcomes.isPassed(test) ? PASSING_TESTS_WEIGHT : 1.0);
+    }
+    report("score.ochiai", 
+        () -> new ScoredOchiai<>(testOutcomes, covMatrix).score().size());
+    report("score.tarantula", 
+        () -> new ScoredTarantula<>(testOutcomes, covMatrix).score().size());
+    report("score.weighted_ochiai", 
+        () -> new ScoredWeightedOchiai<>(testOutcomes, covMatrix, testWeights).score().size());
+    report("rank.ochiai", 
+        () -> new OchiaiMetric<>(testOutcomes, covMatrix).getRankedList().size());
+    report("rank.weighted_ochiai", () -> new WeightedOchiai<>(
+        testOutcomes, covMatrix, testWeights).getRankedList().size());
+    
+    final FaultLocalization<SourceLocation> ranked = 
+        new WeightedOchiai<>(testOutcomes, covMatrix, testWeights);
+    ranked.getRankedList();
+    report("list.full", () -> ranked.getRankedListString().length());
+    report("list.top" + topK, () -> ranked.getRankedListString(topK).length());
+    
+    final List<FeedbackStep> feedbackSteps = createFeedbackSteps();
+    report("feedback.rebuild", feedbackSteps.size(), () -> replayFeedback(feedbackSteps));
+    if (sink == 42) {
+      System.out.println();
+    }
+  }
+  
+  private void report(String operation, Operation op) {
+    report(operation, 1, op);
+  }
+  
+  /**
+   * Runs the operation for the warm-up and measured iterations and prints the
+   * figures of the measured ones, counting opsPerRun operations per call.
+   */
+  private void report(String operation, int opsPerRun, Operation op) {
+    for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+      sink += op.run();
+    }
+    long threadId = Thread.currentThread().getId();
+    long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < iterations; ++i) {
+      sink += op.run();
+    }
+    long elapsedNanos = System.nanoTime() - startNanos;
+    long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+    double ops = (double) iterations * opsPerRun;
+    System.out.println(String.format("%-22s %12.1f %12.3f %14.1f %12.1f", 
+        operation, ops * 1e9 / elapsedNanos, elapsedNanos / 1e6 / ops, 
+        allocatedBytes / ops, allocatedBytes * 1e3 / elapsedNanos));
+  }
+  
+  /*
+   * Simulates a feedback session: every step marks a random part of the failing
+   * coverage as correct, adding it as a passing virtual test, marks another
+   * random part as incorrect, narrowing the scope to the coverage of all the
+   * incorrect parts, and excludes one location, then rebuilds and ranks as the
+   * FL core does.
+   */
+  private List<FeedbackStep> createFeedbackSteps() {
+    Random random = new Random(seed);
+    List<SourceLocation> failingCoverage = new ArrayList<>();
+    Set<SourceLocation> seen = new HashSet<>();
+    for (TestName test : covMatrix.keySet()) {
+      if (!testOutcomes.isPassed(test)) {
+        for (SourceLocation location : covMatrix.get(test).getCoverage()) {
+          if (seen.add(location)) {
+            failingCoverage.add(location);
+          }
+        }
+      }
+    }
+    List<FeedbackStep> steps = new ArrayList<>();
+    if (failingCoverage.isEmpty()) {
+      return steps;
+    }
+    Map<TestName, Set<SourceLocation>> virtualTests = new HashMap<>();
+    Set<SourceLocation> excluded = new HashSet<>();
+    Set<SourceLocation> scope = new HashSet<>(failingCoverage);
+    for (int i = 0; i < feedbackCount; ++i) {
+      Set<SourceLocation> virtualCoverage = new HashSet<>();
+      for (SourceLocation location : failingCoverage) {
+        if (random.nextInt(4) == 0) {
+          virtualCoverage.add(location);
+        }
+      }
+      virtualTests.put(new TestName("bench.VirtualTest", "feedback" + i), virtualCoverage);
+      scope.removeIf(location -> random.nextInt(4) == 0);
+      excluded.add(failingCoverage.get(random.nextInt(failingCoverage.size())));
+      steps.add(new FeedbackStep(
+          new HashMap<>(virtualTests), new HashSet<>(scope), new HashSet<>(excluded)));
+    }
+    return steps;
+  }
+  
+  private int replayFeedback(List<FeedbackStep> steps) {
+    int result = 0;
+    for (FeedbackStep step : steps) {
+      FaultLocalization<SourceLocation> fl = 
+          FeedbackDirectedFLCore.computeFaultLocalizationResult(testOutcomes, covMatrix, 
+              PASSING_TESTS_WEIGHT, step.scope, step.excluded, step.virtualTests);
+      result += fl.getRankedList().size();
+    }
+    return result;
+  }
+  
+  public static void main(String[] args) throws Exception {
+    int iterations = 20;
+    int testCount = 2000;
+    int locationCount = 5000;
+    double failingRatio = 0.01;
+    double density = 0.1;
+    int feedbackCount = 10;
+    int topK = 20;
+    long seed = 0;
+    String subjectDir = null;
+    String dataDir = null;
+    for (int i = 0; i < args.length; ++i) {
+      if (args[i].equals("-n") && i + 1 < args.length) {
+        iterations = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-tests") && i + 1 < args.length) {
+        testCount = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-locs") && i + 1 < args.length) {
+        locationCount = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-failing") && i + 1 < args.length) {
+        failingRatio = Double.parseDouble(args[++i]);
+      } else if (args[i].equals("-density") && i + 1 < args.length) {
+        density = Double.parseDouble(args[++i]);
+      } else if (args[i].equals("-feedback") && i + 1 < args.length) {
+        feedbackCount = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-topk") && i + 1 < args.length) {
+        topK = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-seed") && i + 1 < args.length) {
+        seed = Long.parseLong(args[++i]);
+      } else if (args[i].equals("-subject") && i + 1 < args.length) {
+        subjectDir = args[++i];
+      } else if (args[i].equals("-data") && i + 1 < args.length) {
+        dataDir = args[++i];
+      } else {
+        System.err.println("Unrecognized argument " + args[i]);
+        System.exit(1);
+      }
+    }
+    SbflBenchmark benchmark;
+    if (subjectDir != null) {
+      SubjectProgram subject = SubjectProgram.openSubjectProgram(Paths.get(subjectDir), 
+          dataDir != null ? Paths.get(dataDir) : null);
+      benchmark = load(subject, iterations, feedbackCount, topK, seed);
+    } else {
+      benchmark = synthesize(testCount, locationCount, failingRatio, density, 
+          iterations, feedbackCount, topK, seed);
+    }
+    benchmark.run();
+  }
+  
+  private interface Operation {
+    int run();
+  }
+  
+  private static class FeedbackStep {
+    
+    private Map<TestName, Set<SourceLocation>> virtualTests;
+    private Set<SourceLocation> scope;
+    private Set<SourceLocation> excluded;
+    
+    FeedbackStep(Map<TestName, Set<SourceLocation>> virtualTests, 
+        Set<SourceLocation> scope, Set<SourceLocation> excluded) {
+      this.virtualTests = virtualTests;
+      this.scope = scope;
+      this.excluded = excluded;
+    }
+  }
+  
+  /*
+   * The metrics below expose the scoring step alone, without the ranking that
+   * FaultLocalization performs on first access.
+   */
+  
+  private static class ScoredOchiai<T extends Serializable> extends OchiaiMetric<T> {
+    
+    ScoredOchiai(TestOutcomes testOutcomes, Map<TestName, ? extends Coverage<T>> covMatrix) {
+      super(testOutcomes, covMatrix);
+    }
+    
+    Map<T, Double> score() {
+      return doSuspiciousnessComputation();
+    }
+  }
+  
+  private static class ScoredTarantula<T extends Serializable> extends TarantulaMetric<T> {
+    
+    ScoredTarantula(TestOutcomes testOutcomes, Map<TestName, ? extends Coverage<T>> covMatrix) {
+      super(testOutcomes, covMatrix);
+    }
+    
+    Map<T, Double> score() {
+      return doSuspiciousnessComputation();
+    }
+  }
+  
+  private static class ScoredWeightedOchiai<T extends Serializable> extends WeightedOchiai<T> {
+    
+    ScoredWeightedOchiai(TestOutcomes testOutcomes, 
+        Map<TestName, ? extends Coverage<T>> covMatrix, Map<TestName, Double> testWeights) {
+      super(testOutcomes, covMatrix, testWeights);
+    }
+    
+    Map<T, Double> score() {
+      return doSuspiciousnessComputation();
+    }
+  }
+}
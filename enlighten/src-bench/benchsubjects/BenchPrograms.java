@@ -0,0 +1,193 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package benchsubjects;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Small deterministic programs that are run by the benchmarks, either
+ * interpreted by JPF or under the trace instrumenter. They only use plain
+ * bytecode and library classes that JPF models without delegating native calls
+ * during the measured region, and they are kept out of anonymous.domain.enlighten so that the instrumenter
+ * does not skip them.
+ */
+public class BenchPrograms {
+  
+  public static final String[] ALL = {
+      Arithmetic.class.getName(),
+      ArraySort.class.getName(),
+      LinkedObjects.class.getName(),
+      TreeSums.class.getName(),
+      CollectionOps.class.getName()
+  };
+  
+  public static volatile long sink;
+  
+  public static class Arithmetic {
+    
+    public static void main(String[] args) {
+      long sum = 0;
+      for (int i = 0; i < 20000; ++i) {
+        int x = i * 31 + 7;
+        if (x % 3 == 0) {
+          sum += x / 3;
+        } else if ((x & 1) == 0) {
+          sum -= x >> 1;
+        } else {
+          sum ^= x;
+        }
+      }
+      sink = sum;
+    }
+  }
+  
+  public static class ArraySort {
+    
+    public static void main(String[] args) {
+      int[] values = new int[300];
+      int seed = 12345;
+      for (int i = 0; i < values.length; ++i) {
+        seed = seed * 1103515245 + 12345;
+        values[i] = (seed >>> 16) & 0x7fff;
+      }
+      for (int i = 0; i < values.length; ++i) {
+        for (int j = values.length - 1; j > i; --j) {
+          if (values[j - 1] > values[j]) {
+            int tmp = values[j - 1];
+            values[j - 1] = values[j];
+            values[j] = tmp;
+          }
+        }
+      }
+      sink = values[0] + values[values.length - 1];
+    }
+  }
+  
+  public static class LinkedObjects {
+    
+    private int value;
+    private LinkedObjects next;
+    
+    LinkedObjects(int value, LinkedObjects next) {
+      this.value = value;
+      this.next = next;
+    }
+    
+    int getValue() {
+      return value;
+    }
+    
+    public static void main(String[] args) {
+      long sum = 0;
+      for (int round = 0; round < 40; ++round) {
+        LinkedObjects head = null;
+        for (int i = 0; i < 200; ++i) {
+          head = new LinkedObjects(i * round, head);
+        }
+        for (LinkedObjects node = head; node != null; node = node.next) {
+          sum += node.getValue();
+        }
+      }
+      sink = sum;
+    }
+  }
+  
+  public static class TreeSums {
+    
+    private int value;
+    private TreeSums left;
+    private TreeSums right;
+    
+    TreeSums(int value, TreeSums left, TreeSums right) {
+      this.value = value;
+      this.left = left;
+      this.right = right;
+    }
+    
+    static TreeSums build(int depth, int seed) {
+      if (depth == 0) {
+        return null;
+      }
+      return new TreeSums(seed % 97, build(depth - 1, seed * 3 + 1), build(depth - 1, seed * 5 + 2));
+    }
+    
+    int sum() {
+      int sum = value;
+      if (left != null) {
+        sum += left.sum();
+      }
+      if (right != null) {
+        sum += right.sum();
+      }
+      return sum;
+    }
+    
+    public static void main(String[] args) {
+      TreeSums root = build(9, 7);
+      long total = 0;
+      for (int round = 0; round < 4; ++round) {
+        total += root.sum();
+      }
+      sink = total;
+    }
+  }
+  
+  public static class CollectionOps {
+    
+    public static void main(String[] args) {
+      List<Integer> values = new ArrayList<>();
+      Map<Integer, Integer> counts = new HashMap<>();
+      int seed = 4711;
+      for (int i = 0; i < 2000; ++i) {
+        seed = seed * 1103515245 + 12345;
+        Integer value = (seed >>> 16) & 0x1ff;
+        values.add(value);
+        Integer count = counts.get(value);
+        counts.put(value, count == null ? 1 : count + 1);
+      }
+      long sum = 0;
+      for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+        sum += (long) entry.getKey() * entry.getValue();
+      }
+      for (int i = values.size() - 1; i >= 0; i -= 3) {
+        values.remove(i);
+      }
+      sink = sum + values.size();
+    }
+  }
+}
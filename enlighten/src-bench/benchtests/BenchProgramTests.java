@@ -0,0 +1,84 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package benchtests;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import benchsubjects.BenchPrograms;
+
+/**
+ * Runs every benchmark program as a JUnit test, so that the programs can be
+ * interpreted through the same test runner as a subject program. Every test
+ * fails on purpose, like the failing tests that Enlighten runs on JPF, which
+ * makes the coverage runner record an invocation tree for each of them.
+ */
+public class BenchProgramTests {
+  
+  @Test
+  public void testArithmetic() {
+    BenchPrograms.Arithmetic.main(new String[0]);
+    checkResult();
+  }
+  
+  @Test
+  public void testArraySort() {
+    BenchPrograms.ArraySort.main(new String[0]);
+    checkResult();
+  }
+  
+  @Test
+  public void testLinkedObjects() {
+    BenchPrograms.LinkedObjects.main(new String[0]);
+    checkResult();
+  }
+  
+  @Test
+  public void testTreeSums() {
+    BenchPrograms.TreeSums.main(new String[0]);
+    checkResult();
+  }
+  
+  @Test
+  public void testCollectionOps() {
+    BenchPrograms.CollectionOps.main(new String[0]);
+    checkResult();
+  }
+  
+  private static void checkResult() {
+    assertTrue("Deliberate failure", BenchPrograms.sink == Long.MIN_VALUE);
+  }
+}
@@ -0,0 +1,689 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package instr.agent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+/**
+ * Over-approximates the methods reachable from a root method. Virtual and
+ * interface calls are resolved by rapid type analysis: a call reaches the
+ * implementation inherited by every instantiated subtype of the static
+ * receiver type. The instantiated classes are the classes of the objects
+ * reachable from the receiver and arguments of the root invocation (see
+ * {@link #addInstantiatedClassesReachableFrom(Object[])}) or from the static
+ * fields of loaded classes read by the reachable methods, and the classes
+ * instantiated by the reachable methods, including string and class
+ * constants and, since their creation is not seen, every subtype of the
+ * return type of native methods.
+ * Without objects to start from, or if there are too many of them, every
+ * loaded class counts as instantiated, which is plain class hierarchy
+ * analysis.
+ *
+ * Method handles passed to invokedynamic bootstrap methods (lambdas, method
+ * references) are treated as calls, and so are the static initializers of
+ * the classes whose static members are used or that are instantiated,
+ * unless the class is already loaded (and, as taken here, initialized). A call
+ * on a lambda object reaches the method handles bootstrapped by the class
+ * that created it. Calls made through reflection or from native code are not
+ * followed.
+ */
+class CallGraphApproximation {
+
+  private static final String LAMBDA_CLASS_MARKER = "$$Lambda$";
+  private static final int MAX_OBJECTS_VISITED = 100000;
+  // Thrown by the virtual machine rather than by a reachable method.
+  private static final String[] IMPLICIT_EXCEPTION_CLASSES = {
+      "java/lang/ArithmeticException", "java/lang/ArrayIndexOutOfBoundsException",
+      "java/lang/ArrayStoreException", "java/lang/ClassCastException",
+      "java/lang/IllegalMonitorStateException", "java/lang/NegativeArraySizeException",
+      "java/lang/NullPointerException", "java/lang/OutOfMemoryError",
+      "java/lang/StackOverflowError" };
+
+  private Map<String, byte[]> classFiles;
+  private ClassLoader classFileLoader;
+  private Map<String, ClassNode> parsedClasses = new HashMap<>();
+  private Map<String, String> superClasses = new HashMap<>();
+  private Map<String, List<String>> interfaces = new HashMap<>();
+  private Map<String, Set<String>> directSubtypes = new HashMap<>();
+  private Map<String, Set<String>> allSubtypes = new HashMap<>();
+  private Map<String, Class<?>> loadedClassesByName = new HashMap<>();
+  private Set<String> instantiatedClasses;
+  private Set<Object> visitedObjects =
+      Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+  private Map<Class<?>, List<Field>> referenceFields = new HashMap<>();
+  private Set<String> visitedStaticFields = new HashSet<>();
+
+  private Map<String, Set<String>> reachableMethods;
+  private Set<String> visited;
+  private Set<String> lambdaHostClasses;
+  private Map<String, Set<String>> virtualCallsByOwner;
+  private Deque<String[]> worklist;
+
+  /**
+   * @param classFiles class files by internal class name, overriding the ones
+   *     found through the class loaders
+   * @param loadedClasses the classes loaded so far
+   * @param classFileLoader used to find the class files of classes that are
+   *     not loaded or were loaded by the bootstrap loader
+   */
+  CallGraphApproximation(
+      Map<String, byte[]> classFiles, Class<?>[] loadedClasses, ClassLoader classFileLoader) {
+    this.classFiles = classFiles;
+    this.classFileLoader = classFileLoader;
+    for (Class<?> loadedClass : loadedClasses) {
+      if (loadedClass.isArray() || loadedClass.isPrimitive()) {
+        continue;
+      }
+      String className = getInternalName(loadedClass);
+      if (!loadedClassesByName.containsKey(className)) {
+        loadedClassesByName.put(className, loadedClass);
+      }
+      Class<?> superClass = loadedClass.getSuperclass();
+      List<String> interfaceNames = new ArrayList<>();
+      for (Class<?> implemented : loadedClass.getInterfaces()) {
+        interfaceNames.add(getInternalName(implemented));
+      }
+      addClassHierarchy(className,
+          superClass != null ? getInternalName(superClass) : null, interfaceNames);
+    }
+  }
+
+  /**
+   * Counts the classes of the objects reachable from roots as instantiated.
+   * Gives up, falling back to class hierarchy analysis, if more than
+   * MAX_OBJECTS_VISITED objects are reachable from the roots and from the
+   * static fields read by the reachable methods.
+   */
+  void addInstantiatedClassesReachableFrom(Object[] roots) {
+    if (instantiatedClasses == null && visitedObjects.isEmpty()) {
+      instantiatedClasses = new HashSet<>();
+    }
+    addInstantiatedClassesReachableFrom(Arrays.asList(roots));
+  }
+
+  /**
+   * Class and ClassLoader objects are not traversed, the objects behind them
+   * are only used through reflection.
+   */
+  private void addInstantiatedClassesReachableFrom(List<Object> roots) {
+    if (instantiatedClasses == null) {
+      return;
+    }
+    Deque<Object> objectsToVisit = new ArrayDeque<>();
+    for (Object root : roots) {
+      if (root != null && visitedObjects.add(root)) {
+        objectsToVisit.add(root);
+      }
+    }
+    while (!objectsToVisit.isEmpty()) {
+      if (visitedObjects.size() > MAX_OBJECTS_VISITED) {
+        fallBackToClassHierarchyAnalysis();
+        return;
+      }
+      Object obj = objectsToVisit.poll();
+      Class<?> cls = obj.getClass();
+      markInstantiated(getInternalName(cls));
+      if (obj instanceof Class || obj instanceof ClassLoader) {
+        continue;
+      }
+      List<Object> referencedObjects = new ArrayList<>();
+      if (cls.isArray()) {
+        if (!cls.getComponentType().isPrimitive()) {
+          Collections.addAll(referencedObjects, (Object[]) obj);
+        }
+      } else {
+        for (Field field : getReferenceFields(cls)) {
+          try {
+            referencedObjects.add(field.get(obj));
+          } catch (IllegalAccessException ex) {
+            continue;
+          }
+        }
+      }
+      for (Object referenced : referencedObjects) {
+        if (referenced != null && visitedObjects.add(referenced)) {
+          objectsToVisit.add(referenced);
+        }
+      }
+    }
+  }
+
+  /**
+   * Objects stored in the static fields of classes loaded before the root
+   * invocation are not created by the reachable methods, so they are looked
+   * up. Reading the field initializes its class if it was not yet.
+   */
+  private void addInstantiatedClassesReachableFromStaticField(String owner, String fieldName) {
+    if (instantiatedClasses == null || !visitedStaticFields.add(owner + "." + fieldName)) {
+      return;
+    }
+    Class<?> ownerClass = loadedClassesByName.get(owner);
+    if (ownerClass == null) {
+      return;
+    }
+    Field field = findStaticField(ownerClass, fieldName);
+    if (field == null || field.getType().isPrimitive()) {
+      return;
+    }
+    try {
+      field.setAccessible(true);
+      addInstantiatedClassesReachableFrom(Collections.singletonList(field.get(null)));
+    } catch (IllegalAccessException | RuntimeException | LinkageError ex) {
+      markInstantiatedSubtypes(Type.getType(field.getType()));
+    }
+  }
+
+  private void fallBackToClassHierarchyAnalysis() {
+    instantiatedClasses = null;
+    if (virtualCallsByOwner == null) {
+      return;
+    }
+    for (Map.Entry<String, Set<String>> calls : virtualCallsByOwner.entrySet()) {
+      List<String> receiverClasses = new ArrayList<>(getAllSubtypes(calls.getKey()));
+      receiverClasses.add(calls.getKey());
+      for (String subtype : receiverClasses) {
+        for (String methodNameSig : calls.getValue()) {
+          addDispatchTarget(subtype, methodNameSig);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the methods reachable from method methodNameSig of class owner,
+   * including itself, as sets of method names and descriptors keyed by the
+   * internal name of the declaring class.
+   */
+  Map<String, Set<String>> findReachableMethods(String owner, String methodNameSig) {
+    reachableMethods = new HashMap<>();
+    visited = new HashSet<>();
+    lambdaHostClasses = new HashSet<>();
+    virtualCallsByOwner = new HashMap<>();
+    worklist = new ArrayDeque<>();
+    for (String exceptionClass : IMPLICIT_EXCEPTION_CLASSES) {
+      markInstantiated(exceptionClass);
+    }
+    addCallee(owner, methodNameSig);
+    while (!worklist.isEmpty()) {
+      String[] method = worklist.poll();
+      scanMethod(method[0], method[1]);
+    }
+    return reachableMethods;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void scanMethod(String owner, String methodNameSig) {
+    MethodNode mn = getDeclaredMethod(owner, methodNameSig);
+    if (mn == null) {
+      return;
+    }
+    if ((mn.access & Opcodes.ACC_NATIVE) != 0) {
+      markInstantiatedSubtypes(Type.getReturnType(mn.desc));
+      return;
+    }
+    if (mn.instructions.size() == 0) {
+      return;
+    }
+    Set<String> methodsOfClass = reachableMethods.get(owner);
+    if (methodsOfClass == null) {
+      methodsOfClass = new HashSet<>();
+      reachableMethods.put(owner, methodsOfClass);
+    }
+    methodsOfClass.add(methodNameSig);
+    Iterator<AbstractInsnNode> insnItr = mn.instructions.iterator();
+    while (insnItr.hasNext()) {
+      AbstractInsnNode insn = insnItr.next();
+      switch (insn.getOpcode()) {
+      case Opcodes.INVOKEVIRTUAL:
+      case Opcodes.INVOKEINTERFACE: {
+        MethodInsnNode invokeInsn = (MethodInsnNode) insn;
+        addVirtualCallees(invokeInsn.owner, invokeInsn.name + invokeInsn.desc);
+        break;
+      }
+      case Opcodes.INVOKESTATIC:
+      case Opcodes.INVOKESPECIAL: {
+        MethodInsnNode invokeInsn = (MethodInsnNode) insn;
+        String calleeNameSig = invokeInsn.name + invokeInsn.desc;
+        addCallee(resolveMethod(invokeInsn.owner, calleeNameSig), calleeNameSig);
+        if (insn.getOpcode() == Opcodes.INVOKESTATIC) {
+          addStaticInitializer(invokeInsn.owner);
+        }
+        break;
+      }
+      case Opcodes.INVOKEDYNAMIC:
+        addMethodHandleTargets((InvokeDynamicInsnNode) insn);
+        break;
+      case Opcodes.GETSTATIC: {
+        FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+        addStaticInitializer(fieldInsn.owner);
+        addInstantiatedClassesReachableFromStaticField(fieldInsn.owner, fieldInsn.name);
+        break;
+      }
+      case Opcodes.PUTSTATIC:
+        addStaticInitializer(((FieldInsnNode) insn).owner);
+        break;
+      case Opcodes.LDC: {
+        Object constant = ((LdcInsnNode) insn).cst;
+        if (constant instanceof String) {
+          markInstantiated("java/lang/String");
+        } else if (constant instanceof Type) {
+          markInstantiated("java/lang/Class");
+        }
+        break;
+      }
+      case Opcodes.NEW: {
+        String instantiatedClass = ((TypeInsnNode) insn).desc;
+        markInstantiated(instantiatedClass);
+        addStaticInitializer(instantiatedClass);
+        break;
+      }
+      default:
+        break;
+      }
+    }
+  }
+
+  private void addVirtualCallees(String owner, String methodNameSig) {
+    Set<String> calledMethods = virtualCallsByOwner.get(owner);
+    if (calledMethods == null) {
+      calledMethods = new HashSet<>();
+      virtualCallsByOwner.put(owner, calledMethods);
+    }
+    if (!calledMethods.add(methodNameSig)) {
+      return;
+    }
+    if (instantiatedClasses == null || instantiatedClasses.contains(owner)) {
+      addDispatchTarget(owner, methodNameSig);
+    }
+    for (String subtype : getAllSubtypes(owner)) {
+      if (instantiatedClasses == null || instantiatedClasses.contains(subtype)) {
+        addDispatchTarget(subtype, methodNameSig);
+      }
+    }
+  }
+
+  private void addDispatchTarget(String receiverClass, String methodNameSig) {
+    if (getClassNode(receiverClass) == null && receiverClass.contains(LAMBDA_CLASS_MARKER)) {
+      addLambdaTargets(receiverClass.substring(0, receiverClass.indexOf(LAMBDA_CLASS_MARKER)));
+    } else {
+      addCallee(resolveMethod(receiverClass, methodNameSig), methodNameSig);
+    }
+  }
+
+  /**
+   * Makes the virtual calls already seen on a supertype of a newly
+   * instantiated class reach the implementations in that class.
+   */
+  private void markInstantiated(String className) {
+    if (instantiatedClasses == null || !instantiatedClasses.add(className)) {
+      return;
+    }
+    if (!superClasses.containsKey(className) && !interfaces.containsKey(className)) {
+      ClassNode cn = getClassNode(className);
+      if (cn != null) {
+        @SuppressWarnings("unchecked")
+        List<String> interfaceNames = (List<String>) cn.interfaces;
+        addClassHierarchy(className, cn.superName, interfaceNames);
+        allSubtypes.clear();
+      }
+    }
+    if (virtualCallsByOwner == null) {
+      return;
+    }
+    Deque<String> supertypesToVisit = new ArrayDeque<>();
+    Set<String> visitedSupertypes = new HashSet<>();
+    supertypesToVisit.add(className);
+    while (!supertypesToVisit.isEmpty()) {
+      String supertype = supertypesToVisit.poll();
+      if (!visitedSupertypes.add(supertype)) {
+        continue;
+      }
+      Set<String> calledMethods = virtualCallsByOwner.get(supertype);
+      if (calledMethods != null) {
+        for (String methodNameSig : calledMethods) {
+          addDispatchTarget(className, methodNameSig);
+        }
+      }
+      String superClass = getSuperClass(supertype);
+      if (superClass != null) {
+        supertypesToVisit.add(superClass);
+      }
+      supertypesToVisit.addAll(getInterfaces(supertype));
+    }
+  }
+
+  /**
+   * Used for objects whose creation is not seen, e.g. those returned by
+   * native methods. Does nothing for java.lang.Object,
+   * which would make every class instantiated.
+   */
+  private void markInstantiatedSubtypes(Type type) {
+    if (type.getSort() != Type.OBJECT || type.getInternalName().equals("java/lang/Object")) {
+      return;
+    }
+    markInstantiated(type.getInternalName());
+    for (String subtype : new ArrayList<>(getAllSubtypes(type.getInternalName()))) {
+      markInstantiated(subtype);
+    }
+  }
+
+  /**
+   * Lambda classes are spun at run time and have no class file, so a call on
+   * one reaches any method handle bootstrapped by the class defining it.
+   */
+  @SuppressWarnings("unchecked")
+  private void addLambdaTargets(String hostClassName) {
+    if (!lambdaHostClasses.add(hostClassName)) {
+      return;
+    }
+    ClassNode cn = getClassNode(hostClassName);
+    if (cn == null) {
+      return;
+    }
+    for (MethodNode mn : (List<MethodNode>) cn.methods) {
+      Iterator<AbstractInsnNode> insnItr = mn.instructions.iterator();
+      while (insnItr.hasNext()) {
+        AbstractInsnNode insn = insnItr.next();
+        if (insn.getOpcode() == Opcodes.INVOKEDYNAMIC) {
+          addMethodHandleTargets((InvokeDynamicInsnNode) insn);
+        }
+      }
+    }
+  }
+
+  private void addMethodHandleTargets(InvokeDynamicInsnNode insn) {
+    for (Object bsmArg : insn.bsmArgs) {
+      if (!(bsmArg instanceof Handle)) {
+        continue;
+      }
+      Handle handle = (Handle) bsmArg;
+      String targetNameSig = handle.getName() + handle.getDesc();
+      switch (handle.getTag()) {
+      case Opcodes.H_INVOKEVIRTUAL:
+      case Opcodes.H_INVOKEINTERFACE:
+        addVirtualCallees(handle.getOwner(), targetNameSig);
+        break;
+      case Opcodes.H_NEWINVOKESPECIAL:
+        markInstantiated(handle.getOwner());
+        addCallee(resolveMethod(handle.getOwner(), targetNameSig), targetNameSig);
+        break;
+      case Opcodes.H_INVOKESTATIC:
+      case Opcodes.H_INVOKESPECIAL:
+        addCallee(resolveMethod(handle.getOwner(), targetNameSig), targetNameSig);
+        break;
+      default:
+        break;
+      }
+    }
+  }
+
+  private void addStaticInitializer(String className) {
+    // Loaded classes are taken as initialized, their initializer won't run again.
+    if (!loadedClassesByName.containsKey(className)) {
+      addCallee(className, "<clinit>()V");
+    }
+  }
+
+  private void addCallee(String declaringClass, String methodNameSig) {
+    if (declaringClass != null && visited.add(declaringClass + "." + methodNameSig)) {
+      worklist.add(new String[] { declaringClass, methodNameSig });
+    }
+  }
+
+  /**
+   * Finds the class declaring the implementation of method methodNameSig
+   * inherited by class owner, looking at the superclasses first and then at
+   * default methods of the implemented interfaces. Returns null if there is
+   * none or the class files needed are not available.
+   */
+  private String resolveMethod(String owner, String methodNameSig) {
+    List<String> superTypes = new ArrayList<>();
+    String current = owner;
+    while (current != null) {
+      MethodNode mn = getDeclaredMethod(current, methodNameSig);
+      if (mn != null) {
+        return (mn.access & Opcodes.ACC_ABSTRACT) == 0 ? current : null;
+      }
+      superTypes.add(current);
+      current = getSuperClass(current);
+    }
+    Deque<String> interfacesToSearch = new ArrayDeque<>();
+    Set<String> searchedInterfaces = new HashSet<>();
+    for (String superType : superTypes) {
+      interfacesToSearch.addAll(getInterfaces(superType));
+    }
+    while (!interfacesToSearch.isEmpty()) {
+      String itf = interfacesToSearch.poll();
+      if (!searchedInterfaces.add(itf)) {
+        continue;
+      }
+      MethodNode mn = getDeclaredMethod(itf, methodNameSig);
+      if (mn != null && (mn.access & Opcodes.ACC_ABSTRACT) == 0) {
+        return itf;
+      }
+      interfacesToSearch.addAll(getInterfaces(itf));
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private MethodNode getDeclaredMethod(String className, String methodNameSig) {
+    ClassNode cn = getClassNode(className);
+    if (cn == null) {
+      return null;
+    }
+    for (MethodNode mn : (List<MethodNode>) cn.methods) {
+      if (methodNameSig.equals(mn.name + mn.desc)) {
+        return mn;
+      }
+    }
+    return null;
+  }
+
+  private String getSuperClass(String className) {
+    if (superClasses.containsKey(className)) {
+      return superClasses.get(className);
+    }
+    ClassNode cn = getClassNode(className);
+    return cn != null ? cn.superName : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<String> getInterfaces(String className) {
+    if (interfaces.containsKey(className)) {
+      return interfaces.get(className);
+    }
+    ClassNode cn = getClassNode(className);
+    return cn != null ? (List<String>) cn.interfaces : Collections.<String>emptyList();
+  }
+
+  private Set<String> getAllSubtypes(String className) {
+    Set<String> subtypes = allSubtypes.get(className);
+    if (subtypes == null) {
+      subtypes = new HashSet<>();
+      Deque<String> typesToVisit = new ArrayDeque<>();
+      typesToVisit.add(className);
+      while (!typesToVisit.isEmpty()) {
+        Set<String> direct = directSubtypes.get(typesToVisit.poll());
+        if (direct != null) {
+          for (String subtype : direct) {
+            if (subtypes.add(subtype)) {
+              typesToVisit.add(subtype);
+            }
+          }
+        }
+      }
+      allSubtypes.put(className, subtypes);
+    }
+    return subtypes;
+  }
+
+  private ClassNode getClassNode(String className) {
+    if (parsedClasses.containsKey(className)) {
+      return parsedClasses.get(className);
+    }
+    ClassNode cn = null;
+    byte[] classFile = classFiles.get(className);
+    if (classFile == null) {
+      classFile = readClassFile(className);
+    }
+    if (classFile != null) {
+      cn = new ClassNode(Opcodes.ASM4);
+      new ClassReader(classFile).accept(cn, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    }
+    parsedClasses.put(className, cn);
+    return cn;
+  }
+
+  private byte[] readClassFile(String className) {
+    if (className.startsWith("[") || className.contains(LAMBDA_CLASS_MARKER)) {
+      return null;
+    }
+    ClassLoader loader = classFileLoader;
+    Class<?> loadedClass = loadedClassesByName.get(className);
+    if (loadedClass != null && loadedClass.getClassLoader() != null) {
+      loader = loadedClass.getClassLoader();
+    }
+    try (InputStream in = loader.getResourceAsStream(className + ".class")) {
+      if (in == null) {
+        return null;
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int numBytesRead;
+      while ((numBytesRead = in.read(buffer)) != -1) {
+        out.write(buffer, 0, numBytesRead);
+      }
+      return out.toByteArray();
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+
+  private void addClassHierarchy(String className, String superClass, List<String> interfaceNames) {
+    superClasses.put(className, superClass);
+    interfaces.put(className, interfaceNames);
+    if (superClass != null) {
+      addDirectSubtype(superClass, className);
+    }
+    for (String implemented : interfaceNames) {
+      addDirectSubtype(implemented, className);
+    }
+  }
+
+  private void addDirectSubtype(String superType, String subtype) {
+    Set<String> subtypes = directSubtypes.get(superType);
+    if (subtypes == null) {
+      subtypes = new HashSet<>();
+      directSubtypes.put(superType, subtypes);
+    }
+    subtypes.add(subtype);
+  }
+
+  private List<Field> getReferenceFields(Class<?> cls) {
+    List<Field> fields = referenceFields.get(cls);
+    if (fields == null) {
+      fields = new ArrayList<>();
+      for (Class<?> current = cls; current != null; current = current.getSuperclass()) {
+        for (Field field : current.getDeclaredFields()) {
+          if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+            continue;
+          }
+          try {
+            field.setAccessible(true);
+            fields.add(field);
+          } catch (RuntimeException ex) {
+            continue;
+          }
+        }
+      }
+      referenceFields.put(cls, fields);
+    }
+    return fields;
+  }
+
+  private static Field findStaticField(Class<?> cls, String fieldName) {
+    try {
+      Field field = cls.getDeclaredField(fieldName);
+      return Modifier.isStatic(field.getModifiers()) ? field : null;
+    } catch (NoSuchFieldException ex) {
+      // Inherited from a superclass or an interface.
+    }
+    List<Class<?>> supertypes = new ArrayList<>(Arrays.asList(cls.getInterfaces()));
+    if (cls.getSuperclass() != null) {
+      supertypes.add(cls.getSuperclass());
+    }
+    for (Class<?> supertype : supertypes) {
+      Field field = findStaticField(supertype, fieldName);
+      if (field != null) {
+        return field;
+      }
+    }
+    return null;
+  }
+
+  private static String getInternalName(Class<?> cls) {
+    return cls.getName().replace('.', '/');
+  }
+}
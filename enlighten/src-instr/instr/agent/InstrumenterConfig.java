@@ -43,6 +43,8 @@ public class InstrumenterConfig extends ExtProperties {
 
   private static final long serialVersionUID = 1L;
   
+  private static final int DEFAULT_COVERAGE_SAMPLING_RATE = 64;
+  
   private InstrumenterType type;
 
   public static InstrumenterConfig readInstrumenterConfigFromFile(Path configFile) 
@@ -66,6 +68,8 @@ public class InstrumenterConfig extends ExtProperties {
       setInstrumentedPackage("");
       instrumentLineNumber(true);
       instrumentMemoryAccess(true);
+      instrumentLocalMemoryAccess(false);
+      targetedMemoryProfiling(false);
       instrumentStateCapture(true);
       break;
     case DEBUGGEE_INSTRUMENTER:
@@ -96,6 +100,36 @@ public class InstrumenterConfig extends ExtProperties {
     setProperty("instrument_line_number", instrument ? "true" : "false");
   }
   
+  /**
+   * How the line probes report the executions of a source line. Missing from
+   * old config files, in which case every execution is reported.
+   */
+  public CoverageMode getCoverageMode() {
+    String mode = getProperty("coverage_mode");
+    return mode != null ? CoverageMode.valueOf(mode) : CoverageMode.EVERY_HIT;
+  }
+  
+  public void setCoverageMode(CoverageMode mode) {
+    checkType(InstrumenterType.TRACE_INSTRUMENTER);
+    setProperty("coverage_mode", mode.name());
+  }
+  
+  /**
+   * One in how many executions of a line is reported in SAMPLED_COUNT mode.
+   */
+  public int getCoverageSamplingRate() {
+    String rate = getProperty("coverage_sampling_rate");
+    return rate != null ? Integer.parseInt(rate) : DEFAULT_COVERAGE_SAMPLING_RATE;
+  }
+  
+  public void setCoverageSamplingRate(int rate) {
+    checkType(InstrumenterType.TRACE_INSTRUMENTER);
+    if (rate < 1) {
+      throw new IllegalArgumentException("Invalid coverage sampling rate: " + rate);
+    }
+    setProperty("coverage_sampling_rate", Integer.toString(rate));
+  }
+  
   public boolean instrumentMemoryAccess() {
     return Boolean.parseBoolean(getProperty("instrument_memory_access"));
   }
@@ -105,6 +139,36 @@ public class InstrumenterConfig extends ExtProperties {
     setProperty("instrument_memory_access", instrument ? "true" : "false");
   }
   
+  /**
+   * Whether accesses to objects that do not escape the allocating method are
+   * probed when memory accesses are instrumented. Missing from old config files,
+   * in which case they are probed.
+   */
+  public boolean instrumentLocalMemoryAccess() {
+    return !"false".equals(getProperty("instrument_local_memory_access"));
+  }
+  
+  public void instrumentLocalMemoryAccess(boolean instrument) {
+    checkType(InstrumenterType.TRACE_INSTRUMENTER);
+    setProperty("instrument_local_memory_access", instrument ? "true" : "false");
+  }
+  
+  /**
+   * Whether DumpStatesListener profiles the memory accesses of only the methods
+   * reachable from the target invocation, switched on and off by a guard,
+   * instead of retransforming all loaded classes. The reachable methods are
+   * approximated and calls through reflection or native code are not followed,
+   * so accesses can be missed. Disabled unless set.
+   */
+  public boolean targetedMemoryProfiling() {
+    return Boolean.parseBoolean(getProperty("targeted_memory_profiling"));
+  }
+  
+  public void targetedMemoryProfiling(boolean targeted) {
+    checkType(InstrumenterType.TRACE_INSTRUMENTER);
+    setProperty("targeted_memory_profiling", targeted ? "true" : "false");
+  }
+  
   public boolean instrumentStateCapture() {
     return Boolean.parseBoolean(getProperty("instrument_state_capture"));
   }
@@ -134,4 +198,25 @@ public class InstrumenterConfig extends ExtProperties {
     TRACE_INSTRUMENTER,
     DEBUGGEE_INSTRUMENTER
   }
+  
+  public static enum CoverageMode {
+    
+    /**
+     * Every execution of a line is reported to the callback listeners.
+     */
+    EVERY_HIT,
+    
+    /**
+     * A line probe disarms itself after its first execution in a test. Only
+     * suited to collecting coverage, listeners see one event per covered line.
+     */
+    FIRST_HIT,
+    
+    /**
+     * The first execution of a line in a test and then one in every
+     * coverage sampling rate executions are reported, from which
+     * SourceLocationCoverageCollector estimates execution counts.
+     */
+    SAMPLED_COUNT
+  }
 }
@@ -50,10 +50,15 @@ import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.util.TraceClassVisitor;
 
 import anonymous.domain.enlighten.data.MethodName;
+import instr.agent.InstrumenterConfig.CoverageMode;
 import instr.callback.InstrumentationCallback;
+import instr.callback.SourceLocationCoverageCollector;
+import instr.staticinfo.SourceLocationDB;
+import instr.transformers.GuardedVariantTransformer;
 import instr.transformers.MethodEntryExitTransformer;
 import instr.transformers.WrapMethodTransformer;
 import instr.transformers.LineNumberTransformer;
@@ -75,7 +80,15 @@ public class TraceInstrumenter implements ClassFileTransformer {
   private boolean flagPrintInstrumentedCode = false;
   
   private String instrumentedPackage;
-  private Map<ClassID, byte[]> originalClassFiles;
+  private Map<ClassID, byte[]> redefinedClassFiles = new HashMap<>();
+  // guarded by itself, also covers fullyMemoryProfiledClasses
+  private final Map<String, Set<String>> memoryProfiledMethods = new HashMap<>();
+  private final Set<String> fullyMemoryProfiledClasses = new HashSet<>();
+  private volatile boolean targetedMemoryProfilingPrepared = false;
+  private Set<MethodName> memoryProfiledTargets = new HashSet<>();
+  
+  private long numMemAccessProbes;
+  private long numSkippedMemAccessProbes;
   
   static {
     nonInstrumentableClasses.add("java/lang/Boolean");
@@ -105,7 +118,6 @@ public class TraceInstrumenter implements ClassFileTransformer {
     instance = this;
     this.inst = inst;
     setInstrumenterConfig(config);
-    originalClassFiles = new HashMap<>();
     inst.addTransformer(this, true);
     reinstrumentAllClasses();
   }
@@ -125,66 +137,133 @@ public class TraceInstrumenter implements ClassFileTransformer {
     }
     try {
       InstrumentationCallback.executionSwitchOut();
-      byte[] result = null;
-      ClassID classId = new ClassID(loader, className);
-      if (originalClassFiles.containsKey(classId)) {
-        classfileBuffer = originalClassFiles.get(classId);
-        result = classfileBuffer;
-      } else {
-        byte[] classfileCopy = new byte[classfileBuffer.length];
-        System.arraycopy(classfileBuffer, 0, classfileCopy, 0, classfileBuffer.length);
-        originalClassFiles.put(classId, classfileCopy);
+      byte[] result;
+      try {
+        result = instrumentClass(loader, className, classBeingRedefined, classfileBuffer);
+      } catch (RuntimeException ex) {
+        if (!fallBackToFullMemoryProfiling(className)) {
+          throw ex;
+        }
+        System.err.println("Warning: failed to add memory profiling variants to " 
+            + className + " (" + ex.getMessage() + ").\n"
+            + "Profiling all of its methods while memory profiling is enabled instead.");
+        result = instrumentClass(loader, className, classBeingRedefined, classfileBuffer);
       }
-      ClassNode cnode = null;
-      
-      if (config.instrumentMemoryAccess()) {
-        if (isInstrumentable(className)) {
+      InstrumentationCallback.executionSwitchIn();
+      return result;
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+      InstrumentationCallback.executionSwitchIn();
+      throw ex;
+    }
+  }
+  
+  @SuppressWarnings("unchecked")
+  private byte[] instrumentClass(ClassLoader loader, String className,
+      Class<?> classBeingRedefined, byte[] classfileBuffer) {
+    byte[] result = null;
+    byte[] redefinedClassFile = redefinedClassFiles.get(new ClassID(loader, className));
+    if (redefinedClassFile != null) {
+      classfileBuffer = redefinedClassFile;
+      result = classfileBuffer;
+    }
+    ClassNode cnode = null;
+    
+    if (config.instrumentMemoryAccess() || isFullyMemoryProfiled(className)) {
+      if (isInstrumentable(className)) {
+        ClassReader cr = new ClassReader(classfileBuffer);
+        cnode = new ClassNode(Opcodes.ASM4);
+        cr.accept(cnode, 0);
+        if (flagPrintClassNames) {
+          System.out.println("Instrumenting memory access of " + className + " ...");
+        }
+        MemoryAccessTransformer memAccessTrans = new MemoryAccessTransformer();
+        memAccessTrans.setSkipLocalAccesses(!config.instrumentLocalMemoryAccess());
+        memAccessTrans.transform(cnode);
+        numMemAccessProbes += memAccessTrans.getNumProbesInserted();
+        numSkippedMemAccessProbes += memAccessTrans.getNumProbesSkipped();
+        if (flagPrintClassNames && memAccessTrans.getNumProbesSkipped() > 0) {
+          System.out.println("Skipped " + memAccessTrans.getNumProbesSkipped() + " of " 
+              + (memAccessTrans.getNumProbesInserted() + memAccessTrans.getNumProbesSkipped()) 
+              + " memory access probes on method-local objects in " + className);
+        }
+      }
+    } else if (targetedMemoryProfilingPrepared && isInstrumentable(className)) {
+      Set<String> profiledMethods = null;
+      synchronized (memoryProfiledMethods) {
+        if (memoryProfiledMethods.containsKey(className)) {
+          profiledMethods = new HashSet<>(memoryProfiledMethods.get(className));
+        } else if (classBeingRedefined == null 
+            && !fullyMemoryProfiledClasses.contains(className)) {
           ClassReader cr = new ClassReader(classfileBuffer);
           cnode = new ClassNode(Opcodes.ASM4);
           cr.accept(cnode, 0);
-          if (flagPrintClassNames) {
-            System.out.println("Instrumenting memory access of " + className + " ...");
+          profiledMethods = new HashSet<>();
+          for (MethodNode mn : (List<MethodNode>) cnode.methods) {
+            profiledMethods.add(mn.name + mn.desc);
           }
-          new MemoryAccessTransformer().transform(cnode);
+          memoryProfiledMethods.put(className, new HashSet<>(profiledMethods));
         }
       }
-      
-      if (className.startsWith(instrumentedPackage)) {
+      if (profiledMethods != null) {
         if (cnode == null) {
           ClassReader cr = new ClassReader(classfileBuffer);
           cnode = new ClassNode(Opcodes.ASM4);
           cr.accept(cnode, 0);
         }
-        if (wrapMethodTransformer.transform(cnode) && flagPrintClassNames) {
-          System.out.println("Wrapped specified methods in class " + className);
-        }
-        if (config.instrumentLineNumber()) {
-          if (flagPrintClassNames) {
-            System.out.println("Instrumenting line number of " + className + " ...");
-          }
-          new LineNumberTransformer().transform(cnode);
+        GuardedVariantTransformer variantTrans = new GuardedVariantTransformer(profiledMethods);
+        variantTrans.setSkipLocalAccesses(!config.instrumentLocalMemoryAccess());
+        variantTrans.transform(cnode);
+        numMemAccessProbes += variantTrans.getNumProbesInserted();
+        if (flagPrintClassNames) {
+          System.out.println("Added memory profiling variants of " 
+              + variantTrans.getNumMethodsTransformed() + " methods in " + className);
         }
+      }
+    }
+    
+    if (className.startsWith(instrumentedPackage)) {
+      if (cnode == null) {
+        ClassReader cr = new ClassReader(classfileBuffer);
+        cnode = new ClassNode(Opcodes.ASM4);
+        cr.accept(cnode, 0);
+      }
+      if (wrapMethodTransformer.transform(cnode) && flagPrintClassNames) {
+        System.out.println("Wrapped specified methods in class " + className);
+      }
+      if (config.instrumentLineNumber()) {
         if (flagPrintClassNames) {
-          System.out.println("Instrumenting entries and exits of " + className + " ...");
+          System.out.println("Instrumenting line number of " + className + " ...");
         }
-        MethodEntryExitTransformer entryExitTrans = new MethodEntryExitTransformer();
-        if (config.instrumentStateCapture()) {
-          entryExitTrans.setInstrumentStateCapture(true);
-        } else {
-          entryExitTrans.setInstrumentStateCapture(false);
+        LineNumberTransformer lineNumberTrans = new LineNumberTransformer();
+        lineNumberTrans.setCoverageMode(config.getCoverageMode());
+        lineNumberTrans.transform(cnode);
+        if (config.getCoverageMode() != CoverageMode.EVERY_HIT) {
+          InstrumentationCallback.ensureSourceLocationProbeCapacity(
+              SourceLocationDB.getNumSourceLocations());
         }
-        entryExitTrans.transform(cnode);
       }
-      
-      if (cnode != null) {
+      if (flagPrintClassNames) {
+        System.out.println("Instrumenting entries and exits of " + className + " ...");
+      }
+      MethodEntryExitTransformer entryExitTrans = new MethodEntryExitTransformer();
+      if (config.instrumentStateCapture()) {
+        entryExitTrans.setInstrumentStateCapture(true);
+      } else {
+        entryExitTrans.setInstrumentStateCapture(false);
+      }
+      entryExitTrans.transform(cnode);
+    }
+    
+    if (cnode != null) {
 
-        
+      
 
 
 
-        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
-          @Override
-          protected String getCommonSuperClass(String type1, String type2) {
+      ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+        @Override
+        protected String getCommonSuperClass(String type1, String type2) {
 
 
 
@@ -193,37 +272,127 @@ public class TraceInstrumenter implements ClassFileTransformer {
 
 
 
-            return "java/lang/Object";
-          }
-        };
-        if (flagPrintInstrumentedCode) {
-          TraceClassVisitor tracer = new TraceClassVisitor(cw, new PrintWriter(System.out));
-          cnode.accept(tracer);
-        } else {
-          cnode.accept(cw);
+          return "java/lang/Object";
         }
-
-        result = cw.toByteArray();
+      };
+      if (flagPrintInstrumentedCode) {
+        TraceClassVisitor tracer = new TraceClassVisitor(cw, new PrintWriter(System.out));
+        cnode.accept(tracer);
+      } else {
+        cnode.accept(cw);
       }
-      InstrumentationCallback.executionSwitchIn();
-      return result;
-    } catch (Throwable ex) {
-      ex.printStackTrace();
-      InstrumentationCallback.executionSwitchIn();
-      throw ex;
+
+      result = cw.toByteArray();
     }
+    return result;
   }
   
   public InstrumenterConfig getInstrumenterConfig() {
     return config;
   }
   
+  public long getNumMemoryAccessProbes() {
+    return numMemAccessProbes;
+  }
+  
+  public long getNumSkippedMemoryAccessProbes() {
+    return numSkippedMemAccessProbes;
+  }
+  
   public void setInstrumenterConfig(InstrumenterConfig config) {
     this.config = config;
     instrumentedPackage = config.getInstrumentedPackage().replace('.', '/') + "/";
+    if (config.getCoverageMode() == CoverageMode.SAMPLED_COUNT) {
+      SourceLocationCoverageCollector.setSamplingRate(config.getCoverageSamplingRate());
+    } else {
+      SourceLocationCoverageCollector.setSamplingRate(0);
+    }
   }
   
   
+  /**
+   * Switches on memory access profiling of the methods that may be reachable
+   * from an invocation of method target, given its receiver and arguments
+   * (see CallGraphApproximation). The first call for a target retransforms
+   * only the classes declaring these methods so that each of them carries a
+   * memory-profiled variant of its body next to the original one (see
+   * GuardedVariantTransformer). After that, profiling is switched on and off
+   * by setting a flag. Classes loaded after the first call are not in any
+   * call graph and get variants of all their methods. Classes that cannot
+   * take the variants, e.g. because a method would exceed the size limit,
+   * are retransformed with all their methods profiled on enable and
+   * retransformed back on disable.
+   */
+  public void enableTargetedMemoryProfiling(MethodName target, Object[] receiverAndArgs) {
+    if (!memoryProfiledTargets.contains(target)) {
+      prepareTargetedMemoryProfiling(target, receiverAndArgs);
+      memoryProfiledTargets.add(target);
+    }
+    InstrumentationCallback.memoryProfilingEnabled = true;
+    retransformFullyMemoryProfiledClasses();
+  }
+  
+  public void disableTargetedMemoryProfiling() {
+    InstrumentationCallback.memoryProfilingEnabled = false;
+    retransformFullyMemoryProfiledClasses();
+  }
+  
+  private void prepareTargetedMemoryProfiling(MethodName target, Object[] receiverAndArgs) {
+    Map<String, byte[]> classFiles = new HashMap<>();
+    for (Map.Entry<ClassID, byte[]> classFile : redefinedClassFiles.entrySet()) {
+      classFiles.put(classFile.getKey().className, classFile.getValue());
+    }
+    Class<?>[] loadedClasses = inst.getAllLoadedClasses();
+    ClassLoader targetClassLoader = ClassLoader.getSystemClassLoader();
+    for (Class<?> loadedClass : loadedClasses) {
+      if (loadedClass.getName().equals(target.getClassName()) 
+          && loadedClass.getClassLoader() != null) {
+        targetClassLoader = loadedClass.getClassLoader();
+      }
+    }
+    CallGraphApproximation callGraph = 
+        new CallGraphApproximation(classFiles, loadedClasses, targetClassLoader);
+    callGraph.addInstantiatedClassesReachableFrom(receiverAndArgs);
+    Map<String, Set<String>> reachableMethods = callGraph.findReachableMethods(
+        target.getClassName().replace('.', '/'), target.getMethodNameSig());
+    Set<String> classesToUpdate = new HashSet<>();
+    int numReachableMethods = 0;
+    synchronized (memoryProfiledMethods) {
+      for (Map.Entry<String, Set<String>> methodsOfClass : reachableMethods.entrySet()) {
+        String className = methodsOfClass.getKey();
+        numReachableMethods += methodsOfClass.getValue().size();
+        if (fullyMemoryProfiledClasses.contains(className)) {
+          continue;
+        }
+        Set<String> profiledMethods = memoryProfiledMethods.get(className);
+        if (profiledMethods == null) {
+          profiledMethods = new HashSet<>();
+          memoryProfiledMethods.put(className, profiledMethods);
+        }
+        if (profiledMethods.addAll(methodsOfClass.getValue())) {
+          classesToUpdate.add(className);
+        }
+      }
+    }
+    targetedMemoryProfilingPrepared = true;
+    List<Class<?>> classesToRetransform = new ArrayList<>();
+    for (Class<?> loadedClass : loadedClasses) {
+      if (classesToUpdate.contains(loadedClass.getName().replace('.', '/'))
+          && inst.isModifiableClass(loadedClass) && isInstrumentable(loadedClass)) {
+        classesToRetransform.add(loadedClass);
+      }
+    }
+    System.out.println("Profiling memory accesses of " + numReachableMethods 
+        + " methods in " + reachableMethods.size() + " classes reachable from " + target);
+    if (classesToRetransform.size() > 0) {
+      try {
+        inst.retransformClasses(classesToRetransform.toArray(new Class<?>[0]));
+      } catch (Throwable ex) {
+        ex.printStackTrace();
+      }
+    }
+  }
+  
   public void reinstrumentAllClasses() {
     List<Class<?>> classesToRetransform = new ArrayList<>();
     for (Class<?> loadedClass : inst.getAllLoadedClasses()) {
@@ -263,7 +432,7 @@ public class TraceInstrumenter implements ClassFileTransformer {
         && isInstrumentable(classToRedefine)) {
       String classInternalName = classToRedefine.getName().replace('.', '/');
       ClassID cid = new ClassID(classToRedefine.getClassLoader(), classInternalName);
-      originalClassFiles.put(cid, newDefinition);
+      redefinedClassFiles.put(cid, newDefinition);
       try {
         inst.retransformClasses(classToRedefine);
       } catch (Throwable ex) {
@@ -281,14 +450,57 @@ public class TraceInstrumenter implements ClassFileTransformer {
       throw new RuntimeException(
           "Method wrapping not supported on non-instrumented class " + methodToWrap.getClassName());
     }
-    for (ClassID cachedClassId : originalClassFiles.keySet()) {
-      if (cachedClassId.className.equals(classInternalName)) {
+    for (Class<?> loadedClass : inst.getAllLoadedClasses()) {
+      if (loadedClass.getName().equals(methodToWrap.getClassName())) {
         throw new RuntimeException("Cannot add wrapped methods in classes that have been loaded.");
       }
     }
     wrapMethodTransformer.addMethodsToWrap(methodToWrap);
   }
   
+  private boolean isFullyMemoryProfiled(String className) {
+    if (!InstrumentationCallback.memoryProfilingEnabled) {
+      return false;
+    }
+    synchronized (memoryProfiledMethods) {
+      return fullyMemoryProfiledClasses.contains(className);
+    }
+  }
+  
+  private boolean fallBackToFullMemoryProfiling(String className) {
+    synchronized (memoryProfiledMethods) {
+      if (memoryProfiledMethods.remove(className) == null) {
+        return false;
+      }
+      fullyMemoryProfiledClasses.add(className);
+      return true;
+    }
+  }
+  
+  private void retransformFullyMemoryProfiledClasses() {
+    Set<String> classNames;
+    synchronized (memoryProfiledMethods) {
+      if (fullyMemoryProfiledClasses.isEmpty()) {
+        return;
+      }
+      classNames = new HashSet<>(fullyMemoryProfiledClasses);
+    }
+    List<Class<?>> classesToRetransform = new ArrayList<>();
+    for (Class<?> loadedClass : inst.getAllLoadedClasses()) {
+      if (classNames.contains(loadedClass.getName().replace('.', '/'))
+          && inst.isModifiableClass(loadedClass)) {
+        classesToRetransform.add(loadedClass);
+      }
+    }
+    if (classesToRetransform.size() > 0) {
+      try {
+        inst.retransformClasses(classesToRetransform.toArray(new Class<?>[0]));
+      } catch (Throwable ex) {
+        ex.printStackTrace();
+      }
+    }
+  }
+  
   private static boolean isInstrumentable(String classInternalName) {
     if (classInternalName.startsWith("instr/")
         || classInternalName.startsWith("anonymous/domain/enlighten/")
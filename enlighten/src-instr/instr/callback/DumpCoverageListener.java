@@ -34,28 +34,46 @@
 
 package instr.callback;
 
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
-import anonymous.domain.enlighten.data.FSTSerialization;
-import anonymous.domain.enlighten.data.MethodCoverage;
+import anonymous.domain.enlighten.data.CoverageMatrix;
 import anonymous.domain.enlighten.data.MethodName;
 import anonymous.domain.enlighten.data.SourceLocation;
-import anonymous.domain.enlighten.data.SourceLocationCoverage;
 import instr.callback.memory.MemoryLocation;
 import instr.staticinfo.MethodInfo;
 
 
-public class DumpCoverageListener implements InstrumentationCallbackListener {
+public class DumpCoverageListener implements InstrumentationCallbackListener, Closeable {
 
-  private Path dataDir;
+  /**
+   * Written in SAMPLED_COUNT coverage mode. Per test, a "test" line with the
+   * test description followed by one "source_file line estimated_count" line
+   * per covered source location.
+   */
+  public static final String EXECUTION_COUNTS_FILE_NAME = "execution-counts.txt";
+  
+  private CoverageMatrix.Writer coverageWriter;
+  
+  private BufferedWriter executionCountsWriter;
   
   private Set<MethodName> coveredMethods;
   
-  public DumpCoverageListener(Path dataDir) {
-    this.dataDir = dataDir;
+  public DumpCoverageListener(Path dataDir) throws IOException {
+    coverageWriter = new CoverageMatrix.Writer(dataDir.resolve(CoverageMatrix.FILE_NAME));
+    if (SourceLocationCoverageCollector.getSamplingRate() > 0) {
+      executionCountsWriter = Files.newBufferedWriter(
+          dataDir.resolve(EXECUTION_COUNTS_FILE_NAME), StandardCharsets.UTF_8, 
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
   }
   
   @Override
@@ -67,21 +85,39 @@ public class DumpCoverageListener implements InstrumentationCallbackListener {
   @Override
   public void executionEnded(String executionId) {
     try {
-      Path methodCoverageDataFile = dataDir.resolve(executionId + ".method.cov");
-      MethodCoverage methodCoverage = new MethodCoverage();
-      methodCoverage.addCoverage(coveredMethods);
-      FSTSerialization.writeObjectTofile(
-          MethodCoverage.class, methodCoverageDataFile, methodCoverage);
-      Path lineCoverageDataFile = dataDir.resolve(executionId + ".line.cov");
-      SourceLocationCoverage lineCoverage = new SourceLocationCoverage();
-      lineCoverage.addCoverage(SourceLocationCoverageCollector.getCoveredSourceLocations());
-      FSTSerialization.writeObjectTofile(
-          SourceLocationCoverage.class, lineCoverageDataFile, lineCoverage);
+      coverageWriter.appendTest(executionId, coveredMethods, 
+          SourceLocationCoverageCollector.getCoveredSourceLocations());
+      if (executionCountsWriter != null) {
+        writeExecutionCounts(executionId);
+      }
     } catch (IOException ex) {
       throw new RuntimeException("Failed to write coverage.", ex);
     }
   }
 
+  private void writeExecutionCounts(String executionId) throws IOException {
+    executionCountsWriter.write("test " + executionId);
+    executionCountsWriter.newLine();
+    for (Map.Entry<SourceLocation, Long> count 
+        : SourceLocationCoverageCollector.getExecutionCountEstimates().entrySet()) {
+      executionCountsWriter.write(count.getKey().getSourceFile() + " " 
+          + count.getKey().getLineNumber() + " " + count.getValue());
+      executionCountsWriter.newLine();
+    }
+    executionCountsWriter.flush();
+  }
+  
+  @Override
+  public void close() throws IOException {
+    try {
+      coverageWriter.close();
+    } finally {
+      if (executionCountsWriter != null) {
+        executionCountsWriter.close();
+      }
+    }
+  }
+
   @Override
   public void methodEntered(MethodName methodName) {
     coveredMethods.add(methodName);
@@ -0,0 +1,302 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package instr.callback;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+
+import anonymous.domain.enlighten.data.MethodName;
+import anonymous.domain.enlighten.data.SourceLocation;
+import anonymous.domain.enlighten.data.TestName;
+import instr.callback.memory.MemoryLocation;
+import instr.staticinfo.MethodInfo;
+
+/**
+ * Records the classes each test depends on, for reusing the results of tests
+ * whose dependencies did not change. Per test, a "test" line with the test
+ * description is followed by one class name per line.
+ * 
+ * With method entries observed, a test depends on its test class, on the
+ * classes loaded while it ran or while the fixture of its test class was set
+ * up, and on the classes of the methods it entered. Classes loaded earlier
+ * can also be used without entering their methods, e.g. through a static
+ * field or an inherited member, so the test additionally depends on the
+ * loaded classes the constant pools of those classes refer to, and on the
+ * supertypes of all of them. Otherwise it depends on every class loaded so
+ * far. Only classes defined by the system class loader are seen.
+ */
+public class DumpDependenciesListener implements InstrumentationCallbackListener {
+
+  public static final String DEPENDENCIES_FILE_NAME = "test-dependencies.txt";
+  
+  private static final int CONSTANT_CLASS_TAG = 7;
+  
+  private BufferedWriter dependenciesWriter;
+  private boolean observeMethodEntries;
+  
+  private List<?> loadedClasses;
+  private int numLoadedClassesAtEnd;
+  private Map<String, Class<?>> loadedClassesByName = new HashMap<>();
+  private int numIndexedClasses;
+  private Map<String, Set<String>> referencedClassNames = new HashMap<>();
+  
+  private String currentTestClassName;
+  private Set<String> testClassSetupDependencies = new HashSet<>();
+  private int numLoadedClassesAtStart;
+  private Set<String> enteredClasses = new HashSet<>();
+  
+  public DumpDependenciesListener(Path dataDir, boolean observeMethodEntries) 
+      throws IOException {
+    this.observeMethodEntries = observeMethodEntries;
+    loadedClasses = getLoadedClassesList(ClassLoader.getSystemClassLoader());
+    if (loadedClasses == null) {
+      System.err.println("Warning: loaded classes cannot be listed, "
+          + "test dependencies are not recorded.");
+      return;
+    }
+    dependenciesWriter = Files.newBufferedWriter(
+        dataDir.resolve(DEPENDENCIES_FILE_NAME), StandardCharsets.UTF_8, 
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+  
+  @Override
+  public void executionStarted(String executionId) {
+    if (dependenciesWriter == null) {
+      return;
+    }
+    String testClassName = TestName.parseFromDescription(executionId).getTestClassName();
+    if (!testClassName.equals(currentTestClassName)) {
+      currentTestClassName = testClassName;
+      testClassSetupDependencies.clear();
+    }
+    synchronized (loadedClasses) {
+      numLoadedClassesAtStart = loadedClasses.size();
+      addLoadedClassNames(numLoadedClassesAtEnd, numLoadedClassesAtStart, 
+          testClassSetupDependencies);
+    }
+    enteredClasses.clear();
+  }
+
+  @Override
+  public void executionEnded(String executionId) {
+    if (dependenciesWriter == null) {
+      return;
+    }
+    Set<String> dependencies = new HashSet<>();
+    dependencies.add(currentTestClassName);
+    synchronized (loadedClasses) {
+      numLoadedClassesAtEnd = loadedClasses.size();
+      if (observeMethodEntries) {
+        dependencies.addAll(testClassSetupDependencies);
+        dependencies.addAll(enteredClasses);
+        addLoadedClassNames(numLoadedClassesAtStart, numLoadedClassesAtEnd, dependencies);
+        for (; numIndexedClasses < numLoadedClassesAtEnd; ++numIndexedClasses) {
+          Class<?> loadedClass = (Class<?>) loadedClasses.get(numIndexedClasses);
+          loadedClassesByName.put(loadedClass.getName(), loadedClass);
+        }
+      } else {
+        addLoadedClassNames(0, numLoadedClassesAtEnd, dependencies);
+      }
+    }
+    if (observeMethodEntries) {
+      addIndirectDependencies(dependencies);
+    }
+    try {
+      dependenciesWriter.write("test " + executionId);
+      dependenciesWriter.newLine();
+      for (String className : dependencies) {
+        dependenciesWriter.write(className);
+        dependenciesWriter.newLine();
+      }
+      dependenciesWriter.flush();
+    } catch (IOException ex) {
+      throw new RuntimeException("Failed to write test dependencies.", ex);
+    }
+  }
+
+  @Override
+  public void methodEntered(MethodName methodName) {
+    enteredClasses.add(methodName.getClassName());
+  }
+  
+  private void addLoadedClassNames(int from, int to, Set<String> classNames) {
+    for (int i = from; i < to; ++i) {
+      classNames.add(((Class<?>) loadedClasses.get(i)).getName());
+    }
+  }
+  
+  private void addIndirectDependencies(Set<String> dependencies) {
+    Set<String> referenced = new HashSet<>();
+    for (String className : dependencies) {
+      for (String referencedName : getReferencedClassNames(className)) {
+        if (loadedClassesByName.containsKey(referencedName)) {
+          referenced.add(referencedName);
+        }
+      }
+    }
+    dependencies.addAll(referenced);
+    for (String className : new ArrayList<>(dependencies)) {
+      addSupertypes(loadedClassesByName.get(className), dependencies);
+    }
+  }
+  
+  private void addSupertypes(Class<?> type, Set<String> classNames) {
+    if (type == null) {
+      return;
+    }
+    List<Class<?>> supertypes = new ArrayList<>();
+    supertypes.add(type.getSuperclass());
+    for (Class<?> implemented : type.getInterfaces()) {
+      supertypes.add(implemented);
+    }
+    for (Class<?> supertype : supertypes) {
+      if (supertype != null && loadedClassesByName.get(supertype.getName()) == supertype 
+          && classNames.add(supertype.getName())) {
+        addSupertypes(supertype, classNames);
+      }
+    }
+  }
+  
+  /**
+   * Names of the classes in the constant pool of a loaded class, which
+   * include the owners of the fields and methods it refers to.
+   */
+  private Set<String> getReferencedClassNames(String className) {
+    Set<String> classNames = referencedClassNames.get(className);
+    if (classNames != null) {
+      return classNames;
+    }
+    classNames = new HashSet<>();
+    Class<?> loadedClass = loadedClassesByName.get(className);
+    if (loadedClass != null) {
+      String classFilePath = className.replace('.', '/') + ".class";
+      try (InputStream in = ClassLoader.getSystemResourceAsStream(classFilePath)) {
+        if (in != null) {
+          ClassReader reader = new ClassReader(in);
+          char[] buffer = new char[reader.getMaxStringLength()];
+          for (int i = 1; i < reader.getItemCount(); ++i) {
+            int offset = reader.getItem(i);
+            if (offset > 0 && reader.readByte(offset - 1) == CONSTANT_CLASS_TAG) {
+              addClassName(reader.readUTF8(offset, buffer), classNames);
+            }
+          }
+        }
+      } catch (IOException | RuntimeException ex) {
+        System.err.println("Warning: cannot read the class file of " + className);
+      }
+    }
+    referencedClassNames.put(className, classNames);
+    return classNames;
+  }
+  
+  private static void addClassName(String internalName, Set<String> classNames) {
+    Type type = internalName.startsWith("[") 
+        ? Type.getType(internalName).getElementType() : Type.getObjectType(internalName);
+    if (type.getSort() == Type.OBJECT) {
+      classNames.add(type.getClassName());
+    }
+  }
+  
+  /**
+   * The list a class loader appends the classes it defines to. Only
+   * accessible on Java 8 and earlier.
+   */
+  private static List<?> getLoadedClassesList(ClassLoader classLoader) {
+    try {
+      Field classesField = ClassLoader.class.getDeclaredField("classes");
+      classesField.setAccessible(true);
+      return (List<?>) classesField.get(classLoader);
+    } catch (ReflectiveOperationException | RuntimeException ex) {
+      return null;
+    }
+  }
+
+  @Override
+  public void executingSourceLine(SourceLocation sourceLocation) {
+
+  }
+
+  @Override
+  public void preStates(MethodInfo methodInfo, Object[] params) {
+
+  }
+
+  @Override
+  public void methodExiting(MethodName methodName) {
+
+  }
+
+  @Override
+  public void postStatesNormal(MethodInfo methodInfo, Object retValue,
+      Object[] params) {
+
+  }
+
+  @Override
+  public void methodExceptionExiting(MethodName methodName) {
+
+  }
+
+  @Override
+  public void postStatesException(MethodInfo methodInfo, Object exception,
+      Object[] params) {
+
+  }
+
+  @Override
+  public void memoryRead(MemoryLocation location) {
+
+  }
+
+  @Override
+  public void memoryWrite(MemoryLocation location) {
+
+  }
+}
@@ -37,12 +37,8 @@ package instr.callback;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
-import java.util.IdentityHashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.objectweb.asm.Type;
@@ -54,7 +50,6 @@ import anonymous.domain.enlighten.data.SourceLocation;
 import anonymous.domain.enlighten.data.TestName;
 import anonymous.domain.enlighten.mcallrepr.ArrayElementRefName;
 import anonymous.domain.enlighten.mcallrepr.ArrayLengthRefName;
-import anonymous.domain.enlighten.mcallrepr.ArrayRepr;
 import anonymous.domain.enlighten.mcallrepr.FieldReferenceName;
 import anonymous.domain.enlighten.mcallrepr.MemberRefAccessedAnnotator;
 import anonymous.domain.enlighten.mcallrepr.MemberRefName;
@@ -62,8 +57,8 @@ import anonymous.domain.enlighten.mcallrepr.MethodCallRepr;
 import anonymous.domain.enlighten.mcallrepr.NullRepr;
 import anonymous.domain.enlighten.mcallrepr.ProgramStateSnapshotter;
 import anonymous.domain.enlighten.mcallrepr.ReferenceRepr;
-import anonymous.domain.enlighten.mcallrepr.ReflectedObjectRepr;
 import anonymous.domain.enlighten.mcallrepr.TransitivelyAccessedAnnotator;
+import anonymous.domain.enlighten.mcallrepr.ValueGraphIndex;
 import anonymous.domain.enlighten.mcallrepr.ValueGraphNode;
 import anonymous.domain.enlighten.mcallrepr.VoidRepr;
 import instr.agent.TraceInstrumenter;
@@ -177,7 +172,7 @@ public class DumpStatesListener implements InstrumentationCallbackListener {
       }
       debugOut("Target invocation pre-states captured.");
       if (profileMemAccess) {
-        enableWholeSystemMemoryAccessProfiling();
+        enableMemoryAccessProfiling(params);
         debugOut("Memory profiling enabled.");
       }
     }
@@ -198,8 +193,9 @@ public class DumpStatesListener implements InstrumentationCallbackListener {
 
         if (profileMemAccess) {
           annotateStatesWithMemAccessInfo(preStates, readLocations);
-          annotateStatesWithMemAccessInfo(postStates, writtenLocations);
-          annotateTransitiveAccessInfo(postStates);
+          ValueGraphIndex postStatesGraph = 
+              annotateStatesWithMemAccessInfo(postStates, writtenLocations);
+          TransitivelyAccessedAnnotator.annotateObjectGraph(postStatesGraph);
         }
         MethodInvocation states = new MethodInvocation(methodToDump);
         states.setPreState(preStates);
@@ -354,13 +350,17 @@ public class DumpStatesListener implements InstrumentationCallbackListener {
     }
   }
   
-  private void enableWholeSystemMemoryAccessProfiling() {
+  private void enableMemoryAccessProfiling(Object[] receiverAndArgs) {
     long t1 = System.currentTimeMillis();
     TraceInstrumenter instrumenter = TraceInstrumenter.getInstance();
     InstrumenterConfig config = instrumenter.getInstrumenterConfig();
-    config.instrumentMemoryAccess(true);
-    instrumenter.setInstrumenterConfig(config);
-    instrumenter.reinstrumentAllClasses();
+    if (config.targetedMemoryProfiling()) {
+      instrumenter.enableTargetedMemoryProfiling(methodToDump, receiverAndArgs);
+    } else {
+      config.instrumentMemoryAccess(true);
+      instrumenter.setInstrumenterConfig(config);
+      instrumenter.reinstrumentAllClasses();
+    }
     System.out.println("Instrumentation time for memory monitoring: " 
         + (System.currentTimeMillis() - t1));
   }
@@ -374,9 +374,13 @@ public class DumpStatesListener implements InstrumentationCallbackListener {
     config.instrumentStateCapture(false);
     instrumenter.setInstrumenterConfig(config);
     if (profileMemAccess) {
+      if (config.targetedMemoryProfiling()) {
+        instrumenter.disableTargetedMemoryProfiling();
+      } else {
 
 
-      instrumenter.reinstrumentAllClasses();
+        instrumenter.reinstrumentAllClasses();
+      }
     }
     System.out.println("Instrumentation time: " + (System.currentTimeMillis() - t1));
   }
@@ -411,76 +415,37 @@ public class DumpStatesListener implements InstrumentationCallbackListener {
     return false;
   }
   
-  private void annotateStatesWithMemAccessInfo(
+  private ValueGraphIndex annotateStatesWithMemAccessInfo(
       MethodCallRepr states, Set<MemoryLocation> accessedLocations) {
-    LinkedList<ValueGraphNode> workingList = new LinkedList<>();
-    Set<ValueGraphNode> visitedValueReprs = 
-        Collections.newSetFromMap(new IdentityHashMap<ValueGraphNode, Boolean>());
-
-
+    List<ValueGraphNode> objectRoots = new ArrayList<>();
     ValueGraphNode thisRef = states.getThizz();
-    if (thisRef != null) {
-      workingList.add(thisRef);
+    if (thisRef != null && isObjectRepresentation(thisRef)) {
+      objectRoots.add(thisRef);
     }
     for (ValueGraphNode param : states.getParams().values()) {
       if (param != null && isObjectRepresentation(param)) {
-        workingList.add(param);
+        objectRoots.add(param);
       }
     }
     ValueGraphNode returnVal = states.getReturnVal();
     if (returnVal != null && isObjectRepresentation(returnVal)) {
-      workingList.add(returnVal);
+      objectRoots.add(returnVal);
     }
     ValueGraphNode exceptionThrown = states.getException();
-    if (exceptionThrown != null) {
-      workingList.add(exceptionThrown);
+    if (exceptionThrown != null && isObjectRepresentation(exceptionThrown)) {
+      objectRoots.add(exceptionThrown);
     }
-    visitedValueReprs.addAll(workingList);
-    while (workingList.size() > 0) {
-      ValueGraphNode objRepr = workingList.removeFirst();
-      if (!(objRepr instanceof ReferenceRepr)) {
-        halt(null, "Unexpected object representation type " + objRepr.getClass().getName());
-      }
-      ReferenceRepr refRepr = (ReferenceRepr) objRepr;
-      Map<MemberRefName, ValueGraphNode> referencedMembers = refRepr.getReferencedValues();
-      for (Map.Entry<MemberRefName, ValueGraphNode> memberEntry : referencedMembers.entrySet()) {
-        MemberRefName refName = memberEntry.getKey();
+    ValueGraphIndex objectGraph = ValueGraphIndex.build(objectRoots);
+    for (int index = 0; index < objectGraph.size(); ++index) {
+      ReferenceRepr refRepr = (ReferenceRepr) objectGraph.getNode(index);
+      for (MemberRefName refName : refRepr.getReferencedValues().keySet()) {
         MemoryLocation memberMemLocation = getMemberMemLocation(refRepr, refName);
         if (accessedLocations.contains(memberMemLocation)) {
           MemberRefAccessedAnnotator.markAccessMember(refRepr, refName);
         }
-        ValueGraphNode memberValue = memberEntry.getValue();
-        if (isObjectRepresentation(memberValue) && !visitedValueReprs.contains(memberValue)) {
-          workingList.add(memberValue);
-          visitedValueReprs.add(memberValue);
-        }
-      }
-    }
-  }
-  
-  private void annotateTransitiveAccessInfo(MethodCallRepr states) {
-    List<ReferenceRepr> objectRoots = new ArrayList<>();
-    ValueGraphNode thisRef = states.getThizz();
-    if (thisRef != null && thisRef instanceof ReferenceRepr) {
-      objectRoots.add((ReferenceRepr) thisRef);
-    }
-    for (ValueGraphNode paramValue : states.getParams().values()) {
-      if (paramValue == null) {
-        continue;
-      }
-      if (paramValue instanceof ReflectedObjectRepr || paramValue instanceof ArrayRepr) {
-        objectRoots.add((ReferenceRepr) paramValue);
       }
     }
-    ValueGraphNode retVal = states.getReturnVal();
-    if (retVal != null && retVal instanceof ReferenceRepr) {
-      objectRoots.add((ReferenceRepr) retVal);
-    }
-    ValueGraphNode exception = states.getException();
-    if (exception != null && exception instanceof ReferenceRepr) {
-      objectRoots.add((ReferenceRepr) exception);
-    }
-    TransitivelyAccessedAnnotator.annotateObjectSet(objectRoots);
+    return objectGraph;
   }
   
   private static boolean isObjectRepresentation(ValueGraphNode value) {
@@ -34,6 +34,7 @@
 
 package instr.callback;
 
+import java.util.Arrays;
 
 
 
@@ -47,7 +48,42 @@ package instr.callback;
 public abstract class InstrumentationCallback {
   
   private static CallbackDelegation impl;
-  
+
+  /**
+   * Read at the entry of methods transformed by GuardedVariantTransformer to
+   * choose between their memory-profiled and their original body.
+   */
+  public static volatile boolean memoryProfilingEnabled = false;
+
+  /**
+   * Read inline by the line probes in FIRST_HIT coverage mode, indexed by
+   * source location id. A set flag disarms the probe until the coverage is
+   * reset. Volatile, so that a probe on any thread sees the array grown for
+   * its id.
+   */
+  public static volatile boolean[] sourceLocationCovered = new boolean[0];
+
+  /**
+   * Decremented inline by the line probes in SAMPLED_COUNT coverage mode,
+   * indexed by source location id. The probe calls executeSourceLocation when
+   * the countdown reaches zero. Volatile like sourceLocationCovered.
+   */
+  public static volatile int[] sourceLocationSampleCountdowns = new int[0];
+
+  /**
+   * Grows the inline probe arrays. Must be called before code with line probes
+   * of new source locations runs.
+   */
+  public static synchronized void ensureSourceLocationProbeCapacity(int numSourceLocations) {
+    if (sourceLocationCovered.length < numSourceLocations) {
+      sourceLocationCovered = Arrays.copyOf(sourceLocationCovered, numSourceLocations);
+    }
+    if (sourceLocationSampleCountdowns.length < numSourceLocations) {
+      sourceLocationSampleCountdowns = 
+          Arrays.copyOf(sourceLocationSampleCountdowns, numSourceLocations);
+    }
+  }
+
   public static void init(CallbackDelegation implementation) {
     impl = implementation;
   }
@@ -31,7 +31,6 @@
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
-
 package instr.callback;
 
 import instr.callback.memory.MemoryLocation;
@@ -47,24 +46,81 @@ import java.util.List;
 import anonymous.domain.enlighten.data.MethodName;
 import anonymous.domain.enlighten.data.SourceLocation;
 
-
-
-
-
-
-
+/**
+ * Callback implementation for subjects that run application code in multiple
+ * threads. Each thread records its events into its own {@link ThreadEventBuffer}
+ * without taking any lock, and keeps its own reentrancy count. The events are
+ * handed to the listeners by a drain stage that merges the buffers of all the
+ * threads by time stamp and assigns each event a global sequence number. A
+ * thread drains when its buffer is full, and the remaining events are drained
+ * when the execution ends. The listeners are called by one thread at a time.
+ * 
+ * The state capture events are delivered synchronously after draining all the
+ * buffers, since the listeners have to see the parameters as of the call.
+ * 
+ * Looking up the buffer of the current thread must not execute instrumented
+ * code, so the buffers are kept in a table indexed by thread id rather than in
+ * a ThreadLocal.
+ */
 public class MultiThreadCallbackImpl implements CallbackDelegation {
   
+  public static final int DEFAULT_BUFFER_CAPACITY = 4096;
+  
+  private static final byte SOURCE_LOCATION = 0;
+  private static final byte ENTRY = 1;
+  private static final byte EXIT = 2;
+  private static final byte EXCEPTION_EXIT = 3;
+  private static final byte READ_INSTANCE_FIELD = 4;
+  private static final byte WRITE_INSTANCE_FIELD = 5;
+  private static final byte NEW_OBJECT = 6;
+  private static final byte READ_STATIC_FIELD = 7;
+  private static final byte WRITE_STATIC_FIELD = 8;
+  private static final byte READ_ARRAY_BUCKET = 9;
+  private static final byte WRITE_ARRAY_BUCKET = 10;
+  
   private List<InstrumentationCallbackListener> callbackListeners = new ArrayList<>();
-  private boolean executionStarted = false;
+  private volatile boolean executionStarted = false;
+  
+  private final int bufferCapacity;
+  private volatile ThreadEventBuffer[] bufferTable = new ThreadEventBuffer[16];
   
-  private boolean isInAppCode = true;
-  private ThreadLocal<Integer> switchOutCount = new ThreadLocal<Integer>() {
-    @Override
-    protected Integer initialValue() {
-      return 0;
+  private final Object drainLock = new Object();
+  private ThreadEventBuffer[] registeredBuffers = new ThreadEventBuffer[16];
+  private int numRegisteredBuffers = 0;
+  private long nextSequenceNumber = 0;
+  private long currentSequenceNumber = -1;
+  private Thread currentEventThread;
+  
+  public MultiThreadCallbackImpl() {
+    this(DEFAULT_BUFFER_CAPACITY);
+  }
+  
+  public MultiThreadCallbackImpl(int bufferCapacity) {
+    if (bufferCapacity <= 0) {
+      throw new IllegalArgumentException("Invalid buffer capacity " + bufferCapacity);
+    }
+    int capacity = 1;
+    while (capacity < bufferCapacity) {
+      capacity <<= 1;
     }
-  };
+    this.bufferCapacity = capacity;
+  }
+  
+  /**
+   * The global sequence number of the event being delivered to the listeners.
+   * Only meaningful from within a listener callback.
+   */
+  public long getCurrentSequenceNumber() {
+    return currentSequenceNumber;
+  }
+  
+  /**
+   * The thread that generated the event being delivered to the listeners. Only
+   * meaningful from within a listener callback.
+   */
+  public Thread getCurrentEventThread() {
+    return currentEventThread;
+  }
   
   @Override
   public void addCallbackListenerImpl(InstrumentationCallbackListener listener) {
@@ -83,290 +139,183 @@ public class MultiThreadCallbackImpl implements CallbackDelegation {
   
   
   @Override
-  public synchronized void executionStartedImpl(String executionId) {
-    if (executionStarted) {
-      throw new IllegalStateException("Execution is already started. Please stop the "
-          + "on-going execution before starting a new one.");
-    }
-
-
-
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.executionStarted(executionId);
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            + ". Caused by:");
-        ex.printStackTrace();
+  public void executionStartedImpl(String executionId) {
+    synchronized (drainLock) {
+      if (executionStarted) {
+        throw new IllegalStateException("Execution is already started. Please stop the "
+            + "on-going execution before starting a new one.");
+      }
+      for (int i = 0; i < numRegisteredBuffers; ++i) {
+        discardEvents(registeredBuffers[i]);
       }
+      nextSequenceNumber = 0;
+      for (InstrumentationCallbackListener listener : callbackListeners) {
+        try {
+          listener.executionStarted(executionId);
+        } catch (Throwable ex) {
+          System.err.println("Error invoking callback method on " + listener.toString()
+              + ". Caused by:");
+          ex.printStackTrace();
+        }
+      }
+      executionStarted = true;
     }
-    executionStarted = true;
   }
   
   
   @Override
-  public synchronized void executionEndedImpl(String executionId) {
-    if (!executionStarted) {
-      throw new IllegalStateException("No on-going execution to stop.");
-    }
-    executionStarted = false;
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.executionEnded(executionId);
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            + ". Caused by:");
-        ex.printStackTrace();
+  public void executionEndedImpl(String executionId) {
+    synchronized (drainLock) {
+      if (!executionStarted) {
+        throw new IllegalStateException("No on-going execution to stop.");
+      }
+      executionStarted = false;
+      drainAll();
+      for (InstrumentationCallbackListener listener : callbackListeners) {
+        try {
+          listener.executionEnded(executionId);
+        } catch (Throwable ex) {
+          System.err.println("Error invoking callback method on " + listener.toString()
+              + ". Caused by:");
+          ex.printStackTrace();
+        }
       }
     }
   }
   
   
   @Override
-  public synchronized void executeSourceLocationImpl(int sourceLocationId) {
-    if (!isProfilingEnabled()) {
-      return;
-    }
-    isInAppCode = false;
-    SourceLocation sourceLocation = SourceLocationDB.getSourceLocationById(sourceLocationId);
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.executingSourceLine(sourceLocation);
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            + ". Caused by:");
-        ex.printStackTrace();
-      }
-    }
-    isInAppCode = true;
+  public void executeSourceLocationImpl(int sourceLocationId) {
+    record(SOURCE_LOCATION, null, null, sourceLocationId);
   }
 
   @Override
-  public synchronized void entryImpl(String className, String methodSig) { 
-    if (!isProfilingEnabled()) {
-      return;
-    }
-    isInAppCode = false;
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.methodEntered(MethodName.get(className, methodSig));
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            + ". Caused by:");
-        ex.printStackTrace();
-      }
-    }
-    isInAppCode = true;
+  public void entryImpl(String className, String methodSig) { 
+    record(ENTRY, className, methodSig, 0);
   }
   
   @Override
-  public synchronized void preStatesImpl(int methodInfoId, Object[] params) {
-    if (!isProfilingEnabled()) {
+  public void preStatesImpl(int methodInfoId, Object[] params) {
+    ThreadEventBuffer buffer = enterCallback();
+    if (buffer == null) {
       return;
     }
-    isInAppCode = false;
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.preStates(MethodInfoDB.getMethodInfoById(methodInfoId), params);
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            +". Caused by:");
-        ex.printStackTrace();
+    try {
+      synchronized (drainLock) {
+        drainAll();
+        beginDelivery(buffer.thread);
+        for (InstrumentationCallbackListener listener : callbackListeners) {
+          try {
+            listener.preStates(MethodInfoDB.getMethodInfoById(methodInfoId), params);
+          } catch (Throwable ex) {
+            System.err.println("Error invoking callback method on " + listener.toString()
+                +". Caused by:");
+            ex.printStackTrace();
+          }
+        }
       }
+    } finally {
+      --buffer.switchOutCount;
     }
-    isInAppCode = true;
   }
 
   @Override
-  public synchronized void exitImpl(String className, String methodSig) { 
-    if (!isProfilingEnabled()) {
-      return;
-    }
-    isInAppCode = false;
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.methodExiting(MethodName.get(className, methodSig));
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            + ". Caused by:");
-        ex.printStackTrace();
-      }
-    }
-    isInAppCode = true;
+  public void exitImpl(String className, String methodSig) { 
+    record(EXIT, className, methodSig, 0);
   }
   
   @Override
-  public synchronized void postStatesNormalImpl(
+  public void postStatesNormalImpl(
       int methodInfoId, Object retValue, Object[] params) {
-    if (!isProfilingEnabled()) {
+    ThreadEventBuffer buffer = enterCallback();
+    if (buffer == null) {
       return;
     }
-    isInAppCode = false;
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.postStatesNormal(
-            MethodInfoDB.getMethodInfoById(methodInfoId), retValue, params);
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            +". Caused by:");
-        ex.printStackTrace();
+    try {
+      synchronized (drainLock) {
+        drainAll();
+        beginDelivery(buffer.thread);
+        for (InstrumentationCallbackListener listener : callbackListeners) {
+          try {
+            listener.postStatesNormal(
+                MethodInfoDB.getMethodInfoById(methodInfoId), retValue, params);
+          } catch (Throwable ex) {
+            System.err.println("Error invoking callback method on " + listener.toString()
+                +". Caused by:");
+            ex.printStackTrace();
+          }
+        }
       }
+    } finally {
+      --buffer.switchOutCount;
     }
-    isInAppCode = true;
   }
 
   @Override
-  public synchronized void exception_exitImpl(String className, String methodSig) { 
-    if (!isProfilingEnabled()) {
-      return;
-    }
-    isInAppCode = false;
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.methodExceptionExiting(MethodName.get(className, methodSig));
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            + ". Caused by:");
-        ex.printStackTrace();
-      }
-    }
-    isInAppCode = true;
+  public void exception_exitImpl(String className, String methodSig) { 
+    record(EXCEPTION_EXIT, className, methodSig, 0);
   }
   
   @Override
-  public synchronized void postStatesExceptionImpl(
+  public void postStatesExceptionImpl(
       int methodInfoId, Object exception, Object[] params) {
-    if (!isProfilingEnabled()) {
+    ThreadEventBuffer buffer = enterCallback();
+    if (buffer == null) {
       return;
     }
-    isInAppCode = false;
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.postStatesException(
-            MethodInfoDB.getMethodInfoById(methodInfoId), exception, params);
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            +". Caused by:");
-        ex.printStackTrace();
+    try {
+      synchronized (drainLock) {
+        drainAll();
+        beginDelivery(buffer.thread);
+        for (InstrumentationCallbackListener listener : callbackListeners) {
+          try {
+            listener.postStatesException(
+                MethodInfoDB.getMethodInfoById(methodInfoId), exception, params);
+          } catch (Throwable ex) {
+            System.err.println("Error invoking callback method on " + listener.toString()
+                +". Caused by:");
+            ex.printStackTrace();
+          }
+        }
       }
+    } finally {
+      --buffer.switchOutCount;
     }
-    isInAppCode = true;
   }
 
   @Override
-  public synchronized void readInstanceFieldImpl(Object objRef, String fieldName) {
-    if (!isProfilingEnabled()) {
-      return;
-    }
-    isInAppCode = false;
-    MemoryLocation memLoc = MemoryLocation.getInstanceFieldLocation(objRef, fieldName);
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.memoryRead(memLoc);
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            + ". Caused by:");
-        ex.printStackTrace();
-      }
-    }
-    isInAppCode = true;
+  public void readInstanceFieldImpl(Object objRef, String fieldName) {
+    record(READ_INSTANCE_FIELD, objRef, fieldName, 0);
   }
 
   @Override
-  public synchronized void writeInstanceFieldImpl(Object objRef, String fieldName) {
-    if (!isProfilingEnabled()) {
-      return;
-    }
-    isInAppCode = false;
-    writeInstanceFieldInternal(objRef, fieldName);
-    isInAppCode = true;
+  public void writeInstanceFieldImpl(Object objRef, String fieldName) {
+    record(WRITE_INSTANCE_FIELD, objRef, fieldName, 0);
   }
 
   @Override
-  public synchronized void newObjectImpl(Object objRef) {
-    if (!isProfilingEnabled()) {
-      return;
-    }
-    isInAppCode = false;
-    Class<?> currentClass = objRef.getClass();
-    while (currentClass != null) {
-      for (Field field : currentClass.getDeclaredFields()) {
-        String fieldName = field.getName();
-        int fieldModifiers = field.getModifiers();
-        if (!Modifier.isStatic(fieldModifiers) && !Modifier.isFinal(fieldModifiers)) {
-          writeInstanceFieldInternal(objRef, fieldName);
-        }
-      }
-      currentClass = currentClass.getSuperclass();
-    }
-    isInAppCode = true;
+  public void newObjectImpl(Object objRef) {
+    record(NEW_OBJECT, objRef, null, 0);
   }
 
   @Override
-  public synchronized void readStaticFieldImpl(String className, String fieldName) {
-    if (!isProfilingEnabled()) {
-      return;
-    }
-    isInAppCode = false;
-    MemoryLocation memLoc = MemoryLocation.getStaticFieldLocation(className, fieldName);
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.memoryRead(memLoc);
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            + ". Caused by:");
-        ex.printStackTrace();
-      }
-    }
-    isInAppCode = true;
+  public void readStaticFieldImpl(String className, String fieldName) {
+    record(READ_STATIC_FIELD, className, fieldName, 0);
   }
 
   @Override
-  public synchronized void writeStaticFieldImpl(String className, String fieldName) {
-    if (!isProfilingEnabled()) {
-      return;
-    }
-    isInAppCode = false;
-    MemoryLocation memLoc = MemoryLocation.getStaticFieldLocation(className, fieldName);
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.memoryWrite(memLoc);
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            + ". Caused by:");
-        ex.printStackTrace();
-      }
-    }
-    isInAppCode = true;
+  public void writeStaticFieldImpl(String className, String fieldName) {
+    record(WRITE_STATIC_FIELD, className, fieldName, 0);
   }
 
   @Override
-  public synchronized void readArrayBucketImpl(Object arrayRef, int index) {
-    if (!isProfilingEnabled()) {
-      return;
-    }
-    isInAppCode = false;
-    MemoryLocation memLoc = MemoryLocation.getArrayBucketLocation(arrayRef, index);
-    for (InstrumentationCallbackListener listener : callbackListeners) {
-      try {
-        listener.memoryRead(memLoc);
-      } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on " + listener.toString()
-            + ". Caused by:");
-        ex.printStackTrace();
-      }
-    }
-    isInAppCode = true;
+  public void readArrayBucketImpl(Object arrayRef, int index) {
+    record(READ_ARRAY_BUCKET, arrayRef, null, index);
   }
 
   @Override
-  public synchronized void writeArrayBucketImpl(Object arrayRef, int index) {
-    if (!isProfilingEnabled()) {
-      return;
-    }
-    isInAppCode = false;
-    writeArrayBucketInternal(arrayRef, index);
-    isInAppCode = true;
+  public void writeArrayBucketImpl(Object arrayRef, int index) {
+    record(WRITE_ARRAY_BUCKET, arrayRef, null, index);
   }
 
   @Override
@@ -385,88 +334,291 @@ public class MultiThreadCallbackImpl implements CallbackDelegation {
   }
   
 
+  // The elements are walked when the array is created, since nested arrays may
+  // be replaced before the event is drained.
   @Override
-  public synchronized void newArrayImpl(Object arrayRef) {
-    if (!isProfilingEnabled()) {
+  public void newArrayImpl(Object arrayRef) {
+    ThreadEventBuffer buffer = enterCallback();
+    if (buffer == null) {
       return;
     }
-    isInAppCode = false;
-    newArrayRecursive(arrayRef);
-    isInAppCode = true;
+    try {
+      newArrayRecursive(buffer, arrayRef);
+    } finally {
+      --buffer.switchOutCount;
+    }
   }
   
   
   @Override
-  public synchronized void executionSwitchOutImpl() {
-
-
-
-
-    boolean oldIsInAppCode = isInAppCode;
-    isInAppCode = false;
-    switchOutCount.set(switchOutCount.get() + 1);
-    isInAppCode = oldIsInAppCode;
+  public void executionSwitchOutImpl() {
+    ++getThreadEventBuffer().switchOutCount;
   }
   
   
   @Override
-  public synchronized void executionSwitchInImpl() {
-
-
-
-
-    boolean oldIsInAppCode = isInAppCode;
-    isInAppCode = false;
-    int currentThreadSwitchOutCount = switchOutCount.get();
-    if (currentThreadSwitchOutCount == 0) {
+  public void executionSwitchInImpl() {
+    ThreadEventBuffer buffer = getThreadEventBuffer();
+    if (buffer.switchOutCount == 0) {
+      ++buffer.switchOutCount;
       IllegalStateException ex = new IllegalStateException("Execution has not been switched out.");
-      isInAppCode = oldIsInAppCode;
+      --buffer.switchOutCount;
       throw ex;
     }
-    switchOutCount.set(currentThreadSwitchOutCount - 1);
-    isInAppCode = oldIsInAppCode;
+    --buffer.switchOutCount;
   }
   
-
-
-
-
-
-  private boolean isProfilingEnabled() {
-    if (!(executionStarted && isInAppCode)) {
-      return false;
+  
+  private void record(byte kind, Object firstArg, Object secondArg, int intArg) {
+    ThreadEventBuffer buffer = enterCallback();
+    if (buffer == null) {
+      return;
     }
-
-
-
-    isInAppCode = false;
-    if (switchOutCount.get() == 0) {
-      isInAppCode = true;
-      return true;
-    } else {
-      isInAppCode = true;
-      return false;
+    try {
+      append(buffer, kind, firstArg, secondArg, intArg);
+    } finally {
+      --buffer.switchOutCount;
     }
   }
-
-  private void writeInstanceFieldInternal(Object objRef, String fieldName) {
-    MemoryLocation memLoc = MemoryLocation.getInstanceFieldLocation(objRef, fieldName);
+  
+  private void append(
+      ThreadEventBuffer buffer, byte kind, Object firstArg, Object secondArg, int intArg) {
+    if (buffer.isFull()) {
+      synchronized (drainLock) {
+        drainAll();
+      }
+    }
+    buffer.append(kind, firstArg, secondArg, intArg);
+  }
+  
+  
+  // Returns the buffer of the current thread with its reentrancy count raised,
+  // or null if events of the current thread are not to be recorded.
+  private ThreadEventBuffer enterCallback() {
+    if (!executionStarted) {
+      return null;
+    }
+    ThreadEventBuffer buffer = getThreadEventBuffer();
+    if (buffer.switchOutCount != 0) {
+      return null;
+    }
+    ++buffer.switchOutCount;
+    return buffer;
+  }
+  
+  private ThreadEventBuffer getThreadEventBuffer() {
+    Thread currentThread = Thread.currentThread();
+    ThreadEventBuffer[] table = bufferTable;
+    int tableMask = table.length - 1;
+    for (int index = (int) currentThread.getId() & tableMask; ; 
+        index = (index + 1) & tableMask) {
+      ThreadEventBuffer buffer = table[index];
+      if (buffer == null) {
+        return registerThreadEventBuffer(currentThread);
+      } else if (buffer.thread == currentThread) {
+        return buffer;
+      }
+    }
+  }
+  
+  private ThreadEventBuffer registerThreadEventBuffer(Thread thread) {
+    synchronized (drainLock) {
+      ThreadEventBuffer buffer = new ThreadEventBuffer(thread, bufferCapacity);
+      if (numRegisteredBuffers == registeredBuffers.length) {
+        removeTerminatedThreads();
+        if (numRegisteredBuffers == registeredBuffers.length) {
+          ThreadEventBuffer[] newRegisteredBuffers = 
+              new ThreadEventBuffer[registeredBuffers.length * 2];
+          System.arraycopy(
+              registeredBuffers, 0, newRegisteredBuffers, 0, numRegisteredBuffers);
+          registeredBuffers = newRegisteredBuffers;
+        }
+      }
+      registeredBuffers[numRegisteredBuffers++] = buffer;
+      rebuildBufferTable();
+      return buffer;
+    }
+  }
+  
+  // Only the owning thread looks up its own buffer, so readers racing with a
+  // rebuild either see their buffer or fall back to registering under the lock.
+  private void rebuildBufferTable() {
+    int tableSize = bufferTable.length;
+    while (tableSize < numRegisteredBuffers * 2) {
+      tableSize *= 2;
+    }
+    ThreadEventBuffer[] table = new ThreadEventBuffer[tableSize];
+    int tableMask = tableSize - 1;
+    for (int i = 0; i < numRegisteredBuffers; ++i) {
+      ThreadEventBuffer buffer = registeredBuffers[i];
+      int index = (int) buffer.thread.getId() & tableMask;
+      while (table[index] != null) {
+        index = (index + 1) & tableMask;
+      }
+      table[index] = buffer;
+    }
+    bufferTable = table;
+  }
+  
+  private void removeTerminatedThreads() {
+    int numRemaining = 0;
+    for (int i = 0; i < numRegisteredBuffers; ++i) {
+      ThreadEventBuffer buffer = registeredBuffers[i];
+      if (buffer.thread.isAlive() || !buffer.isEmpty()) {
+        registeredBuffers[numRemaining++] = buffer;
+      }
+    }
+    for (int i = numRemaining; i < numRegisteredBuffers; ++i) {
+      registeredBuffers[i] = null;
+    }
+    numRegisteredBuffers = numRemaining;
+  }
+  
+  
+  // Must be called with the drain lock held.
+  private void drainAll() {
+    int numBuffers = numRegisteredBuffers;
+    ThreadEventBuffer[] buffers = registeredBuffers;
+    long[] heads = new long[numBuffers];
+    long[] limits = new long[numBuffers];
+    for (int i = 0; i < numBuffers; ++i) {
+      heads[i] = buffers[i].head;
+      limits[i] = buffers[i].tail;
+    }
+    while (true) {
+      int next = -1;
+      long nextTimestamp = 0;
+      for (int i = 0; i < numBuffers; ++i) {
+        if (heads[i] < limits[i]) {
+          ThreadEventBuffer buffer = buffers[i];
+          long timestamp = buffer.timestamps[(int) heads[i] & buffer.mask];
+          if (next == -1 || timestamp - nextTimestamp < 0) {
+            next = i;
+            nextTimestamp = timestamp;
+          }
+        }
+      }
+      if (next == -1) {
+        break;
+      }
+      ThreadEventBuffer buffer = buffers[next];
+      deliver(buffer, (int) heads[next] & buffer.mask);
+      buffer.release(heads[next]);
+      ++heads[next];
+    }
+    for (int i = 0; i < numBuffers; ++i) {
+      buffers[i].head = heads[i];
+    }
+  }
+  
+  private void discardEvents(ThreadEventBuffer buffer) {
+    for (long position = buffer.head; position < buffer.tail; ++position) {
+      buffer.release(position);
+    }
+    buffer.head = buffer.tail;
+  }
+  
+  private void beginDelivery(Thread eventThread) {
+    currentSequenceNumber = nextSequenceNumber++;
+    currentEventThread = eventThread;
+  }
+  
+  private void deliver(ThreadEventBuffer buffer, int slot) {
+    beginDelivery(buffer.thread);
+    Object firstArg = buffer.firstArgs[slot];
+    Object secondArg = buffer.secondArgs[slot];
+    int intArg = buffer.intArgs[slot];
+    switch (buffer.kinds[slot]) {
+    case SOURCE_LOCATION:
+      notifySourceLocation(intArg);
+      break;
+    case ENTRY:
+    case EXIT:
+    case EXCEPTION_EXIT:
+      notifyMethodEvent(buffer.kinds[slot], MethodName.get((String) firstArg, (String) secondArg));
+      break;
+    case READ_INSTANCE_FIELD:
+      notifyMemoryAccess(
+          MemoryLocation.getInstanceFieldLocation(firstArg, (String) secondArg), false);
+      break;
+    case WRITE_INSTANCE_FIELD:
+      notifyMemoryAccess(
+          MemoryLocation.getInstanceFieldLocation(firstArg, (String) secondArg), true);
+      break;
+    case NEW_OBJECT:
+      notifyNewObject(firstArg);
+      break;
+    case READ_STATIC_FIELD:
+      notifyMemoryAccess(
+          MemoryLocation.getStaticFieldLocation((String) firstArg, (String) secondArg), false);
+      break;
+    case WRITE_STATIC_FIELD:
+      notifyMemoryAccess(
+          MemoryLocation.getStaticFieldLocation((String) firstArg, (String) secondArg), true);
+      break;
+    case READ_ARRAY_BUCKET:
+      notifyMemoryAccess(MemoryLocation.getArrayBucketLocation(firstArg, intArg), false);
+      break;
+    case WRITE_ARRAY_BUCKET:
+      notifyMemoryAccess(MemoryLocation.getArrayBucketLocation(firstArg, intArg), true);
+      break;
+    }
+  }
+  
+  private void notifySourceLocation(int sourceLocationId) {
+    SourceLocationCoverageCollector.executingSourceLocation(sourceLocationId);
+    SourceLocation sourceLocation = SourceLocationDB.getSourceLocationById(sourceLocationId);
     for (InstrumentationCallbackListener listener : callbackListeners) {
       try {
-        listener.memoryWrite(memLoc);
+        listener.executingSourceLine(sourceLocation);
       } catch (Throwable ex) {
-        System.err.println("Error invoking callback method on "
-            + listener.toString() + ". Caused by:");
+        System.err.println("Error invoking callback method on " + listener.toString()
+            + ". Caused by:");
         ex.printStackTrace();
       }
     }
   }
+  
+  private void notifyMethodEvent(byte kind, MethodName methodName) {
+    for (InstrumentationCallbackListener listener : callbackListeners) {
+      try {
+        if (kind == ENTRY) {
+          listener.methodEntered(methodName);
+        } else if (kind == EXIT) {
+          listener.methodExiting(methodName);
+        } else {
+          listener.methodExceptionExiting(methodName);
+        }
+      } catch (Throwable ex) {
+        System.err.println("Error invoking callback method on " + listener.toString()
+            + ". Caused by:");
+        ex.printStackTrace();
+      }
+    }
+  }
+  
+  private void notifyNewObject(Object objRef) {
+    Class<?> currentClass = objRef.getClass();
+    while (currentClass != null) {
+      for (Field field : currentClass.getDeclaredFields()) {
+        String fieldName = field.getName();
+        int fieldModifiers = field.getModifiers();
+        if (!Modifier.isStatic(fieldModifiers) && !Modifier.isFinal(fieldModifiers)) {
+          notifyMemoryAccess(MemoryLocation.getInstanceFieldLocation(objRef, fieldName), true);
+        }
+      }
+      currentClass = currentClass.getSuperclass();
+    }
+  }
 
-  private void writeArrayBucketInternal(Object arrayRef, int index) {
-    MemoryLocation memLoc = MemoryLocation.getArrayBucketLocation(arrayRef, index);
+  private void notifyMemoryAccess(MemoryLocation memLoc, boolean isWrite) {
     for (InstrumentationCallbackListener listener : callbackListeners) {
       try {
-        listener.memoryWrite(memLoc);
+        if (isWrite) {
+          listener.memoryWrite(memLoc);
+        } else {
+          listener.memoryRead(memLoc);
+        }
       } catch (Throwable ex) {
         System.err.println("Error invoking callback method on "
             + listener.toString() + ". Caused by:");
@@ -475,12 +627,12 @@ public class MultiThreadCallbackImpl implements CallbackDelegation {
     }
   }
 
-  private void newArrayRecursive(Object arrayRef) {
+  private void newArrayRecursive(ThreadEventBuffer buffer, Object arrayRef) {
     for (int i = 0; i < Array.getLength(arrayRef); ++i) {
-      writeArrayBucketInternal(arrayRef, i);
+      append(buffer, WRITE_ARRAY_BUCKET, arrayRef, null, i);
       Object element = Array.get(arrayRef, i);
       if (element != null && element.getClass().isArray()) {
-        newArrayRecursive(element);
+        newArrayRecursive(buffer, element);
       }
     }
   }
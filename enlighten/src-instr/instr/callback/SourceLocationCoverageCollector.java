@@ -35,7 +35,10 @@
 package instr.callback;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import anonymous.domain.enlighten.data.SourceLocation;
 import instr.staticinfo.SourceLocationDB;
@@ -55,10 +58,37 @@ public class SourceLocationCoverageCollector {
 
   private static int[][] recordBlocks = null;
   
+  private static int samplingRate = 0;
+  private static long[] executionCountEstimates = new long[0];
+  
+  /**
+   * Makes the collector estimate execution counts from the executions
+   * reported by line probes in SAMPLED_COUNT mode, each but the first standing
+   * for samplingRate executions. The estimates fall short of the actual counts
+   * by less than samplingRate.
+   */
+  public static void setSamplingRate(int rate) {
+    samplingRate = rate;
+  }
+  
+  /**
+   * @return the sampling rate, or 0 if execution counts are not estimated
+   */
+  public static int getSamplingRate() {
+    return samplingRate;
+  }
+  
   public static void executingSourceLocation(int sourceLocationId) {
     if (recordBlocks == null) {
       return;
     }
+    boolean[] covered = InstrumentationCallback.sourceLocationCovered;
+    if (sourceLocationId < covered.length) {
+      covered[sourceLocationId] = true;
+    }
+    if (samplingRate > 0) {
+      countSample(sourceLocationId);
+    }
     int blockIndex = sourceLocationId >>> RECORD_BLOCK_BITS;
     int recordIndex = sourceLocationId & RECORD_INDEX_MASK;
     int recordDataArrayIndex = recordIndex >>> DATA_UNIT_ADDR_BITS;
@@ -92,8 +122,42 @@ public class SourceLocationCoverageCollector {
     return coveredLocs;
   }
   
+  /**
+   * Only available if a sampling rate is set.
+   */
+  public static Map<SourceLocation, Long> getExecutionCountEstimates() {
+    Map<SourceLocation, Long> estimates = new LinkedHashMap<>();
+    for (int sourceLocationId = 0; sourceLocationId < executionCountEstimates.length; 
+        ++sourceLocationId) {
+      if (executionCountEstimates[sourceLocationId] > 0) {
+        estimates.put(SourceLocationDB.getSourceLocationById(sourceLocationId), 
+            executionCountEstimates[sourceLocationId]);
+      }
+    }
+    return estimates;
+  }
+  
   public static void resetCoverage() {
     recordBlocks = new int[NUM_BLOCKS][];
+    Arrays.fill(InstrumentationCallback.sourceLocationCovered, false);
+    Arrays.fill(InstrumentationCallback.sourceLocationSampleCountdowns, 0);
+    executionCountEstimates = new long[0];
+  }
+  
+  private static void countSample(int sourceLocationId) {
+    if (sourceLocationId >= executionCountEstimates.length) {
+      executionCountEstimates = Arrays.copyOf(executionCountEstimates, 
+          Math.max(sourceLocationId + 1, executionCountEstimates.length * 2));
+    }
+    int[] countdowns = InstrumentationCallback.sourceLocationSampleCountdowns;
+    // Executions reported while the countdown is still running, e.g. buffered
+    // ones or those of probes without countdown, stand for themselves.
+    boolean sampled = sourceLocationId < countdowns.length && countdowns[sourceLocationId] <= 0;
+    executionCountEstimates[sourceLocationId] += 
+        sampled && executionCountEstimates[sourceLocationId] > 0 ? samplingRate : 1;
+    if (sourceLocationId < countdowns.length) {
+      countdowns[sourceLocationId] = samplingRate;
+    }
   }
   
   private static int[] createRecordDataBlock() {
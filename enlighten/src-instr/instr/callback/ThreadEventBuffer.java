@@ -0,0 +1,95 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package instr.callback;
+
+/**
+ * A single-producer ring buffer of callback events recorded by one thread. Only
+ * the owning thread appends events. The events are consumed by
+ * {@link MultiThreadCallbackImpl} while holding its drain lock, so the buffer
+ * needs no locking of its own; the head and tail counters are volatile and each
+ * side only writes its own counter.
+ */
+final class ThreadEventBuffer {
+  
+  final Thread thread;
+  
+  int switchOutCount = 0;
+  
+  final int capacity;
+  final int mask;
+  final byte[] kinds;
+  final int[] intArgs;
+  final Object[] firstArgs;
+  final Object[] secondArgs;
+  final long[] timestamps;
+  
+  volatile long head = 0;
+  volatile long tail = 0;
+  
+  ThreadEventBuffer(Thread thread, int capacity) {
+    this.thread = thread;
+    this.capacity = capacity;
+    mask = capacity - 1;
+    kinds = new byte[capacity];
+    intArgs = new int[capacity];
+    firstArgs = new Object[capacity];
+    secondArgs = new Object[capacity];
+    timestamps = new long[capacity];
+  }
+  
+  boolean isFull() {
+    return tail - head == capacity;
+  }
+  
+  boolean isEmpty() {
+    return tail == head;
+  }
+  
+  void append(byte kind, Object firstArg, Object secondArg, int intArg) {
+    long currentTail = tail;
+    int slot = (int) currentTail & mask;
+    kinds[slot] = kind;
+    firstArgs[slot] = firstArg;
+    secondArgs[slot] = secondArg;
+    intArgs[slot] = intArg;
+    timestamps[slot] = System.nanoTime();
+    tail = currentTail + 1;
+  }
+  
+  void release(long position) {
+    int slot = (int) position & mask;
+    firstArgs[slot] = null;
+    secondArgs[slot] = null;
+  }
+}
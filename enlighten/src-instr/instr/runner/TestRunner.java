@@ -34,11 +34,9 @@
 
 package instr.runner;
 
-import java.io.BufferedWriter;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -57,7 +55,9 @@ import org.junit.runner.notification.RunListener;
 
 import anonymous.domain.enlighten.data.MethodName;
 import anonymous.domain.enlighten.data.TestName;
+import anonymous.domain.enlighten.data.TestOutcomeJournal;
 import instr.callback.DumpCoverageListener;
+import instr.callback.DumpDependenciesListener;
 import instr.callback.DumpStatesListener;
 import instr.callback.DumpTraceListener;
 import instr.callback.InstrumentationCallback;
@@ -74,7 +74,8 @@ public class TestRunner {
   public static String CURRENT_TEST;
   
   private static Path dataDirPath;
-  private static Path testResultFilePath;
+  private static TestOutcomeJournal.Writer testOutcomeJournal;
+  private static DumpCoverageListener coverageListener;
 
   
 
@@ -109,6 +110,9 @@ public class TestRunner {
     Option writeTraceOption = Option.builder("write_trace")
         .longOpt("write_trace")
         .desc("whether or not the execution trace should be written").build();
+    Option writeDependenciesOption = Option.builder("write_dependencies")
+        .longOpt("write_dependencies")
+        .desc("whether or not the classes each test depends on should be written").build();
     Option writeMemAccessDevOption = Option.builder("write_mem_access_dev")
         .longOpt("write_mem_access_dev")
         .build();
@@ -144,7 +148,7 @@ public class TestRunner {
         .build();
     final CommandLine cmd = Config.init(args, clazz, testMethodsOption, covDataDirOption, 
         writeTestOutcomesOption,  writeCoverageOption, writeInvocationTreeOption, 
-        writeTraceOption, writeMemAccessDevOption, captureInvocStates, 
+        writeTraceOption, writeDependenciesOption, writeMemAccessDevOption, captureInvocStates, 
         captureStatesDataFile, captureStatesTestDesc, captureStatesMethodName, 
         captureStatesInvocIndex, captureStatesProfileMem, captureStatesRedefineClassOnTargetInvoc,
         captureStatesRedefineClassFile);
@@ -152,11 +156,13 @@ public class TestRunner {
     dataDirPath = Paths.get(cmd.getOptionValue("data_dir"));
     Files.createDirectories(dataDirPath);
     if (cmd.hasOption("write_test_outcomes")) {
-      testResultFilePath = dataDirPath.resolve(TEST_OUTCOME_FILE_NAME);
+      testOutcomeJournal = new TestOutcomeJournal.Writer(
+          dataDirPath.resolve(TEST_OUTCOME_FILE_NAME));
     }
     InstrumentationCallback.init(new SingleThreadCallbackImpl());
     if (cmd.hasOption("write_coverage")) {
-      InstrumentationCallback.addCallbackListener(new DumpCoverageListener(dataDirPath));
+      coverageListener = new DumpCoverageListener(dataDirPath);
+      InstrumentationCallback.addCallbackListener(coverageListener);
     }
     if (cmd.hasOption("write_invocation_tree")) {
       InstrumentationCallback.addCallbackListener(new InvocationTreeListener(dataDirPath));
@@ -164,6 +170,10 @@ public class TestRunner {
     if (cmd.hasOption("write_trace")) {
       InstrumentationCallback.addCallbackListener(new DumpTraceListener(dataDirPath));
     }
+    if (cmd.hasOption("write_dependencies")) {
+      InstrumentationCallback.addCallbackListener(new DumpDependenciesListener(
+          dataDirPath, cmd.hasOption("write_coverage")));
+    }
     if (cmd.hasOption("write_mem_access_dev")) {
       InstrumentationCallback.addCallbackListener(new PrintMemoryAccessListener());
     }
@@ -214,6 +224,8 @@ public class TestRunner {
     final Map<String, Integer> testNameCache = new HashMap<String, Integer>();
     
     junit.addListener(new RunListener(){
+      
+      TestCostMeter testCost = new TestCostMeter();
 
       
 
@@ -242,6 +254,7 @@ public class TestRunner {
         CURRENT_TEST = name;
         System.out.println("Starting test: " + CURRENT_TEST);
         InstrumentationCallback.executionStarted(CURRENT_TEST);
+        testCost.start();
       }
 
       
@@ -266,6 +279,7 @@ public class TestRunner {
           
           return;
         }
+        testCost.stop();
         passFail(!failed, result);
         InstrumentationCallback.executionEnded(CURRENT_TEST);
         if (failed) {
@@ -282,28 +296,40 @@ public class TestRunner {
       }
 
       void passFail(boolean isPassing, Description desc) {
-        if (testResultFilePath == null) {
+        if (testOutcomeJournal == null) {
           return;
         }
         try {
-          
-          BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
-              new FileOutputStream(testResultFilePath.toString(), true)));
-          String s = String.format("%s [%s]\n", CURRENT_TEST,  isPassing?"PASSED":"FAILED");
-          bw.write(s);
-          bw.flush();
-          bw.close();
-        } catch (FileNotFoundException e) {
-          e.printStackTrace();
+          testOutcomeJournal.append(new TestOutcomeJournal.Record(CURRENT_TEST, isPassing, 
+              testCost.getWallTimeNanos(), testCost.getCpuTimeNanos(), 
+              testCost.getAllocatedBytes()));
         } catch (IOException e) {
           e.printStackTrace();
         }
       }
     });
     
+    try {
+      runTests(junit, cmd);
+    } finally {
+      if (testOutcomeJournal != null) {
+        testOutcomeJournal.close();
+      }
+      if (coverageListener != null) {
+        coverageListener.close();
+      }
+    }
+  }
+  
+  private static void runTests(JUnitCore junit, CommandLine cmd) 
+      throws ParseException, ClassNotFoundException {
     String testMethods = cmd.getOptionValue("test_methods");
     String testClassesList = cmd.getOptionValue("testclasses");
-    if (testMethods != null && testMethods.length() > 0) {
+    boolean hasTestMethods = testMethods != null && testMethods.length() > 0;
+    if (!hasTestMethods && testClassesList == null) {
+      throw new ParseException("Either test_descs or testclass option should be specified.");
+    }
+    if (hasTestMethods) {
       String[] testMethodsArray = testMethods.split(Pattern.quote(","));
       for (String testMethod : testMethodsArray) {
         if (testMethod != null && testMethod.length() > 0) {
@@ -312,15 +338,87 @@ public class TestRunner {
               Class.forName(testMethodName.getClassName()), testMethodName.getMethodNameSig()));
         }
       }
-    } else if (testClassesList != null) {
+    }
+    if (testClassesList != null) {
       String[] testClassNames = testClassesList.split(Pattern.quote(","));
       Class<?>[] testClasses = new Class<?>[testClassNames.length];
       for (int i = 0; i < testClassNames.length; ++i) {
         testClasses[i] = Class.forName(testClassNames[i]);
       }
       junit.run(testClasses);
-    } else {
-      throw new ParseException("Either test_descs or testclass option should be specified.");
+    }
+  }
+  
+  /**
+   * Measures the wall time, CPU time and allocated bytes of the runner thread
+   * between start() and stop(). Work done by threads spawned by the test is
+   * not accounted for.
+   */
+  private static class TestCostMeter {
+    
+    private ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private com.sun.management.ThreadMXBean allocationBean;
+    
+    private long wallTimeStart;
+    private long cpuTimeStart;
+    private long allocatedBytesStart;
+    
+    private long wallTimeNanos;
+    private long cpuTimeNanos = -1;
+    private long allocatedBytes = -1;
+    
+    public TestCostMeter() {
+      if (threadBean.isCurrentThreadCpuTimeSupported() && !threadBean.isThreadCpuTimeEnabled()) {
+        threadBean.setThreadCpuTimeEnabled(true);
+      }
+      if (threadBean instanceof com.sun.management.ThreadMXBean) {
+        allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (allocationBean.isThreadAllocatedMemorySupported() 
+            && !allocationBean.isThreadAllocatedMemoryEnabled()) {
+          allocationBean.setThreadAllocatedMemoryEnabled(true);
+        }
+      }
+    }
+    
+    public void start() {
+      cpuTimeStart = getCurrentThreadCpuTime();
+      allocatedBytesStart = getCurrentThreadAllocatedBytes();
+      wallTimeStart = System.nanoTime();
+    }
+    
+    public void stop() {
+      wallTimeNanos = System.nanoTime() - wallTimeStart;
+      long cpuTimeEnd = getCurrentThreadCpuTime();
+      cpuTimeNanos = cpuTimeStart >= 0 && cpuTimeEnd >= 0 ? cpuTimeEnd - cpuTimeStart : -1;
+      long allocatedBytesEnd = getCurrentThreadAllocatedBytes();
+      allocatedBytes = allocatedBytesStart >= 0 && allocatedBytesEnd >= 0 
+          ? allocatedBytesEnd - allocatedBytesStart : -1;
+    }
+    
+    public long getWallTimeNanos() {
+      return wallTimeNanos;
+    }
+    
+    public long getCpuTimeNanos() {
+      return cpuTimeNanos;
+    }
+    
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+    
+    private long getCurrentThreadCpuTime() {
+      if (!threadBean.isThreadCpuTimeEnabled()) {
+        return -1;
+      }
+      return threadBean.getCurrentThreadCpuTime();
+    }
+    
+    private long getCurrentThreadAllocatedBytes() {
+      if (allocationBean == null || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+        return -1;
+      }
+      return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
     }
   }
 }
@@ -71,4 +71,8 @@ public class SourceLocationDB {
   public synchronized static SourceLocation getSourceLocationById(int sourceLocationId) {
     return sourceLocations.get(sourceLocationId);
   }
+  
+  public synchronized static int getNumSourceLocations() {
+    return sourceLocations.size();
+  }
 }
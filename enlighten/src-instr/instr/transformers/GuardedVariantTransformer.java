@@ -0,0 +1,141 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package instr.transformers;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+/**
+ * Keeps a memory-profiled variant of the body of selected methods next to
+ * the original body. A guard at the method entry reads
+ * InstrumentationCallback.memoryProfilingEnabled and jumps to one of the two,
+ * so memory profiling of these methods is switched on and off by setting the
+ * flag instead of retransforming the class. The variant lives in the same
+ * method because retransformation cannot add methods to a loaded class. The
+ * copied body ends with a return, throw or goto like any method body, so it
+ * never falls through into the original one. Local variable tables are not
+ * copied.
+ */
+public class GuardedVariantTransformer {
+
+  private static final String CALLBACK_CLASS_NAME = "instr/callback/InstrumentationCallback";
+  private static final String GUARD_FIELD_NAME = "memoryProfilingEnabled";
+
+  private Set<String> methodsToTransform;
+  private MemoryAccessTransformer memAccessTrans = new MemoryAccessTransformer();
+  private int numMethodsTransformed;
+
+  /**
+   * @param methodNameSigs name and descriptor of the methods to transform,
+   *     e.g. "foo(I)V"
+   */
+  public GuardedVariantTransformer(Set<String> methodNameSigs) {
+    methodsToTransform = methodNameSigs;
+  }
+
+  public void setSkipLocalAccesses(boolean skip) {
+    memAccessTrans.setSkipLocalAccesses(skip);
+  }
+
+  public int getNumMethodsTransformed() {
+    return numMethodsTransformed;
+  }
+
+  public int getNumProbesInserted() {
+    return memAccessTrans.getNumProbesInserted();
+  }
+
+  @SuppressWarnings("unchecked")
+  public void transform(ClassNode cn) {
+    for (MethodNode mn : (List<MethodNode>) cn.methods) {
+      if (!methodsToTransform.contains(mn.name + mn.desc)) {
+        continue;
+      }
+      MethodNode variant = copyMethodBody(mn);
+      int numProbesBefore = memAccessTrans.getNumProbesInserted();
+      if (!memAccessTrans.transform(cn.name, variant)
+          || memAccessTrans.getNumProbesInserted() == numProbesBefore) {
+        continue;
+      }
+      LabelNode originalBody = new LabelNode();
+      InsnList guardedVariant = new InsnList();
+      guardedVariant.add(new FieldInsnNode(
+          Opcodes.GETSTATIC, CALLBACK_CLASS_NAME, GUARD_FIELD_NAME, "Z"));
+      guardedVariant.add(new JumpInsnNode(Opcodes.IFEQ, originalBody));
+      guardedVariant.add(variant.instructions);
+      guardedVariant.add(originalBody);
+      mn.instructions.insert(guardedVariant);
+      mn.tryCatchBlocks.addAll(variant.tryCatchBlocks);
+      ++numMethodsTransformed;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static MethodNode copyMethodBody(MethodNode mn) {
+    Map<LabelNode, LabelNode> labelCopies = new HashMap<>();
+    Iterator<AbstractInsnNode> insnItr = mn.instructions.iterator();
+    while (insnItr.hasNext()) {
+      AbstractInsnNode insn = insnItr.next();
+      if (insn instanceof LabelNode) {
+        labelCopies.put((LabelNode) insn, new LabelNode());
+      }
+    }
+    MethodNode copy = new MethodNode(mn.access, mn.name, mn.desc, mn.signature, null);
+    insnItr = mn.instructions.iterator();
+    while (insnItr.hasNext()) {
+      copy.instructions.add(insnItr.next().clone(labelCopies));
+    }
+    for (TryCatchBlockNode tryCatch : (List<TryCatchBlockNode>) mn.tryCatchBlocks) {
+      copy.tryCatchBlocks.add(new TryCatchBlockNode(labelCopies.get(tryCatch.start),
+          labelCopies.get(tryCatch.end), labelCopies.get(tryCatch.handler), tryCatch.type));
+    }
+    copy.maxLocals = mn.maxLocals;
+    copy.maxStack = mn.maxStack;
+    return copy;
+  }
+}
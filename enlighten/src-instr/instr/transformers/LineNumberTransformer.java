@@ -40,20 +40,37 @@ import java.util.List;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
 import org.objectweb.asm.tree.FrameNode;
 import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
 import org.objectweb.asm.tree.LabelNode;
 import org.objectweb.asm.tree.LineNumberNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import anonymous.domain.enlighten.data.SourceLocation;
+import instr.agent.InstrumenterConfig.CoverageMode;
 import instr.staticinfo.SourceLocationDB;
 
 public class LineNumberTransformer {
   
   private static final int INSTRUMENT_LINE_METHOD_SIZE_LIMIT = 5000;
   
+  private static final String CALLBACK_CLASS_NAME = "instr/callback/InstrumentationCallback";
+  
+  private CoverageMode coverageMode = CoverageMode.EVERY_HIT;
+  
+  /**
+   * In FIRST_HIT and SAMPLED_COUNT modes a probe checks its entry of an
+   * inline array of InstrumentationCallback before calling back, see
+   * InstrumentationCallback.ensureSourceLocationProbeCapacity.
+   */
+  public void setCoverageMode(CoverageMode mode) {
+    coverageMode = mode;
+  }
+  
   @SuppressWarnings("unchecked")
   public void transform(ClassNode cn) {
     List<MethodNode> allMethods = cn.methods;
@@ -94,9 +111,36 @@ public class LineNumberTransformer {
     } else {
       sourceLocationId = SourceLocationDB.addSourceLocation(sourceLocation);
     }
+    LabelNode skipCallback = new LabelNode();
+    switch (coverageMode) {
+    case FIRST_HIT:
+      il.add(new FieldInsnNode(Opcodes.GETSTATIC, CALLBACK_CLASS_NAME, 
+          "sourceLocationCovered", "[Z"));
+      il.add(BytecodeUtils.getPushIntInsn(sourceLocationId));
+      il.add(new InsnNode(Opcodes.BALOAD));
+      il.add(new JumpInsnNode(Opcodes.IFNE, skipCallback));
+      break;
+    case SAMPLED_COUNT:
+      il.add(new FieldInsnNode(Opcodes.GETSTATIC, CALLBACK_CLASS_NAME, 
+          "sourceLocationSampleCountdowns", "[I"));
+      il.add(BytecodeUtils.getPushIntInsn(sourceLocationId));
+      il.add(new InsnNode(Opcodes.DUP2));
+      il.add(new InsnNode(Opcodes.IALOAD));
+      il.add(new InsnNode(Opcodes.ICONST_1));
+      il.add(new InsnNode(Opcodes.ISUB));
+      il.add(new InsnNode(Opcodes.DUP_X2));
+      il.add(new InsnNode(Opcodes.IASTORE));
+      il.add(new JumpInsnNode(Opcodes.IFGT, skipCallback));
+      break;
+    default:
+      break;
+    }
     il.add(BytecodeUtils.getPushIntInsn(sourceLocationId));
-    il.add(new MethodInsnNode(Opcodes.INVOKESTATIC, "instr/callback/InstrumentationCallback", 
+    il.add(new MethodInsnNode(Opcodes.INVOKESTATIC, CALLBACK_CLASS_NAME, 
         "executeSourceLocation", "(I)V", false));
+    if (coverageMode != CoverageMode.EVERY_HIT) {
+      il.add(skipCallback);
+    }
     return il;
   }
   
@@ -0,0 +1,277 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package instr.transformers;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.Value;
+
+/**
+ * Intra-procedural escape analysis of the objects and arrays allocated by a
+ * method. An allocation escapes if a reference to it may be stored into a
+ * field, a static field or an array, passed to a method (except the constructor
+ * of java.lang.Object), returned or thrown. Objects that do not escape are only
+ * accessed by the allocating invocation, so the memory access probes on them
+ * can be skipped: the reads are preceded by the writes recorded on allocation,
+ * and the writes are not reachable from the outputs of the invocation.
+ * 
+ * MULTIANEWARRAY allocations are never considered local, since the nested
+ * arrays are loaded as unknown references.
+ */
+public class LocalAllocationAnalysis {
+  
+  private String owner;
+  private MethodNode method;
+  private Frame[] frames;
+  private Set<AbstractInsnNode> escapedSites = new HashSet<>();
+  
+  public LocalAllocationAnalysis(String owner, MethodNode method) {
+    this.owner = owner;
+    this.method = method;
+  }
+  
+  /**
+   * Returns the field accesses, array element accesses and allocations of the
+   * method that only concern non-escaping allocations. Returns an empty set if
+   * the method cannot be analyzed.
+   */
+  public Set<AbstractInsnNode> findLocalAccesses() {
+    Analyzer analyzer = new Analyzer(new AllocationInterpreter());
+    try {
+      frames = analyzer.analyze(owner, method);
+    } catch (AnalyzerException ex) {
+      return Collections.emptySet();
+    }
+    InsnList insns = method.instructions;
+    for (int i = 0; i < insns.size(); ++i) {
+      if (frames[i] != null) {
+        markEscapes(insns.get(i), frames[i]);
+      }
+    }
+    Set<AbstractInsnNode> localAccesses = new HashSet<>();
+    for (int i = 0; i < insns.size(); ++i) {
+      if (frames[i] == null) {
+        continue;
+      }
+      AbstractInsnNode insn = insns.get(i);
+      Value target = getAccessedObject(insn, frames[i]);
+      if (target != null && isLocal(target)) {
+        localAccesses.add(insn);
+      } else if (isLocalAllocationSite(insn) && !escapedSites.contains(insn)) {
+        localAccesses.add(insn);
+      }
+    }
+    return localAccesses;
+  }
+  
+  private void markEscapes(AbstractInsnNode insn, Frame frame) {
+    int stackSize = frame.getStackSize();
+    switch (insn.getOpcode()) {
+    case Opcodes.PUTFIELD:
+    case Opcodes.PUTSTATIC:
+    case Opcodes.AASTORE:
+    case Opcodes.ARETURN:
+    case Opcodes.ATHROW:
+      markEscaped(frame.getStack(stackSize - 1));
+      break;
+    case Opcodes.INVOKEVIRTUAL:
+    case Opcodes.INVOKESPECIAL:
+    case Opcodes.INVOKESTATIC:
+    case Opcodes.INVOKEINTERFACE:
+    case Opcodes.INVOKEDYNAMIC:
+      int numArgs = Type.getArgumentTypes(getInvocationDesc(insn)).length;
+      if (insn.getOpcode() != Opcodes.INVOKESTATIC && insn.getOpcode() != Opcodes.INVOKEDYNAMIC
+          && !isObjectConstructorCall(insn)) {
+        ++numArgs;
+      }
+      for (int i = stackSize - numArgs; i < stackSize; ++i) {
+        markEscaped(frame.getStack(i));
+      }
+      break;
+    }
+  }
+  
+  private void markEscaped(Value value) {
+    if (value instanceof AllocationValue) {
+      escapedSites.addAll(((AllocationValue) value).sites);
+    }
+  }
+  
+  private boolean isLocal(Value value) {
+    if (!(value instanceof AllocationValue)) {
+      return false;
+    }
+    AllocationValue allocValue = (AllocationValue) value;
+    if (allocValue.unknown) {
+      return false;
+    }
+    for (AbstractInsnNode site : allocValue.sites) {
+      if (escapedSites.contains(site)) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  private static Value getAccessedObject(AbstractInsnNode insn, Frame frame) {
+    int stackSize = frame.getStackSize();
+    int opCode = insn.getOpcode();
+    if (opCode == Opcodes.GETFIELD) {
+      return frame.getStack(stackSize - 1);
+    } else if (opCode == Opcodes.PUTFIELD) {
+      return frame.getStack(stackSize - 2);
+    } else if (opCode >= Opcodes.IALOAD && opCode <= Opcodes.SALOAD) {
+      return frame.getStack(stackSize - 2);
+    } else if (opCode >= Opcodes.IASTORE && opCode <= Opcodes.SASTORE) {
+      return frame.getStack(stackSize - 3);
+    }
+    return null;
+  }
+  
+  private static boolean isLocalAllocationSite(AbstractInsnNode insn) {
+    int opCode = insn.getOpcode();
+    return opCode == Opcodes.NEW || opCode == Opcodes.NEWARRAY || opCode == Opcodes.ANEWARRAY;
+  }
+  
+  private static String getInvocationDesc(AbstractInsnNode insn) {
+    if (insn instanceof MethodInsnNode) {
+      return ((MethodInsnNode) insn).desc;
+    }
+    return ((InvokeDynamicInsnNode) insn).desc;
+  }
+  
+  private static boolean isObjectConstructorCall(AbstractInsnNode insn) {
+    if (insn.getOpcode() != Opcodes.INVOKESPECIAL) {
+      return false;
+    }
+    MethodInsnNode invokeInsn = (MethodInsnNode) insn;
+    return "java/lang/Object".equals(invokeInsn.owner) && "<init>".equals(invokeInsn.name);
+  }
+  
+  /*
+   * A reference that may point to the objects allocated at the given sites, or,
+   * if unknown is set, to any other object.
+   */
+  private static class AllocationValue extends BasicValue {
+    
+    private Set<AbstractInsnNode> sites;
+    private boolean unknown;
+    
+    AllocationValue(Set<AbstractInsnNode> sites, boolean unknown) {
+      super(BasicValue.REFERENCE_VALUE.getType());
+      this.sites = sites;
+      this.unknown = unknown;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof AllocationValue) {
+        AllocationValue another = (AllocationValue) o;
+        return unknown == another.unknown && sites.equals(another.sites);
+      }
+      return false;
+    }
+    
+    @Override
+    public int hashCode() {
+      return sites.hashCode() ^ (unknown ? 1 : 0);
+    }
+  }
+  
+  private static class AllocationInterpreter extends BasicInterpreter {
+    
+    AllocationInterpreter() {
+      super(ASM5);
+    }
+    
+    @Override
+    public BasicValue newOperation(AbstractInsnNode insn) throws AnalyzerException {
+      if (insn.getOpcode() == Opcodes.NEW) {
+        return new AllocationValue(Collections.singleton(insn), false);
+      }
+      return super.newOperation(insn);
+    }
+    
+    @Override
+    public BasicValue unaryOperation(AbstractInsnNode insn, BasicValue value) 
+        throws AnalyzerException {
+      int opCode = insn.getOpcode();
+      if (opCode == Opcodes.NEWARRAY || opCode == Opcodes.ANEWARRAY) {
+        return new AllocationValue(Collections.singleton(insn), false);
+      } else if (opCode == Opcodes.CHECKCAST && value instanceof AllocationValue) {
+        return value;
+      }
+      return super.unaryOperation(insn, value);
+    }
+    
+    @Override
+    public BasicValue merge(BasicValue v, BasicValue w) {
+      if (!(v instanceof AllocationValue) && !(w instanceof AllocationValue)) {
+        return super.merge(v, w);
+      }
+      if (!v.isReference() || !w.isReference()) {
+        return BasicValue.UNINITIALIZED_VALUE;
+      }
+      if (v.equals(w)) {
+        return v;
+      }
+      Set<AbstractInsnNode> sites = new HashSet<>();
+      boolean unknown = false;
+      for (BasicValue value : new BasicValue[] { v, w }) {
+        if (value instanceof AllocationValue) {
+          sites.addAll(((AllocationValue) value).sites);
+          unknown |= ((AllocationValue) value).unknown;
+        } else {
+          unknown = true;
+        }
+      }
+      return new AllocationValue(sites, unknown);
+    }
+  }
+}
@@ -34,8 +34,10 @@
 
 package instr.transformers;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -55,39 +57,81 @@ public class MemoryAccessTransformer {
   private static final String CALLBACK_CLASS_NAME = "instr/callback/InstrumentationCallback";
   private static final int INSTRUMENT_MACCESS_METHOD_SIZE_LIMIT = 5000;
   
+  private boolean skipLocalAccesses;
+  private int numProbesInserted;
+  private int numProbesSkipped;
+  
+  /**
+   * If set, accesses to objects and arrays that do not escape the allocating
+   * method are not probed. See {@link LocalAllocationAnalysis}.
+   */
+  public void setSkipLocalAccesses(boolean skip) {
+    skipLocalAccesses = skip;
+  }
+  
+  public int getNumProbesInserted() {
+    return numProbesInserted;
+  }
+  
+  public int getNumProbesSkipped() {
+    return numProbesSkipped;
+  }
+  
   @SuppressWarnings("unchecked")
   public void transform(ClassNode cn) {
     for (MethodNode mn : (List<MethodNode>) cn.methods) {
-      InsnList insns = mn.instructions;
-      if (insns.size() == 0) { 
+      transform(cn.name, mn);
+    } 
+  }
+  
+  /**
+   * Instruments the memory accesses of a single method of class owner.
+   * 
+   * @return false if the method has no code or is too large to be instrumented
+   */
+  @SuppressWarnings("unchecked")
+  public boolean transform(String owner, MethodNode mn) {
+    InsnList insns = mn.instructions;
+    if (insns.size() == 0) { 
+      return false;
+    }
+    if (insns.size() >= INSTRUMENT_MACCESS_METHOD_SIZE_LIMIT) {
+      System.err.println("Warning: method body of " 
+          + owner + "." + mn.name + mn.desc + " is too large.\n"
+          + "Skipping instrumenting memory access instructions on this method.");
+      return false;
+    }
+    Set<AbstractInsnNode> localAccesses = Collections.emptySet();
+    if (skipLocalAccesses) {
+      localAccesses = new LocalAllocationAnalysis(owner, mn).findLocalAccesses();
+    }
+    Iterator<AbstractInsnNode> insnItr = insns.iterator();
+    while (insnItr.hasNext()) {
+      AbstractInsnNode insn = insnItr.next();
+      int op = insn.getOpcode();
+      if (localAccesses.contains(insn)) {
+        ++numProbesSkipped;
         continue;
       }
-      if (insns.size() >= INSTRUMENT_MACCESS_METHOD_SIZE_LIMIT) {
-        System.err.println("Warning: method body of " 
-            + cn.name + "." + mn.name + mn.desc + " is too large.\n"
-            + "Skipping instrumenting memory access instructions on this method.");
+      if (isArrayElementAccessInsn(insn)) {
+        InsnList list = getArrayElementAccessProbingInstr(insn);
+        insns.insertBefore(insn, list);
+      } else if (insn instanceof FieldInsnNode) {
+        FieldInsnNode fieldInsn = (FieldInsnNode)insn;
+        InsnList list = getFieldAccessProbingInstr(fieldInsn);
+        insns.insertBefore(insn, list);
+      } else if (op == Opcodes.NEW) {
+        insns.insert(insn, getNewObjectProbingInstr());
+      } else if (isNewArrayInsn(insn)) {
+        insns.insert(insn, getNewArrayProbingInstr());
+      } else if (isSystemArrayCopy(insn)) {
+        insns.insertBefore(insn, getSysArrayCopyProbingInstr());
+      } else {
         continue;
       }
-      Iterator<AbstractInsnNode> insnItr = insns.iterator();
-      while (insnItr.hasNext()) {
-        AbstractInsnNode insn = insnItr.next();
-        int op = insn.getOpcode();
-        if (isArrayElementAccessInsn(insn)) {
-          InsnList list = getArrayElementAccessProbingInstr(insn);
-          insns.insertBefore(insn, list);
-        } else if (insn instanceof FieldInsnNode) {
-          FieldInsnNode fieldInsn = (FieldInsnNode)insn;
-          InsnList list = getFieldAccessProbingInstr(fieldInsn);
-          insns.insertBefore(insn, list);
-        } else if (op == Opcodes.NEW) {
-          insns.insert(insn, getNewObjectProbingInstr());
-        } else if (isNewArrayInsn(insn)) {
-          insns.insert(insn, getNewArrayProbingInstr());
-        } else if (isSystemArrayCopy(insn)) {
-          insns.insertBefore(insn, getSysArrayCopyProbingInstr());
-        }
-      }
-    } 
+      ++numProbesInserted;
+    }
+    return true;
   }
   
   private boolean isArrayElementAccessInsn(AbstractInsnNode insn) {
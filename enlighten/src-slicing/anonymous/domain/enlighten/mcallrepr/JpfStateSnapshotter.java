@@ -51,9 +51,12 @@ import anonymous.domain.enlighten.mcallrepr.MethodCallSpecialRefName;
 import anonymous.domain.enlighten.mcallrepr.NullRepr;
 import anonymous.domain.enlighten.mcallrepr.PrimitiveRepr;
 import anonymous.domain.enlighten.mcallrepr.ReflectedObjectRepr;
+import anonymous.domain.enlighten.mcallrepr.TruncatedRepr;
 import anonymous.domain.enlighten.mcallrepr.ValueGraphNode;
 import anonymous.domain.enlighten.mcallrepr.VoidRepr;
+import anonymous.domain.enlighten.publish.PhaseTelemetry;
 import anonymous.domain.enlighten.slicing.util.JpfEntityConversion;
+import gov.nasa.jpf.Config;
 import gov.nasa.jpf.jvm.bytecode.JVMReturnInstruction;
 import gov.nasa.jpf.vm.ClassInfo;
 import gov.nasa.jpf.vm.ElementInfo;
@@ -69,7 +72,49 @@ public class JpfStateSnapshotter {
   
   private IdentityHashMap<ElementInfo, ValueGraphNode> visited = new IdentityHashMap<>();
   
+  private SnapshotBudget budget;
+  private int numObjects;
+  private int numTruncated;
+  
+  public JpfStateSnapshotter() {
+    this(SnapshotBudget.unlimited());
+  }
+  
+  public JpfStateSnapshotter(Config config) {
+    this(SnapshotBudget.fromConfig(config));
+  }
+  
+  public JpfStateSnapshotter(SnapshotBudget budget) {
+    this.budget = budget;
+  }
+  
+  public SnapshotBudget getBudget() {
+    return budget;
+  }
+  
+  public int getNumCapturedObjects() {
+    return numObjects;
+  }
+  
+  /**
+   * Number of truncation markers created so far.
+   */
+  public int getNumTruncated() {
+    return numTruncated;
+  }
+  
   public MethodCallRepr fromStackFrame(ThreadInfo ti, StackFrame methodStackFrame) {
+    PhaseTelemetry.Span span = PhaseTelemetry.startSpan("snapshot");
+    int startNumObjects = numObjects;
+    try {
+      return doFromStackFrame(ti, methodStackFrame);
+    } finally {
+      span.end();
+      PhaseTelemetry.recordValue("snapshot.objects", numObjects - startNumObjects);
+    }
+  }
+  
+  private MethodCallRepr doFromStackFrame(ThreadInfo ti, StackFrame methodStackFrame) {
     MethodInfo methodInfo = methodStackFrame.getMethodInfo();
     MethodCallRepr invocationRepr = new MethodCallRepr(
         "", methodInfo.getClassName(), methodInfo.getName() + methodInfo.getSignature());
@@ -89,7 +134,7 @@ public class JpfStateSnapshotter {
         byte argTypeCode = Types.getBuiltinTypeFromSignature(argInfo.getSignature());
         ValueGraphNode objRepr = null;
         if (argTypeCode == Types.T_ARRAY || argTypeCode == Types.T_REFERENCE) {
-          objRepr = fromElementInfo(ti, (ElementInfo) argValueObj);
+          objRepr = fromElementInfo(ti, (ElementInfo) argValueObj, 0);
         } else {
           objRepr = fromBoxedPrimitive(argValueObj);
         }
@@ -127,7 +172,7 @@ public class JpfStateSnapshotter {
       case Types.T_REFERENCE:
         int objRef = methodStackFrame.peek();
         ElementInfo retObj = ti.getElementInfo(objRef);
-        invocationRepr.setReturnVal(fromElementInfo(ti, retObj));
+        invocationRepr.setReturnVal(fromElementInfo(ti, retObj, 0));
         break;
       case Types.T_BOOLEAN:
         int retValue = methodStackFrame.peek();
@@ -177,7 +222,7 @@ public class JpfStateSnapshotter {
 
         ElementInfo exceptionObj = xInfo.getException();
         DynamicDependency exceptionDep = xInfo.getDependency();
-        invocationRepr.setException(fromElementInfo(ti, exceptionObj));
+        invocationRepr.setException(fromElementInfo(ti, exceptionObj, 0));
         if (exceptionDep != null) {
           MemberRefDepAnnotator.annotateDependency(invocationRepr, 
               MethodCallSpecialRefName.exceptionThrown(), exceptionDep);
@@ -188,19 +233,44 @@ public class JpfStateSnapshotter {
   }
 
   public ValueGraphNode fromElementInfo(ThreadInfo ti, ElementInfo value) {
+    return fromElementInfo(ti, value, 0);
+  }
+  
+  private ValueGraphNode fromElementInfo(ThreadInfo ti, ElementInfo value, int depth) {
     if (value == null) {
       return NullRepr.get();
     }
     if (visited.containsKey(value)) {
       return visited.get(value);
     }
+    if (depth > budget.getMaxDepth()) {
+      return truncate(value, TruncatedRepr.Reason.MAX_DEPTH);
+    }
+    if (numObjects >= budget.getMaxObjects()) {
+      return truncate(value, TruncatedRepr.Reason.MAX_OBJECTS);
+    }
+    ++numObjects;
     if (value.isArray()) {
       ArrayRepr repr = new ArrayRepr(
           value.getClassInfo().getName(), System.identityHashCode(value));
       visited.put(value, repr);
       int arrayLength = value.getArrayFields().arrayLength();
+      int headLength = arrayLength;
+      int tailStart = arrayLength;
+      if (arrayLength > budget.getMaxArrayElements()) {
+        headLength = (budget.getMaxArrayElements() + 1) / 2;
+        tailStart = arrayLength - (budget.getMaxArrayElements() - headLength);
+      }
       List<ValueGraphNode> elementReprList = new ArrayList<>();
+      List<ValueGraphNode> tailReprList = elementReprList;
       for (int i = 0; i < arrayLength; ++i) {
+        if (i == headLength && tailStart > headLength) {
+          tailReprList = new ArrayList<>();
+          i = tailStart;
+          if (i == arrayLength) {
+            break;
+          }
+        }
         Object elementAttr = value.getElementAttr(i);
         DynamicDependency elementDep = 
             JpfEntityConversion.getDynamicDependencyFromAttr(elementAttr);
@@ -209,31 +279,31 @@ public class JpfStateSnapshotter {
         case Types.T_REFERENCE:
           int objRef = value.getReferenceElement(i);
           ElementInfo arrElement = ti.getElementInfo(objRef);
-          elementReprList.add(fromElementInfo(ti, arrElement));
+          tailReprList.add(fromElementInfo(ti, arrElement, depth + 1));
           break;
         case Types.T_BOOLEAN:
-          elementReprList.add(fromPrimitive(value.getBooleanElement(i)));
+          tailReprList.add(fromPrimitive(value.getBooleanElement(i)));
           break;
         case Types.T_BYTE:
-          elementReprList.add(fromPrimitive(value.getByteElement(i)));
+          tailReprList.add(fromPrimitive(value.getByteElement(i)));
           break;
         case Types.T_CHAR:
-          elementReprList.add(fromPrimitive(value.getCharElement(i)));
+          tailReprList.add(fromPrimitive(value.getCharElement(i)));
           break;
         case Types.T_SHORT:
-          elementReprList.add(fromPrimitive(value.getShortElement(i)));
+          tailReprList.add(fromPrimitive(value.getShortElement(i)));
           break;
         case Types.T_INT:
-          elementReprList.add(fromPrimitive(value.getIntElement(i)));
+          tailReprList.add(fromPrimitive(value.getIntElement(i)));
           break;
         case Types.T_LONG:
-          elementReprList.add(fromPrimitive(value.getLongElement(i)));
+          tailReprList.add(fromPrimitive(value.getLongElement(i)));
           break;
         case Types.T_FLOAT:
-          elementReprList.add(fromPrimitive(value.getFloatElement(i)));
+          tailReprList.add(fromPrimitive(value.getFloatElement(i)));
           break;
         case Types.T_DOUBLE:
-          elementReprList.add(fromPrimitive(value.getDoubleElement(i)));
+          tailReprList.add(fromPrimitive(value.getDoubleElement(i)));
           break;
         default:
           throw new RuntimeException("Unexpected array element type: " + value.getArrayType());
@@ -242,7 +312,15 @@ public class JpfStateSnapshotter {
           MemberRefDepAnnotator.annotateDependency(repr, new ArrayElementRefName(i), elementDep);
         }
       }
-      repr.setElements(new PrimitiveRepr("int", arrayLength), elementReprList);
+      if (tailReprList == elementReprList) {
+        repr.setElements(new PrimitiveRepr("int", arrayLength), elementReprList);
+      } else {
+        ++numTruncated;
+        repr.setSampledElements(new PrimitiveRepr("int", arrayLength), 
+            elementReprList, tailReprList, new TruncatedRepr(value.getArrayType(), 
+                System.identityHashCode(value), TruncatedRepr.Reason.ARRAY_ELEMENTS, 
+                tailStart - headLength));
+      }
       DynamicDependency arrayLengthDep = null;
       ArrayProperty arrayProp = (ArrayProperty) value.getObjectAttr();
       if (arrayProp != null) {
@@ -266,7 +344,7 @@ public class JpfStateSnapshotter {
         case Types.T_REFERENCE:
           int objRef = value.getReferenceField(field);
           ElementInfo fieldElement = ti.getElementInfo(objRef);
-          repr.putField(field.getName(), fromElementInfo(ti, fieldElement));
+          repr.putField(field.getName(), fromElementInfo(ti, fieldElement, depth + 1));
           break;
         case Types.T_BOOLEAN:
           repr.putField(field.getName(), fromPrimitive(value.getBooleanField(field)));
@@ -303,6 +381,12 @@ public class JpfStateSnapshotter {
       return repr;
     }
   }
+  
+  private TruncatedRepr truncate(ElementInfo value, TruncatedRepr.Reason reason) {
+    ++numTruncated;
+    return new TruncatedRepr(
+        value.getClassInfo().getName(), System.identityHashCode(value), reason);
+  }
 
   public static ValueGraphNode fromBoxedPrimitive(Object boxedPrimitive) {
     if (boxedPrimitive instanceof Boolean) {
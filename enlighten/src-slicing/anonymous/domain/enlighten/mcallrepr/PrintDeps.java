@@ -175,6 +175,13 @@ public class PrintDeps {
             MemberRefDepAnnotator.getDependency(arepr, ArrayLengthRefName.get())) + "\n");
     List<ValueGraphNode> elements = arepr.getElements();
     for (int index = 0; index < elements.size(); ++index) {
+      if (index == arepr.getOmittedFrom()) {
+        int lastOmitted = index + arepr.getOmittedCount() - 1;
+        buf.append(elementIndent + "[" + index + ".." + lastOmitted + "] => " 
+            + elements.get(index) + "\n");
+        index = lastOmitted;
+        continue;
+      }
       buf.append(elementIndent + "[" + index + "] => " 
           + visit(elements.get(index), elementIndent + " ", 
               MemberRefDepAnnotator.getDependency(arepr, new ArrayElementRefName(index))) + "\n");
@@ -0,0 +1,126 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package anonymous.domain.enlighten.mcallrepr;
+
+import gov.nasa.jpf.Config;
+
+/**
+ * Limits on how much of the heap a {@link JpfStateSnapshotter} captures.
+ * 
+ * Objects deeper than the max depth, or found after the max number of
+ * objects has been captured, are replaced by {@link TruncatedRepr} markers.
+ * Arrays longer than the max number of elements keep only their head and
+ * tail.
+ */
+public class SnapshotBudget {
+  
+  public static final int UNLIMITED = Integer.MAX_VALUE;
+  
+  public static final String CONFIG_PREFIX = "enlighten.snapshot.";
+  
+  private static final SnapshotBudget unlimited = 
+      new SnapshotBudget(UNLIMITED, UNLIMITED, UNLIMITED);
+  
+  private int maxDepth;
+  private int maxObjects;
+  private int maxArrayElements;
+  
+  public static SnapshotBudget unlimited() {
+    return unlimited;
+  }
+  
+  /**
+   * Reads the budget from the "enlighten.snapshot.*" entries of a JPF
+   * config, which SubjectProgramJPFRunner passes on from the system
+   * properties. A missing or negative limit means unlimited.
+   */
+  public static SnapshotBudget fromConfig(Config config) {
+    int maxDepth = getLimit(config, CONFIG_PREFIX + "max_depth");
+    int maxObjects = getLimit(config, CONFIG_PREFIX + "max_objects");
+    int maxArrayElements = getLimit(config, CONFIG_PREFIX + "max_array_elements");
+    if (maxDepth == UNLIMITED && maxObjects == UNLIMITED 
+        && maxArrayElements == UNLIMITED) {
+      return unlimited;
+    }
+    return new SnapshotBudget(maxDepth, maxObjects, maxArrayElements);
+  }
+  
+  private static int getLimit(Config config, String key) {
+    int limit = config.getInt(key, -1);
+    return limit < 0 ? UNLIMITED : limit;
+  }
+  
+  public SnapshotBudget(int maxDepth, int maxObjects, int maxArrayElements) {
+    if (maxDepth < 0 || maxObjects < 0 || maxArrayElements < 0) {
+      throw new IllegalArgumentException("Snapshot budget limits must not be negative.");
+    }
+    this.maxDepth = maxDepth;
+    this.maxObjects = maxObjects;
+    this.maxArrayElements = maxArrayElements;
+  }
+  
+  /**
+   * Number of reference hops from the arguments, the receiver and the return
+   * value or exception of a frame to the deepest object that is captured.
+   * The objects directly held by the frame are at depth 0.
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+  
+  public int getMaxObjects() {
+    return maxObjects;
+  }
+  
+  /**
+   * Number of elements captured per array. The first half comes from the
+   * head of the array and the rest from its tail.
+   */
+  public int getMaxArrayElements() {
+    return maxArrayElements;
+  }
+  
+  public boolean isUnlimited() {
+    return maxDepth == UNLIMITED && maxObjects == UNLIMITED 
+        && maxArrayElements == UNLIMITED;
+  }
+  
+  @Override
+  public String toString() {
+    return String.format("maxDepth=%d, maxObjects=%d, maxArrayElements=%d", 
+        maxDepth, maxObjects, maxArrayElements);
+  }
+}
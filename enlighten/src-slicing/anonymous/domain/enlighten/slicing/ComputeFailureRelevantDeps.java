@@ -34,12 +34,12 @@
 
 package anonymous.domain.enlighten.slicing;
 
-import java.util.Set;
-
 import anonymous.domain.enlighten.data.ExecutionProfile;
 import anonymous.domain.enlighten.data.MethodInvocation;
 import anonymous.domain.enlighten.deptrack.DynamicDependency;
 import anonymous.domain.enlighten.deptrack.InstructionDependencySource;
+import anonymous.domain.enlighten.slicing.util.BackwardSliceEngine;
+import anonymous.domain.enlighten.slicing.util.DepIdSet;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
 import gov.nasa.jpf.vm.DependencyTrackingInstruction;
 import gov.nasa.jpf.vm.ExceptionInfo;
@@ -47,14 +47,15 @@ import gov.nasa.jpf.vm.ThreadInfo;
 
 public class ComputeFailureRelevantDeps extends ExecTreeProcessingListener {
   
-  private Set<Long> relevantDepIds;
+  private BackwardSliceEngine sliceEngine = new BackwardSliceEngine();
+  private DepIdSet relevantDepIds;
 
   public ComputeFailureRelevantDeps(SubjectProgram subject,
       ExecutionProfile profile) {
     super(subject, profile);
   }
   
-  public Set<Long> getRelevantDepIds() {
+  public DepIdSet getRelevantDepIds() {
     return relevantDepIds;
   }
 
@@ -80,7 +81,7 @@ public class ComputeFailureRelevantDeps extends ExecTreeProcessingListener {
       }
       disableListener();
       DynamicDependency exDep = exInfo.getDependency();
-      relevantDepIds = GetDepGraphNodeIds.getDepGraphNodeIds(exDep);
+      relevantDepIds = GetDepGraphNodeIds.getDepGraphNodeIds(sliceEngine, exDep);
       currentThread.getVM().terminateProcess(currentThread);
     }
   }
@@ -101,6 +101,9 @@ public class ComputeFailureRelevantInvocation extends ExecTreeProcessingListener
 
     @Override
     protected boolean visit(DynamicDependency depNode) {
+      if (depNode instanceof InstructionDependencySource) {
+        return false;
+      }
       long instanceIndex = depNode.getInstanceIndex();
 
       String depGeneratingInsnDesc = getGeneratingInstructionInfo(depNode);
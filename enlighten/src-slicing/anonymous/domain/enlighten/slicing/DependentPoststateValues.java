@@ -46,6 +46,7 @@ import anonymous.domain.enlighten.data.SourceLocation;
 import anonymous.domain.enlighten.data.TestName;
 import anonymous.domain.enlighten.deptrack.CompositeDynamicDependency;
 import anonymous.domain.enlighten.deptrack.DependencyCreationListener;
+import anonymous.domain.enlighten.deptrack.DynDepUtils;
 import anonymous.domain.enlighten.deptrack.DynamicDependency;
 import anonymous.domain.enlighten.deptrack.InstructionDependencySource;
 import anonymous.domain.enlighten.refpath.RefPath;
@@ -74,9 +75,11 @@ public class DependentPoststateValues extends ExecTreeProcessingListener
 
   @Override
   public void dependencyCreated(DynamicDependency dep) {
-    if (dep instanceof InstructionDependencySource) {
-      DependencyTrackingInstruction insn = 
-          ((InstructionDependencySource) dep).getSourceInstruction();
+    if (!(dep instanceof CompositeDynamicDependency)) {
+      return;
+    }
+    DependencyTrackingInstruction insn = DynDepUtils.getSourceInstruction(dep);
+    if (insn != null) {
       SourceLocation srcLoc = JpfEntityConversion.getSourceLocationFromInstruction(insn);
       if (srcLoc.equals(criterionSrcLoc)) {
         dep.addAnnotation(DependentMark.getInstance());
@@ -87,14 +90,14 @@ public class DependentPoststateValues extends ExecTreeProcessingListener
           }
           invocNode = invocNode.getEnclosingInvocation();
         }
+        return;
       }
-    } else if (dep instanceof CompositeDynamicDependency) {
-      List<DynamicDependency> upStreams = ((CompositeDynamicDependency) dep).getAllDependencies();
-      for (DynamicDependency upStream : upStreams) {
-        if (upStream.getAnnotation(DependentMark.class) != null) {
-          dep.addAnnotation(DependentMark.getInstance());
-          break;
-        }
+    }
+    List<DynamicDependency> upStreams = ((CompositeDynamicDependency) dep).getAllDependencies();
+    for (DynamicDependency upStream : upStreams) {
+      if (upStream.getAnnotation(DependentMark.class) != null) {
+        dep.addAnnotation(DependentMark.getInstance());
+        break;
       }
     }
   }
@@ -42,6 +42,7 @@ import anonymous.domain.enlighten.data.ExecutionProfile;
 import anonymous.domain.enlighten.data.MethodInvocation;
 import anonymous.domain.enlighten.data.SourceLocation;
 import anonymous.domain.enlighten.refpath.RefPath;
+import anonymous.domain.enlighten.slicing.util.DepIdSet;
 import anonymous.domain.enlighten.susp.FaultLocalization;
 
 public class FieldSelectionCriterionAlt2 {
@@ -51,5 +52,5 @@ public class FieldSelectionCriterionAlt2 {
   public Map<MethodInvocation, Set<RefPath>> correctValues;
   public Map<MethodInvocation, Set<RefPath>> incorrectOutputValues;
   public Map<MethodInvocation, Set<RefPath>> incorrectInputValues;
-  public List<Set<Long>> incorrectValueRelevantDepIdList;
+  public List<DepIdSet> incorrectValueRelevantDepIdList;
 }
@@ -39,6 +39,7 @@ import java.util.List;
 import anonymous.domain.enlighten.MethodInvocationSelection;
 import anonymous.domain.enlighten.mcallrepr.MethodCallRepr;
 import anonymous.domain.enlighten.refpath.RefPath;
+import anonymous.domain.enlighten.slicing.util.BackwardSliceEngine;
 import anonymous.domain.enlighten.util.Pair;
 
 public class FieldSelectionResult {
@@ -47,6 +48,7 @@ public class FieldSelectionResult {
   private MethodCallRepr invocationPreStates;
   private MethodCallRepr invocationPostStates;
   private List<Pair<RefPath, Double>> orderedSuspiciousFields;
+  private BackwardSliceEngine sliceEngine = new BackwardSliceEngine();
   
   public FieldSelectionResult(MethodInvocationSelection invocation, MethodCallRepr preStates, 
       MethodCallRepr postStates, List<Pair<RefPath, Double>> orderedSuspiciousFields) {
@@ -76,4 +78,8 @@ public class FieldSelectionResult {
   public List<Pair<RefPath, Double>> getOrderedSuspiciousFields() {
     return orderedSuspiciousFields;
   }
+  
+  public BackwardSliceEngine getSliceEngine() {
+    return sliceEngine;
+  }
 }
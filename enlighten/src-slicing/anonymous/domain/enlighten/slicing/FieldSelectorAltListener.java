@@ -50,6 +50,8 @@ import com.google.common.collect.RangeSet;
 import anonymous.domain.enlighten.annotation.ValueAnnotation;
 import anonymous.domain.enlighten.data.MethodInvocation;
 import anonymous.domain.enlighten.data.SourceLocation;
+import anonymous.domain.enlighten.deptrack.DependencyCreationListener;
+import anonymous.domain.enlighten.deptrack.DynDepUtils;
 import anonymous.domain.enlighten.deptrack.DynamicDependency;
 import anonymous.domain.enlighten.deptrack.InstructionDependencySource;
 import anonymous.domain.enlighten.mcallrepr.JpfStateSnapshotter;
@@ -66,7 +68,8 @@ import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
 import gov.nasa.jpf.vm.DependencyTrackingInstruction;
 import gov.nasa.jpf.vm.ThreadInfo;
 
-public class FieldSelectorAltListener extends ExecTreeProcessingListener {
+public class FieldSelectorAltListener extends ExecTreeProcessingListener 
+    implements DependencyCreationListener {
   
   private static final int SUSP_LOCS_CAPACITY = 100;
   
@@ -88,6 +91,19 @@ public class FieldSelectorAltListener extends ExecTreeProcessingListener {
     setRequireDeterministicExecution(true);
   }
 
+  @Override
+  public void dependencyCreated(DynamicDependency dep) {
+    DependencyTrackingInstruction insn = DynDepUtils.getSourceInstruction(dep);
+    if (insn == null) {
+      return;
+    }
+    SourceLocation srcLoc = JpfEntityConversion.getSourceLocationFromInstruction(insn);
+    double baseSusp = selectionCriterion.flResults.getSuspiciousness(srcLoc);
+    if (baseSusp != 0) {
+      setDependencySuspiciousness(dep, baseSusp);
+    }
+  }
+
   @Override
   public void instructionDependencySourceGenerated(
       DependencyTrackingInstruction insn, InstructionDependencySource depNode) {
@@ -97,7 +113,6 @@ public class FieldSelectorAltListener extends ExecTreeProcessingListener {
     if (baseSusp == 0) {
       return;
     }
-    setDependencySuspiciousness(depNode, baseSusp);
 
 
     SuspLocationCandidate candidateLoc = 
@@ -131,7 +146,7 @@ public class FieldSelectorAltListener extends ExecTreeProcessingListener {
 
       SuspLocReachabilityVerifier suspLocVerifier = new SuspLocReachabilityVerifier(
           DepIndexRangeAnnotator.getDirectContainingIndices(exitedInvocation), suspLocations);
-      JpfStateSnapshotter snapshotter = new JpfStateSnapshotter();
+      JpfStateSnapshotter snapshotter = new JpfStateSnapshotter(currentThread.getVM().getConfig());
       MethodCallRepr mcall = snapshotter.fromStackFrame(
           currentThread, currentThread.getModifiableTopFrame());
       
@@ -253,7 +268,7 @@ public class FieldSelectorAltListener extends ExecTreeProcessingListener {
   
   private void processIncorrectValues(
       Set<RefPath> valuePaths, ThreadInfo ti, Range<Long> effectiveRange) {
-    JpfStateSnapshotter stateSnapshotter = new JpfStateSnapshotter();
+    JpfStateSnapshotter stateSnapshotter = new JpfStateSnapshotter(ti.getVM().getConfig());
     MethodCallRepr preStates = stateSnapshotter.fromStackFrame(ti, ti.getModifiableTopFrame());
     IncorrectValueDependencyVisitor depVisitor = 
         new IncorrectValueDependencyVisitor(effectiveRange);
@@ -373,14 +388,13 @@ public class FieldSelectorAltListener extends ExecTreeProcessingListener {
       if (!traversalRange.contains(depNode.getInstanceIndex())) {
         return false;
       }
-      if (effectiveRange.contains(depNode.getInstanceIndex()) 
-          && depNode instanceof InstructionDependencySource) {
+      DependencyTrackingInstruction sourceInsn = DynDepUtils.getSourceInstruction(depNode);
+      if (effectiveRange.contains(depNode.getInstanceIndex()) && sourceInsn != null) {
         SuspInfoAnnotation suspInfo = depNode.getAnnotation(SuspInfoAnnotation.class);
         if (suspInfo != null) {
           suspInfo.reachableForFeedback = true;
         }
-        SourceLocation loc = JpfEntityConversion.getSourceLocationFromInstruction(
-            ((InstructionDependencySource) depNode).getSourceInstruction());
+        SourceLocation loc = JpfEntityConversion.getSourceLocationFromInstruction(sourceInsn);
         if (searchedLocs.contains(loc)) {
           foundLocs.add(loc);
         }
@@ -402,14 +416,15 @@ public class FieldSelectorAltListener extends ExecTreeProcessingListener {
       if (!traversalRange.contains(depNode.getInstanceIndex())) {
         return false;
       }
-      if (depNode instanceof InstructionDependencySource) {
+      DependencyTrackingInstruction sourceInsn = DynDepUtils.getSourceInstruction(depNode);
+      if (sourceInsn != null) {
         SuspInfoAnnotation suspAnnotation = depNode.getAnnotation(SuspInfoAnnotation.class);
         if (suspAnnotation != null && suspAnnotation.reachableForFeedback) {
           suspAnnotation.dynamicDependencyMultiplier++;
           MethodInvocation generatingInvocation = 
               lookupDependencyGeneratingInvocation(depNode.getInstanceIndex());
-          SourceLocation srcLoc = JpfEntityConversion.getSourceLocationFromInstruction(
-              ((InstructionDependencySource) depNode).getSourceInstruction());
+          SourceLocation srcLoc = 
+              JpfEntityConversion.getSourceLocationFromInstruction(sourceInsn);
           SuspLocationCandidate locCandidate = 
               new SuspLocationCandidate(generatingInvocation, srcLoc);
           double newSusp = suspAnnotation.getAdjustedSuspiciousness();
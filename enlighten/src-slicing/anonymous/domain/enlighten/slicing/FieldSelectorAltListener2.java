@@ -49,6 +49,7 @@ import anonymous.domain.enlighten.data.MethodName;
 import anonymous.domain.enlighten.data.SourceLocation;
 import anonymous.domain.enlighten.deptrack.CompositeDynamicDependency;
 import anonymous.domain.enlighten.deptrack.DependencyCreationListener;
+import anonymous.domain.enlighten.deptrack.DynDepUtils;
 import anonymous.domain.enlighten.deptrack.DynamicDependency;
 import anonymous.domain.enlighten.deptrack.InstructionDependencySource;
 import anonymous.domain.enlighten.mcallrepr.ArrayElementRefName;
@@ -69,6 +70,7 @@ import anonymous.domain.enlighten.mcallrepr.VoidRepr;
 import anonymous.domain.enlighten.publish.ExtraStats;
 import anonymous.domain.enlighten.publish.ExtraStatsPublisher;
 import anonymous.domain.enlighten.refpath.RefPath;
+import anonymous.domain.enlighten.slicing.util.DepIdSet;
 import anonymous.domain.enlighten.slicing.util.JpfEntityConversion;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
 import gov.nasa.jpf.vm.DependencyTrackingInstruction;
@@ -111,51 +113,51 @@ public class FieldSelectorAltListener2 extends ExecTreeProcessingListener
 
 
 
+    if (!(dep instanceof CompositeDynamicDependency)) {
+      return;
+    }
     SuspInfoAnnotation suspInfo = new SuspInfoAnnotation();
     suspInfo.dynamicDependencyMultiplier = getAmplifyingFactor(dep);
-    if (dep instanceof InstructionDependencySource) {
-      DependencyTrackingInstruction insn = 
-          ((InstructionDependencySource) dep).getSourceInstruction();
+    boolean hasAnySuspiciousness = false;
+    DependencyTrackingInstruction insn = DynDepUtils.getSourceInstruction(dep);
+    if (insn != null) {
       SourceLocation srcLoc = JpfEntityConversion.getSourceLocationFromInstruction(insn);
       double srcSusp = selectionCriterion.flResults.getSuspiciousness(srcLoc);
       MethodInvocation currentInvoc = getCurrentInvocation();
-      suspInfo.setBaseSuspiciousness(currentInvoc, srcSusp);
       ++extraStats.numSuspValues;
-      double adjSusp = suspInfo.getAdjustedSuspiciousness(currentInvoc);
+      double adjSusp = srcSusp * suspInfo.dynamicDependencyMultiplier;
       if (adjSusp > globalBestSusp) {
-        dep.addAnnotation(suspInfo);
+        suspInfo.setBaseSuspiciousness(currentInvoc, srcSusp);
+        hasAnySuspiciousness = true;
         updateLocalCandidateSusp(currentInvoc, adjSusp);
-      } 
-      
-    } else if (dep instanceof CompositeDynamicDependency) {
-      boolean hasAnySuspiciousness = false;
-      List<DynamicDependency> upStreams = ((CompositeDynamicDependency) dep).getAllDependencies();
-      for (DynamicDependency upStream : upStreams) {
-        SuspInfoAnnotation upStreamSuspInfo = upStream.getAnnotation(SuspInfoAnnotation.class);
-        if (upStreamSuspInfo == null) {
-          continue;
-        }
-        for (MethodInvocation scope : upStreamSuspInfo.getSuspScopes()) {
-          if (!activeInvocations.contains(scope)) {
+      }
+    }
+    List<DynamicDependency> upStreams = ((CompositeDynamicDependency) dep).getAllDependencies();
+    for (DynamicDependency upStream : upStreams) {
+      SuspInfoAnnotation upStreamSuspInfo = upStream.getAnnotation(SuspInfoAnnotation.class);
+      if (upStreamSuspInfo == null) {
+        continue;
+      }
+      for (MethodInvocation scope : upStreamSuspInfo.getSuspScopes()) {
+        if (!activeInvocations.contains(scope)) {
 
 
-            continue;
-          }
-          double contextBaseSusp = upStreamSuspInfo.getBaseSuspiciousness(scope);
-          double contextAdjSusp = upStreamSuspInfo.getAdjustedSuspiciousness(scope);
-          
-
-          if (contextAdjSusp > globalBestSusp
-              && contextBaseSusp > suspInfo.getBaseSuspiciousness(scope)) {
-            suspInfo.setBaseSuspiciousness(scope, contextBaseSusp);
-            ++extraStats.numSuspValues;
-            hasAnySuspiciousness = true;
-          }
+          continue;
+        }
+        double contextBaseSusp = upStreamSuspInfo.getBaseSuspiciousness(scope);
+        double contextAdjSusp = upStreamSuspInfo.getAdjustedSuspiciousness(scope);
+        
+
+        if (contextAdjSusp > globalBestSusp
+            && contextBaseSusp > suspInfo.getBaseSuspiciousness(scope)) {
+          suspInfo.setBaseSuspiciousness(scope, contextBaseSusp);
+          ++extraStats.numSuspValues;
+          hasAnySuspiciousness = true;
         }
       }
-      if (hasAnySuspiciousness) {
-        dep.addAnnotation(suspInfo);
-      }
+    }
+    if (hasAnySuspiciousness) {
+      dep.addAnnotation(suspInfo);
     }
   }
 
@@ -179,10 +181,11 @@ public class FieldSelectorAltListener2 extends ExecTreeProcessingListener
 
 
 
-      JpfStateSnapshotter snapshotter = new JpfStateSnapshotter();
+      JpfStateSnapshotter snapshotter = new JpfStateSnapshotter(currentThread.getVM().getConfig());
       MethodCallRepr mcall = snapshotter.fromStackFrame(
           currentThread, currentThread.getModifiableTopFrame());
-      
+      MethodInvocation previousBest = globalBest;
+
       LinkedList<RefPath> pathsToVisit = new LinkedList<>();
       LinkedList<ValueGraphNode> parentObjects = new LinkedList<>();
       Set<ValueGraphNode> visitedValues = new HashSet<>();
@@ -224,11 +227,32 @@ public class FieldSelectorAltListener2 extends ExecTreeProcessingListener
           }
         }
       }
+      if (globalBest == exitedInvocation && previousBest != exitedInvocation) {
+        selectionUpdated(exitedInvocation, mcall);
+      }
     }
     
     
   }
   
+  /**
+   * Called when the invocation that just exited became the best selection so far,
+   * with the post-states that were captured for it.
+   */
+  protected void selectionUpdated(MethodInvocation invocation, MethodCallRepr postStates) {}
+  
+  protected double getGlobalBestSuspiciousness() {
+    return globalBestSusp;
+  }
+  
+  protected FieldSelectionCriterionAlt2 getSelectionCriterion() {
+    return selectionCriterion;
+  }
+  
+  protected boolean isAFEnabled() {
+    return enableAF;
+  }
+  
   public MethodInvocation getSelectedInvocation() {
     if (ExtraStatsPublisher.isAcceptingReports()) {
       ExtraStatsPublisher.report(extraStats);
@@ -259,7 +283,7 @@ public class FieldSelectorAltListener2 extends ExecTreeProcessingListener
 	}
     long depIndex = depNode.getInstanceIndex();
     int amplifyingFactor = 1;
-    for (Set<Long> incorrectValueBackSlice : 
+    for (DepIdSet incorrectValueBackSlice : 
       selectionCriterion.incorrectValueRelevantDepIdList) {
       if (incorrectValueBackSlice.contains(depIndex)) {
         ++amplifyingFactor;
@@ -432,6 +456,13 @@ public class FieldSelectorAltListener2 extends ExecTreeProcessingListener
               MemberRefDepAnnotator.getDependency(arepr, ArrayLengthRefName.get())) + "\n");
       List<ValueGraphNode> elements = arepr.getElements();
       for (int index = 0; index < elements.size(); ++index) {
+        if (index == arepr.getOmittedFrom()) {
+          int lastOmitted = index + arepr.getOmittedCount() - 1;
+          buf.append(elementIndent + "[" + index + ".." + lastOmitted + "] => " 
+              + elements.get(index) + "\n");
+          index = lastOmitted;
+          continue;
+        }
         buf.append(elementIndent + "[" + index + "] => " 
             + visit(elements.get(index), elementIndent + " ", 
                 MemberRefDepAnnotator.getDependency(arepr, new ArrayElementRefName(index))) + "\n");
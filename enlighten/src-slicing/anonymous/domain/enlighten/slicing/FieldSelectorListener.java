@@ -51,6 +51,7 @@ import anonymous.domain.enlighten.annotation.ValueAnnotation;
 import anonymous.domain.enlighten.data.MethodInvocation;
 import anonymous.domain.enlighten.data.SourceLocation;
 import anonymous.domain.enlighten.deptrack.CompositeDynamicDependency;
+import anonymous.domain.enlighten.deptrack.DynDepUtils;
 import anonymous.domain.enlighten.deptrack.DynamicDependency;
 import anonymous.domain.enlighten.deptrack.InstructionDependencySource;
 import anonymous.domain.enlighten.mcallrepr.JpfStateSnapshotter;
@@ -113,7 +114,7 @@ public class FieldSelectorListener extends ExecTreeProcessingListener {
       SuspInfoCalculator suspCalc = new SuspInfoCalculator(Range.closed(
           DepIndexRangeAnnotator.getStartIndex(exitedInvocation), 
           DepIndexRangeAnnotator.getEndIndex(exitedInvocation)));
-      JpfStateSnapshotter snapshotter = new JpfStateSnapshotter();
+      JpfStateSnapshotter snapshotter = new JpfStateSnapshotter(currentThread.getVM().getConfig());
       MethodCallRepr mcall = snapshotter.fromStackFrame(
           currentThread, currentThread.getModifiableTopFrame());
       
@@ -236,15 +237,16 @@ public class FieldSelectorListener extends ExecTreeProcessingListener {
     @Override
     protected void postVisit(DynamicDependency depNode) {
       depNode.removeAnnotation(SuspInfoAnnotation.class);
-      if (depNode instanceof InstructionDependencySource) {
-        SuspInfoAnnotation suspInfo = new SuspInfoAnnotation();
-        suspInfo.effectiveRange = effectiveRange;
-        suspInfo.suspReason = JpfEntityConversion.getSourceLocationFromInstruction(
-            ((InstructionDependencySource) depNode).getSourceInstruction());
-        suspInfo.suspiciousness = flResults.getSuspiciousness(suspInfo.suspReason);
-        depNode.addAnnotation(suspInfo);
-      } else if (depNode instanceof CompositeDynamicDependency) {
+      if (depNode instanceof CompositeDynamicDependency) {
         SuspInfoAnnotation highestSusp = null;
+        DependencyTrackingInstruction sourceInsn = DynDepUtils.getSourceInstruction(depNode);
+        if (sourceInsn != null) {
+          highestSusp = new SuspInfoAnnotation();
+          highestSusp.effectiveRange = effectiveRange;
+          highestSusp.suspReason = 
+              JpfEntityConversion.getSourceLocationFromInstruction(sourceInsn);
+          highestSusp.suspiciousness = flResults.getSuspiciousness(highestSusp.suspReason);
+        }
         List<DynamicDependency> upStreams = 
             getChildrenDepNodes((CompositeDynamicDependency) depNode);
         for (DynamicDependency upStream : upStreams) {
@@ -34,49 +34,23 @@
 
 package anonymous.domain.enlighten.slicing;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Collections;
 
 import com.google.common.collect.Range;
 
 import anonymous.domain.enlighten.deptrack.DynamicDependency;
-import anonymous.domain.enlighten.slicing.util.DepBreadthFirstTraversal;
+import anonymous.domain.enlighten.slicing.util.BackwardSliceEngine;
+import anonymous.domain.enlighten.slicing.util.DepIdSet;
 
-public class GetDepGraphNodeIds extends DepBreadthFirstTraversal {
+public class GetDepGraphNodeIds {
   
-  private Range<Long> traversalRange;
-  private Set<Long> relevantDepIds;
-  
-  public static Set<Long> getDepGraphNodeIds(DynamicDependency root, Range<Long> instanceIdRange) {
-    GetDepGraphNodeIds getIds = new GetDepGraphNodeIds(instanceIdRange);
-    getIds.traverse(root);
-    return getIds.getRelevantDepIds();
-  }
-  
-  public static Set<Long> getDepGraphNodeIds(DynamicDependency root) {
-    return getDepGraphNodeIds(root, Range.all());
-  }
-  
-  public GetDepGraphNodeIds(Range<Long> traversalRange) {
-    this.traversalRange = traversalRange;
+  public static DepIdSet getDepGraphNodeIds(BackwardSliceEngine sliceEngine, 
+      Iterable<DynamicDependency> roots, Range<Long> instanceIdRange) {
+    return sliceEngine.slice(roots, instanceIdRange);
   }
   
-  public Set<Long> getRelevantDepIds() {
-    return relevantDepIds;
-  }
-  
-  @Override
-  public void traverse(DynamicDependency dep) {
-    relevantDepIds = new HashSet<>();
-    super.traverse(dep);
-  }
-
-  @Override
-  protected boolean visit(DynamicDependency depNode) {
-    if (!traversalRange.contains(depNode.getInstanceIndex())) {
-      return false;
-    }
-    relevantDepIds.add(depNode.getInstanceIndex());
-    return true;
+  public static DepIdSet getDepGraphNodeIds(
+      BackwardSliceEngine sliceEngine, DynamicDependency root) {
+    return getDepGraphNodeIds(sliceEngine, Collections.singleton(root), Range.all());
   }
 }
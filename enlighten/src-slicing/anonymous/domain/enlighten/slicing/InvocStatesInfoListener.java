@@ -50,6 +50,7 @@ import anonymous.domain.enlighten.annotation.ValueAnnotation;
 import anonymous.domain.enlighten.data.MethodInvocation;
 import anonymous.domain.enlighten.data.SourceLocation;
 import anonymous.domain.enlighten.deptrack.CompositeDynamicDependency;
+import anonymous.domain.enlighten.deptrack.DynDepUtils;
 import anonymous.domain.enlighten.deptrack.DynamicDependency;
 import anonymous.domain.enlighten.deptrack.InstructionDependencySource;
 import anonymous.domain.enlighten.mcallrepr.JpfStateSnapshotter;
@@ -62,6 +63,7 @@ import anonymous.domain.enlighten.mcallrepr.ValueGraphNode;
 import anonymous.domain.enlighten.refpath.RefPath;
 import anonymous.domain.enlighten.slicing.util.DepBreadthFirstTraversal;
 import anonymous.domain.enlighten.slicing.util.DepDepthFirstTraversal;
+import anonymous.domain.enlighten.slicing.util.DepIdSet;
 import anonymous.domain.enlighten.slicing.util.JpfEntityConversion;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
 import anonymous.domain.enlighten.util.FloatComparison;
@@ -117,7 +119,7 @@ public class InvocStatesInfoListener extends ExecTreeProcessingListener {
   protected void invocationEntered(MethodInvocation enteredInvocation,
       ThreadInfo currentThread) {
     if (enteredInvocation == targetInvocInfo.targetInvocation) {
-      JpfStateSnapshotter snapshotter = new JpfStateSnapshotter();
+      JpfStateSnapshotter snapshotter = new JpfStateSnapshotter(currentThread.getVM().getConfig());
       preStates = snapshotter.fromStackFrame(
           currentThread, currentThread.getModifiableTopFrame());
     }
@@ -128,53 +130,66 @@ public class InvocStatesInfoListener extends ExecTreeProcessingListener {
   protected void invocationExited(MethodInvocation exitedInvocation,
       ThreadInfo currentThread) {
     if (exitedInvocation == targetInvocInfo.targetInvocation) {
-      JpfStateSnapshotter snapshotter = new JpfStateSnapshotter();
+      JpfStateSnapshotter snapshotter = new JpfStateSnapshotter(currentThread.getVM().getConfig());
       postStates = snapshotter.fromStackFrame(
           currentThread, currentThread.getModifiableTopFrame());
-      
-      SuspInfoCalculator suspCalc = new SuspInfoCalculator(Range.closed(
-          DepIndexRangeAnnotator.getStartIndex(exitedInvocation), 
-          DepIndexRangeAnnotator.getEndIndex(exitedInvocation)));
-      postStatesValueSusp = new HashMap<>();
-      LinkedList<RefPath> pathsToVisit = new LinkedList<>();
-      LinkedList<ValueGraphNode> parentObjects = new LinkedList<>();
-      Set<ValueGraphNode> visitedValues = new HashSet<>();
-      Set<RefPath> invocExcludedFields = targetInvocInfo.invocCorrectValues;
-      if (invocExcludedFields == null) {
-        invocExcludedFields = Collections.emptySet();
+      computePostStatesValueSusp(exitedInvocation);
+    }
+    
+    
+  }
+  
+  /**
+   * Uses states of the target invocation captured by another listener in the same
+   * execution, instead of capturing them while running this listener.
+   */
+  void useCapturedStates(MethodCallRepr preStates, MethodCallRepr postStates) {
+    this.preStates = preStates;
+    this.postStates = postStates;
+    computePostStatesValueSusp(targetInvocInfo.targetInvocation);
+  }
+  
+  private void computePostStatesValueSusp(MethodInvocation exitedInvocation) {
+    SuspInfoCalculator suspCalc = new SuspInfoCalculator(Range.closed(
+        DepIndexRangeAnnotator.getStartIndex(exitedInvocation), 
+        DepIndexRangeAnnotator.getEndIndex(exitedInvocation)));
+    postStatesValueSusp = new HashMap<>();
+    LinkedList<RefPath> pathsToVisit = new LinkedList<>();
+    LinkedList<ValueGraphNode> parentObjects = new LinkedList<>();
+    Set<ValueGraphNode> visitedValues = new HashSet<>();
+    Set<RefPath> invocExcludedFields = targetInvocInfo.invocCorrectValues;
+    if (invocExcludedFields == null) {
+      invocExcludedFields = Collections.emptySet();
+    }
+    for (MemberRefName ref : postStates.getReferencedValues().keySet()) {
+      parentObjects.add(postStates);
+      pathsToVisit.add(RefPath.newBuilder().appendMemberRefName(ref).build());
+    }
+    while (!pathsToVisit.isEmpty()) {
+      RefPath currentPath = pathsToVisit.removeFirst();
+      ValueGraphNode currentObj = parentObjects.removeFirst().getReferencedValue(
+          currentPath.getTail());
+      if (isDataFieldSelectionCandidate(currentObj) 
+          && !invocExcludedFields.contains(currentPath)) {
+        SuspInfoAnnotation suspInfo = 
+            suspCalc.getValueSuspiciousness(postStates, currentPath);
+        if (suspInfo != null && suspInfo.getAdjustedSuspiciousness() != 0) {
+          postStatesValueSusp.put(currentPath, suspInfo);
+        }
       }
-      for (MemberRefName ref : postStates.getReferencedValues().keySet()) {
-        parentObjects.add(postStates);
-        pathsToVisit.add(RefPath.newBuilder().appendMemberRefName(ref).build());
+      if (visitedValues.contains(currentObj)) {
+        continue;
       }
-      while (!pathsToVisit.isEmpty()) {
-        RefPath currentPath = pathsToVisit.removeFirst();
-        ValueGraphNode currentObj = parentObjects.removeFirst().getReferencedValue(
-            currentPath.getTail());
-        if (isDataFieldSelectionCandidate(currentObj) 
-            && !invocExcludedFields.contains(currentPath)) {
-          SuspInfoAnnotation suspInfo = 
-              suspCalc.getValueSuspiciousness(postStates, currentPath);
-          if (suspInfo != null && suspInfo.getAdjustedSuspiciousness() != 0) {
-            postStatesValueSusp.put(currentPath, suspInfo);
-          }
-        }
-        if (visitedValues.contains(currentObj)) {
-          continue;
-        }
-        visitedValues.add(currentObj);
-        if (currentObj.hasReferencedValues()) {
-          Map<MemberRefName, ValueGraphNode> membersMap = currentObj.getReferencedValues();
-          for (MemberRefName member : membersMap.keySet()) {
-            RefPath memberPath = currentPath.append().appendMemberRefName(member).build();
-            parentObjects.add(currentObj);
-            pathsToVisit.add(memberPath);
-          }
+      visitedValues.add(currentObj);
+      if (currentObj.hasReferencedValues()) {
+        Map<MemberRefName, ValueGraphNode> membersMap = currentObj.getReferencedValues();
+        for (MemberRefName member : membersMap.keySet()) {
+          RefPath memberPath = currentPath.append().appendMemberRefName(member).build();
+          parentObjects.add(currentObj);
+          pathsToVisit.add(memberPath);
         }
       }
     }
-    
-    
   }
   
   private boolean isDataFieldSelectionCandidate(ValueGraphNode value) {
@@ -188,7 +203,7 @@ public class InvocStatesInfoListener extends ExecTreeProcessingListener {
   
   private void processIncorrectValues(
       Set<RefPath> valuePaths, ThreadInfo ti, Range<Long> effectiveRange) {
-    JpfStateSnapshotter stateSnapshotter = new JpfStateSnapshotter();
+    JpfStateSnapshotter stateSnapshotter = new JpfStateSnapshotter(ti.getVM().getConfig());
     MethodCallRepr preStates = stateSnapshotter.fromStackFrame(ti, ti.getModifiableTopFrame());
     IncorrectValueDependencyVisitor depVisitor = 
         new IncorrectValueDependencyVisitor(effectiveRange);
@@ -211,7 +226,7 @@ public class InvocStatesInfoListener extends ExecTreeProcessingListener {
 	}
     long depIndex = depNode.getInstanceIndex();
     int amplifyingFactor = 1;
-    for (Set<Long> incorrectValueBackSlice : 
+    for (DepIdSet incorrectValueBackSlice : 
         targetInvocInfo.incorrectValueRelevantDepIdList) {
       if (incorrectValueBackSlice.contains(depIndex)) {
         ++amplifyingFactor;
@@ -264,33 +279,35 @@ public class InvocStatesInfoListener extends ExecTreeProcessingListener {
 
     @Override
     protected void postVisit(DynamicDependency depNode) {
+      if (!(depNode instanceof CompositeDynamicDependency)) {
+        return;
+      }
       SuspInfoAnnotation suspInfo = new SuspInfoAnnotation();
       suspInfo.dynamicDependencyMultiplier = getAmplifyingFactor(depNode);
-      if (depNode instanceof InstructionDependencySource) {
-        SourceLocation srcLoc = JpfEntityConversion.getSourceLocationFromInstruction(
-            ((InstructionDependencySource) depNode).getSourceInstruction());
+      SuspInfoAnnotation highestSusp = null;
+      DependencyTrackingInstruction sourceInsn = DynDepUtils.getSourceInstruction(depNode);
+      if (sourceInsn != null) {
+        SourceLocation srcLoc = JpfEntityConversion.getSourceLocationFromInstruction(sourceInsn);
         suspInfo.baseSuspiciousness = targetInvocInfo.flResults.getSuspiciousness(srcLoc);
-        depNode.addAnnotation(suspInfo);
-      } else if (depNode instanceof CompositeDynamicDependency) {
-        SuspInfoAnnotation highestSusp = null;
-        List<DynamicDependency> upStreams = 
-            getChildrenDepNodes((CompositeDynamicDependency) depNode);
-        for (DynamicDependency upStream : upStreams) {
-          SuspInfoAnnotation currentSusp = upStream.getAnnotation(SuspInfoAnnotation.class);
-          if (currentSusp == null) {
-            continue;
-          }
-          if (highestSusp == null || FloatComparison.compareDouble(
-              currentSusp.getAdjustedSuspiciousness(), 
-              highestSusp.getAdjustedSuspiciousness()) > 0) {
-            highestSusp = currentSusp;
-          }
+        highestSusp = suspInfo;
+      }
+      List<DynamicDependency> upStreams = 
+          getChildrenDepNodes((CompositeDynamicDependency) depNode);
+      for (DynamicDependency upStream : upStreams) {
+        SuspInfoAnnotation currentSusp = upStream.getAnnotation(SuspInfoAnnotation.class);
+        if (currentSusp == null) {
+          continue;
         }
-        if (highestSusp != null) {
-          suspInfo.baseSuspiciousness = highestSusp.baseSuspiciousness;
+        if (highestSusp == null || FloatComparison.compareDouble(
+            currentSusp.getAdjustedSuspiciousness(), 
+            highestSusp.getAdjustedSuspiciousness()) > 0) {
+          highestSusp = currentSusp;
         }
-        depNode.addAnnotation(suspInfo);
       }
+      if (highestSusp != null) {
+        suspInfo.baseSuspiciousness = highestSusp.baseSuspiciousness;
+      }
+      depNode.addAnnotation(suspInfo);
     }
     
     private List<DynamicDependency> getChildrenDepNodes(CompositeDynamicDependency dep) {
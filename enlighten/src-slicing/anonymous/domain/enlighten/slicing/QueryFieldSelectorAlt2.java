@@ -37,7 +37,6 @@ package anonymous.domain.enlighten.slicing;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import anonymous.domain.enlighten.FeedbackSet;
 import anonymous.domain.enlighten.MethodInvocationSelection;
@@ -45,7 +44,10 @@ import anonymous.domain.enlighten.data.ExecutionProfile;
 import anonymous.domain.enlighten.data.MethodInvocation;
 import anonymous.domain.enlighten.data.SourceLocation;
 import anonymous.domain.enlighten.data.TestName;
+import anonymous.domain.enlighten.mcallrepr.MethodCallRepr;
+import anonymous.domain.enlighten.publish.PhaseTelemetry;
 import anonymous.domain.enlighten.refpath.RefPath;
+import anonymous.domain.enlighten.slicing.util.DepIdSet;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
 import anonymous.domain.enlighten.susp.FaultLocalization;
 import anonymous.domain.enlighten.util.Pair;
@@ -56,6 +58,9 @@ public class QueryFieldSelectorAlt2 {
   private Map<TestName, ExecutionProfile> failingTests;
   private FeedbackSet feedbackSet;
   private boolean enableAF = true;
+  private boolean singlePass = true;
+  private int snapshotBudget = SinglePassFieldSelectorListener.DEFAULT_SNAPSHOT_BUDGET;
+  private TestName shortestFailingTest;
 
   public QueryFieldSelectorAlt2(SubjectProgram subject, 
       Map<TestName, ExecutionProfile> failingTests, FeedbackSet feedbackSet) {
@@ -72,6 +77,14 @@ public class QueryFieldSelectorAlt2 {
   public void enableAF(boolean enable) {
 	  this.enableAF = enable;
   }
+  
+  public void enableSinglePass(boolean enable) {
+    this.singlePass = enable;
+  }
+  
+  public void setSnapshotBudget(int maxRetainedValueNodes) {
+    this.snapshotBudget = maxRetainedValueNodes;
+  }
 
   public FieldSelectionResult selectFieldsForFeedback(
       FaultLocalization<SourceLocation> flResult) {
@@ -83,7 +96,7 @@ public class QueryFieldSelectorAlt2 {
     selectionCriterion.correctValues = feedbackSet.getCorrectOutputValues();
     selectionCriterion.incorrectInputValues = feedbackSet.getIncorrectInputValues();
     selectionCriterion.incorrectOutputValues = feedbackSet.getIncorrectOutputValues();
-    List<Set<Long>> incorrectValueRelevantDepIds = new ArrayList<>();
+    List<DepIdSet> incorrectValueRelevantDepIds = new ArrayList<>();
     for (Pair<MethodInvocationSelection, RefPath> incorrectValueKey : 
         feedbackSet.incorrectInputRelevantDeps.keySet()) {
       if (preferredTest.equals(incorrectValueKey.getFirst().getTestName())) {
@@ -99,12 +112,22 @@ public class QueryFieldSelectorAlt2 {
       }
     }
     selectionCriterion.incorrectValueRelevantDepIdList = incorrectValueRelevantDepIds;
-    FieldSelectorAltListener2 selectorListener = 
-       new FieldSelectorAltListener2(subject, selectionCriterion);
+    FieldSelectorAltListener2 selectorListener;
+    if (singlePass) {
+      selectorListener = new SinglePassFieldSelectorListener(
+          subject, selectionCriterion, snapshotBudget);
+    } else {
+      selectorListener = new FieldSelectorAltListener2(subject, selectionCriterion);
+    }
     selectorListener.enableAF(enableAF);
     SubjectProgramJPFRunner runner = new SubjectProgramJPFRunner(subject);
     runner.setJpfVMListener(selectorListener);
-    runner.runTestMethod(preferredTest);
+    PhaseTelemetry.Span span = PhaseTelemetry.startSpan("query.field_selection");
+    try {
+      runner.runTestMethod(preferredTest);
+    } finally {
+      span.end();
+    }
     MethodInvocation selectedInvocation = selectorListener.getSelectedInvocation();
     if (selectedInvocation == null) {
       return null;
@@ -120,59 +143,72 @@ public class QueryFieldSelectorAlt2 {
     InvocStatesInfoListener stateDetailsListener
         = new InvocStatesInfoListener(subject, targetInvocInfo);
     stateDetailsListener.enableAF(enableAF);
-    runner.setJpfVMListener(stateDetailsListener);
-    runner.runTestMethod(preferredTest);
-    int invocationIndex = testProfile.lookupInvocationIndex(selectedInvocation);
-    FieldSelectionResult selectionResult = new FieldSelectionResult(
-        new MethodInvocationSelection(
-            preferredTest, selectedInvocation.getMethodName(), invocationIndex), 
-        stateDetailsListener.getInvocationPreStates(),
-        stateDetailsListener.getInvocationPostStates(), 
-        stateDetailsListener.getOrderedSuspiciousValuePaths());
-    return selectionResult;
+    span = PhaseTelemetry.startSpan("query.state_details");
+    try {
+      MethodCallRepr capturedPreStates = null;
+      if (singlePass) {
+        capturedPreStates = 
+            ((SinglePassFieldSelectorListener) selectorListener).getSelectedPreStates();
+      }
+      if (capturedPreStates != null) {
+        stateDetailsListener.useCapturedStates(capturedPreStates, 
+            ((SinglePassFieldSelectorListener) selectorListener).getSelectedPostStates());
+      } else {
+        PhaseTelemetry.count("query.state_details_reruns", 1);
+        runner.setJpfVMListener(stateDetailsListener);
+        runner.runTestMethod(preferredTest);
+      }
+      int invocationIndex = testProfile.lookupInvocationIndex(selectedInvocation);
+      FieldSelectionResult selectionResult = new FieldSelectionResult(
+          new MethodInvocationSelection(
+              preferredTest, selectedInvocation.getMethodName(), invocationIndex), 
+          stateDetailsListener.getInvocationPreStates(),
+          stateDetailsListener.getInvocationPostStates(), 
+          stateDetailsListener.getOrderedSuspiciousValuePaths());
+      return selectionResult;
+    } finally {
+      span.end();
+    }
   }
   
   private TestName getPreferredTestExecution(FaultLocalization<SourceLocation> flResult) {
-    
+    if (shortestFailingTest != null) {
+      return shortestFailingTest;
+    }
     TestName shortestChoice = null;
     int numInvocs = Integer.MAX_VALUE;
     for (TestName failingTest : failingTests.keySet()) {
       ExecutionProfile profile = failingTests.get(failingTest);
-      int length = getNumInvocs(profile.getInvocationTreeRoot());
+      int length = profile.getNumInvocations();
       if (shortestChoice == null || numInvocs > length) {
         shortestChoice = failingTest;
         numInvocs = length;
       }
     }
+    shortestFailingTest = shortestChoice;
     return shortestChoice;
   }
   
   private void populateTestFailureDependencyIds() {
-    for (TestName failingTest : failingTests.keySet()) {
-      ComputeFailureRelevantDeps listener = 
-          new ComputeFailureRelevantDeps(subject, failingTests.get(failingTest));
-      SubjectProgramJPFRunner runner = new SubjectProgramJPFRunner(subject);
-      runner.setJpfVMListener(listener);
-      runner.runTestMethod(failingTest);
-      Set<Long> relevantDeps = listener.getRelevantDepIds();
-      if (relevantDeps != null && relevantDeps.size() > 0) {
-        Pair<MethodInvocationSelection, RefPath> exceptionRefKey = Pair.of(
-            new MethodInvocationSelection(
-                failingTest, listener.getTestMethodInvocation().getMethodName(), 0), 
-            RefPath.newBuilder().appendExceptionRef().build());
-        feedbackSet.incorrectOutputRelevantDeps.put(exceptionRefKey, relevantDeps);
+    PhaseTelemetry.Span span = PhaseTelemetry.startSpan("query.failure_deps");
+    try {
+      for (TestName failingTest : failingTests.keySet()) {
+        ComputeFailureRelevantDeps listener = 
+            new ComputeFailureRelevantDeps(subject, failingTests.get(failingTest));
+        SubjectProgramJPFRunner runner = new SubjectProgramJPFRunner(subject);
+        runner.setJpfVMListener(listener);
+        runner.runTestMethod(failingTest);
+        DepIdSet relevantDeps = listener.getRelevantDepIds();
+        if (relevantDeps != null && relevantDeps.size() > 0) {
+          Pair<MethodInvocationSelection, RefPath> exceptionRefKey = Pair.of(
+              new MethodInvocationSelection(
+                  failingTest, listener.getTestMethodInvocation().getMethodName(), 0), 
+              RefPath.newBuilder().appendExceptionRef().build());
+          feedbackSet.incorrectOutputRelevantDeps.put(exceptionRefKey, relevantDeps);
+        }
       }
+    } finally {
+      span.end();
     }
   }
-  
-  private int getNumInvocs(MethodInvocation invoc) {
-    if (invoc == null) {
-      return 0;
-    }
-    int invocs = 1;
-    for (MethodInvocation child : invoc.getEnclosedInvocations()) {
-      invocs += getNumInvocs(child);
-    }
-    return invocs;
-  }
 }
@@ -71,9 +71,7 @@ public class RunSubjectTests {
             Paths.get(
                 ExperimentDataLayout.DATA_ROOT, subjectName,
                 ExperimentDataLayout.FAULTY_VERSION_DIR));
-        List<String> testClassNames = faultyVersion.listTestClasses().stream()
-        		.map(testClass -> { return testClass.getName(); })
-        		.collect(Collectors.toList());
+        List<String> testClassNames = faultyVersion.listTestClassNames();
         List<Path> classpathEntries = new ArrayList<>();
         classpathEntries.addAll(faultyVersion.getAppSourceDirs());
         classpathEntries.addAll(faultyVersion.getTestSourceDirs());
@@ -0,0 +1,206 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package anonymous.domain.enlighten.slicing;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import anonymous.domain.enlighten.data.MethodInvocation;
+import anonymous.domain.enlighten.data.SourceLocation;
+import anonymous.domain.enlighten.mcallrepr.JpfStateSnapshotter;
+import anonymous.domain.enlighten.mcallrepr.MethodCallRepr;
+import anonymous.domain.enlighten.mcallrepr.SnapshotBudget;
+import anonymous.domain.enlighten.mcallrepr.ValueGraphNode;
+import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
+import gov.nasa.jpf.vm.ThreadInfo;
+
+/**
+ * Field selection listener that also captures the pre-states and post-states of
+ * the selected invocation, so that a feedback query needs only one execution of
+ * the failing test.
+ * 
+ * The selected invocation is only known when the execution ends, so pre-states
+ * are snapshotted speculatively when invocations are entered. An invocation is
+ * skipped if it cannot beat the current best selection: the suspiciousness of a
+ * value in its scope is bounded by the most suspicious statement the invocation
+ * executes, times the largest possible amplifying factor. Snapshots are kept only
+ * while their invocations are active or selected, and at most the given number of
+ * value graph nodes is retained. A snapshot is capped at the nodes left in that
+ * budget, and dropped if it reaches the cap. If the final selection has no
+ * pre-states, they have to be captured by a separate execution.
+ */
+public class SinglePassFieldSelectorListener extends FieldSelectorAltListener2 {
+  
+  public static final int DEFAULT_SNAPSHOT_BUDGET = 1000000;
+  
+  private int snapshotBudget;
+  private SnapshotBudget configBudget;
+  private int retainedNodes;
+  private Map<MethodInvocation, Snapshot> pendingPreStates = new IdentityHashMap<>();
+  
+  private Snapshot selectedPreStates;
+  private MethodCallRepr selectedPostStates;
+  
+  private int numSnapshots;
+  private int numPrunedSnapshots;
+  private int numDroppedSnapshots;
+  
+  public SinglePassFieldSelectorListener(
+      SubjectProgram subject, FieldSelectionCriterionAlt2 selectionCriterion, int snapshotBudget) {
+    super(subject, selectionCriterion);
+    this.snapshotBudget = snapshotBudget;
+  }
+  
+  public MethodCallRepr getSelectedPreStates() {
+    return selectedPreStates != null ? selectedPreStates.states : null;
+  }
+  
+  public MethodCallRepr getSelectedPostStates() {
+    return selectedPostStates;
+  }
+  
+  public int getNumSnapshots() {
+    return numSnapshots;
+  }
+  
+  public int getNumPrunedSnapshots() {
+    return numPrunedSnapshots;
+  }
+  
+  public int getNumDroppedSnapshots() {
+    return numDroppedSnapshots;
+  }
+
+  @Override
+  protected void invocationEntered(MethodInvocation enteredInvocation,
+      ThreadInfo currentThread) {
+    super.invocationEntered(enteredInvocation, currentThread);
+    if (getSuspiciousnessUpperBound(enteredInvocation) <= getGlobalBestSuspiciousness()) {
+      ++numPrunedSnapshots;
+      return;
+    }
+    int remainingNodes = snapshotBudget - retainedNodes;
+    if (remainingNodes <= 0) {
+      ++numDroppedSnapshots;
+      return;
+    }
+    if (configBudget == null) {
+      configBudget = SnapshotBudget.fromConfig(currentThread.getVM().getConfig());
+    }
+    
+    
+    
+    JpfStateSnapshotter snapshotter = new JpfStateSnapshotter(new SnapshotBudget(
+        configBudget.getMaxDepth(), 
+        Math.min(configBudget.getMaxObjects(), remainingNodes), 
+        Math.min(configBudget.getMaxArrayElements(), remainingNodes)));
+    MethodCallRepr preStates = snapshotter.fromStackFrame(
+        currentThread, currentThread.getModifiableTopFrame());
+    int size = countValueNodes(preStates);
+    if (size > remainingNodes) {
+      ++numDroppedSnapshots;
+      return;
+    }
+    ++numSnapshots;
+    retainedNodes += size;
+    pendingPreStates.put(enteredInvocation, new Snapshot(preStates, size));
+  }
+
+  @Override
+  protected void invocationExited(MethodInvocation exitedInvocation,
+      ThreadInfo currentThread) {
+    super.invocationExited(exitedInvocation, currentThread);
+    Snapshot unused = pendingPreStates.remove(exitedInvocation);
+    if (unused != null) {
+      retainedNodes -= unused.size;
+    }
+  }
+
+  @Override
+  protected void selectionUpdated(MethodInvocation invocation, MethodCallRepr postStates) {
+    if (selectedPreStates != null) {
+      retainedNodes -= selectedPreStates.size;
+    }
+    selectedPreStates = pendingPreStates.remove(invocation);
+    selectedPostStates = postStates;
+  }
+  
+  private double getSuspiciousnessUpperBound(MethodInvocation invocation) {
+    Map<SourceLocation, Integer> executedStatements = invocation.getStatementsExecCountMap();
+    if (executedStatements == null) {
+      return Double.POSITIVE_INFINITY;
+    }
+    FieldSelectionCriterionAlt2 criterion = getSelectionCriterion();
+    double maxSusp = 0;
+    for (SourceLocation statement : executedStatements.keySet()) {
+      maxSusp = Math.max(maxSusp, criterion.flResults.getSuspiciousness(statement));
+    }
+    int maxAmplifyingFactor = isAFEnabled() ? 
+        criterion.incorrectValueRelevantDepIdList.size() + 1 : 1;
+    return maxSusp * maxAmplifyingFactor;
+  }
+  
+  private static int countValueNodes(MethodCallRepr mcall) {
+    Set<ValueGraphNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    ArrayDeque<ValueGraphNode> toVisit = new ArrayDeque<>();
+    toVisit.add(mcall);
+    visited.add(mcall);
+    while (!toVisit.isEmpty()) {
+      ValueGraphNode node = toVisit.removeFirst();
+      if (node.hasReferencedValues()) {
+        for (ValueGraphNode member : node.getReferencedValues().values()) {
+          if (member != null && visited.add(member)) {
+            toVisit.add(member);
+          }
+        }
+      }
+    }
+    return visited.size();
+  }
+  
+  private static class Snapshot {
+    private MethodCallRepr states;
+    private int size;
+    
+    private Snapshot(MethodCallRepr states, int size) {
+      this.states = states;
+      this.size = size;
+    }
+  }
+}
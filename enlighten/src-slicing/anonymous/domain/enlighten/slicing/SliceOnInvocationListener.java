@@ -121,7 +121,7 @@ public class SliceOnInvocationListener extends JPFSlicingListener {
   }
 
   protected void monitoredInvocationExited(ThreadInfo ti) {
-    JpfStateSnapshotter snapshotter = new JpfStateSnapshotter();
+    JpfStateSnapshotter snapshotter = new JpfStateSnapshotter(ti.getVM().getConfig());
     StackFrame methodStackFrame = ti.getModifiableTopFrame();
     slicingResult = snapshotter.fromStackFrame(ti, methodStackFrame);
     if (printDeps) {
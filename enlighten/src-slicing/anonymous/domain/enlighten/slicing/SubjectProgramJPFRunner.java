@@ -47,6 +47,8 @@ import anonymous.domain.enlighten.deptrack.DependencyCreationListener;
 import anonymous.domain.enlighten.deptrack.DynamicDependency;
 import anonymous.domain.enlighten.deptrack.InstructionDependencyListener;
 import anonymous.domain.enlighten.exec.ExternalProgramInvocation;
+import anonymous.domain.enlighten.mcallrepr.SnapshotBudget;
+import anonymous.domain.enlighten.publish.PhaseTelemetry;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
 import anonymous.domain.enlighten.util.StringUtils;
 import gov.nasa.jpf.Config;
@@ -60,6 +62,7 @@ public class SubjectProgramJPFRunner {
   
   private SubjectProgram subjectProgram;
   private VMListener jpfListener;
+  private List<VMListener> auxiliaryListeners = new ArrayList<>();
   
   private boolean discardOutput = true;
   private PrintStream savedStdOut;
@@ -73,6 +76,14 @@ public class SubjectProgramJPFRunner {
     this.jpfListener = jpfListener;
   }
   
+  /**
+   * Adds a listener that observes the execution next to the main listener, for
+   * example to take measurements. It is not registered for dependency events.
+   */
+  public void addAuxiliaryVMListener(VMListener listener) {
+    auxiliaryListeners.add(listener);
+  }
+  
   public void setDiscardJpfOutput(boolean discard) {
     discardOutput = discard;
   }
@@ -112,6 +123,8 @@ public class SubjectProgramJPFRunner {
     	System.err.println("Execution aborted");
     	System.exit(1);
     }
+    PhaseTelemetry.Span span = PhaseTelemetry.startSpan("jpf.run");
+    PhaseTelemetry.count("jpf.runs", 1);
     try {
       jpf.run();
     } catch (Throwable ex) {
@@ -124,6 +137,7 @@ public class SubjectProgramJPFRunner {
     	errPrinter.println("Failed to execute test " + testMethodLongName + " on JPF");
     	ex.printStackTrace(errPrinter);
     } finally {
+      span.end();
       if (discardOutput) {
         System.setOut(savedStdOut);
         System.setErr(savedStdErr);
@@ -146,6 +160,9 @@ public class SubjectProgramJPFRunner {
     if (jpfListener != null) {
       jpf.addVMListener(jpfListener);
     }
+    for (VMListener listener : auxiliaryListeners) {
+      jpf.addVMListener(listener);
+    }
     return jpf;
   }
   
@@ -154,6 +171,11 @@ public class SubjectProgramJPFRunner {
     strConfigs.add("+listener=gov.nasa.jpf.vm.JVMForwarder");
     strConfigs.add("+search.class=gov.nasa.jpf.search.PathSearch");
     strConfigs.add("+nhandler.delegateUnhandledNative = true");
+    for (String key : System.getProperties().stringPropertyNames()) {
+      if (key.startsWith(SnapshotBudget.CONFIG_PREFIX)) {
+        strConfigs.add("+" + key + "=" + System.getProperty(key));
+      }
+    }
     List<Path> classpathEntries = new ArrayList<>();
     classpathEntries.addAll(subjectProgram.getAppSourceDirs());
     classpathEntries.addAll(subjectProgram.getTestSourceDirs());
@@ -42,6 +42,7 @@ import anonymous.domain.enlighten.data.ExecutionProfile;
 import anonymous.domain.enlighten.data.MethodInvocation;
 import anonymous.domain.enlighten.data.SourceLocation;
 import anonymous.domain.enlighten.refpath.RefPath;
+import anonymous.domain.enlighten.slicing.util.DepIdSet;
 import anonymous.domain.enlighten.susp.FaultLocalization;
 
 public class TargetInvocInfo {
@@ -52,5 +53,5 @@ public class TargetInvocInfo {
   public Set<RefPath> invocCorrectValues;
   public Map<MethodInvocation, Set<RefPath>> incorrectInputValues;
   public Map<MethodInvocation, Set<RefPath>> incorrectOutputValues;
-  public List<Set<Long>> incorrectValueRelevantDepIdList;
+  public List<DepIdSet> incorrectValueRelevantDepIdList;
 }
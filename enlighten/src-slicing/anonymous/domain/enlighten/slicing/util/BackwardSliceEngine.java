@@ -0,0 +1,208 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.slicing.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+
+import anonymous.domain.enlighten.deptrack.CompositeDynamicDependency;
+import anonymous.domain.enlighten.deptrack.DynamicDependency;
+
+/**
+ * Computes backward slices over a dynamic dependency graph as sets of instance
+ * indices. A slice can be restricted to an instance index range, in which case
+ * nodes outside of the range are neither included nor traversed.
+ * 
+ * The slice of every queried root is memoized, and later queries stop
+ * traversing at memoized nodes, so overlapping slices share work. This relies
+ * on dependency nodes only referencing nodes created before them, which means
+ * that instance indices decrease along every backward path: the slice of a node
+ * restricted to indices not less than some lower bound is obtained without
+ * traversing anything below that bound, and it remains valid for any query with
+ * a higher lower bound.
+ * 
+ * An engine must only be used with the dependency graph of one execution, since
+ * instance indices are reused across executions. Each captured execution keeps
+ * its own engine, e.g. {@link anonymous.domain.enlighten.slicing.FieldSelectionResult}
+ * for the states of a query.
+ */
+public class BackwardSliceEngine {
+  
+  private static final int INITIAL_STACK_SIZE = 256;
+  
+  private boolean followControlDependencies = true;
+  
+  private DepIdSet memoizedNodes = new DepIdSet();
+  private Map<Long, MemoizedSlice> memoizedSlices = new HashMap<>();
+  
+  private DynamicDependency[] workingStack = new DynamicDependency[INITIAL_STACK_SIZE];
+  
+  public void setFollowControlDependencies(boolean follow) {
+    if (follow != followControlDependencies) {
+      clearMemo();
+    }
+    followControlDependencies = follow;
+  }
+  
+  public boolean followControlDependencies() {
+    return followControlDependencies;
+  }
+  
+  public DepIdSet slice(DynamicDependency root) {
+    return slice(Collections.singleton(root), 0, Long.MAX_VALUE);
+  }
+  
+  public DepIdSet slice(DynamicDependency root, Range<Long> instanceIndexRange) {
+    return slice(Collections.singleton(root), instanceIndexRange);
+  }
+  
+  public DepIdSet slice(Iterable<DynamicDependency> roots, Range<Long> instanceIndexRange) {
+    long lowerBound = 0;
+    long upperBound = Long.MAX_VALUE;
+    if (instanceIndexRange.hasLowerBound()) {
+      lowerBound = instanceIndexRange.lowerEndpoint();
+      if (instanceIndexRange.lowerBoundType() == BoundType.OPEN) {
+        ++lowerBound;
+      }
+    }
+    if (instanceIndexRange.hasUpperBound()) {
+      upperBound = instanceIndexRange.upperEndpoint();
+      if (instanceIndexRange.upperBoundType() == BoundType.OPEN) {
+        --upperBound;
+      }
+    }
+    return slice(roots, lowerBound, upperBound);
+  }
+  
+  /**
+   * Returns the union of the slices of the given roots, restricted to the
+   * instance indices within [lowerBound, upperBound]. Null roots are ignored.
+   */
+  public DepIdSet slice(Iterable<DynamicDependency> roots, long lowerBound, long upperBound) {
+    DepIdSet result = new DepIdSet();
+    for (DynamicDependency root : roots) {
+      if (root == null || !isInRange(root, lowerBound, upperBound)) {
+        continue;
+      }
+      result.addAll(sliceFromRoot(root, lowerBound), lowerBound, upperBound);
+    }
+    return result;
+  }
+  
+  public void clearMemo() {
+    memoizedNodes = new DepIdSet();
+    memoizedSlices.clear();
+  }
+  
+  private DepIdSet sliceFromRoot(DynamicDependency root, long lowerBound) {
+    long rootIndex = root.getInstanceIndex();
+    MemoizedSlice memoized = getMemoizedSlice(rootIndex, lowerBound);
+    if (memoized != null) {
+      return memoized.slice;
+    }
+    DepIdSet slice = new DepIdSet();
+    slice.add(rootIndex);
+    int stackSize = 0;
+    workingStack[stackSize++] = root;
+    while (stackSize > 0) {
+      DynamicDependency dep = workingStack[--stackSize];
+      workingStack[stackSize] = null;
+      if (dep != root) {
+        memoized = getMemoizedSlice(dep.getInstanceIndex(), lowerBound);
+        if (memoized != null) {
+          slice.addAll(memoized.slice, lowerBound, Long.MAX_VALUE);
+          continue;
+        }
+      }
+      if (!(dep instanceof CompositeDynamicDependency)) {
+        continue;
+      }
+      CompositeDynamicDependency composite = (CompositeDynamicDependency) dep;
+      int numDataDeps = composite.getNumDataDependencies();
+      if (stackSize + numDataDeps + 1 > workingStack.length) {
+        workingStack = Arrays.copyOf(
+            workingStack, Math.max(workingStack.length * 2, stackSize + numDataDeps + 1));
+      }
+      for (int i = 0; i < numDataDeps; ++i) {
+        DynamicDependency upStream = composite.getDataDependency(i);
+        if (upStream.getInstanceIndex() >= lowerBound && slice.add(upStream.getInstanceIndex())) {
+          workingStack[stackSize++] = upStream;
+        }
+      }
+      if (followControlDependencies) {
+        DynamicDependency controlDep = composite.getControlDependency();
+        if (controlDep != null && controlDep.getInstanceIndex() >= lowerBound 
+            && slice.add(controlDep.getInstanceIndex())) {
+          workingStack[stackSize++] = controlDep;
+        }
+      }
+    }
+    memoizedNodes.add(rootIndex);
+    memoizedSlices.put(rootIndex, new MemoizedSlice(lowerBound, slice));
+    return slice;
+  }
+  
+  private MemoizedSlice getMemoizedSlice(long depIndex, long lowerBound) {
+    if (!memoizedNodes.contains(depIndex)) {
+      return null;
+    }
+    MemoizedSlice memoized = memoizedSlices.get(depIndex);
+    if (memoized.lowerBound > lowerBound) {
+      return null;
+    }
+    return memoized;
+  }
+  
+  private static boolean isInRange(DynamicDependency dep, long lowerBound, long upperBound) {
+    long index = dep.getInstanceIndex();
+    return index >= lowerBound && index <= upperBound;
+  }
+  
+  private static final class MemoizedSlice {
+    
+    private long lowerBound;
+    private DepIdSet slice;
+    
+    MemoizedSlice(long lowerBound, DepIdSet slice) {
+      this.lowerBound = lowerBound;
+      this.slice = slice;
+    }
+  }
+}
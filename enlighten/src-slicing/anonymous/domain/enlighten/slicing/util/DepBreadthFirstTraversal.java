@@ -46,34 +46,42 @@ import anonymous.domain.enlighten.deptrack.DynamicDependency;
 public abstract class DepBreadthFirstTraversal {
   
   private boolean followControlDependencies = true;
+  
+  private Deque<DynamicDependency> workingList = new ArrayDeque<>();
+  private Set<DynamicDependency> visited = Collections.newSetFromMap(new IdentityHashMap<>());
 
   public void traverse(DynamicDependency dep) {
     if (dep == null) {
       return;
     }
-    Deque<DynamicDependency> workingList = new ArrayDeque<>();
-    Set<DynamicDependency> visited = Collections.newSetFromMap(new IdentityHashMap<>());
-    workingList.addLast(dep);
-    visited.add(dep);
-    while (!workingList.isEmpty()) {
-      dep = workingList.removeFirst();
-      boolean continueTraversing = visit(dep);
-      if (continueTraversing && dep instanceof CompositeDynamicDependency) {
-        CompositeDynamicDependency composite = (CompositeDynamicDependency) dep;
-        for (DynamicDependency upStream : composite.getDataDependencies()) {
-          if (!visited.contains(upStream)) {
-            visited.add(upStream);
-            workingList.addLast(upStream);
+    try {
+      workingList.addLast(dep);
+      visited.add(dep);
+      while (!workingList.isEmpty()) {
+        dep = workingList.removeFirst();
+        boolean continueTraversing = visit(dep);
+        if (continueTraversing && dep instanceof CompositeDynamicDependency) {
+          CompositeDynamicDependency composite = (CompositeDynamicDependency) dep;
+          int numDataDeps = composite.getNumDataDependencies();
+          for (int i = 0; i < numDataDeps; ++i) {
+            DynamicDependency upStream = composite.getDataDependency(i);
+            if (!visited.contains(upStream)) {
+              visited.add(upStream);
+              workingList.addLast(upStream);
+            }
           }
-        }
-        if (followControlDependencies) {
-          DynamicDependency controlDep = composite.getControlDependency();
-          if (controlDep != null && !visited.contains(controlDep)) {
-            visited.add(controlDep);
-            workingList.addLast(controlDep);
+          if (followControlDependencies) {
+            DynamicDependency controlDep = composite.getControlDependency();
+            if (controlDep != null && !visited.contains(controlDep)) {
+              visited.add(controlDep);
+              workingList.addLast(controlDep);
+            }
           }
         }
       }
+    } finally {
+      workingList.clear();
+      visited.clear();
     }
   }
   
@@ -0,0 +1,254 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.slicing.util;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of dependency instance indices kept as a bitmap. The bitmap is split
+ * into fixed-size chunks covering only the span between the smallest and the
+ * largest chunk in use, since the indices in a slice are usually clustered.
+ * The primitive methods should be preferred; the {@link java.util.Set} view
+ * boxes every element.
+ */
+public class DepIdSet extends AbstractSet<Long> {
+  
+  private static final int CHUNK_BITS = 12;
+  private static final int WORDS_PER_CHUNK = 1 << (CHUNK_BITS - 6);
+  private static final long[][] EMPTY_CHUNKS = new long[0][];
+  
+  private long[][] chunks = EMPTY_CHUNKS;
+  private long firstChunkIndex = 0;
+  private int size = 0;
+  
+  public DepIdSet() {}
+  
+  public DepIdSet(DepIdSet another) {
+    firstChunkIndex = another.firstChunkIndex;
+    chunks = new long[another.chunks.length][];
+    for (int i = 0; i < chunks.length; ++i) {
+      if (another.chunks[i] != null) {
+        chunks[i] = another.chunks[i].clone();
+      }
+    }
+    size = another.size;
+  }
+  
+  public boolean add(long id) {
+    checkId(id);
+    long[] chunk = getOrCreateChunk(id >>> CHUNK_BITS);
+    int wordIndex = (int) (id >>> 6) & (WORDS_PER_CHUNK - 1);
+    long mask = 1L << id;
+    if ((chunk[wordIndex] & mask) != 0) {
+      return false;
+    }
+    chunk[wordIndex] |= mask;
+    ++size;
+    return true;
+  }
+  
+  public boolean contains(long id) {
+    if (id < 0) {
+      return false;
+    }
+    long chunkIndex = (id >>> CHUNK_BITS) - firstChunkIndex;
+    if (chunkIndex < 0 || chunkIndex >= chunks.length) {
+      return false;
+    }
+    long[] chunk = chunks[(int) chunkIndex];
+    return chunk != null 
+        && (chunk[(int) (id >>> 6) & (WORDS_PER_CHUNK - 1)] & (1L << id)) != 0;
+  }
+  
+  public void addAll(DepIdSet another) {
+    addAll(another, 0, Long.MAX_VALUE);
+  }
+  
+  /**
+   * Adds the elements of another set that are within [lowerBound, upperBound].
+   */
+  public void addAll(DepIdSet another, long lowerBound, long upperBound) {
+    if (another.size == 0 || lowerBound > upperBound) {
+      return;
+    }
+    lowerBound = Math.max(lowerBound, 0);
+    long lowChunk = Math.max(lowerBound >>> CHUNK_BITS, another.firstChunkIndex);
+    long highChunk = Math.min(upperBound >>> CHUNK_BITS, 
+        another.firstChunkIndex + another.chunks.length - 1);
+    for (long chunkIndex = lowChunk; chunkIndex <= highChunk; ++chunkIndex) {
+      long[] sourceChunk = another.chunks[(int) (chunkIndex - another.firstChunkIndex)];
+      if (sourceChunk == null) {
+        continue;
+      }
+      long chunkStart = chunkIndex << CHUNK_BITS;
+      long[] targetChunk = null;
+      for (int wordIndex = 0; wordIndex < WORDS_PER_CHUNK; ++wordIndex) {
+        long word = sourceChunk[wordIndex];
+        if (word == 0) {
+          continue;
+        }
+        long wordStart = chunkStart + (wordIndex << 6);
+        if (wordStart < lowerBound) {
+          word &= lowerBound - wordStart >= 64 ? 0 : -1L << (lowerBound - wordStart);
+        }
+        if (wordStart + 63 > upperBound) {
+          word &= upperBound - wordStart < 0 ? 0 : -1L >>> (63 - (upperBound - wordStart));
+        }
+        if (word == 0) {
+          continue;
+        }
+        if (targetChunk == null) {
+          targetChunk = getOrCreateChunk(chunkIndex);
+        }
+        long added = word & ~targetChunk[wordIndex];
+        targetChunk[wordIndex] |= added;
+        size += Long.bitCount(added);
+      }
+    }
+  }
+  
+  /**
+   * Returns the smallest element that is not less than fromId, or -1 if there is
+   * none.
+   */
+  public long nextId(long fromId) {
+    if (fromId < 0) {
+      fromId = 0;
+    }
+    long chunkIndex = Math.max(fromId >>> CHUNK_BITS, firstChunkIndex);
+    if (chunkIndex > fromId >>> CHUNK_BITS) {
+      fromId = chunkIndex << CHUNK_BITS;
+    }
+    for (; chunkIndex < firstChunkIndex + chunks.length; ++chunkIndex) {
+      long[] chunk = chunks[(int) (chunkIndex - firstChunkIndex)];
+      if (chunk != null) {
+        long chunkStart = chunkIndex << CHUNK_BITS;
+        int wordIndex = (int) (fromId - chunkStart) >>> 6;
+        long word = chunk[wordIndex] & (-1L << fromId);
+        while (true) {
+          if (word != 0) {
+            return chunkStart + (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+          }
+          if (++wordIndex == WORDS_PER_CHUNK) {
+            break;
+          }
+          word = chunk[wordIndex];
+        }
+      }
+      fromId = (chunkIndex + 1) << CHUNK_BITS;
+    }
+    return -1;
+  }
+  
+  @Override
+  public boolean add(Long id) {
+    return add(id.longValue());
+  }
+  
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof Long && contains(((Long) o).longValue());
+  }
+
+  @Override
+  public Iterator<Long> iterator() {
+    return new Iterator<Long>() {
+      
+      private long next = nextId(0);
+
+      @Override
+      public boolean hasNext() {
+        return next != -1;
+      }
+
+      @Override
+      public Long next() {
+        if (next == -1) {
+          throw new NoSuchElementException();
+        }
+        long current = next;
+        next = nextId(current + 1);
+        return current;
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+  
+  @Override
+  public void clear() {
+    chunks = EMPTY_CHUNKS;
+    firstChunkIndex = 0;
+    size = 0;
+  }
+  
+  private long[] getOrCreateChunk(long chunkIndex) {
+    if (chunks.length == 0) {
+      chunks = new long[1][];
+      firstChunkIndex = chunkIndex;
+    } else if (chunkIndex < firstChunkIndex) {
+      long required = firstChunkIndex - chunkIndex + chunks.length;
+      int shift = (int) Math.min(
+          Math.max(required, chunks.length * 2L) - chunks.length, firstChunkIndex);
+      long[][] newChunks = new long[chunks.length + shift][];
+      System.arraycopy(chunks, 0, newChunks, shift, chunks.length);
+      chunks = newChunks;
+      firstChunkIndex -= shift;
+    } else if (chunkIndex >= firstChunkIndex + chunks.length) {
+      long required = chunkIndex - firstChunkIndex + 1;
+      long[][] newChunks = new long[(int) Math.max(required, chunks.length * 2L)][];
+      System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+      chunks = newChunks;
+    }
+    int slot = (int) (chunkIndex - firstChunkIndex);
+    long[] chunk = chunks[slot];
+    if (chunk == null) {
+      chunk = new long[WORDS_PER_CHUNK];
+      chunks[slot] = chunk;
+    }
+    return chunk;
+  }
+  
+  private static void checkId(long id) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Invalid dependency instance index " + id);
+    }
+  }
+}
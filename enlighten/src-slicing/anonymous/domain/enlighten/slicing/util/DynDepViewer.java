@@ -41,6 +41,7 @@ import java.util.List;
 import com.google.common.collect.Range;
 
 import anonymous.domain.enlighten.deptrack.CompositeDynamicDependency;
+import anonymous.domain.enlighten.deptrack.DynDepUtils;
 import anonymous.domain.enlighten.deptrack.DynamicDependency;
 import anonymous.domain.enlighten.deptrack.InstructionDependencySource;
 import anonymous.domain.enlighten.util.GraphViewer;
@@ -105,8 +106,13 @@ public class DynDepViewer extends GraphViewer<DynamicDependency> {
   @Override
   protected String getDescription(DynamicDependency node) {
     String desc = String.valueOf(node.getInstanceIndex());
+    DependencyTrackingInstruction insn;
     if (node instanceof InstructionDependencySource) {
-      DependencyTrackingInstruction insn = ((InstructionDependencySource) node).getSourceInstruction();
+      insn = ((InstructionDependencySource) node).getSourceInstruction();
+    } else {
+      insn = DynDepUtils.getSourceInstruction(node);
+    }
+    if (insn != null) {
       desc += "\n" + insn.getMnemonic() + ":" + insn.getFileLocation();
     }
     return desc;
@@ -39,6 +39,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -56,25 +57,29 @@ import anonymous.domain.enlighten.data.SourceLocation;
 import anonymous.domain.enlighten.data.SourceLocationCoverage;
 import anonymous.domain.enlighten.data.TestName;
 import anonymous.domain.enlighten.data.TestOutcomes;
+import anonymous.domain.enlighten.deptrack.DynDepUtils;
 import anonymous.domain.enlighten.deptrack.DynamicDependency;
-import anonymous.domain.enlighten.deptrack.InstructionDependencySource;
 import anonymous.domain.enlighten.exec.CompileSubjectProgram;
 import anonymous.domain.enlighten.exec.RunTestsWithCoverage;
+import anonymous.domain.enlighten.exec.TestResultCache;
 import anonymous.domain.enlighten.mcallrepr.ArrayElementRefName;
 import anonymous.domain.enlighten.mcallrepr.MemberRefDepAnnotator;
 import anonymous.domain.enlighten.mcallrepr.MethodCallRepr;
+import anonymous.domain.enlighten.publish.PhaseTelemetry;
 import anonymous.domain.enlighten.refpath.RefPath;
 import anonymous.domain.enlighten.slicing.DepIndexRangeAnnotator;
 import anonymous.domain.enlighten.slicing.FieldSelectionResult;
 import anonymous.domain.enlighten.slicing.GetDepGraphNodeIds;
 import anonymous.domain.enlighten.slicing.QueryFieldSelectorAlt2;
 import anonymous.domain.enlighten.slicing.util.DepBreadthFirstTraversal;
+import anonymous.domain.enlighten.slicing.util.DepIdSet;
 import anonymous.domain.enlighten.slicing.util.JpfEntityConversion;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
 import anonymous.domain.enlighten.susp.CoverageUtils;
 import anonymous.domain.enlighten.susp.FaultLocalization;
 import anonymous.domain.enlighten.susp.WeightedOchiai;
 import anonymous.domain.enlighten.util.Pair;
+import gov.nasa.jpf.vm.DependencyTrackingInstruction;
 
 public class FeedbackDirectedFLCore implements FeedbackDirectedFL {
   
@@ -111,6 +116,7 @@ public class FeedbackDirectedFLCore implements FeedbackDirectedFL {
   }
   
   public FeedbackDirectedFLCore(SubjectProgram targetProgram, boolean forceGenData) {
+    PhaseTelemetry.Span initSpan = PhaseTelemetry.startSpan("fl_core.init");
     this.targetProgram = targetProgram;
     testExecutionProfiles = new HashMap<>();
     initRequiredData(forceGenData);
@@ -130,6 +136,7 @@ public class FeedbackDirectedFLCore implements FeedbackDirectedFL {
       System.err.println("Cannot create FlCore log file. Using System.out instead.");
       logger = new PrintWriter(System.out);
     }
+    initSpan.end();
   }
   
   public FaultLocalization<SourceLocation> getCurrentFlResult() {
@@ -138,26 +145,32 @@ public class FeedbackDirectedFLCore implements FeedbackDirectedFL {
   
   @Override
   public FieldSelectionResult selectNextInvocationForFeedback() {
-    boolean allowRetry = false;
-    if (tempExcludedLocs != null) {
-      tempExcludedLocs = null;
-      allowRetry = true;
-    }
-    FieldSelectionResult query = fieldSelector.selectFieldsForFeedback(currentFlResult);
-    if (query == null && allowRetry) {
+    PhaseTelemetry.Span querySpan = PhaseTelemetry.startSpan("query.select");
+    try {
+      PhaseTelemetry.count("queries", 1);
+      boolean allowRetry = false;
+      if (tempExcludedLocs != null) {
+        tempExcludedLocs = null;
+        allowRetry = true;
+      }
+      FieldSelectionResult query = fieldSelector.selectFieldsForFeedback(currentFlResult);
+      if (query == null && allowRetry) {
 
-      currentFlResult = computeFaultLocalizationResult();
-      query = fieldSelector.selectFieldsForFeedback(currentFlResult);
-    }
-    String rankedListStr = currentFlResult.getRankedListString(20);
-    if (rankedListStr.length() > 2000) {
-      rankedListStr = rankedListStr.substring(0, 2000);
+        currentFlResult = computeFaultLocalizationResult();
+        query = fieldSelector.selectFieldsForFeedback(currentFlResult);
+      }
+      String rankedListStr = currentFlResult.getRankedListString(20);
+      if (rankedListStr.length() > 2000) {
+        rankedListStr = rankedListStr.substring(0, 2000);
+      }
+      logln(rankedListStr);
+      logln("Selected method invocation: " + query.getInvocation());
+      logln("Most suspicious values:");
+      logln(getSuspValueListStr(query.getOrderedSuspiciousFields()));
+      return query;
+    } finally {
+      querySpan.end();
     }
-    logln(rankedListStr);
-    logln("Selected method invocation: " + query.getInvocation());
-    logln("Most suspicious values:");
-    logln(getSuspValueListStr(query.getOrderedSuspiciousFields()));
-    return query;
   }
 
   @Override
@@ -201,65 +214,76 @@ public class FeedbackDirectedFLCore implements FeedbackDirectedFL {
 
   protected void incorporateUserFeedback(FieldSelectionResult query,
       RefPath selectedField, UserFeedback feedback, boolean confirmDirCovCorrect) {
-    logln("Feedback incorporation:");
-    logln("Verify invocation: " + query.getInvocation());
-    logln("Feedback given to value: " + selectedField);
-    logln("Feedback type: " + feedback);
-    MethodInvocation invocationNode = 
-        getMethodInvocationNode(query.getInvocation());
-    if (feedback == UserFeedback.INCORRECT) {
-      Set<SourceLocation> fullCov = CoverageUtils.getFullStatementCoverage(invocationNode);
-      Set<SourceLocation> directCov = 
-          Collections.unmodifiableSet(invocationNode.getStatementsExecCountMap().keySet());
+    PhaseTelemetry.Span feedbackSpan = PhaseTelemetry.startSpan("query.feedback");
+    try {
+      logln("Feedback incorporation:");
+      logln("Verify invocation: " + query.getInvocation());
+      logln("Feedback given to value: " + selectedField);
+      logln("Feedback type: " + feedback);
+      MethodInvocation invocationNode = 
+          getMethodInvocationNode(query.getInvocation());
+      if (feedback == UserFeedback.INCORRECT) {
+        Set<SourceLocation> fullCov = CoverageUtils.getFullStatementCoverage(
+            getTestExecutionProfile(query.getInvocation().getTestName()), invocationNode);
+        Set<SourceLocation> directCov = 
+            Collections.unmodifiableSet(invocationNode.getStatementsExecCountMap().keySet());
       
-      feedbackSet.addIncorrectOutputValue(invocationNode, selectedField, 
-          fullCov, directCov, confirmDirCovCorrect);
-      if (!confirmDirCovCorrect) {
-        tempExcludedLocs = directCov;
-      }
+        feedbackSet.addIncorrectOutputValue(invocationNode, selectedField, 
+            fullCov, directCov, confirmDirCovCorrect);
+        if (!confirmDirCovCorrect) {
+          tempExcludedLocs = directCov;
+        }
       
-      Pair<MethodInvocationSelection, RefPath> feedbackValueKey = 
-          Pair.of(query.getInvocation(), selectedField);
-      Range<Long> invocationDepIdRange = Range.closed(
-          DepIndexRangeAnnotator.getStartIndex(invocationNode), 
-          DepIndexRangeAnnotator.getEndIndex(invocationNode));
-      MethodCallRepr postStates = query.getPostStates();
-      Set<Long> relevantDepIds = getIncorrectValueDepIds(
-          postStates, selectedField, invocationDepIdRange);
-      if (selectedField.getTail() instanceof ArrayElementRefName) {
-        RefPath arrayLengthPath = 
-            selectedField.getParent().append().appendArrayLengthRef().build();
-        relevantDepIds.addAll(getIncorrectValueDepIds(
-            postStates, arrayLengthPath, invocationDepIdRange));
-      }
-      feedbackSet.incorrectOutputRelevantDeps.put(feedbackValueKey, relevantDepIds);
-    } else if (feedback == UserFeedback.CORRECT) {
-      RangeSet<Long> effectiveDepIndexRange = TreeRangeSet.create();
-      effectiveDepIndexRange.add(Range.closed(
-          DepIndexRangeAnnotator.getStartIndex(invocationNode), 
-          DepIndexRangeAnnotator.getEndIndex(invocationNode)));
-      CollectInfluencingSourceLocations locCollector = 
-          new CollectInfluencingSourceLocations(effectiveDepIndexRange);
-      locCollector.traverse(MemberRefDepAnnotator.getDependency(
-          query.getPostStates(), selectedField));
-      Set<SourceLocation> relevantFullCov = locCollector.getResult();
-      feedbackSet.addCorrectOutputValue(invocationNode, selectedField, relevantFullCov);
-    } else if (feedback == UserFeedback.IMPOSSIBLE_PRESTATE) {
-      feedbackSet.addIncorrectInputValue(invocationNode, selectedField);
-      Pair<MethodInvocationSelection, RefPath> feedbackValueKey = 
-          Pair.of(query.getInvocation(), selectedField);
-      MethodCallRepr preStates = query.getPreStates();
-      Set<Long> relevantDepIds = getIncorrectValueDepIds(preStates, selectedField, Range.all());
-      if (selectedField.getTail() instanceof ArrayElementRefName) {
-        RefPath arrayLengthPath = 
-            selectedField.getParent().append().appendArrayLengthRef().build();
-        relevantDepIds.addAll(getIncorrectValueDepIds(preStates, arrayLengthPath, Range.all()));
+        Pair<MethodInvocationSelection, RefPath> feedbackValueKey = 
+            Pair.of(query.getInvocation(), selectedField);
+        Range<Long> invocationDepIdRange = Range.closed(
+            DepIndexRangeAnnotator.getStartIndex(invocationNode), 
+            DepIndexRangeAnnotator.getEndIndex(invocationNode));
+        MethodCallRepr postStates = query.getPostStates();
+        DepIdSet relevantDepIds;
+        if (selectedField.getTail() instanceof ArrayElementRefName) {
+          RefPath arrayLengthPath = 
+              selectedField.getParent().append().appendArrayLengthRef().build();
+          relevantDepIds = getIncorrectValueDepIds(query,
+              postStates, invocationDepIdRange, selectedField, arrayLengthPath);
+        } else {
+          relevantDepIds = getIncorrectValueDepIds(query,
+              postStates, invocationDepIdRange, selectedField);
+        }
+        feedbackSet.incorrectOutputRelevantDeps.put(feedbackValueKey, relevantDepIds);
+      } else if (feedback == UserFeedback.CORRECT) {
+        RangeSet<Long> effectiveDepIndexRange = TreeRangeSet.create();
+        effectiveDepIndexRange.add(Range.closed(
+            DepIndexRangeAnnotator.getStartIndex(invocationNode), 
+            DepIndexRangeAnnotator.getEndIndex(invocationNode)));
+        CollectInfluencingSourceLocations locCollector = 
+            new CollectInfluencingSourceLocations(effectiveDepIndexRange);
+        locCollector.traverse(MemberRefDepAnnotator.getDependency(
+            query.getPostStates(), selectedField));
+        Set<SourceLocation> relevantFullCov = locCollector.getResult();
+        feedbackSet.addCorrectOutputValue(invocationNode, selectedField, relevantFullCov);
+      } else if (feedback == UserFeedback.IMPOSSIBLE_PRESTATE) {
+        feedbackSet.addIncorrectInputValue(invocationNode, selectedField);
+        Pair<MethodInvocationSelection, RefPath> feedbackValueKey = 
+            Pair.of(query.getInvocation(), selectedField);
+        MethodCallRepr preStates = query.getPreStates();
+        DepIdSet relevantDepIds;
+        if (selectedField.getTail() instanceof ArrayElementRefName) {
+          RefPath arrayLengthPath = 
+              selectedField.getParent().append().appendArrayLengthRef().build();
+          relevantDepIds = getIncorrectValueDepIds(query,
+              preStates, Range.all(), selectedField, arrayLengthPath);
+        } else {
+          relevantDepIds = getIncorrectValueDepIds(query, preStates, Range.all(), selectedField);
+        }
+        feedbackSet.incorrectInputRelevantDeps.put(feedbackValueKey, relevantDepIds);
+      } else {
+        throw new RuntimeException("Unexpected user feedback type " + feedback);
       }
-      feedbackSet.incorrectInputRelevantDeps.put(feedbackValueKey, relevantDepIds);
-    } else {
-      throw new RuntimeException("Unexpected user feedback type " + feedback);
+      currentFlResult = computeFaultLocalizationResult();
+    } finally {
+      feedbackSpan.end();
     }
-    currentFlResult = computeFaultLocalizationResult();
   }
   
   protected SubjectProgram getTargetProgram() {
@@ -281,6 +305,7 @@ public class FeedbackDirectedFLCore implements FeedbackDirectedFL {
     }
     RunTestsWithCoverage runWithCoverage = new RunTestsWithCoverage(
         targetProgram);
+    runWithCoverage.setResultCache(new TestResultCache(targetProgram.getResultCacheDir()));
     boolean covDataPresent = Files.isDirectory(targetProgram.getCoverageDir());
     if (forceDataGeneration || !covDataPresent) {
       try {
@@ -314,20 +339,37 @@ public class FeedbackDirectedFLCore implements FeedbackDirectedFL {
   }
   
   private FaultLocalization<SourceLocation> computeFaultLocalizationResult() {
-    TestOutcomes testOutcomes = new TestOutcomes();
-    Map<TestName, SourceLocationCoverage> covMatrix = new HashMap<>();
-    Map<TestName, Double> testWeights = new HashMap<>();
-    Set<SourceLocation> flScope = feedbackSet.getFLSourceLocationScope();
     Set<SourceLocation> excludedSrcLocs = feedbackSet.getExcludedSourceLocations();
     if (tempExcludedLocs != null) {
       excludedSrcLocs.addAll(tempExcludedLocs);
     }
+    return computeFaultLocalizationResult(originalTestOutcomes, originalCovMatrix, 
+        INITIAL_PASSING_TESTS_FL_WEIGHT, feedbackSet.getFLSourceLocationScope(), 
+        excludedSrcLocs, feedbackSet.getPassingVirtualTests());
+  }
+  
+  /**
+   * Builds the weighted fault localization of the original tests combined with
+   * the feedback: the coverage of failing tests is restricted to the scope
+   * (if not null) minus the excluded locations, and every virtual test is added
+   * as a passing test.
+   */
+  public static FaultLocalization<SourceLocation> computeFaultLocalizationResult(
+      TestOutcomes originalTestOutcomes, 
+      Map<TestName, SourceLocationCoverage> originalCovMatrix, 
+      double passingTestsWeight, Set<SourceLocation> flScope, 
+      Set<SourceLocation> excludedSrcLocs, 
+      Map<TestName, Set<SourceLocation>> passingVirtualTests) {
+    PhaseTelemetry.Span span = PhaseTelemetry.startSpan("fl.rebuild");
+    TestOutcomes testOutcomes = new TestOutcomes();
+    Map<TestName, SourceLocationCoverage> covMatrix = new HashMap<>();
+    Map<TestName, Double> testWeights = new HashMap<>();
     for (TestName originalTest : originalCovMatrix.keySet()) {
       boolean isPassing = originalTestOutcomes.isPassed(originalTest);
       testOutcomes.addTestOutcome(originalTest, isPassing);
       if (isPassing) {
         covMatrix.put(originalTest, originalCovMatrix.get(originalTest));
-        testWeights.put(originalTest, INITIAL_PASSING_TESTS_FL_WEIGHT);
+        testWeights.put(originalTest, passingTestsWeight);
       } else {
         Set<SourceLocation> filteredCoverage = 
             new HashSet<>(originalCovMatrix.get(originalTest).getCoverage());
@@ -341,7 +383,6 @@ public class FeedbackDirectedFLCore implements FeedbackDirectedFL {
         testWeights.put(originalTest, 1.0);
       }
     }
-    Map<TestName, Set<SourceLocation>> passingVirtualTests =  feedbackSet.getPassingVirtualTests();
     for (TestName virtualTest : passingVirtualTests.keySet()) {
       testOutcomes.addTestOutcome(virtualTest, true);
       SourceLocationCoverage srcCov = new SourceLocationCoverage();
@@ -349,10 +390,11 @@ public class FeedbackDirectedFLCore implements FeedbackDirectedFL {
       covMatrix.put(virtualTest, srcCov);
       testWeights.put(virtualTest, 1.0);
     }
+    span.end();
     return new WeightedOchiai<SourceLocation>(testOutcomes, covMatrix, testWeights);
   }
 
-  protected ExecutionProfile getTestExecutionProfile(TestName testName) {
+  public ExecutionProfile getTestExecutionProfile(TestName testName) {
     if (!testExecutionProfiles.containsKey(testName)) {
       try {
         ExecutionProfile coverageProfile = ExecutionProfile
@@ -390,16 +432,21 @@ public class FeedbackDirectedFLCore implements FeedbackDirectedFL {
     return sb.toString();
   }
   
-  private Set<Long> getIncorrectValueDepIds(
-      MethodCallRepr mStates, RefPath valuePath, Range<Long> depIndexRange) {
-    Set<Long> relevantDepIds = new HashSet<>();
-    RefPath currentPath = valuePath;
-    while (currentPath != null && currentPath.getLength() != 0) {
-      relevantDepIds.addAll(GetDepGraphNodeIds.getDepGraphNodeIds(
-          MemberRefDepAnnotator.getDependency(mStates, currentPath), depIndexRange));
-      currentPath = currentPath.getParent();
+  private DepIdSet getIncorrectValueDepIds(FieldSelectionResult query, MethodCallRepr mStates, 
+      Range<Long> depIndexRange, RefPath... valuePaths) {
+    List<DynamicDependency> roots = new ArrayList<>();
+    for (RefPath valuePath : valuePaths) {
+      RefPath currentPath = valuePath;
+      while (currentPath != null && currentPath.getLength() != 0) {
+        roots.add(MemberRefDepAnnotator.getDependency(mStates, currentPath));
+        currentPath = currentPath.getParent();
+      }
     }
-    return relevantDepIds;
+    PhaseTelemetry.Span span = PhaseTelemetry.startSpan("slicing.backward");
+    DepIdSet slice = GetDepGraphNodeIds.getDepGraphNodeIds(
+        query.getSliceEngine(), roots, depIndexRange);
+    span.end();
+    return slice;
   }
   
   private static class CollectInfluencingSourceLocations extends DepBreadthFirstTraversal {
@@ -429,10 +476,12 @@ public class FeedbackDirectedFLCore implements FeedbackDirectedFL {
       if (depNode.getInstanceIndex() < depIndexSpan.lowerEndpoint()) {
         return false;
       }
-      if (depIndexRange.contains(depNode.getInstanceIndex()) 
-          && depNode instanceof InstructionDependencySource) {
-        influencingLocations.add(JpfEntityConversion.getSourceLocationFromInstruction(
-            ((InstructionDependencySource) depNode).getSourceInstruction()));
+      if (depIndexRange.contains(depNode.getInstanceIndex())) {
+        DependencyTrackingInstruction sourceInsn = DynDepUtils.getSourceInstruction(depNode);
+        if (sourceInsn != null) {
+          influencingLocations.add(
+              JpfEntityConversion.getSourceLocationFromInstruction(sourceInsn));
+        }
       }
       return true;
     }
@@ -44,6 +44,7 @@ import anonymous.domain.enlighten.data.MethodInvocation;
 import anonymous.domain.enlighten.data.SourceLocation;
 import anonymous.domain.enlighten.data.TestName;
 import anonymous.domain.enlighten.refpath.RefPath;
+import anonymous.domain.enlighten.slicing.util.DepIdSet;
 import anonymous.domain.enlighten.util.Pair;
 
 public class FeedbackSet {
@@ -58,11 +59,11 @@ public class FeedbackSet {
       new HashMap<>();
   private Map<Pair<MethodInvocation, RefPath>, Set<SourceLocation>> likelyCorrectDirectCov = 
       new HashMap<>();
-  public Map<Pair<MethodInvocationSelection, RefPath>, Set<Long>> incorrectOutputRelevantDeps =
+  public Map<Pair<MethodInvocationSelection, RefPath>, DepIdSet> incorrectOutputRelevantDeps =
       new HashMap<>();
   
   private Map<MethodInvocation, Set<RefPath>> incorrectInputValues = new HashMap<>();
-  public Map<Pair<MethodInvocationSelection, RefPath>, Set<Long>> incorrectInputRelevantDeps =
+  public Map<Pair<MethodInvocationSelection, RefPath>, DepIdSet> incorrectInputRelevantDeps =
       new HashMap<>();
   
   public void addCorrectOutputValue(MethodInvocation invocation, RefPath refPath, 
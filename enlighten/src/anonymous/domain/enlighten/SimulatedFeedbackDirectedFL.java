@@ -55,6 +55,7 @@ import anonymous.domain.enlighten.mcallrepr.MethodCallRepr;
 import anonymous.domain.enlighten.mcallrepr.ValueGraphNode;
 import anonymous.domain.enlighten.publish.ExtraStats;
 import anonymous.domain.enlighten.publish.ExtraStatsPublisher;
+import anonymous.domain.enlighten.publish.PhaseTelemetry;
 import anonymous.domain.enlighten.refpath.RefPath;
 import anonymous.domain.enlighten.slicing.FieldSelectionResult;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
@@ -270,6 +271,7 @@ public class SimulatedFeedbackDirectedFL {
                 ExperimentDataLayout.DATA_ROOT, subjectName,
                 ExperimentDataLayout.GOLDEN_VERSION_DIR));
         ExtraStatsPublisher.startPublisher();
+        PhaseTelemetry.start();
         SimulatedFeedbackDirectedFL experimentFlImpl = 
             new SimulatedFeedbackDirectedFL(faultyVersion, goldenVersion);
         int nQueries = experimentFlImpl.localizeFault();
@@ -278,11 +280,18 @@ public class SimulatedFeedbackDirectedFL {
         } else {
           System.out.println("Fault not identified. Max number of queries exceeded.");
         }
+        PhaseTelemetry.writeReports(faultyVersion.getDataDirRoot());
+        System.out.print(PhaseTelemetry.getReport().toSummary());
+        PhaseTelemetry.shutdown();
         ExtraStatsPublisher.writeToFile(
             faultyVersion.getDataDirRoot().resolve("extra_stats.dat"));
         ExtraStatsPublisher.shutdown();
       } catch (Throwable e) {
         warning(subjectName, "Failed to run experiment on subject " + subjectName, e);
+        if (PhaseTelemetry.isEnabled()) {
+          PhaseTelemetry.writeReports(faultyVersion.getDataDirRoot());
+          PhaseTelemetry.shutdown();
+        }
         if (ExtraStatsPublisher.isAcceptingReports()) {
           ExtraStatsPublisher.writeToFile(
               faultyVersion.getDataDirRoot().resolve("extra_stats.dat"));
@@ -0,0 +1,425 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package anonymous.domain.enlighten.data;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
+
+/**
+ * The method and source line coverage of all the tests of a run, kept in a
+ * single file that the test runner appends to and readers memory-map.
+ * 
+ * The file is a header followed by records. Method and line records add an
+ * entry to the method or line dictionary, and the index of an entry is its
+ * column in the matrix. A test record holds the test description followed
+ * by a method bitmap and a line bitmap. A row only spans the columns that
+ * existed when it was written, so the dictionaries can grow as tests run.
+ * An incomplete record at the end, left by a runner that died mid-write,
+ * is ignored.
+ */
+public class CoverageMatrix {
+  
+  public static final String FILE_NAME = "coverage.matrix";
+  
+  private static final int MAGIC = 0x454e434d;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 8;
+  
+  private static final byte METHOD_RECORD = 1;
+  private static final byte LINE_RECORD = 2;
+  private static final byte TEST_RECORD = 3;
+  
+  private static final String LEGACY_METHOD_COVERAGE_SUFFIX = ".method.cov";
+  private static final String LEGACY_LINE_COVERAGE_SUFFIX = ".line.cov";
+  
+  private List<MethodName> methods = new ArrayList<>();
+  private List<SourceLocation> lines = new ArrayList<>();
+  private List<String> tests = new ArrayList<>();
+  private List<Integer> rowOffsets = new ArrayList<>();
+  private ByteBuffer rows;
+  private int validLength;
+  
+  public static boolean exists(Path covDataDir) {
+    return Files.isRegularFile(covDataDir.resolve(FILE_NAME));
+  }
+  
+  public static CoverageMatrix read(Path matrixFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(matrixFile, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new CoverageMatrix(buffer, matrixFile);
+    }
+  }
+  
+  /**
+   * Reads the method coverage of the tests run into the given directory. Runs
+   * that predate the matrix left one .method.cov file per test instead.
+   */
+  public static Map<TestName, MethodCoverage> readMethodCoverageMatrix(
+      Path covDataDir, SubjectProgram subject, Set<TestName> excludedTests) 
+          throws IOException {
+    if (exists(covDataDir)) {
+      return read(covDataDir.resolve(FILE_NAME)).getMethodCoverageMatrix(
+          subject, excludedTests);
+    }
+    Map<TestName, MethodCoverage> coverageMatrix = new HashMap<>();
+    try (DirectoryStream<Path> covDataFiles = 
+        Files.newDirectoryStream(covDataDir, "*" + LEGACY_METHOD_COVERAGE_SUFFIX)) {
+      for (Path covDataFile : covDataFiles) {
+        TestName test = getLegacyTestName(covDataFile, LEGACY_METHOD_COVERAGE_SUFFIX);
+        if (!excludedTests.contains(test)) {
+          MethodCoverage coverage = 
+              FSTSerialization.readObjectFromFile(MethodCoverage.class, covDataFile);
+          coverage.filterCoverageByAppClasses(subject);
+          coverageMatrix.put(test, coverage);
+        }
+      }
+    }
+    return coverageMatrix;
+  }
+  
+  /**
+   * Reads the source line coverage of the tests run into the given directory.
+   * Runs that predate the matrix left one .line.cov file per test instead.
+   */
+  public static Map<TestName, SourceLocationCoverage> readSourceLocationCoverageMatrix(
+      Path covDataDir, SubjectProgram subject, Set<TestName> excludedTests) 
+          throws IOException {
+    if (exists(covDataDir)) {
+      return read(covDataDir.resolve(FILE_NAME)).getSourceLocationCoverageMatrix(
+          subject, excludedTests);
+    }
+    Map<TestName, SourceLocationCoverage> coverageMatrix = new HashMap<>();
+    try (DirectoryStream<Path> covDataFiles = 
+        Files.newDirectoryStream(covDataDir, "*" + LEGACY_LINE_COVERAGE_SUFFIX)) {
+      for (Path covDataFile : covDataFiles) {
+        TestName test = getLegacyTestName(covDataFile, LEGACY_LINE_COVERAGE_SUFFIX);
+        if (!excludedTests.contains(test)) {
+          SourceLocationCoverage coverage = 
+              FSTSerialization.readObjectFromFile(SourceLocationCoverage.class, covDataFile);
+          coverage.filterCoverageByAppClasses(subject);
+          coverageMatrix.put(test, coverage);
+        }
+      }
+    }
+    return coverageMatrix;
+  }
+  
+  private static TestName getLegacyTestName(Path covDataFile, String suffix) {
+    String dataFileName = covDataFile.getFileName().toString();
+    return TestName.parseFromDescription(
+        dataFileName.substring(0, dataFileName.length() - suffix.length()));
+  }
+  
+  private CoverageMatrix(ByteBuffer buffer, Path matrixFile) throws IOException {
+    rows = buffer;
+    if (buffer.limit() < HEADER_SIZE) {
+      validLength = 0;
+      return;
+    }
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      throw new IOException(matrixFile + " is not a coverage matrix file.");
+    }
+    validLength = HEADER_SIZE;
+    while (buffer.hasRemaining()) {
+      try {
+        readRecord(buffer, matrixFile);
+      } catch (BufferUnderflowException | IllegalArgumentException ex) {
+        break;
+      }
+      validLength = buffer.position();
+    }
+  }
+  
+  private void readRecord(ByteBuffer buffer, Path matrixFile) throws IOException {
+    byte recordType = buffer.get();
+    switch (recordType) {
+    case METHOD_RECORD:
+      String className = readString(buffer);
+      String simpleName = readString(buffer);
+      String signature = readString(buffer);
+      methods.add(MethodName.get(className, simpleName, signature));
+      break;
+    case LINE_RECORD:
+      String sourceFile = readString(buffer);
+      int lineNumber = buffer.getInt();
+      lines.add(SourceLocation.get(sourceFile, lineNumber));
+      break;
+    case TEST_RECORD:
+      String test = readString(buffer);
+      int rowOffset = buffer.position();
+      skipBitmap(buffer);
+      skipBitmap(buffer);
+      tests.add(test);
+      rowOffsets.add(rowOffset);
+      break;
+    default:
+      throw new IOException("Corrupted record in coverage matrix file " + matrixFile);
+    }
+  }
+  
+  public int getTestCount() {
+    return tests.size();
+  }
+  
+  public String getTestDescription(int row) {
+    return tests.get(row);
+  }
+  
+  public List<MethodName> getMethods() {
+    return Collections.unmodifiableList(methods);
+  }
+  
+  public List<SourceLocation> getSourceLocations() {
+    return Collections.unmodifiableList(lines);
+  }
+  
+  public BitSet getMethodRow(int row) {
+    ByteBuffer buffer = rows.duplicate();
+    buffer.position(rowOffsets.get(row));
+    return readBitmap(buffer);
+  }
+  
+  public BitSet getSourceLocationRow(int row) {
+    ByteBuffer buffer = rows.duplicate();
+    buffer.position(rowOffsets.get(row));
+    skipBitmap(buffer);
+    return readBitmap(buffer);
+  }
+  
+  /**
+   * Columns of the method dictionary that belong to app classes.
+   */
+  public BitSet getAppMethodMask(SubjectProgram subject) {
+    BitSet mask = new BitSet(methods.size());
+    for (int column = 0; column < methods.size(); ++column) {
+      if (MethodCoverage.isAppMethod(subject, methods.get(column))) {
+        mask.set(column);
+      }
+    }
+    return mask;
+  }
+  
+  /**
+   * Columns of the line dictionary that belong to app classes.
+   */
+  public BitSet getAppSourceLocationMask(SubjectProgram subject) {
+    BitSet mask = new BitSet(lines.size());
+    for (int column = 0; column < lines.size(); ++column) {
+      if (SourceLocationCoverage.isAppSourceLocation(subject, lines.get(column))) {
+        mask.set(column);
+      }
+    }
+    return mask;
+  }
+  
+  public Map<TestName, MethodCoverage> getMethodCoverageMatrix(
+      SubjectProgram subject, Set<TestName> excludedTests) {
+    BitSet mask = getAppMethodMask(subject);
+    Map<TestName, MethodCoverage> coverageMatrix = new HashMap<>();
+    for (int row = 0; row < tests.size(); ++row) {
+      TestName test = TestName.parseFromDescription(tests.get(row));
+      if (excludedTests.contains(test)) {
+        continue;
+      }
+      BitSet covered = getMethodRow(row);
+      covered.and(mask);
+      MethodCoverage coverage = new MethodCoverage();
+      for (int column = covered.nextSetBit(0); column >= 0; 
+          column = covered.nextSetBit(column + 1)) {
+        coverage.addCoverage(methods.get(column));
+      }
+      coverageMatrix.put(test, coverage);
+    }
+    return coverageMatrix;
+  }
+  
+  public Map<TestName, SourceLocationCoverage> getSourceLocationCoverageMatrix(
+      SubjectProgram subject, Set<TestName> excludedTests) {
+    BitSet mask = getAppSourceLocationMask(subject);
+    Map<TestName, SourceLocationCoverage> coverageMatrix = new HashMap<>();
+    for (int row = 0; row < tests.size(); ++row) {
+      TestName test = TestName.parseFromDescription(tests.get(row));
+      if (excludedTests.contains(test)) {
+        continue;
+      }
+      BitSet covered = getSourceLocationRow(row);
+      covered.and(mask);
+      SourceLocationCoverage coverage = new SourceLocationCoverage();
+      for (int column = covered.nextSetBit(0); column >= 0; 
+          column = covered.nextSetBit(column + 1)) {
+        coverage.addCoverage(lines.get(column));
+      }
+      coverageMatrix.put(test, coverage);
+    }
+    return coverageMatrix;
+  }
+  
+  private static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+  
+  private static BitSet readBitmap(ByteBuffer buffer) {
+    long[] words = new long[buffer.getInt()];
+    buffer.asLongBuffer().get(words);
+    buffer.position(buffer.position() + words.length * Long.BYTES);
+    return BitSet.valueOf(words);
+  }
+  
+  private static void skipBitmap(ByteBuffer buffer) {
+    int numWords = buffer.getInt();
+    buffer.position(buffer.position() + numWords * Long.BYTES);
+  }
+  
+  /**
+   * Appends test rows to a coverage matrix file, extending the dictionaries
+   * with the methods and lines not seen before. Opening an existing file
+   * continues its dictionaries and drops an incomplete trailing record.
+   */
+  public static class Writer implements Closeable {
+    
+    private Map<MethodName, Integer> methodColumns = new HashMap<>();
+    private Map<SourceLocation, Integer> lineColumns = new HashMap<>();
+    private DataOutputStream out;
+    
+    public Writer(Path matrixFile) throws IOException {
+      FileChannel channel = FileChannel.open(matrixFile, 
+          StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      boolean writeHeader = true;
+      if (channel.size() > 0) {
+        CoverageMatrix existing = new CoverageMatrix(
+            channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), matrixFile);
+        if (existing.validLength > 0) {
+          writeHeader = false;
+          for (MethodName method : existing.methods) {
+            methodColumns.put(method, methodColumns.size());
+          }
+          for (SourceLocation line : existing.lines) {
+            lineColumns.put(line, lineColumns.size());
+          }
+        }
+        channel.truncate(existing.validLength);
+      }
+      channel.position(channel.size());
+      out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      if (writeHeader) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.flush();
+      }
+    }
+    
+    /**
+     * Appends the row of a test. The row is flushed to the file before this
+     * method returns.
+     */
+    public void appendTest(String testDescription, Collection<MethodName> coveredMethods, 
+        Collection<SourceLocation> coveredLines) throws IOException {
+      BitSet methodRow = new BitSet();
+      for (MethodName method : coveredMethods) {
+        Integer column = methodColumns.get(method);
+        if (column == null) {
+          column = methodColumns.size();
+          methodColumns.put(method, column);
+          out.writeByte(METHOD_RECORD);
+          writeString(method.getClassName());
+          writeString(method.getMethodName());
+          writeString(method.getMethodSignature());
+        }
+        methodRow.set(column);
+      }
+      BitSet lineRow = new BitSet();
+      for (SourceLocation line : coveredLines) {
+        Integer column = lineColumns.get(line);
+        if (column == null) {
+          column = lineColumns.size();
+          lineColumns.put(line, column);
+          out.writeByte(LINE_RECORD);
+          writeString(line.getSourceFile());
+          out.writeInt(line.getLineNumber());
+        }
+        lineRow.set(column);
+      }
+      out.writeByte(TEST_RECORD);
+      writeString(testDescription);
+      writeBitmap(methodRow);
+      writeBitmap(lineRow);
+      out.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+    
+    private void writeString(String str) throws IOException {
+      byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+    
+    private void writeBitmap(BitSet bitmap) throws IOException {
+      long[] words = bitmap.toLongArray();
+      out.writeInt(words.length);
+      for (long word : words) {
+        out.writeLong(word);
+      }
+    }
+  }
+}
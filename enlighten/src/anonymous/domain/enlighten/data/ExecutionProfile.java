@@ -56,6 +56,7 @@ public class ExecutionProfile implements Serializable {
   private transient Map<MethodName, List<MethodInvocation>> invocationIndexMap;
   private transient Map<SourceLocation, List<MethodInvocation>> sourceCoverageInvocationMap;
   private transient int numInvocations;
+  private transient InvocationTreeIndex treeIndex;
   
 
 
@@ -107,7 +108,19 @@ public class ExecutionProfile implements Serializable {
     }
   }
   
+  /**
+   * The subtree coverage index of the invocation tree, built on first use and
+   * dropped whenever the invocation index map is refreshed.
+   */
+  public InvocationTreeIndex getTreeIndex() {
+    if (treeIndex == null) {
+      treeIndex = new InvocationTreeIndex(methodInvocationTreeRoot);
+    }
+    return treeIndex;
+  }
+  
   public void refreshInvocationIndexMap() {
+    treeIndex = null;
     invocationIndexMap = new HashMap<>();
     sourceCoverageInvocationMap = new HashMap<>();
     numInvocations = 0;
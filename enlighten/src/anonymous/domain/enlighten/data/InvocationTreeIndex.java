@@ -0,0 +1,276 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package anonymous.domain.enlighten.data;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Numbers the invocations of a tree in pre-order, so that the subtree of an
+ * invocation is an interval of numbers, and keeps for every source location
+ * the sorted numbers of the invocations that directly execute it. Subtree
+ * coverage queries are then answered with binary searches over these lists
+ * instead of walking the subtree. Coverage comes back as a bit set over the
+ * location dictionary of the index.
+ */
+public class InvocationTreeIndex {
+  
+  private MethodInvocation[] invocations;
+  private int[] subtreeEnds;
+  private IdentityHashMap<MethodInvocation, Integer> preorderIndices = new IdentityHashMap<>();
+  
+  private List<SourceLocation> locations = new ArrayList<>();
+  private Map<SourceLocation, Integer> locationIds = new HashMap<>();
+  private int[][] occurrences;
+  
+  public InvocationTreeIndex(MethodInvocation root) {
+    List<MethodInvocation> preorder = new ArrayList<>();
+    Deque<MethodInvocation> stack = new ArrayDeque<>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      MethodInvocation node = stack.pop();
+      preorderIndices.put(node, preorder.size());
+      preorder.add(node);
+      List<MethodInvocation> children = node.getEnclosedInvocations();
+      for (int i = children.size() - 1; i >= 0; --i) {
+        stack.push(children.get(i));
+      }
+    }
+    invocations = preorder.toArray(new MethodInvocation[preorder.size()]);
+    subtreeEnds = new int[invocations.length];
+    for (int index = invocations.length - 1; index >= 0; --index) {
+      int end = index + 1;
+      List<MethodInvocation> children = invocations[index].getEnclosedInvocations();
+      if (!children.isEmpty()) {
+        end = subtreeEnds[preorderIndices.get(children.get(children.size() - 1))];
+      }
+      subtreeEnds[index] = end;
+    }
+    indexLocations();
+  }
+  
+  private void indexLocations() {
+    List<Integer> counts = new ArrayList<>();
+    for (MethodInvocation invocation : invocations) {
+      Map<SourceLocation, Integer> execCounts = invocation.getStatementsExecCountMap();
+      if (execCounts == null) {
+        continue;
+      }
+      for (SourceLocation location : execCounts.keySet()) {
+        Integer id = locationIds.get(location);
+        if (id == null) {
+          locationIds.put(location, locations.size());
+          locations.add(location);
+          counts.add(1);
+        } else {
+          counts.set(id, counts.get(id) + 1);
+        }
+      }
+    }
+    occurrences = new int[locations.size()][];
+    for (int id = 0; id < occurrences.length; ++id) {
+      occurrences[id] = new int[counts.get(id)];
+    }
+    int[] filled = new int[occurrences.length];
+    for (int index = 0; index < invocations.length; ++index) {
+      Map<SourceLocation, Integer> execCounts = invocations[index].getStatementsExecCountMap();
+      if (execCounts == null) {
+        continue;
+      }
+      for (SourceLocation location : execCounts.keySet()) {
+        int id = locationIds.get(location);
+        occurrences[id][filled[id]++] = index;
+      }
+    }
+  }
+  
+  public int getNumInvocations() {
+    return invocations.length;
+  }
+  
+  public int getNumLocations() {
+    return locations.size();
+  }
+  
+  public SourceLocation getLocation(int locationId) {
+    return locations.get(locationId);
+  }
+  
+  /**
+   * @return the id of the location in the dictionary of this index, or -1 if
+   * no invocation of the tree executes the location
+   */
+  public int getLocationId(SourceLocation location) {
+    Integer id = locationIds.get(location);
+    return id != null ? id : -1;
+  }
+  
+  public int getPreorderIndex(MethodInvocation invocation) {
+    Integer index = preorderIndices.get(invocation);
+    if (index == null) {
+      throw new IllegalArgumentException(invocation + " is not in the indexed tree.");
+    }
+    return index;
+  }
+  
+  public boolean isInSubtree(MethodInvocation subtreeRoot, MethodInvocation invocation) {
+    int start = getPreorderIndex(subtreeRoot);
+    int index = getPreorderIndex(invocation);
+    return index >= start && index < subtreeEnds[start];
+  }
+  
+  /**
+   * Locations executed by the given invocation or any invocation it encloses.
+   */
+  public BitSet getSubtreeCoverage(MethodInvocation subtreeRoot) {
+    int start = getPreorderIndex(subtreeRoot);
+    int end = subtreeEnds[start];
+    BitSet coverage = new BitSet(locations.size());
+    for (int id = 0; id < occurrences.length; ++id) {
+      if (firstOccurrence(occurrences[id], start) < end) {
+        coverage.set(id);
+      }
+    }
+    return coverage;
+  }
+  
+  public boolean isCoveredInSubtree(MethodInvocation subtreeRoot, SourceLocation location) {
+    int id = getLocationId(location);
+    if (id < 0) {
+      return false;
+    }
+    int start = getPreorderIndex(subtreeRoot);
+    return firstOccurrence(occurrences[id], start) < subtreeEnds[start];
+  }
+  
+  /**
+   * Invocations in the subtree of the given invocation that directly execute
+   * the location, in pre-order.
+   */
+  public List<MethodInvocation> getInvocationsCovering(
+      MethodInvocation subtreeRoot, SourceLocation location) {
+    int id = getLocationId(location);
+    if (id < 0) {
+      return Collections.emptyList();
+    }
+    int start = getPreorderIndex(subtreeRoot);
+    final int[] occurrenceList = occurrences[id];
+    final int from = lowerBound(occurrenceList, start);
+    final int to = lowerBound(occurrenceList, subtreeEnds[start]);
+    return new AbstractList<MethodInvocation>() {
+
+      @Override
+      public MethodInvocation get(int index) {
+        if (index < 0 || index >= to - from) {
+          throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return invocations[occurrenceList[from + index]];
+      }
+
+      @Override
+      public int size() {
+        return to - from;
+      }
+    };
+  }
+  
+  /**
+   * Wraps a bit set over the location dictionary of this index as a set of
+   * source locations. The set is a view and reflects later changes to the
+   * bit set.
+   */
+  public Set<SourceLocation> toLocationSet(final BitSet locationBits) {
+    return new AbstractSet<SourceLocation>() {
+
+      @Override
+      public boolean contains(Object o) {
+        Integer id = locationIds.get(o);
+        return id != null && locationBits.get(id);
+      }
+
+      @Override
+      public Iterator<SourceLocation> iterator() {
+        return new Iterator<SourceLocation>() {
+          
+          private int next = locationBits.nextSetBit(0);
+
+          @Override
+          public boolean hasNext() {
+            return next >= 0;
+          }
+
+          @Override
+          public SourceLocation next() {
+            if (next < 0) {
+              throw new NoSuchElementException();
+            }
+            SourceLocation location = locations.get(next);
+            next = locationBits.nextSetBit(next + 1);
+            return location;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return locationBits.cardinality();
+      }
+    };
+  }
+  
+  private static int firstOccurrence(int[] occurrenceList, int start) {
+    int index = lowerBound(occurrenceList, start);
+    return index < occurrenceList.length ? occurrenceList[index] : Integer.MAX_VALUE;
+  }
+  
+  private static int lowerBound(int[] sorted, int key) {
+    int index = Arrays.binarySearch(sorted, key);
+    return index >= 0 ? index : -index - 1;
+  }
+}
@@ -46,7 +46,7 @@ public class MethodCoverage extends Coverage<MethodName> {
   public void filterCoverageByAppClasses(SubjectProgram subjectProgram) {
     List<MethodName> toRemove = new ArrayList<>();
     for (MethodName coveredMethod : getCoverage()) {
-      if (!subjectProgram.isAppClass(coveredMethod.getClassName())) {
+      if (!isAppMethod(subjectProgram, coveredMethod)) {
         toRemove.add(coveredMethod);
       }
     }
@@ -54,4 +54,8 @@ public class MethodCoverage extends Coverage<MethodName> {
       removeCoverage(remove);
     }
   }
+  
+  public static boolean isAppMethod(SubjectProgram subjectProgram, MethodName method) {
+    return subjectProgram.isAppClass(method.getClassName());
+  }
 }
@@ -63,7 +63,7 @@ public class MethodInvocation implements Serializable, Annotatable {
   private int numMemoryWriteLocations;
   private int numMemoryWriteObjects;
 
-  private DefaultAnnotationList annotations = new DefaultAnnotationList();
+  private DefaultAnnotationList annotations;
   
   public MethodInvocation(MethodName methodName) {
     this.methodName = methodName;
@@ -168,21 +168,24 @@ public class MethodInvocation implements Serializable, Annotatable {
   
   @Override
   public void addAnnotation(ValueAnnotation annotation) {
+    if (annotations == null) {
+      annotations = new DefaultAnnotationList();
+    }
     annotations.addAnnotation(annotation);
   }
   
   @Override
   public <T extends ValueAnnotation> T getAnnotation(Class<T> annotationClass) {
-    return annotations.getAnnotation(annotationClass);
+    return annotations != null ? annotations.getAnnotation(annotationClass) : null;
   }
   
   @Override
   public boolean removeAnnotation(ValueAnnotation annotation) {
-    return annotations.removeAnnotation(annotation);
+    return annotations != null && annotations.removeAnnotation(annotation);
   }
   
   @Override
   public boolean removeAnnotation(Class<? extends ValueAnnotation> annotationClass) {
-    return annotations.removeAnnotation(annotationClass);
+    return annotations != null && annotations.removeAnnotation(annotationClass);
   }
 }
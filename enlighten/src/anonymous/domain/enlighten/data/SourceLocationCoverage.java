@@ -46,10 +46,7 @@ public class SourceLocationCoverage extends Coverage<SourceLocation> {
   public void filterCoverageByAppClasses(SubjectProgram subjectProgram) {
     List<SourceLocation> toRemove = new ArrayList<>();
     for (SourceLocation coveredLine : getCoverage()) {
-      String sourcePath = coveredLine.getSourceFile();
-      String sourceFilePublicClassName = 
-          sourcePath.substring(0, sourcePath.length() - 5).replace('/', '.');
-      if (!subjectProgram.isAppClass(sourceFilePublicClassName)) {
+      if (!isAppSourceLocation(subjectProgram, coveredLine)) {
         toRemove.add(coveredLine);
       }
     }
@@ -57,4 +54,12 @@ public class SourceLocationCoverage extends Coverage<SourceLocation> {
       removeCoverage(remove);
     }
   }
+  
+  public static boolean isAppSourceLocation(
+      SubjectProgram subjectProgram, SourceLocation location) {
+    String sourcePath = location.getSourceFile();
+    String sourceFilePublicClassName = 
+        sourcePath.substring(0, sourcePath.length() - 5).replace('/', '.');
+    return subjectProgram.isAppClass(sourceFilePublicClassName);
+  }
 }
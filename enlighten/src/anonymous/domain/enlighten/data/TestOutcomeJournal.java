@@ -0,0 +1,305 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The outcomes of the tests of a run with their costs, kept in an append-only
+ * file that the test runner writes one record to as each test finishes.
+ * 
+ * The file is a header followed by records. A record is the length of its
+ * payload, the payload and the CRC-32 of the payload. The payload holds the
+ * test description, whether the test passed, and its wall time, CPU time and
+ * allocated bytes, the last two being -1 if they were not measured. Records
+ * are read up to the first incomplete or corrupted one, which is what a
+ * runner killed mid-write leaves behind.
+ */
+public class TestOutcomeJournal {
+  
+  private static final int MAGIC = 0x454e544f;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 8;
+  
+  private static final int MAX_PAYLOAD_SIZE = 1 << 20;
+  
+  /**
+   * Checks the header of file, e.g. to tell a journal from an older plain
+   * text test outcomes file.
+   */
+  public static boolean isJournal(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+      return in.readInt() == MAGIC;
+    } catch (EOFException ex) {
+      return false;
+    }
+  }
+  
+  public static class Record {
+    
+    private String testDescription;
+    private boolean passed;
+    private long wallTimeNanos;
+    private long cpuTimeNanos;
+    private long allocatedBytes;
+    
+    public Record(String testDescription, boolean passed, 
+        long wallTimeNanos, long cpuTimeNanos, long allocatedBytes) {
+      this.testDescription = testDescription;
+      this.passed = passed;
+      this.wallTimeNanos = wallTimeNanos;
+      this.cpuTimeNanos = cpuTimeNanos;
+      this.allocatedBytes = allocatedBytes;
+    }
+    
+    public String getTestDescription() {
+      return testDescription;
+    }
+    
+    public TestName getTestName() {
+      return TestName.parseFromDescription(testDescription);
+    }
+    
+    public boolean isPassed() {
+      return passed;
+    }
+    
+    public long getWallTimeNanos() {
+      return wallTimeNanos;
+    }
+    
+    public long getCpuTimeNanos() {
+      return cpuTimeNanos;
+    }
+    
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+  }
+  
+  /**
+   * Streams the valid records of a journal file.
+   */
+  public static class Reader implements Closeable {
+    
+    private Path journalFile;
+    private DataInputStream in;
+    private long validLength;
+    private boolean atEnd;
+    
+    public Reader(Path journalFile) throws IOException {
+      this.journalFile = journalFile;
+      in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile)));
+      try {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+          in.close();
+          throw new IOException(journalFile + " is not a test outcome journal.");
+        }
+        validLength = HEADER_SIZE;
+      } catch (EOFException ex) {
+        atEnd = true;
+      }
+    }
+    
+    /**
+     * @return the next record, or null at the end of the valid records
+     */
+    public Record next() throws IOException {
+      if (atEnd) {
+        return null;
+      }
+      try {
+        int payloadSize = in.readInt();
+        if (payloadSize < 0 || payloadSize > MAX_PAYLOAD_SIZE) {
+          return endOfValidRecords();
+        }
+        byte[] payload = new byte[payloadSize];
+        in.readFully(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if (in.readInt() != (int) crc.getValue()) {
+          return endOfValidRecords();
+        }
+        Record record = parsePayload(payload);
+        validLength += Integer.BYTES + payloadSize + Integer.BYTES;
+        return record;
+      } catch (EOFException ex) {
+        return endOfValidRecords();
+      }
+    }
+    
+    /**
+     * Length of the header and of the records read so far.
+     */
+    public long getValidLength() {
+      return validLength;
+    }
+    
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+    
+    private Record endOfValidRecords() {
+      atEnd = true;
+      return null;
+    }
+    
+    private Record parsePayload(byte[] payload) throws IOException {
+      DataInputStream payloadIn = new DataInputStream(new ByteArrayInputStream(payload));
+      try {
+        byte[] descBytes = new byte[payloadIn.readInt()];
+        payloadIn.readFully(descBytes);
+        return new Record(new String(descBytes, StandardCharsets.UTF_8), 
+            payloadIn.readBoolean(), payloadIn.readLong(), 
+            payloadIn.readLong(), payloadIn.readLong());
+      } catch (EOFException | NegativeArraySizeException ex) {
+        throw new IOException("Corrupted record in test outcome journal " + journalFile);
+      }
+    }
+  }
+  
+  /**
+   * Appends records to a journal file. Each record is handed to the
+   * operating system when appended, so it survives the death of the JVM,
+   * and the file is synced to the disk every SYNC_INTERVAL_RECORDS records
+   * or SYNC_INTERVAL_MILLIS, whichever comes first, and on close. Opening an
+   * existing file drops an incomplete or corrupted tail. An existing file in
+   * another format, like the plain text outcome files of earlier runners, is
+   * moved aside to the same name with an ".old" suffix.
+   */
+  public static class Writer implements Closeable {
+    
+    private static final int SYNC_INTERVAL_RECORDS = 64;
+    private static final long SYNC_INTERVAL_MILLIS = 1000;
+    
+    private FileChannel channel;
+    private DataOutputStream out;
+    private ByteArrayOutputStream payloadBuffer = new ByteArrayOutputStream();
+    private DataOutputStream payloadOut = new DataOutputStream(payloadBuffer);
+    private CRC32 crc = new CRC32();
+    private int numRecordsSinceSync;
+    private long lastSyncMillis = System.currentTimeMillis();
+    
+    public Writer(Path journalFile) throws IOException {
+      if (hasOtherFormat(journalFile)) {
+        Files.move(journalFile, journalFile.resolveSibling(journalFile.getFileName() + ".old"), 
+            StandardCopyOption.REPLACE_EXISTING);
+      }
+      channel = FileChannel.open(journalFile, 
+          StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      long validLength = 0;
+      if (channel.size() > 0) {
+        try (Reader reader = new Reader(journalFile)) {
+          while (reader.next() != null) {
+          }
+          validLength = reader.getValidLength();
+        }
+      }
+      channel.truncate(validLength);
+      channel.position(validLength);
+      out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      if (validLength == 0) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.flush();
+      }
+    }
+    
+    private static boolean hasOtherFormat(Path journalFile) throws IOException {
+      if (!Files.exists(journalFile)) {
+        return false;
+      }
+      try (DataInputStream in = new DataInputStream(Files.newInputStream(journalFile))) {
+        return in.readInt() != MAGIC || in.readInt() != VERSION;
+      } catch (EOFException ex) {
+        return false;
+      }
+    }
+    
+    public void append(Record record) throws IOException {
+      payloadBuffer.reset();
+      byte[] descBytes = record.getTestDescription().getBytes(StandardCharsets.UTF_8);
+      payloadOut.writeInt(descBytes.length);
+      payloadOut.write(descBytes);
+      payloadOut.writeBoolean(record.isPassed());
+      payloadOut.writeLong(record.getWallTimeNanos());
+      payloadOut.writeLong(record.getCpuTimeNanos());
+      payloadOut.writeLong(record.getAllocatedBytes());
+      payloadOut.flush();
+      byte[] payload = payloadBuffer.toByteArray();
+      crc.reset();
+      crc.update(payload);
+      out.writeInt(payload.length);
+      out.write(payload);
+      out.writeInt((int) crc.getValue());
+      out.flush();
+      ++numRecordsSinceSync;
+      if (numRecordsSinceSync >= SYNC_INTERVAL_RECORDS 
+          || System.currentTimeMillis() - lastSyncMillis >= SYNC_INTERVAL_MILLIS) {
+        sync();
+      }
+    }
+    
+    @Override
+    public void close() throws IOException {
+      out.flush();
+      sync();
+      out.close();
+    }
+    
+    private void sync() throws IOException {
+      channel.force(false);
+      numRecordsSinceSync = 0;
+      lastSyncMillis = System.currentTimeMillis();
+    }
+  }
+}
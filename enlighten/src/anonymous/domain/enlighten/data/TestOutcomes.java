@@ -50,8 +50,28 @@ public class TestOutcomes implements Serializable {
 
   private Map<TestName, Boolean> testOutcomes = new HashMap<>();
   
+  /**
+   * Reads a TestOutcomeJournal or a plain text file as written by
+   * writeTestOutcomes.
+   */
   public static TestOutcomes readTestOutcomesFromFile(Path dataFile) throws IOException {
     TestOutcomes testOutcomes = new TestOutcomes();
+    if (TestOutcomeJournal.isJournal(dataFile)) {
+      try (TestOutcomeJournal.Reader reader = new TestOutcomeJournal.Reader(dataFile)) {
+        TestOutcomeJournal.Record record;
+        while ((record = reader.next()) != null) {
+          TestName testName = null;
+          try {
+            testName = record.getTestName();
+          } catch (IllegalArgumentException e) {
+            DataFormatErrorUtils.dataFormatError(
+                "test outcomes", dataFile, record.getTestDescription());
+          }
+          testOutcomes.addTestOutcome(testName, record.isPassed());
+        }
+      }
+      return testOutcomes;
+    }
     List<String> lines = Files.readAllLines(dataFile);
     for (String testOutcomeRecord : lines) {
       if (testOutcomeRecord.isEmpty()) {
@@ -42,6 +42,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
+import anonymous.domain.enlighten.publish.PhaseTelemetry;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
 import anonymous.domain.enlighten.subjectmodel.SubjectUtils;
 
@@ -71,12 +72,14 @@ public class CompileSubjectProgram extends ExternalProgramInvocation {
     
 
     if (sourceFiles.size() > 0) {
+      PhaseTelemetry.Span span = PhaseTelemetry.startSpan("compile");
       String[] compileAppSourceCommand = 
           getCompileCommand(classPathStr, sourceFiles);
       Process compileAppSourceProcess = newOutputRedirectedProcessBuilder()
           .command(compileAppSourceCommand)
           .start();
       int retCode = compileAppSourceProcess.waitFor();
+      span.end();
       if (retCode != 0) {
         throw new RuntimeException(
             "Failed to comile subject program source files: " + subjectProgram.getRootDir());
@@ -35,22 +35,22 @@
 package anonymous.domain.enlighten.exec;
 
 import instr.agent.InstrumenterConfig;
+import instr.agent.InstrumenterConfig.CoverageMode;
 import instr.agent.InstrumenterConfig.InstrumenterType;
 import instr.runner.TestRunner;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import anonymous.domain.enlighten.data.CoverageMatrix;
 import anonymous.domain.enlighten.data.ExecutionProfile;
 import anonymous.domain.enlighten.data.FSTSerialization;
 import anonymous.domain.enlighten.data.MethodCoverage;
@@ -58,7 +58,9 @@ import anonymous.domain.enlighten.data.SourceLocationCoverage;
 import anonymous.domain.enlighten.data.TestName;
 import anonymous.domain.enlighten.data.TestOutcomes;
 import anonymous.domain.enlighten.files.RemoveDirTreeFileVisitor;
+import anonymous.domain.enlighten.publish.PhaseTelemetry;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
+import anonymous.domain.enlighten.util.StringUtils;
 
 public class RunTestsWithCoverage extends ExternalProgramInvocation {
 
@@ -72,6 +74,8 @@ public class RunTestsWithCoverage extends ExternalProgramInvocation {
   private boolean writeMemAccessWithInvocationTree = false;
   private boolean writeTrace = false;
   
+  private TestResultCache resultCache;
+  
   private TestOutcomes testOutcomes;
   private Map<TestName, MethodCoverage> methodCoverageMatrix;
   private Map<TestName, SourceLocationCoverage> sourceCoverageMatrix;
@@ -107,6 +111,15 @@ public class RunTestsWithCoverage extends ExternalProgramInvocation {
   public void writeTraceFiles(boolean write) {
     writeTrace = write;
   }
+  
+  /**
+   * Reuses the outcomes, coverage and execution profiles of the tests whose
+   * dependencies did not change since they were stored in the cache, and
+   * stores the results of the tests that run. Not used when writing traces.
+   */
+  public void setResultCache(TestResultCache cache) {
+    resultCache = cache;
+  }
 
   public void generateCoverageData() throws IOException {
     Path logFilePath = getLogFilePath();
@@ -133,18 +146,41 @@ public class RunTestsWithCoverage extends ExternalProgramInvocation {
         new InstrumenterConfig(InstrumenterType.TRACE_INSTRUMENTER);
     instrumenterConfig.setInstrumentedPackage(subjectProgram.getAppPackage());
     instrumenterConfig.instrumentLineNumber(true);
+    instrumenterConfig.setCoverageMode(
+        writeTrace ? CoverageMode.EVERY_HIT : CoverageMode.FIRST_HIT);
     instrumenterConfig.instrumentMemoryAccess(false);
     instrumenterConfig.instrumentStateCapture(false);
     instrumenterConfig.storeToFile(instrumenterConfigFile.toFile());
 
-    List<Class<?>> testClasses = new ArrayList<>(subjectProgram.listTestClasses());
-    StringBuilder testClassesStrBuilder = new StringBuilder();
-    for (int i = 0; i < testClasses.size(); ++i) {
-      testClassesStrBuilder.append(testClasses.get(i).getName());
-      if (i != testClasses.size() - 1) {
-        testClassesStrBuilder.append(',');
+    List<String> testClassNames = subjectProgram.listTestClassNames();
+    if (resultCache == null || writeTrace) {
+      runTests(testClassNames, Collections.emptyList(), instrumenterConfigFile, false);
+    } else {
+      InstrumenterConfig coverageConfig = writeCoverage ? instrumenterConfig : null;
+      try (TestResultCache.Session cacheSession = resultCache.openSession(subjectProgram)) {
+        TestResultCache.Plan plan = cacheSession.planTestClasses(testClassNames, coverageConfig);
+        cacheSession.writeCachedResults(plan, coverageConfig, subjectCovDataDir);
+        if (plan.hasTestsToRun()) {
+          runTests(plan.getTestClassesToRun(), plan.getTestsToRun(), 
+              instrumenterConfigFile, true);
+          cacheSession.storeResults(
+              subjectCovDataDir, coverageConfig, plan.getTestClassesToRun());
+        }
       }
     }
+    
+    if (writeInvocationTreeForFailures) {
+      writeInvocationTreeForFailingTests();
+    }
+  }
+  
+  private void runTests(List<String> testClassNames, List<TestName> tests, 
+      Path instrumenterConfigFile, boolean writeDependencies) throws IOException {
+    Path subjectCovDataDir = subjectProgram.getCoverageDir();
+    List<String> testMethodNames = new ArrayList<>();
+    for (TestName test : tests) {
+      testMethodNames.add(test.getTestMethodLongName());
+    }
     ProcessBuilder runCovProc = newOutputRedirectedProcessBuilder();
     List<String> commandComponents = new ArrayList<>();
     commandComponents.add("java");
@@ -167,7 +203,12 @@ public class RunTestsWithCoverage extends ExternalProgramInvocation {
       commandComponents.add("-noverify");
     }
     commandComponents.add("instr.runner.TestRunner");
-    commandComponents.add("--testclasses=" + testClassesStrBuilder.toString());
+    if (!testClassNames.isEmpty() || testMethodNames.isEmpty()) {
+      commandComponents.add("--testclasses=" + StringUtils.concat(testClassNames, ","));
+    }
+    if (!testMethodNames.isEmpty()) {
+      commandComponents.add("--test_methods=" + StringUtils.concat(testMethodNames, ","));
+    }
     commandComponents.add("--data_dir=" + subjectCovDataDir.toAbsolutePath());
     commandComponents.add("--write_test_outcomes");
     if (writeCoverage) {
@@ -176,20 +217,22 @@ public class RunTestsWithCoverage extends ExternalProgramInvocation {
     if (writeTrace) {
       commandComponents.add("--write_trace");
     }
+    if (writeDependencies) {
+      commandComponents.add("--write_dependencies");
+    }
     int retVal = 1;
+    PhaseTelemetry.Span span = PhaseTelemetry.startSpan("coverage.run");
     try {
       retVal = runCovProc.command(commandComponents).start().waitFor();
     } catch (InterruptedException e) {
       throw new RuntimeException("Test execution aborted.", e);
+    } finally {
+      span.end();
     }
     if (retVal != 0) {
       throw new RuntimeException(
           "Error generating coverage data for subject program at " + subjectProgram.getRootDir());
     }
-    
-    if (writeInvocationTreeForFailures) {
-      writeInvocationTreeForFailingTests();
-    }
   }
   
   public void writeInvocationTreeForFailingTests() throws IOException {
@@ -203,12 +246,38 @@ public class RunTestsWithCoverage extends ExternalProgramInvocation {
     instrumenterConfig.instrumentStateCapture(true);
     instrumenterConfig.storeToFile(instrumenterConfigFile.toFile());
     readTestOutcomes();
-    Set<String> testMethodsToWriteTree = new HashSet<>();
+    List<TestName> failingTests = new ArrayList<>();
     for (TestName test: testOutcomes.getTestSet()) {
       if (!testOutcomes.isPassed(test)) {
-        testMethodsToWriteTree.add(test.getTestClassName() + "." + test.getTestMethodName());
+        failingTests.add(test);
       }
     }
+    if (resultCache == null) {
+      writeInvocationTrees(failingTests, instrumenterConfigFile);
+      return;
+    }
+    try (TestResultCache.Session cacheSession = resultCache.openSession(subjectProgram)) {
+      List<TestName> uncachedTests = new ArrayList<>();
+      for (TestName test : failingTests) {
+        if (!cacheSession.restoreExecutionProfile(
+            test, instrumenterConfig, subjectCovDataDir)) {
+          uncachedTests.add(test);
+        }
+      }
+      writeInvocationTrees(uncachedTests, instrumenterConfigFile);
+      for (TestName test : uncachedTests) {
+        cacheSession.storeExecutionProfile(test, instrumenterConfig, subjectCovDataDir);
+      }
+    }
+  }
+  
+  private void writeInvocationTrees(List<TestName> tests, Path instrumenterConfigFile) 
+      throws IOException {
+    Path subjectCovDataDir = subjectProgram.getCoverageDir();
+    Set<String> testMethodsToWriteTree = new HashSet<>();
+    for (TestName test : tests) {
+      testMethodsToWriteTree.add(test.getTestClassName() + "." + test.getTestMethodName());
+    }
     for (String testLongName : testMethodsToWriteTree) {
       ProcessBuilder genInvocationTreeProc = newOutputRedirectedProcessBuilder();
       List<String> commandComponents = new ArrayList<>();
@@ -234,10 +303,13 @@ public class RunTestsWithCoverage extends ExternalProgramInvocation {
       commandComponents.add("--data_dir=" + subjectCovDataDir.toAbsolutePath());
       commandComponents.add("--write_invocation_tree");
       int retVal = 1;
+      PhaseTelemetry.Span span = PhaseTelemetry.startSpan("coverage.invocation_tree");
       try {
         retVal = genInvocationTreeProc.command(commandComponents).start().waitFor();
       } catch (InterruptedException e) {
         throw new RuntimeException("Test execution aborted.", e);
+      } finally {
+        span.end();
       }
       if (retVal != 0) {
         throw new RuntimeException("Error generating invocation tree data");
@@ -295,44 +367,19 @@ public class RunTestsWithCoverage extends ExternalProgramInvocation {
   }
   
   private void readTestsCoverage() throws IOException {
-    methodCoverageMatrix = new HashMap<>();
-    File[] covDataFiles = subjectProgram.getCoverageDir().toFile().listFiles(new FileFilter() {
-      @Override
-      public boolean accept(File pathname) {
-        return pathname.getName().endsWith(".method.cov");
-      }
-    });
-    for (File covDataFile : covDataFiles) {
-      String dataFileName = covDataFile.getName();
-
-      String testDescription = dataFileName.substring(0, dataFileName.length() - 11);
-      TestName test = TestName.parseFromDescription(testDescription);
-      if (!excludedTests.contains(test)) {
-        MethodCoverage coverage = 
-            FSTSerialization.readObjectFromFile(MethodCoverage.class, covDataFile.toPath());
-        coverage.filterCoverageByAppClasses(subjectProgram);
-        methodCoverageMatrix.put(test, coverage);
-      }
-    }
-    
-    sourceCoverageMatrix = new HashMap<>();
-    covDataFiles = subjectProgram.getCoverageDir().toFile().listFiles(new FileFilter() {
-      @Override
-      public boolean accept(File pathname) {
-        return pathname.getName().endsWith(".line.cov");
-      }
-    });
-    for (File covDataFile : covDataFiles) {
-      String dataFileName = covDataFile.getName();
-
-      String testDescription = dataFileName.substring(0, dataFileName.length() - 9);
-      TestName test = TestName.parseFromDescription(testDescription);
-      if (!excludedTests.contains(test)) {
-        SourceLocationCoverage coverage = 
-            FSTSerialization.readObjectFromFile(SourceLocationCoverage.class, covDataFile.toPath());
-        coverage.filterCoverageByAppClasses(subjectProgram);
-        sourceCoverageMatrix.put(test, coverage);
-      }
+    PhaseTelemetry.Span span = PhaseTelemetry.startSpan("coverage.read");
+    try {
+      doReadTestsCoverage();
+    } finally {
+      span.end();
     }
   }
+  
+  private void doReadTestsCoverage() throws IOException {
+    Path covDataDir = subjectProgram.getCoverageDir();
+    methodCoverageMatrix = CoverageMatrix.readMethodCoverageMatrix(
+        covDataDir, subjectProgram, excludedTests);
+    sourceCoverageMatrix = CoverageMatrix.readSourceLocationCoverageMatrix(
+        covDataDir, subjectProgram, excludedTests);
+  }
 }
@@ -0,0 +1,742 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.exec;
+
+import instr.agent.InstrumenterConfig;
+import instr.callback.DumpDependenciesListener;
+import instr.runner.TestRunner;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import anonymous.domain.enlighten.data.CoverageMatrix;
+import anonymous.domain.enlighten.data.MethodName;
+import anonymous.domain.enlighten.data.SourceLocation;
+import anonymous.domain.enlighten.data.TestName;
+import anonymous.domain.enlighten.data.TestOutcomeJournal;
+import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
+
+/**
+ * Content-addressed store of the results of individual tests, so that a run
+ * only executes the tests whose dependencies changed since their results
+ * were recorded.
+ * 
+ * An entry is keyed by the test description and the content hashes of the
+ * class files the test depended on, as recorded by DumpDependenciesListener,
+ * and of the jar files on the subject library path. It holds the outcome of
+ * the test and, per instrumenter configuration, its coverage row and its
+ * execution profile. A manifest per test class, keyed by the content hash of
+ * the test class file, lists the tests of the class with the names of the
+ * classes each of them depended on, which a lookup hashes to find the entry.
+ * 
+ * Class files are resolved on the subject classpath in the order the test
+ * runner sees it, and paths are not part of the keys, so results are shared
+ * between subjects containing the same classes, e.g. a program and its
+ * mutants. Like the selection of the tests affected by a mutant, the cache
+ * assumes that tests do not depend on state left behind by other tests. The
+ * other files in the class directories of the subject, e.g. test resources,
+ * are hashed into the key of every entry.
+ * 
+ * Entries of dependency sets dropped from a manifest are deleted. Beyond the
+ * maximum number of entries, the least recently used ones are deleted.
+ */
+public class TestResultCache {
+  
+  private static final String VERSION = "1";
+  private static final int MAX_DEPENDENCY_SETS_PER_TEST = 4;
+  
+  public static final int DEFAULT_MAX_ENTRIES = 100000;
+  
+  private static final String OUTCOME_FILE_NAME = "outcome.journal";
+  private static final String COMPLETE_MANIFEST = "complete";
+  private static final String PARTIAL_MANIFEST = "partial";
+  
+  private static final String ABSENT_CLASS_HASH = "-";
+  private static final String JAR_CLASS_HASH = "jar";
+  
+  private Path cacheDir;
+  private int maxEntries;
+  
+  public TestResultCache(Path cacheDir) {
+    this(cacheDir, DEFAULT_MAX_ENTRIES);
+  }
+  
+  public TestResultCache(Path cacheDir, int maxEntries) {
+    this.cacheDir = cacheDir;
+    this.maxEntries = maxEntries;
+  }
+  
+  public Path getCacheDir() {
+    return cacheDir;
+  }
+  
+  public Session openSession(SubjectProgram subject) throws IOException {
+    return new Session(subject);
+  }
+  
+  /**
+   * The tests of a run whose results are taken from the cache, and the tests
+   * and whole test classes that have to run.
+   */
+  public static class Plan {
+    
+    private Map<String, Path> cachedTests = new LinkedHashMap<>();
+    private List<TestName> testsToRun = new ArrayList<>();
+    private List<String> testClassesToRun = new ArrayList<>();
+    
+    public Set<String> getCachedTestDescriptions() {
+      return Collections.unmodifiableSet(cachedTests.keySet());
+    }
+    
+    public List<TestName> getTestsToRun() {
+      return Collections.unmodifiableList(testsToRun);
+    }
+    
+    public List<String> getTestClassesToRun() {
+      return Collections.unmodifiableList(testClassesToRun);
+    }
+    
+    public boolean hasTestsToRun() {
+      return !testsToRun.isEmpty() || !testClassesToRun.isEmpty();
+    }
+  }
+  
+  /**
+   * Cache accesses for one subject program. Class file hashes are computed
+   * once per session, so a session must not outlive changes to the class
+   * files.
+   */
+  public class Session implements Closeable {
+    
+    private List<Path> classpath = new ArrayList<>();
+    private Map<Path, JarFile> openJars = new HashMap<>();
+    private Map<String, String> classHashes = new HashMap<>();
+    private String environment;
+    
+    private Session(SubjectProgram subject) throws IOException {
+      classpath.addAll(subject.getLibPaths());
+      classpath.addAll(subject.getAppSourceDirs());
+      classpath.addAll(subject.getTestSourceDirs());
+      StringBuilder environmentBuilder = new StringBuilder(VERSION);
+      for (Path libPath : subject.getLibPaths()) {
+        if (Files.isRegularFile(libPath)) {
+          environmentBuilder.append(' ').append(hash(Files.readAllBytes(libPath)));
+        }
+      }
+      List<Path> classDirs = new ArrayList<>(subject.getAppSourceDirs());
+      classDirs.addAll(subject.getTestSourceDirs());
+      for (Path classDir : classDirs) {
+        if (Files.isDirectory(classDir)) {
+          environmentBuilder.append(' ').append(hashResources(classDir));
+        }
+      }
+      environment = environmentBuilder.toString();
+    }
+    
+    /**
+     * Plans a run of whole test classes. A class is run whole if its tests
+     * are not known, or if one of its uncached tests cannot be run alone.
+     * 
+     * @param coverageConfig configuration the coverage is collected with, or
+     *     null if only the test outcomes are needed
+     */
+    public Plan planTestClasses(List<String> testClassNames, InstrumenterConfig coverageConfig) 
+        throws IOException {
+      Plan plan = new Plan();
+      String coverageFileName = getCoverageFileName(coverageConfig);
+      for (String testClassName : testClassNames) {
+        Manifest manifest = readManifest(testClassName);
+        if (manifest == null || !manifest.complete) {
+          plan.testClassesToRun.add(testClassName);
+          continue;
+        }
+        Map<String, Path> cachedTests = new LinkedHashMap<>();
+        List<TestName> uncachedTests = new ArrayList<>();
+        boolean runWholeClass = false;
+        for (String testDescription : manifest.testDependencies.keySet()) {
+          Path entryDir = findEntry(testDescription, 
+              manifest.testDependencies.get(testDescription), coverageFileName);
+          if (entryDir != null) {
+            cachedTests.put(testDescription, entryDir);
+          } else {
+            TestName test = TestName.parseFromDescription(testDescription);
+            if (test.getInstanceIndex() != 0) {
+              runWholeClass = true;
+            }
+            uncachedTests.add(test);
+          }
+        }
+        if (runWholeClass) {
+          plan.testClassesToRun.add(testClassName);
+        } else {
+          plan.cachedTests.putAll(cachedTests);
+          plan.testsToRun.addAll(uncachedTests);
+        }
+      }
+      return plan;
+    }
+    
+    /**
+     * Plans a run of individual tests.
+     * 
+     * @param coverageConfig configuration the coverage is collected with, or
+     *     null if only the test outcomes are needed
+     */
+    public Plan planTests(Collection<TestName> tests, InstrumenterConfig coverageConfig) 
+        throws IOException {
+      Plan plan = new Plan();
+      String coverageFileName = getCoverageFileName(coverageConfig);
+      Map<String, Manifest> manifests = new HashMap<>();
+      for (TestName test : tests) {
+        String testClassName = test.getTestClassName();
+        if (!manifests.containsKey(testClassName)) {
+          manifests.put(testClassName, readManifest(testClassName));
+        }
+        Manifest manifest = manifests.get(testClassName);
+        Path entryDir = null;
+        if (manifest != null && manifest.testDependencies.containsKey(test.getDescription())) {
+          entryDir = findEntry(test.getDescription(), 
+              manifest.testDependencies.get(test.getDescription()), coverageFileName);
+        }
+        if (entryDir != null) {
+          plan.cachedTests.put(test.getDescription(), entryDir);
+        } else {
+          plan.testsToRun.add(test);
+        }
+      }
+      return plan;
+    }
+    
+    /**
+     * Appends the outcomes, and the coverage rows if coverageConfig is not
+     * null, of the cached tests of the plan to the data files in dataDir.
+     * The data files are created even if no test is cached.
+     */
+    public void writeCachedResults(Plan plan, InstrumenterConfig coverageConfig, Path dataDir) 
+        throws IOException {
+      String coverageFileName = getCoverageFileName(coverageConfig);
+      try (TestOutcomeJournal.Writer outcomesWriter = new TestOutcomeJournal.Writer(
+          dataDir.resolve(TestRunner.TEST_OUTCOME_FILE_NAME))) {
+        for (Path entryDir : plan.cachedTests.values()) {
+          try (TestOutcomeJournal.Reader reader = 
+              new TestOutcomeJournal.Reader(entryDir.resolve(OUTCOME_FILE_NAME))) {
+            outcomesWriter.append(reader.next());
+          }
+        }
+      }
+      if (coverageFileName == null) {
+        return;
+      }
+      try (CoverageMatrix.Writer coverageWriter = 
+          new CoverageMatrix.Writer(dataDir.resolve(CoverageMatrix.FILE_NAME))) {
+        for (Path entryDir : plan.cachedTests.values()) {
+          CoverageMatrix matrix = CoverageMatrix.read(entryDir.resolve(coverageFileName));
+          appendRow(coverageWriter, matrix, 0);
+        }
+      }
+    }
+    
+    /**
+     * Stores the results of the tests that ran with dependency recording
+     * into dataDir.
+     * 
+     * @param wholeTestClasses the test classes that were run whole
+     */
+    public void storeResults(Path dataDir, InstrumenterConfig coverageConfig, 
+        Collection<String> wholeTestClasses) throws IOException {
+      Map<String, Set<String>> testDependencies = readTestDependencies(
+          dataDir.resolve(DumpDependenciesListener.DEPENDENCIES_FILE_NAME));
+      Map<String, TestOutcomeJournal.Record> outcomes = new HashMap<>();
+      Path outcomesFile = dataDir.resolve(TestRunner.TEST_OUTCOME_FILE_NAME);
+      if (Files.isRegularFile(outcomesFile)) {
+        try (TestOutcomeJournal.Reader reader = new TestOutcomeJournal.Reader(outcomesFile)) {
+          TestOutcomeJournal.Record record;
+          while ((record = reader.next()) != null) {
+            outcomes.put(record.getTestDescription(), record);
+          }
+        }
+      }
+      String coverageFileName = getCoverageFileName(coverageConfig);
+      CoverageMatrix matrix = null;
+      Map<String, Integer> coverageRows = new HashMap<>();
+      if (coverageFileName != null && CoverageMatrix.exists(dataDir)) {
+        matrix = CoverageMatrix.read(dataDir.resolve(CoverageMatrix.FILE_NAME));
+        for (int row = 0; row < matrix.getTestCount(); ++row) {
+          coverageRows.put(matrix.getTestDescription(row), row);
+        }
+      }
+      Map<String, Map<String, Set<String>>> storedTestsByClass = new HashMap<>();
+      for (String testDescription : testDependencies.keySet()) {
+        TestOutcomeJournal.Record outcome = outcomes.get(testDescription);
+        Integer coverageRow = coverageRows.get(testDescription);
+        if (outcome == null || (matrix != null && coverageRow == null)) {
+          continue;
+        }
+        Set<String> dependencies = new TreeSet<>();
+        for (String className : testDependencies.get(testDescription)) {
+          String classHash = getClassHash(className);
+          if (!classHash.equals(ABSENT_CLASS_HASH) && !classHash.equals(JAR_CLASS_HASH)) {
+            dependencies.add(className);
+          }
+        }
+        Path entryDir = getEntryDir(testDescription, dependencies);
+        Files.createDirectories(entryDir);
+        Path outcomeFile = entryDir.resolve(OUTCOME_FILE_NAME);
+        if (!Files.exists(outcomeFile)) {
+          Path tempFile = Files.createTempFile(entryDir, OUTCOME_FILE_NAME, ".tmp");
+          try (TestOutcomeJournal.Writer writer = new TestOutcomeJournal.Writer(tempFile)) {
+            writer.append(outcome);
+          }
+          moveIntoPlace(tempFile, outcomeFile);
+        }
+        if (matrix != null && !Files.exists(entryDir.resolve(coverageFileName))) {
+          Path tempFile = Files.createTempFile(entryDir, coverageFileName, ".tmp");
+          try (CoverageMatrix.Writer writer = new CoverageMatrix.Writer(tempFile)) {
+            appendRow(writer, matrix, coverageRow);
+          }
+          moveIntoPlace(tempFile, entryDir.resolve(coverageFileName));
+        }
+        String testClassName = TestName.parseFromDescription(testDescription).getTestClassName();
+        if (!storedTestsByClass.containsKey(testClassName)) {
+          storedTestsByClass.put(testClassName, new LinkedHashMap<>());
+        }
+        storedTestsByClass.get(testClassName).put(testDescription, dependencies);
+      }
+      Set<String> testClassNames = new HashSet<>(storedTestsByClass.keySet());
+      testClassNames.addAll(wholeTestClasses);
+      for (String testClassName : testClassNames) {
+        Map<String, Set<String>> storedTests = storedTestsByClass.get(testClassName);
+        if (storedTests == null) {
+          storedTests = Collections.emptyMap();
+        }
+        Manifest manifest = readManifest(testClassName);
+        if (manifest == null) {
+          manifest = new Manifest();
+        }
+        List<Path> evictedEntries = new ArrayList<>();
+        if (wholeTestClasses.contains(testClassName)) {
+          manifest.complete = !storedTests.isEmpty();
+          for (String testDescription : new ArrayList<>(manifest.testDependencies.keySet())) {
+            if (!storedTests.containsKey(testDescription)) {
+              for (Set<String> dependencies : 
+                  manifest.testDependencies.remove(testDescription)) {
+                evictedEntries.add(getEntryDir(testDescription, dependencies));
+              }
+            }
+          }
+          for (String testDescription : outcomes.keySet()) {
+            if (TestName.parseFromDescription(testDescription).getTestClassName()
+                .equals(testClassName) && !storedTests.containsKey(testDescription)) {
+              manifest.complete = false;
+            }
+          }
+        }
+        for (String testDescription : storedTests.keySet()) {
+          for (Set<String> dependencies : 
+              manifest.addDependencies(testDescription, storedTests.get(testDescription))) {
+            evictedEntries.add(getEntryDir(testDescription, dependencies));
+          }
+        }
+        writeManifest(testClassName, manifest);
+        for (Path entryDir : evictedEntries) {
+          deleteEntry(entryDir);
+        }
+      }
+      trimEntries();
+    }
+    
+    /**
+     * Copies the cached execution profile of a test into dataDir.
+     * 
+     * @return whether the profile was cached
+     */
+    public boolean restoreExecutionProfile(
+        TestName test, InstrumenterConfig profileConfig, Path dataDir) throws IOException {
+      Path entryDir = findEntry(test);
+      Path profileFile = entryDir != null 
+          ? entryDir.resolve(getProfileFileName(profileConfig)) : null;
+      if (profileFile == null || !Files.isRegularFile(profileFile)) {
+        return false;
+      }
+      Files.copy(profileFile, dataDir.resolve(test.getDescription() + ".tree"), 
+          StandardCopyOption.REPLACE_EXISTING);
+      return true;
+    }
+    
+    /**
+     * Stores the execution profile of a test found in dataDir, if the
+     * results of the test are cached.
+     */
+    public void storeExecutionProfile(
+        TestName test, InstrumenterConfig profileConfig, Path dataDir) throws IOException {
+      Path entryDir = findEntry(test);
+      Path profileFile = dataDir.resolve(test.getDescription() + ".tree");
+      if (entryDir == null || !Files.isRegularFile(profileFile)) {
+        return;
+      }
+      String profileFileName = getProfileFileName(profileConfig);
+      Path tempFile = Files.createTempFile(entryDir, profileFileName, ".tmp");
+      Files.copy(profileFile, tempFile, StandardCopyOption.REPLACE_EXISTING);
+      moveIntoPlace(tempFile, entryDir.resolve(profileFileName));
+    }
+    
+    @Override
+    public void close() throws IOException {
+      for (JarFile jar : openJars.values()) {
+        jar.close();
+      }
+      openJars.clear();
+    }
+    
+    private Path findEntry(TestName test) throws IOException {
+      Manifest manifest = readManifest(test.getTestClassName());
+      if (manifest == null || !manifest.testDependencies.containsKey(test.getDescription())) {
+        return null;
+      }
+      return findEntry(test.getDescription(), 
+          manifest.testDependencies.get(test.getDescription()), null);
+    }
+    
+    private Path findEntry(String testDescription, List<Set<String>> dependencySets, 
+        String requiredFileName) throws IOException {
+      for (Set<String> dependencies : dependencySets) {
+        Path entryDir = getEntryDir(testDescription, dependencies);
+        if (Files.isRegularFile(entryDir.resolve(OUTCOME_FILE_NAME)) 
+            && (requiredFileName == null 
+                || Files.isRegularFile(entryDir.resolve(requiredFileName)))) {
+          Files.setLastModifiedTime(entryDir, FileTime.fromMillis(System.currentTimeMillis()));
+          return entryDir;
+        }
+      }
+      return null;
+    }
+    
+    private Path getEntryDir(String testDescription, Set<String> dependencies) 
+        throws IOException {
+      StringBuilder keyBuilder = new StringBuilder();
+      keyBuilder.append(environment).append('\n').append(testDescription).append('\n');
+      for (String className : new TreeSet<>(dependencies)) {
+        keyBuilder.append(className).append(' ').append(getClassHash(className)).append('\n');
+      }
+      String key = hash(keyBuilder.toString().getBytes(StandardCharsets.UTF_8));
+      return cacheDir.resolve("entries").resolve(key.substring(0, 2)).resolve(key);
+    }
+    
+    private Path getManifestFile(String testClassName) throws IOException {
+      String testClassHash = getClassHash(testClassName);
+      if (testClassHash.equals(ABSENT_CLASS_HASH) || testClassHash.equals(JAR_CLASS_HASH)) {
+        return null;
+      }
+      String key = hash((environment + '\n' + testClassName + ' ' + testClassHash)
+          .getBytes(StandardCharsets.UTF_8));
+      return cacheDir.resolve("manifests").resolve(key);
+    }
+    
+    private Manifest readManifest(String testClassName) throws IOException {
+      Path manifestFile = getManifestFile(testClassName);
+      if (manifestFile == null || !Files.isRegularFile(manifestFile)) {
+        return null;
+      }
+      Manifest manifest = new Manifest();
+      try (BufferedReader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+        manifest.complete = COMPLETE_MANIFEST.equals(reader.readLine());
+        String line;
+        while ((line = reader.readLine()) != null) {
+          int separatorIndex = line.indexOf('\t');
+          if (separatorIndex == -1) {
+            continue;
+          }
+          Set<String> dependencies = new TreeSet<>();
+          for (String className : line.substring(separatorIndex + 1).split(" ")) {
+            if (!className.isEmpty()) {
+              dependencies.add(className);
+            }
+          }
+          manifest.addLastDependencies(line.substring(0, separatorIndex), dependencies);
+        }
+      }
+      return manifest;
+    }
+    
+    private void writeManifest(String testClassName, Manifest manifest) throws IOException {
+      Path manifestFile = getManifestFile(testClassName);
+      if (manifestFile == null) {
+        return;
+      }
+      Files.createDirectories(manifestFile.getParent());
+      Path tempFile = Files.createTempFile(manifestFile.getParent(), 
+          manifestFile.getFileName().toString(), ".tmp");
+      try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+        writer.write(manifest.complete ? COMPLETE_MANIFEST : PARTIAL_MANIFEST);
+        writer.newLine();
+        for (String testDescription : manifest.testDependencies.keySet()) {
+          for (Set<String> dependencies : manifest.testDependencies.get(testDescription)) {
+            writer.write(testDescription + "\t" + String.join(" ", dependencies));
+            writer.newLine();
+          }
+        }
+      }
+      moveIntoPlace(tempFile, manifestFile);
+    }
+    
+    /**
+     * Content hash of the class file the subject classpath resolves a class
+     * name to, JAR_CLASS_HASH if it resolves into a jar file, which is part of
+     * the environment, or ABSENT_CLASS_HASH if it does not resolve.
+     */
+    private String getClassHash(String className) throws IOException {
+      String classHash = classHashes.get(className);
+      if (classHash != null) {
+        return classHash;
+      }
+      classHash = ABSENT_CLASS_HASH;
+      String classFilePath = className.replace('.', '/') + ".class";
+      for (Path classpathEntry : classpath) {
+        if (Files.isDirectory(classpathEntry)) {
+          Path classFile = classpathEntry.resolve(classFilePath);
+          if (Files.isRegularFile(classFile)) {
+            classHash = hash(Files.readAllBytes(classFile));
+            break;
+          }
+        } else if (Files.isRegularFile(classpathEntry)) {
+          JarFile jar = openJars.get(classpathEntry);
+          if (jar == null) {
+            jar = new JarFile(classpathEntry.toFile());
+            openJars.put(classpathEntry, jar);
+          }
+          if (jar.getEntry(classFilePath) != null) {
+            classHash = JAR_CLASS_HASH;
+            break;
+          }
+        }
+      }
+      classHashes.put(className, classHash);
+      return classHash;
+    }
+  }
+  
+  private static class Manifest {
+    
+    private boolean complete;
+    private Map<String, List<Set<String>>> testDependencies = new TreeMap<>();
+    
+    /**
+     * Adds a dependency set of a test in front of the known ones, keeping the
+     * most recent MAX_DEPENDENCY_SETS_PER_TEST.
+     * 
+     * @return the dependency sets that were dropped
+     */
+    private List<Set<String>> addDependencies(String testDescription, Set<String> dependencies) {
+      List<Set<String>> dependencySets = getDependencySets(testDescription);
+      dependencySets.remove(dependencies);
+      dependencySets.add(0, dependencies);
+      List<Set<String>> evicted = new ArrayList<>();
+      while (dependencySets.size() > MAX_DEPENDENCY_SETS_PER_TEST) {
+        evicted.add(dependencySets.remove(dependencySets.size() - 1));
+      }
+      return evicted;
+    }
+    
+    private void addLastDependencies(String testDescription, Set<String> dependencies) {
+      getDependencySets(testDescription).add(dependencies);
+    }
+    
+    private List<Set<String>> getDependencySets(String testDescription) {
+      List<Set<String>> dependencySets = testDependencies.get(testDescription);
+      if (dependencySets == null) {
+        dependencySets = new ArrayList<>();
+        testDependencies.put(testDescription, dependencySets);
+      }
+      return dependencySets;
+    }
+  }
+  
+  /**
+   * Deletes the least recently used entries beyond maxEntries. Entries are
+   * marked used when they are stored or found.
+   */
+  private void trimEntries() throws IOException {
+    Path entriesDir = cacheDir.resolve("entries");
+    if (!Files.isDirectory(entriesDir)) {
+      return;
+    }
+    List<Path> entryDirs = new ArrayList<>();
+    try (Stream<Path> prefixDirs = Files.list(entriesDir)) {
+      for (Path prefixDir : prefixDirs.collect(Collectors.toList())) {
+        try (Stream<Path> entries = Files.list(prefixDir)) {
+          entries.forEach(entryDirs::add);
+        }
+      }
+    }
+    if (entryDirs.size() <= maxEntries) {
+      return;
+    }
+    Map<Path, Long> lastUsedTimes = new HashMap<>();
+    for (Path entryDir : entryDirs) {
+      lastUsedTimes.put(entryDir, Files.getLastModifiedTime(entryDir).toMillis());
+    }
+    entryDirs.sort((dir1, dir2) -> Long.compare(lastUsedTimes.get(dir1), lastUsedTimes.get(dir2)));
+    for (Path entryDir : entryDirs.subList(0, entryDirs.size() - maxEntries)) {
+      deleteEntry(entryDir);
+    }
+  }
+  
+  private static void deleteEntry(Path entryDir) throws IOException {
+    if (!Files.isDirectory(entryDir)) {
+      return;
+    }
+    try (Stream<Path> files = Files.list(entryDir)) {
+      for (Path file : files.collect(Collectors.toList())) {
+        Files.deleteIfExists(file);
+      }
+    }
+    Files.deleteIfExists(entryDir);
+  }
+  
+  /**
+   * Hash of the paths and contents of the files other than class files
+   * under a class directory.
+   */
+  private static String hashResources(Path classDir) throws IOException {
+    List<Path> resources;
+    try (Stream<Path> files = Files.walk(classDir)) {
+      resources = files
+          .filter(file -> Files.isRegularFile(file) && !file.toString().endsWith(".class"))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+    StringBuilder resourcesBuilder = new StringBuilder();
+    for (Path resource : resources) {
+      resourcesBuilder.append(classDir.relativize(resource).toString().replace('\\', '/'))
+          .append(' ').append(hash(Files.readAllBytes(resource))).append('\n');
+    }
+    return hash(resourcesBuilder.toString().getBytes(StandardCharsets.UTF_8));
+  }
+  
+  private static Map<String, Set<String>> readTestDependencies(Path dependenciesFile) 
+      throws IOException {
+    Map<String, Set<String>> testDependencies = new LinkedHashMap<>();
+    if (!Files.isRegularFile(dependenciesFile)) {
+      return testDependencies;
+    }
+    Set<String> currentDependencies = null;
+    for (String line : Files.readAllLines(dependenciesFile, StandardCharsets.UTF_8)) {
+      if (line.startsWith("test ")) {
+        currentDependencies = new HashSet<>();
+        testDependencies.put(line.substring(5), currentDependencies);
+      } else if (currentDependencies != null && !line.isEmpty()) {
+        currentDependencies.add(line);
+      }
+    }
+    return testDependencies;
+  }
+  
+  private static void appendRow(CoverageMatrix.Writer writer, CoverageMatrix matrix, int row) 
+      throws IOException {
+    List<MethodName> coveredMethods = new ArrayList<>();
+    BitSet methodRow = matrix.getMethodRow(row);
+    for (int i = methodRow.nextSetBit(0); i >= 0; i = methodRow.nextSetBit(i + 1)) {
+      coveredMethods.add(matrix.getMethods().get(i));
+    }
+    List<SourceLocation> coveredLines = new ArrayList<>();
+    BitSet lineRow = matrix.getSourceLocationRow(row);
+    for (int i = lineRow.nextSetBit(0); i >= 0; i = lineRow.nextSetBit(i + 1)) {
+      coveredLines.add(matrix.getSourceLocations().get(i));
+    }
+    writer.appendTest(matrix.getTestDescription(row), coveredMethods, coveredLines);
+  }
+  
+  private static String getCoverageFileName(InstrumenterConfig coverageConfig) {
+    if (coverageConfig == null) {
+      return null;
+    }
+    return "coverage-" + getConfigHash(coverageConfig) + ".matrix";
+  }
+  
+  private static String getProfileFileName(InstrumenterConfig profileConfig) {
+    return "profile-" + getConfigHash(profileConfig) + ".tree";
+  }
+  
+  private static String getConfigHash(InstrumenterConfig config) {
+    StringBuilder configBuilder = new StringBuilder();
+    for (String key : new TreeSet<>(config.stringPropertyNames())) {
+      configBuilder.append(key).append('=').append(config.getProperty(key)).append('\n');
+    }
+    return hash(configBuilder.toString().getBytes(StandardCharsets.UTF_8));
+  }
+  
+  private static void moveIntoPlace(Path tempFile, Path file) throws IOException {
+    Files.move(tempFile, file, 
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+  
+  private static String hash(byte[] content) {
+    byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1").digest(content);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    StringBuilder hexBuilder = new StringBuilder();
+    for (byte b : digest) {
+      hexBuilder.append(String.format("%02x", b));
+    }
+    return hexBuilder.toString();
+  }
+}
@@ -0,0 +1,228 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package anonymous.domain.enlighten.htmlview;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import anonymous.domain.enlighten.data.FSTSerialization;
+import anonymous.domain.enlighten.data.MethodInvocation;
+import anonymous.domain.enlighten.mcallrepr.MethodCallRepr;
+import anonymous.domain.enlighten.mcallrepr.ValueGraphIndex;
+import anonymous.domain.enlighten.mcallrepr.ValueGraphNode;
+
+/**
+ * HTML view of the captured states of an invocation that renders only the top
+ * levels of the pre- and post-state up front. Deeper objects are left as
+ * placeholders whose {@code data-fragment} attribute can be passed to
+ * {@link #writeFragment(String, Writer)} to render that object on demand, again
+ * to a bounded depth. {@link #EXPANSION_SCRIPT} expands a placeholder when its
+ * entry is clicked, by fetching {@code fragment?id=<data-fragment>} from the
+ * page's server (see {@link StatesViewServer}).
+ * 
+ * Views shown on the same page need distinct view ids. A fragment id is
+ * prefixed with the view id and a '/' if the view has one.
+ */
+public class LazyStatesView {
+  
+  public static final int DEFAULT_EXPANSION_DEPTH = 2;
+  
+  public static final String EXPANSION_SCRIPT = 
+      "<script>\n"
+      + "document.addEventListener('click', function(event) {\n"
+      + "  var item = event.target.closest('li');\n"
+      + "  var placeholder = item ? item.querySelector(':scope > ul.lazyFragment') : null;\n"
+      + "  if (!placeholder || placeholder.hasAttribute('data-loading')) return;\n"
+      + "  placeholder.setAttribute('data-loading', '');\n"
+      + "  var request = new XMLHttpRequest();\n"
+      + "  request.open('GET', 'fragment?id=' "
+      + "+ encodeURIComponent(placeholder.getAttribute('data-fragment')));\n"
+      + "  request.onload = function() {\n"
+      + "    if (request.status == 200) {\n"
+      + "      placeholder.outerHTML = request.responseText;\n"
+      + "    } else {\n"
+      + "      placeholder.removeAttribute('data-loading');\n"
+      + "    }\n"
+      + "  };\n"
+      + "  request.send();\n"
+      + "  event.stopPropagation();\n"
+      + "});\n"
+      + "</script>\n";
+  
+  private static final String PRE_STATE_PREFIX = "pre-";
+  private static final String POST_STATE_PREFIX = "post-";
+  
+  private MethodCallRepr preState;
+  private MethodCallRepr postState;
+  private ValueGraphIndex preStateIndex;
+  private ValueGraphIndex postStateIndex;
+  private int expansionDepth;
+  private String viewIdPrefix;
+  
+  public static LazyStatesView load(Path statesFile) throws IOException {
+    return load(statesFile, null);
+  }
+  
+  public static LazyStatesView load(Path statesFile, String viewId) throws IOException {
+    MethodInvocation states = 
+        FSTSerialization.readObjectFromFile(MethodInvocation.class, statesFile);
+    if (states == null) {
+      throw new IOException("No captured states in " + statesFile);
+    }
+    return new LazyStatesView(states, DEFAULT_EXPANSION_DEPTH, viewId);
+  }
+  
+  /**
+   * Returns the id of the view a fragment id belongs to, or null if it has none.
+   */
+  public static String getViewId(String fragmentId) {
+    int separatorIndex = fragmentId.indexOf('/');
+    return separatorIndex >= 0 ? fragmentId.substring(0, separatorIndex) : null;
+  }
+  
+  public LazyStatesView(MethodInvocation states, int expansionDepth) {
+    this(states, expansionDepth, null);
+  }
+  
+  public LazyStatesView(MethodInvocation states, int expansionDepth, String viewId) {
+    preState = states.getPreState();
+    postState = states.getPostState();
+    this.expansionDepth = expansionDepth;
+    viewIdPrefix = viewId != null ? viewId + "/" : "";
+  }
+  
+  public void writeOverview(Writer out) throws IOException {
+    if (preState != null) {
+      createPrinter(preState, PRE_STATE_PREFIX, getPreStateIndex()).write(preState, out);
+      out.write("\n");
+    }
+    if (postState != null) {
+      createPrinter(postState, POST_STATE_PREFIX, getPostStateIndex()).write(postState, out);
+      out.write("\n");
+    }
+  }
+  
+  /**
+   * Writes a standalone page with the overview and the expansion script.
+   */
+  public void writePage(Writer out) throws IOException {
+    out.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n");
+    out.write(EXPANSION_SCRIPT);
+    out.write("</head>\n<body>\n");
+    writeOverview(out);
+    out.write("</body>\n</html>\n");
+  }
+  
+  /**
+   * Writes the members of the object named by a placeholder of this view.
+   * Returns false if the fragment id does not name an object of the states.
+   */
+  public boolean writeFragment(String fragmentId, Writer out) throws IOException {
+    if (!fragmentId.startsWith(viewIdPrefix)) {
+      return false;
+    }
+    fragmentId = fragmentId.substring(viewIdPrefix.length());
+    MethodCallRepr state;
+    ValueGraphIndex index;
+    String prefix;
+    if (fragmentId.startsWith(PRE_STATE_PREFIX) && preState != null) {
+      state = preState;
+      index = getPreStateIndex();
+      prefix = PRE_STATE_PREFIX;
+    } else if (fragmentId.startsWith(POST_STATE_PREFIX) && postState != null) {
+      state = postState;
+      index = getPostStateIndex();
+      prefix = POST_STATE_PREFIX;
+    } else {
+      return false;
+    }
+    int nodeIndex;
+    try {
+      nodeIndex = Integer.parseInt(fragmentId.substring(prefix.length()));
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    if (nodeIndex < 0 || nodeIndex >= index.size()) {
+      return false;
+    }
+    createPrinter(state, prefix, index).writeObjectFragment(index.getNode(nodeIndex), out);
+    return true;
+  }
+  
+  private MethodStatesPrinter createPrinter(
+      MethodCallRepr state, String prefix, ValueGraphIndex index) {
+    MethodStatesPrinter printer = MethodStatesPrinter.createPrinter(state);
+    printer.setLazyExpansion(index, viewIdPrefix + prefix, expansionDepth);
+    return printer;
+  }
+  
+  private ValueGraphIndex getPreStateIndex() {
+    if (preStateIndex == null) {
+      preStateIndex = ValueGraphIndex.build(getRoots(preState));
+    }
+    return preStateIndex;
+  }
+  
+  private ValueGraphIndex getPostStateIndex() {
+    if (postStateIndex == null) {
+      postStateIndex = ValueGraphIndex.build(getRoots(postState));
+    }
+    return postStateIndex;
+  }
+  
+  private static List<ValueGraphNode> getRoots(MethodCallRepr state) {
+    List<ValueGraphNode> roots = new ArrayList<>();
+    if (state.getThizz() != null) {
+      roots.add(state.getThizz());
+    }
+    List<String> paramNames = new ArrayList<>(state.getParams().keySet());
+    Collections.sort(paramNames);
+    for (String paramName : paramNames) {
+      roots.add(state.getParams().get(paramName));
+    }
+    if (state.getReturnVal() != null) {
+      roots.add(state.getReturnVal());
+    }
+    if (state.getException() != null) {
+      roots.add(state.getException());
+    }
+    return roots;
+  }
+}
@@ -34,12 +34,17 @@
 
 package anonymous.domain.enlighten.htmlview;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.objectweb.asm.Type;
@@ -51,87 +56,136 @@ import anonymous.domain.enlighten.mcallrepr.PrimitiveRepr;
 import anonymous.domain.enlighten.mcallrepr.ReferenceRepr;
 import anonymous.domain.enlighten.mcallrepr.ReflectedObjectRepr;
 import anonymous.domain.enlighten.mcallrepr.TransitivelyAccessedAnnotator;
+import anonymous.domain.enlighten.mcallrepr.ValueGraphIndex;
 import anonymous.domain.enlighten.mcallrepr.ValueGraphNode;
 import anonymous.domain.enlighten.mcallrepr.VoidRepr;
 
+/**
+ * Renders method states as nested HTML lists, streaming the markup to a writer.
+ * 
+ * By default the whole value graph is rendered. With
+ * {@link #setLazyExpansion(ValueGraphIndex, String, int)} objects nested deeper
+ * than the expansion depth are written as placeholders whose
+ * {@code data-fragment} attribute names the object, and their contents can be
+ * rendered separately with {@link #writeObjectFragment(ValueGraphNode, Writer)}.
+ */
 public class MethodStatesPrinter {
   
-  private Set<ValueGraphNode> visited = new HashSet<ValueGraphNode>();
+  private Set<ValueGraphNode> visited = 
+      Collections.newSetFromMap(new IdentityHashMap<ValueGraphNode, Boolean>());
   private String highlightColorStr = "yellow";
   
+  private ValueGraphIndex fragmentIndex;
+  private String fragmentPrefix;
+  private int expansionDepth = Integer.MAX_VALUE;
+  
+  private Writer out;
+  
   public static String getHtmlViewContent(MethodCallRepr mcall) {
+    StringWriter content = new StringWriter();
+    try {
+      writeHtmlView(mcall, content);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return content.toString();
+  }
+  
+  public static void writeHtmlView(MethodCallRepr mcall, Writer out) throws IOException {
+    createPrinter(mcall).write(mcall, out);
+  }
+  
+  static MethodStatesPrinter createPrinter(MethodCallRepr mcall) {
     MethodStatesPrinter printer = new MethodStatesPrinter();
     if (mcall.isEntry()) {
       printer.setHighlightColor("#99ccff"); 
     } else {
       printer.setHighlightColor("yellow");
     }
-    return printer.visit(mcall);
+    return printer;
   }
   
   public void setHighlightColor(String colorDescription) {
     highlightColorStr = colorDescription;
   }
+  
+  /**
+   * Renders objects nested at most {@code depth} levels below the method state
+   * eagerly. Deeper objects are written as placeholders identified by the
+   * fragment prefix and their position in {@code index}.
+   */
+  public void setLazyExpansion(ValueGraphIndex index, String fragmentPrefix, int depth) {
+    fragmentIndex = index;
+    this.fragmentPrefix = fragmentPrefix;
+    expansionDepth = depth;
+  }
 
-  public String visit(MethodCallRepr mcall) {
-    StringBuffer arg = new StringBuffer();
-    arg.append("<ul class=\"collapsibleList\">\n");
-    arg.append("<li>\n");
-    arg.append(mcall.isEntry() ? "** ENTRY **" : "** EXIT **");
-    arg.append("<br/>\n");
-    arg.append("TEST: " + escapeHtml(mcall.getTestName()) + "<br/>\n");
-    arg.append("METHOD: " + escapeHtml(getReadableMethodName(
+  public void write(MethodCallRepr mcall, Writer out) throws IOException {
+    this.out = out;
+    out.write("<ul class=\"collapsibleList\">\n");
+    out.write("<li>\n");
+    out.write(mcall.isEntry() ? "** ENTRY **" : "** EXIT **");
+    out.write("<br/>\n");
+    out.write("TEST: " + escapeHtml(mcall.getTestName()) + "<br/>\n");
+    out.write("METHOD: " + escapeHtml(getReadableMethodName(
         mcall.getClassName(), mcall.getMethodName())) 
         + " #" + mcall.getValueHash() + "#" + "\n");
     
-    arg.append("<ul>\n");
+    out.write("<ul>\n");
 
     if (!mcall.isStatic()) {
-      arg.append("<li>\n");
+      out.write("<li>\n");
       if (mcall.isEntry()) {
-        arg.append(highlightedText("this"));
+        out.write(highlightedText("this"));
       } else {
-        arg.append("this");
+        out.write("this");
       }
-      arg.append(" => ");
-      arg.append(visit(mcall.getThizz()));
-      arg.append("</li>\n");
+      out.write(" => ");
+      writeValue(mcall.getThizz(), 0);
+      out.write("</li>\n");
     }
     
-
-    Map<String, ValueGraphNode> params = mcall.getParams();
-    Set<String> highlightParams = new HashSet<>();
-    if (mcall.isEntry()) {
-      for (String paramName : params.keySet()) {
-        highlightParams.add(paramName);
-      }
-    }
-    arg.append(visitMap(params, highlightParams));
+    writeMap(mcall.getParams(), mcall.isEntry() ? null : Collections.<String>emptySet(), 0);
     
-
     if (!mcall.isEntry()) {
-      arg.append("<li>\n");
+      out.write("<li>\n");
       if (mcall.getException() == null) {
-        arg.append(highlightedText("return"));
-        arg.append(" => ");
-        arg.append(visit(mcall.getReturnVal()));
+        out.write(highlightedText("return"));
+        out.write(" => ");
+        writeValue(mcall.getReturnVal(), 0);
       } else {
-        arg.append(highlightedText("exception"));
-        arg.append(" => ");
-        arg.append(visit(mcall.getException()));
+        out.write(highlightedText("exception"));
+        out.write(" => ");
+        writeValue(mcall.getException(), 0);
       }
-      arg.append("</li>\n");
+      out.write("</li>\n");
     }
 
-    arg.append("</ul>\n");
-    arg.append("</li>\n");
-    arg.append("</ul>");
-    return arg.toString();
+    out.write("</ul>\n");
+    out.write("</li>\n");
+    out.write("</ul>");
+  }
+  
+  /**
+   * Writes the members of an object or array, as they would appear under the
+   * object's own entry, with the configured expansion depth counted from it.
+   */
+  public void writeObjectFragment(ValueGraphNode obj, Writer out) throws IOException {
+    this.out = out;
+    visited.add(obj);
+    if (obj instanceof ReflectedObjectRepr) {
+      writeObjectMembers((ReflectedObjectRepr) obj, 0);
+    } else if (obj instanceof ArrayRepr) {
+      writeArrayMembers((ArrayRepr) obj, 0);
+    } else {
+      throw new UnsupportedOperationException("missing case");
+    }
   }
 
-  public String visit(ValueGraphNode vrepr) {
+  private void writeValue(ValueGraphNode vrepr, int depth) throws IOException {
     if (vrepr == null) {
-      return "null";
+      out.write("null");
+      return;
     }
     
     if (visited.contains(vrepr)) {
@@ -142,38 +196,42 @@ public class MethodStatesPrinter {
         str += " [" + ((ArrayRepr) vrepr).getId() + "]";
       }
       str += " #" + vrepr.getValueHash() + "#";
-      return str;
+      out.write(str);
+      return;
     }
     
-    StringBuffer arg = new StringBuffer();
     if (vrepr instanceof PrimitiveRepr) {
-      arg.append(visit((PrimitiveRepr) vrepr));
+      PrimitiveRepr wrepr = (PrimitiveRepr) vrepr;
+      out.write(wrepr.getType() + ": " + wrepr + " #" + wrepr.getValueHash());
     } else if (vrepr instanceof ReflectedObjectRepr) {
-      visited.add(vrepr);
-      arg.append(visit((ReflectedObjectRepr) vrepr));
+      writeObject((ReflectedObjectRepr) vrepr, depth);
     } else if (vrepr instanceof ArrayRepr) {
-      visited.add(vrepr);
-      arg.append(visit((ArrayRepr) vrepr));
+      writeArray((ArrayRepr) vrepr, depth);
     } else if (vrepr instanceof ReferenceRepr) {
-      arg.append(visit((ReferenceRepr) vrepr));
+      out.write(escapeHtml(vrepr.toString()));
     } else if (vrepr instanceof VoidRepr) {
-      arg.append("VOID");
+      out.write("VOID");
     } else {
       throw new UnsupportedOperationException("missing case");
     }
-    
-    return arg.toString();
   }
 
-  public String visit(ReflectedObjectRepr orepr) {
-    StringBuffer arg = new StringBuffer();
+  private void writeObject(ReflectedObjectRepr orepr, int depth) throws IOException {
     String objName = String.format(
         "%s[%d] #%d#\n", escapeHtml(orepr.getType()), orepr.getId(), orepr.getValueHash());
     if (TransitivelyAccessedAnnotator.isTransitivelyAccessed(orepr)) {
       objName = highlightedText(objName);
     }
-    arg.append(objName);
-    arg.append("<ul>\n");
+    out.write(objName);
+    if (writePlaceholder(orepr, depth)) {
+      return;
+    }
+    visited.add(orepr);
+    writeObjectMembers(orepr, depth);
+  }
+  
+  private void writeObjectMembers(ReflectedObjectRepr orepr, int depth) throws IOException {
+    out.write("<ul>\n");
     Map<String, ValueGraphNode> fieldsMap = orepr.getFields();
     Set<String> highlightedKeys = new HashSet<>();
     for (String fieldName : fieldsMap.keySet()) {
@@ -181,67 +239,93 @@ public class MethodStatesPrinter {
         highlightedKeys.add(fieldName);
       }
     }
-    arg.append(visitMap(fieldsMap, highlightedKeys));
-    arg.append("</ul>\n");
-    return arg.toString();
+    writeMap(fieldsMap, highlightedKeys, depth + 1);
+    out.write("</ul>\n");
   }
   
-  public String visit(ArrayRepr arepr) {
-    StringBuilder buf = new StringBuilder();
+  private void writeArray(ArrayRepr arepr, int depth) throws IOException {
     String objName = String.format("%s[%d] #%d#\n", 
         arepr.getType(), arepr.getId(), arepr.getValueHash());
     if (TransitivelyAccessedAnnotator.isTransitivelyAccessed(arepr)) {
       objName = highlightedText(objName);
     }
-    buf.append(objName);
+    out.write(objName);
+    if (writePlaceholder(arepr, depth)) {
+      return;
+    }
+    visited.add(arepr);
+    writeArrayMembers(arepr, depth);
+  }
+  
+  private void writeArrayMembers(ArrayRepr arepr, int depth) throws IOException {
     List<ValueGraphNode> elements = arepr.getElements();
-    buf.append("<ul>\n");
-    buf.append("<li>\narrayLength => " 
+    out.write("<ul>\n");
+    out.write("<li>\narrayLength => " 
         + (Integer) arepr.getLength().getWrappedValue() + "</li>\n");
     for (int index = 0; index < elements.size(); ++index) {
-      buf.append("<li>\n");
+      out.write("<li>\n");
+      if (index == arepr.getOmittedFrom()) {
+        int lastOmitted = index + arepr.getOmittedCount() - 1;
+        out.write("[" + index + ".." + lastOmitted + "] => " 
+            + escapeHtml(elements.get(index).toString()) + "</li>\n");
+        index = lastOmitted;
+        continue;
+      }
       String indexHtml = "[" + index + "]";
       if (MemberRefAccessedAnnotator.isMemberAccessed(arepr, index)) {
         indexHtml = highlightedText(indexHtml);
       }
-      buf.append(indexHtml + " => " 
-          + visit(elements.get(index)) + "</li>\n");
+      out.write(indexHtml + " => ");
+      writeValue(elements.get(index), depth + 1);
+      out.write("</li>\n");
     }
-    buf.append("</ul>\n");
-    return buf.toString();
-  }
- 
-  public String visit(PrimitiveRepr wrepr) {
-    return wrepr.getType() + ": " + wrepr + " #" + wrepr.getValueHash();
+    out.write("</ul>\n");
   }
-
-  public String visit(ReferenceRepr refRepr) {
-    return refRepr.toString();
+  
+  private boolean writePlaceholder(ValueGraphNode obj, int depth) throws IOException {
+    if (depth < expansionDepth || fragmentIndex == null) {
+      return false;
+    }
+    int fragmentId = fragmentIndex.indexOf(obj);
+    if (fragmentId < 0) {
+      return false;
+    }
+    out.write("<ul class=\"lazyFragment\" data-fragment=\"" 
+        + fragmentPrefix + fragmentId + "\">\n</ul>\n");
+    return true;
   }
 
-  private String visitMap(Map<String, ValueGraphNode> map, Set<String> highlightedKeys) {
-    StringBuffer arg = new StringBuffer();
-    List<String> sortedKeys = new ArrayList<>(map.keySet());
-    Collections.sort(sortedKeys);
-    for(String key : sortedKeys) {
+  /*
+   * highlightedKeys == null highlights every key. Keys are taken in order when
+   * the map is already sorted, such as the field maps of reflected objects.
+   */
+  private void writeMap(Map<String, ValueGraphNode> map, Set<String> highlightedKeys, 
+      int depth) throws IOException {
+    Iterable<String> sortedKeys;
+    if (map instanceof SortedMap && ((SortedMap<String, ?>) map).comparator() == null) {
+      sortedKeys = map.keySet();
+    } else {
+      List<String> keys = new ArrayList<>(map.keySet());
+      Collections.sort(keys);
+      sortedKeys = keys;
+    }
+    for (String key : sortedKeys) {
       ValueGraphNode val = map.get(key);
-      arg.append("<li>\n");
+      out.write("<li>\n");
       String keyHtml = escapeHtml(key);
-      if (highlightedKeys.contains(key)) {
+      if (highlightedKeys == null || highlightedKeys.contains(key)) {
         keyHtml = highlightedText(keyHtml);
       }
-      arg.append(keyHtml + " => ");
+      out.write(keyHtml + " => ");
       if (val == null) {
-        arg.append("NULL");
+        out.write("NULL");
       } else {
-        arg.append(visit(val));
+        writeValue(val, depth);
       }
-      arg.append("\n");
-      arg.append("</li>\n");
+      out.write("\n");
+      out.write("</li>\n");
     }
-    return arg.toString();
   }
-  
   private String escapeHtml(String content) {
     return StringEscapeUtils.escapeHtml4(content);
   }
@@ -0,0 +1,197 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.htmlview;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves captured states to a browser and renders the fragments requested by
+ * the {@link LazyStatesView#EXPANSION_SCRIPT} of the page on demand.
+ * 
+ * Given a states file, the page is the overview of its states. Given a
+ * directory, the fragment ids name the states file {@code <view id>.states} in
+ * it, and the page is an existing HTML file embedding the overviews, such as
+ * the log of SimulatedUserPoweredFL. Other files next to the page are served as
+ * they are.
+ * 
+ * Usage: StatesViewServer states-file | states-dir page-file [port]
+ */
+public class StatesViewServer {
+  
+  public static final String STATES_FILE_SUFFIX = ".states";
+  public static final int DEFAULT_PORT = 8642;
+  
+  private Path statesPath;
+  private Path pageFile;
+  private Map<String, LazyStatesView> views = new HashMap<>();
+  
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: StatesViewServer states-file | states-dir page-file [port]");
+      System.exit(1);
+    }
+    Path statesPath = Paths.get(args[0]);
+    Path pageFile = null;
+    int portArgIndex = 1;
+    if (Files.isDirectory(statesPath)) {
+      if (args.length < 2) {
+        System.err.println("A page file is required to view a directory of states.");
+        System.exit(1);
+      }
+      pageFile = Paths.get(args[1]);
+      portArgIndex = 2;
+    }
+    int port = args.length > portArgIndex ? Integer.parseInt(args[portArgIndex]) : DEFAULT_PORT;
+    HttpServer server = new StatesViewServer(statesPath, pageFile).start(port);
+    System.out.println("Serving states at http://localhost:" + server.getAddress().getPort() + "/");
+  }
+  
+  public StatesViewServer(Path statesPath, Path pageFile) {
+    this.statesPath = statesPath;
+    this.pageFile = pageFile;
+  }
+  
+  public HttpServer start(int port) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+    server.createContext("/", exchange -> {
+      try {
+        handleRequest(exchange);
+      } catch (IOException | RuntimeException e) {
+        e.printStackTrace();
+        sendResponse(exchange, 500, "text/plain", 
+            String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+      } finally {
+        exchange.close();
+      }
+    });
+    server.start();
+    return server;
+  }
+  
+  private void handleRequest(HttpExchange exchange) throws IOException {
+    URI uri = exchange.getRequestURI();
+    String path = uri.getPath();
+    if (path.equals("/fragment")) {
+      String fragmentId = getQueryParameter(uri, "id");
+      StringWriter content = new StringWriter();
+      LazyStatesView view = fragmentId != null ? getView(fragmentId) : null;
+      if (view == null || !view.writeFragment(fragmentId, content)) {
+        sendResponse(exchange, 404, "text/plain", 
+            ("Unknown fragment " + fragmentId).getBytes(StandardCharsets.UTF_8));
+        return;
+      }
+      sendResponse(exchange, 200, "text/html; charset=utf-8", 
+          content.toString().getBytes(StandardCharsets.UTF_8));
+    } else if (path.equals("/") && pageFile == null) {
+      StringWriter content = new StringWriter();
+      getView(null).writePage(content);
+      sendResponse(exchange, 200, "text/html; charset=utf-8", 
+          content.toString().getBytes(StandardCharsets.UTF_8));
+    } else if (pageFile != null) {
+      Path pageDir = pageFile.toAbsolutePath().getParent();
+      Path file = path.equals("/") ? pageFile : pageDir.resolve(path.substring(1)).normalize();
+      if (!file.toAbsolutePath().startsWith(pageDir) || !Files.isRegularFile(file)) {
+        sendResponse(exchange, 404, "text/plain", 
+            ("Not found: " + path).getBytes(StandardCharsets.UTF_8));
+        return;
+      }
+      String contentType = Files.probeContentType(file);
+      sendResponse(exchange, 200, 
+          contentType != null ? contentType : "application/octet-stream", 
+          Files.readAllBytes(file));
+    } else {
+      sendResponse(exchange, 404, "text/plain", 
+          ("Not found: " + path).getBytes(StandardCharsets.UTF_8));
+    }
+  }
+  
+  private synchronized LazyStatesView getView(String fragmentId) throws IOException {
+    String viewId = null;
+    Path statesFile = statesPath;
+    if (pageFile != null) {
+      viewId = LazyStatesView.getViewId(fragmentId);
+      if (viewId == null || viewId.contains("..") || viewId.contains("/")) {
+        return null;
+      }
+      statesFile = statesPath.resolve(viewId + STATES_FILE_SUFFIX);
+      if (!Files.isRegularFile(statesFile)) {
+        return null;
+      }
+    }
+    LazyStatesView view = views.get(viewId);
+    if (view == null) {
+      view = LazyStatesView.load(statesFile, viewId);
+      views.put(viewId, view);
+    }
+    return view;
+  }
+  
+  private static String getQueryParameter(URI uri, String name) 
+      throws IOException {
+    String query = uri.getRawQuery();
+    if (query == null) {
+      return null;
+    }
+    for (String parameter : query.split("&")) {
+      if (parameter.startsWith(name + "=")) {
+        return URLDecoder.decode(parameter.substring(name.length() + 1), "UTF-8");
+      }
+    }
+    return null;
+  }
+  
+  private static void sendResponse(HttpExchange exchange, int status, String contentType, 
+      byte[] content) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, content.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(content);
+    }
+  }
+}
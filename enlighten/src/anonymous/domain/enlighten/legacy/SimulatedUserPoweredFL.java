@@ -53,6 +53,7 @@ import org.apache.commons.lang3.StringEscapeUtils;
 
 import anonymous.domain.enlighten.MethodInvocationSelection;
 import anonymous.domain.enlighten.data.ExecutionProfile;
+import anonymous.domain.enlighten.data.FSTSerialization;
 import anonymous.domain.enlighten.data.MethodInvocation;
 import anonymous.domain.enlighten.data.MethodName;
 import anonymous.domain.enlighten.data.SourceLocation;
@@ -60,7 +61,8 @@ import anonymous.domain.enlighten.data.SourceLocationExecutionCount;
 import anonymous.domain.enlighten.data.TestName;
 import anonymous.domain.enlighten.exec.CaptureInvocationStates;
 import anonymous.domain.enlighten.files.CopyDirTree;
-import anonymous.domain.enlighten.htmlview.MethodStatesPrinter;
+import anonymous.domain.enlighten.htmlview.LazyStatesView;
+import anonymous.domain.enlighten.htmlview.StatesViewServer;
 import anonymous.domain.enlighten.mcallrepr.MethodCallRepr;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
 import anonymous.domain.enlighten.susp.FaultLocalization;
@@ -69,6 +71,7 @@ public class SimulatedUserPoweredFL extends UserPoweredFLBase {
   
   private static final String LOG_FILE_NAME = "simulated_user_powered_fl_experiment.log";
   private static final String HTML_FILE_NAME = "experiment_log.html";
+  private static final String QUERY_STATES_DIR_NAME = "query_states";
   
   private List<SourceLocation> faultySourceLocations;
   private Map<TestName, ExecutionProfile> testExecutionProfilesWithStates;
@@ -407,16 +410,30 @@ public class SimulatedUserPoweredFL extends UserPoweredFLBase {
     logWriter.println("Reason: " + reason);
     MethodInvocation states = selectedInvocationStates;
     htmlWriter.println("States details:<br/>");
-    htmlWriter.println(
-        MethodStatesPrinter.getHtmlViewContent((MethodCallRepr) states.getPreState()));
-    htmlWriter.println(
-        MethodStatesPrinter.getHtmlViewContent((MethodCallRepr) states.getPostState()));
+    writeStatesView(states, "query" + queryStatsList.size());
     logWriter.println("===============================================================");
     htmlWriter.println("</p>");
     logWriter.flush();
     htmlWriter.flush();
   }
   
+  /*
+   * Keeps the states next to the log, so that StatesViewServer can expand the
+   * objects left out of the overview.
+   */
+  private void writeStatesView(MethodInvocation states, String viewId) {
+    Path statesDir = getTargetProgram().getDataDirRoot().resolve(QUERY_STATES_DIR_NAME);
+    try {
+      Files.createDirectories(statesDir);
+      FSTSerialization.writeObjectTofile(MethodInvocation.class, 
+          statesDir.resolve(viewId + StatesViewServer.STATES_FILE_SUFFIX), states);
+      new LazyStatesView(states, LazyStatesView.DEFAULT_EXPANSION_DEPTH, viewId)
+          .writeOverview(htmlWriter);
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to write the states of " + viewId, e);
+    }
+  }
+  
   private void initHtmlLog() throws IOException {
     htmlWriter = new PrintWriter(new FileWriter(
         getTargetProgram().getDataDirRoot().resolve(HTML_FILE_NAME).toString()));
@@ -428,6 +445,7 @@ public class SimulatedUserPoweredFL extends UserPoweredFLBase {
         new CopyDirTree(getTargetProgram().getDataDirRoot().resolve("CollapsibleLists")));
     Path logTemplatePath = Paths.get("src/resources/HtmlLogTemplate.txt");
     htmlWriter.write(new String(Files.readAllBytes(logTemplatePath)));
+    htmlWriter.write(LazyStatesView.EXPANSION_SCRIPT);
   }
   
   private void finalizeHtmlLog() {
@@ -55,8 +55,8 @@ import anonymous.domain.enlighten.data.MethodName;
 import anonymous.domain.enlighten.data.SourceLocation;
 import anonymous.domain.enlighten.data.SourceLocationCoverage;
 import anonymous.domain.enlighten.data.TestName;
+import anonymous.domain.enlighten.deptrack.DynDepUtils;
 import anonymous.domain.enlighten.deptrack.DynamicDependency;
-import anonymous.domain.enlighten.deptrack.InstructionDependencySource;
 import anonymous.domain.enlighten.mcallrepr.MemberRefDepAnnotator;
 import anonymous.domain.enlighten.mcallrepr.MethodCallRepr;
 import anonymous.domain.enlighten.mcallrepr.ValueGraphNode;
@@ -69,6 +69,7 @@ import anonymous.domain.enlighten.slicing.util.JpfEntityConversion;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
 import anonymous.domain.enlighten.susp.FaultLocalization;
 import anonymous.domain.enlighten.util.Pair;
+import gov.nasa.jpf.vm.DependencyTrackingInstruction;
 
 public class SimulatedUserPoweredFLAlt extends SimulatedUserPoweredFL {
   
@@ -297,10 +298,12 @@ public class SimulatedUserPoweredFLAlt extends SimulatedUserPoweredFL {
       if (depNode.getInstanceIndex() < depIndexSpan.lowerEndpoint()) {
         return false;
       }
-      if (depIndexRange.contains(depNode.getInstanceIndex()) 
-          && depNode instanceof InstructionDependencySource) {
-        influencingLocations.add(JpfEntityConversion.getSourceLocationFromInstruction(
-            ((InstructionDependencySource) depNode).getSourceInstruction()));
+      if (depIndexRange.contains(depNode.getInstanceIndex())) {
+        DependencyTrackingInstruction sourceInsn = DynDepUtils.getSourceInstruction(depNode);
+        if (sourceInsn != null) {
+          influencingLocations.add(
+              JpfEntityConversion.getSourceLocationFromInstruction(sourceInsn));
+        }
       }
       return true;
     }
@@ -34,6 +34,7 @@
 
 package anonymous.domain.enlighten.mcallrepr;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -49,6 +50,8 @@ public class ArrayRepr extends ReferenceRepr {
   private long id;
   private PrimitiveRepr length;
   private List<ValueGraphNode> elements = new ArrayList<>();
+  private int omittedFrom = -1;
+  private TruncatedRepr omitted;
   
   private transient Map<MemberRefName, ValueGraphNode> referencedValues;
   
@@ -76,6 +79,29 @@ public class ArrayRepr extends ReferenceRepr {
     }
     this.length = length;
     this.elements = new ArrayList<>(elements);
+    omittedFrom = -1;
+    omitted = null;
+  }
+  
+  /**
+   * Sets the elements of an array of which only the head and the tail were
+   * captured. The elements in between all map to the given marker.
+   */
+  public void setSampledElements(PrimitiveRepr length, List<ValueGraphNode> head,
+      List<ValueGraphNode> tail, TruncatedRepr omitted) {
+    if (!length.getType().equals("int")) {
+      throw new RuntimeException("Type of array length should be int");
+    }
+    int iLength = (Integer) length.getWrappedValue();
+    if (iLength != head.size() + omitted.getOmittedCount() + tail.size()) {
+      throw new RuntimeException("Array lengt does not match size of elements.");
+    }
+    this.length = length;
+    elements = new ArrayList<>(head.size() + tail.size());
+    elements.addAll(head);
+    elements.addAll(tail);
+    omittedFrom = head.size();
+    this.omitted = omitted;
   }
   
   public PrimitiveRepr getLength() {
@@ -83,7 +109,47 @@ public class ArrayRepr extends ReferenceRepr {
   }
   
   public List<ValueGraphNode> getElements() {
-    return Collections.unmodifiableList(elements);
+    if (omitted == null) {
+      return Collections.unmodifiableList(elements);
+    }
+    return new AbstractList<ValueGraphNode>() {
+
+      @Override
+      public ValueGraphNode get(int index) {
+        return getElement(index);
+      }
+
+      @Override
+      public int size() {
+        return elements.size() + omitted.getOmittedCount();
+      }
+    };
+  }
+  
+  public boolean isSampled() {
+    return omitted != null;
+  }
+  
+  /**
+   * Index of the first element left out of a sampled array, or -1 if all
+   * elements were captured.
+   */
+  public int getOmittedFrom() {
+    return omittedFrom;
+  }
+  
+  public int getOmittedCount() {
+    return omitted != null ? omitted.getOmittedCount() : 0;
+  }
+  
+  private ValueGraphNode getElement(int index) {
+    if (omitted == null || index < omittedFrom) {
+      return elements.get(index);
+    }
+    if (index < omittedFrom + omitted.getOmittedCount()) {
+      return omitted;
+    }
+    return elements.get(index - omitted.getOmittedCount());
   }
   
   @Override
@@ -92,7 +158,7 @@ public class ArrayRepr extends ReferenceRepr {
       referencedValues = new HashMap<>();
       referencedValues.put(ArrayLengthRefName.get(), getLength());
       for (int index = 0; index < elements.size(); ++index) {
-        referencedValues.put(new ArrayElementRefName(index), elements.get(index));
+        referencedValues.put(new ArrayElementRefName(toArrayIndex(index)), elements.get(index));
       }
     }
     return referencedValues;
@@ -106,7 +172,14 @@ public class ArrayRepr extends ReferenceRepr {
     if (!(refName instanceof ArrayElementRefName)) {
       throw new NoSuchFieldError(refName.toString());
     }
-    return elements.get(((ArrayElementRefName) refName).getIndex());
+    return getElement(((ArrayElementRefName) refName).getIndex());
+  }
+  
+  private int toArrayIndex(int elementIndex) {
+    if (omitted == null || elementIndex < omittedFrom) {
+      return elementIndex;
+    }
+    return elementIndex + omitted.getOmittedCount();
   }
 
   @Override
@@ -125,9 +198,13 @@ public class ArrayRepr extends ReferenceRepr {
       ValueGraphNode element = elements.get(index);
       if (element != null && !visited.containsKey(element)) {
         hashCode ^= Util.positionalShiftHashCode(
-            element.getValueHashRecursive(visited), "array_index_" + index);
+            element.getValueHashRecursive(visited), "array_index_" + toArrayIndex(index));
       }
     }
+    if (omitted != null) {
+      hashCode ^= Util.positionalShiftHashCode(
+          omitted.getValueHashRecursive(visited), "array_omitted_" + omittedFrom);
+    }
     return hashCode;
   }
 }
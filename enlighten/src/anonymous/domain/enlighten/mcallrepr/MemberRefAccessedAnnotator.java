@@ -35,6 +35,7 @@
 package anonymous.domain.enlighten.mcallrepr;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import anonymous.domain.enlighten.annotation.ValueAnnotation;
@@ -62,6 +63,20 @@ public class MemberRefAccessedAnnotator {
     return annotation.accessedMembers.contains(refName);
   }
   
+  public static boolean hasAccessedMember(ValueGraphNode obj) {
+    AnnotationData annotation = obj.getAnnotation(AnnotationData.class);
+    if (annotation == null) {
+      return false;
+    }
+    Map<MemberRefName, ValueGraphNode> members = obj.getReferencedValues();
+    for (MemberRefName refName : annotation.accessedMembers) {
+      if (members.containsKey(refName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
   public static boolean isMemberAccessed(ReflectedObjectRepr obj, String fieldName) {
     return isMemberAccessed(obj, new FieldReferenceName(fieldName));
   }
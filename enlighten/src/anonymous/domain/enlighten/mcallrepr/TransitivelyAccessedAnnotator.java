@@ -34,13 +34,7 @@
 
 package anonymous.domain.enlighten.mcallrepr;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.IdentityHashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import anonymous.domain.enlighten.annotation.ValueAnnotation;
 
@@ -52,95 +46,28 @@ public class TransitivelyAccessedAnnotator {
   }
   
   public static void annotateObjectSet(List<ReferenceRepr> objectSet) {
-    LinkedList<ReferenceRepr> workingList = new LinkedList<>();
-    for (ReferenceRepr refRepr : objectSet) {
-      if (!isObjectRepr(refRepr)) {
-        continue;
-      }
-      workingList.addLast(refRepr);
-    }
-    LinkedList<ReferenceRepr> accessStatusChangedObjects = new LinkedList<>();
-    while (!workingList.isEmpty()) {
-      ReferenceRepr currentObj = workingList.removeFirst();
-      TransitivelyAccessed transAccessedData = new TransitivelyAccessed();
-      currentObj.addAnnotation(transAccessedData);
-      Map<MemberRefName, ValueGraphNode> membersMap = currentObj.getReferencedValues();
-      for (MemberRefName fieldName : membersMap.keySet()) {
-        ValueGraphNode fieldValue = membersMap.get(fieldName);
-        if (MemberRefAccessedAnnotator.isMemberAccessed(currentObj, fieldName)) {
-          transAccessedData.isAccessed = true;
-          accessStatusChangedObjects.addLast(currentObj);
-        }
-        if (isObjectRepr(fieldValue)) {
-          ReferenceRepr referencedObject = (ReferenceRepr) fieldValue;
-          getOrInitReferencedByList(referencedObject).add(currentObj);
-          if (referencedObject.getAnnotation(TransitivelyAccessed.class) == null) {
-            workingList.addLast(referencedObject);
-          }
-        }
-      }
-    }
-    while (!accessStatusChangedObjects.isEmpty()) {
-      ReferenceRepr currentObj = accessStatusChangedObjects.removeFirst();
-      List<ReferenceRepr> referencedByList = getOrInitReferencedByList(currentObj);
-      for (ReferenceRepr predObj : referencedByList) {
-        TransitivelyAccessed predObjAccessStatus = 
-            predObj.getAnnotation(TransitivelyAccessed.class);
-        if (!predObjAccessStatus.isAccessed) {
-          predObjAccessStatus.isAccessed = true;
-          accessStatusChangedObjects.addLast(predObj);
-        }
-      }
-    }
-    workingList.clear();
-    for (ReferenceRepr refRepr : objectSet) {
-      if (!isObjectRepr(refRepr)) {
-        continue;
-      }
-      workingList.addLast(refRepr);
-    }
-    Set<ReferenceRepr> visited = Collections.newSetFromMap(
-        new IdentityHashMap<ReferenceRepr, Boolean>());
-    while (!workingList.isEmpty()) {
-      ReferenceRepr currentObj = workingList.removeFirst();
-      visited.add(currentObj);
-      currentObj.removeAnnotation(ReferencedBy.class);
-      TransitivelyAccessed transAccessedAnnotation = 
-          currentObj.getAnnotation(TransitivelyAccessed.class);
-      if (!transAccessedAnnotation.isAccessed) {
-        currentObj.removeAnnotation(transAccessedAnnotation);
-      }
-      for (ValueGraphNode fieldValue : currentObj.getReferencedValues().values()) {
-        if (isObjectRepr(fieldValue)) {
-          if (!visited.contains(fieldValue)) {
-            workingList.addLast((ReferenceRepr) fieldValue);
-          }
-        }
-      }
-    }
+    annotateObjectGraph(ValueGraphIndex.build(objectSet));
   }
   
-  private static List<ReferenceRepr> getOrInitReferencedByList(ReferenceRepr refRepr) {
-    ReferencedBy referencedByData = refRepr.getAnnotation(ReferencedBy.class);
-    if (referencedByData == null) {
-      referencedByData = new ReferencedBy();
-      refRepr.addAnnotation(referencedByData);
+  /**
+   * Marks every object node of the index that has an accessed member or reaches
+   * one through its references, and clears stale marks from the others.
+   */
+  public static void annotateObjectGraph(ValueGraphIndex graph) {
+    for (int index = 0; index < graph.size(); ++index) {
+      ValueGraphNode node = graph.getNode(index);
+      boolean annotated = node.getAnnotation(TransitivelyAccessed.class) != null;
+      if (graph.isTransitivelyAccessed(index)) {
+        if (!annotated) {
+          node.addAnnotation(new TransitivelyAccessed());
+        }
+      } else if (annotated) {
+        node.removeAnnotation(TransitivelyAccessed.class);
+      }
     }
-    return referencedByData.referencedBy;
-  }
-  
-  private static boolean isObjectRepr(ValueGraphNode value) {
-    return value instanceof ReflectedObjectRepr || value instanceof ArrayRepr;
   }
 
   private static final class TransitivelyAccessed implements ValueAnnotation {
     private static final long serialVersionUID = 1L;
-    private transient boolean isAccessed = false;
-  }
-  
-  private static final class ReferencedBy implements ValueAnnotation {
-
-    private static final long serialVersionUID = 1L;
-    private transient List<ReferenceRepr> referencedBy = new ArrayList<>();
   }
 }
@@ -0,0 +1,117 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package anonymous.domain.enlighten.mcallrepr;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Stands in for a part of a value graph that was not captured because a
+ * snapshot budget was exhausted.
+ */
+public class TruncatedRepr extends ReferenceRepr {
+  
+  private static final long serialVersionUID = 1L;
+  
+  public enum Reason {
+    MAX_DEPTH, MAX_OBJECTS, ARRAY_ELEMENTS
+  }
+  
+  private String type;
+  private long id;
+  private Reason reason;
+  private int omittedCount;
+  
+  public TruncatedRepr(String type, long id, Reason reason) {
+    this(type, id, reason, 1);
+  }
+  
+  public TruncatedRepr(String type, long id, Reason reason, int omittedCount) {
+    this.type = type;
+    this.id = id;
+    this.reason = reason;
+    this.omittedCount = omittedCount;
+  }
+  
+  public String getType() {
+    return type;
+  }
+  
+  public long getId() {
+    return id;
+  }
+  
+  public Reason getReason() {
+    return reason;
+  }
+  
+  /**
+   * Number of values this node stands for, which is more than one only for
+   * the elements left out of a sampled array.
+   */
+  public int getOmittedCount() {
+    return omittedCount;
+  }
+  
+  @Override
+  public Map<MemberRefName, ValueGraphNode> getReferencedValues() {
+    return null;
+  }
+
+  @Override
+  public ValueGraphNode getReferencedValue(MemberRefName refName) {
+    throw new NoSuchFieldError(refName.toString());
+  }
+
+  @Override
+  public boolean hasReferencedValues() {
+    return false;
+  }
+
+  @Override
+  protected int getValueHashRecursive(
+      IdentityHashMap<ValueGraphNode, Integer> visited) {
+    return type.hashCode() ^ Util.positionalShiftHashCode(omittedCount, reason.name());
+  }
+  
+  @Override
+  public String toString() {
+    if (reason == Reason.ARRAY_ELEMENTS) {
+      return "<" + omittedCount + " elements omitted>";
+    }
+    return String.format("<truncated %s[%d]: %s>", type, id, reason);
+  }
+}
@@ -0,0 +1,232 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package anonymous.domain.enlighten.mcallrepr;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Array-based view of the object nodes (reflected objects and arrays) reachable
+ * from a set of snapshot roots. Every object node gets a dense index in discovery
+ * order, and the member references between object nodes are kept in a compressed
+ * adjacency array, so that whole-graph analyses run over int arrays instead of
+ * temporary annotations and per-node collections.
+ */
+public class ValueGraphIndex {
+  
+  private final ValueGraphNode[] nodes;
+  private final int[] edgeStart;
+  private final int[] edgeTargets;
+  private final IdentityHashMap<ValueGraphNode, Integer> indices;
+  
+  private boolean[] directlyAccessed;
+  private boolean[] transitivelyAccessed;
+  
+  public static ValueGraphIndex build(Iterable<? extends ValueGraphNode> roots) {
+    return new ValueGraphIndex(roots);
+  }
+  
+  private ValueGraphIndex(Iterable<? extends ValueGraphNode> roots) {
+    indices = new IdentityHashMap<>();
+    ValueGraphNode[] nodeArray = new ValueGraphNode[16];
+    int nodeCount = 0;
+    for (ValueGraphNode root : roots) {
+      if (isObjectNode(root) && !indices.containsKey(root)) {
+        nodeArray = ensureCapacity(nodeArray, nodeCount);
+        indices.put(root, nodeCount);
+        nodeArray[nodeCount++] = root;
+      }
+    }
+    int[] starts = new int[17];
+    int[] targets = new int[32];
+    int edgeCount = 0;
+    // Breadth-first discovery: nodes are appended as they are first seen, so the
+    // node array doubles as the work list.
+    for (int current = 0; current < nodeCount; ++current) {
+      if (current + 1 >= starts.length) {
+        starts = Arrays.copyOf(starts, starts.length * 2);
+      }
+      starts[current] = edgeCount;
+      for (ValueGraphNode member : nodeArray[current].getReferencedValues().values()) {
+        if (!isObjectNode(member)) {
+          continue;
+        }
+        Integer memberIndex = indices.get(member);
+        if (memberIndex == null) {
+          nodeArray = ensureCapacity(nodeArray, nodeCount);
+          memberIndex = nodeCount;
+          indices.put(member, memberIndex);
+          nodeArray[nodeCount++] = member;
+        }
+        if (edgeCount == targets.length) {
+          targets = Arrays.copyOf(targets, targets.length * 2);
+        }
+        targets[edgeCount++] = memberIndex;
+      }
+    }
+    if (nodeCount >= starts.length) {
+      starts = Arrays.copyOf(starts, nodeCount + 1);
+    }
+    starts[nodeCount] = edgeCount;
+    nodes = Arrays.copyOf(nodeArray, nodeCount);
+    edgeStart = Arrays.copyOf(starts, nodeCount + 1);
+    edgeTargets = Arrays.copyOf(targets, edgeCount);
+  }
+  
+  public int size() {
+    return nodes.length;
+  }
+  
+  public ValueGraphNode getNode(int index) {
+    return nodes[index];
+  }
+  
+  public int indexOf(ValueGraphNode node) {
+    Integer index = indices.get(node);
+    return index != null ? index : -1;
+  }
+  
+  /**
+   * Whether any member of the node has been marked by
+   * {@link MemberRefAccessedAnnotator}.
+   */
+  public boolean isDirectlyAccessed(int index) {
+    if (directlyAccessed == null) {
+      directlyAccessed = new boolean[nodes.length];
+      for (int i = 0; i < nodes.length; ++i) {
+        directlyAccessed[i] = MemberRefAccessedAnnotator.hasAccessedMember(nodes[i]);
+      }
+    }
+    return directlyAccessed[index];
+  }
+  
+  /**
+   * Whether the node has an accessed member, or references (possibly indirectly)
+   * an object node that has one.
+   */
+  public boolean isTransitivelyAccessed(int index) {
+    if (transitivelyAccessed == null) {
+      transitivelyAccessed = computeTransitivelyAccessed();
+    }
+    return transitivelyAccessed[index];
+  }
+  
+  /*
+   * Iterative Tarjan SCC pass. Components are completed in reverse topological
+   * order, so every component a node points to is already resolved when the
+   * node's own component is closed, and each node and edge is visited once.
+   */
+  private boolean[] computeTransitivelyAccessed() {
+    int nodeCount = nodes.length;
+    boolean[] result = new boolean[nodeCount];
+    int[] order = new int[nodeCount];
+    int[] lowLink = new int[nodeCount];
+    int[] nextEdge = new int[nodeCount];
+    int[] callStack = new int[nodeCount];
+    int[] componentStack = new int[nodeCount];
+    boolean[] onStack = new boolean[nodeCount];
+    Arrays.fill(order, -1);
+    int counter = 0;
+    for (int root = 0; root < nodeCount; ++root) {
+      if (order[root] != -1) {
+        continue;
+      }
+      int callDepth = 0;
+      int componentDepth = 0;
+      callStack[callDepth++] = root;
+      order[root] = lowLink[root] = counter++;
+      nextEdge[root] = edgeStart[root];
+      componentStack[componentDepth++] = root;
+      onStack[root] = true;
+      result[root] = isDirectlyAccessed(root);
+      while (callDepth > 0) {
+        int node = callStack[callDepth - 1];
+        if (nextEdge[node] < edgeStart[node + 1]) {
+          int succ = edgeTargets[nextEdge[node]++];
+          if (order[succ] == -1) {
+            order[succ] = lowLink[succ] = counter++;
+            nextEdge[succ] = edgeStart[succ];
+            componentStack[componentDepth++] = succ;
+            onStack[succ] = true;
+            result[succ] = isDirectlyAccessed(succ);
+            callStack[callDepth++] = succ;
+          } else if (onStack[succ]) {
+            lowLink[node] = Math.min(lowLink[node], order[succ]);
+            result[node] |= result[succ];
+          } else {
+            result[node] |= result[succ];
+          }
+          continue;
+        }
+        --callDepth;
+        if (callDepth > 0) {
+          int parent = callStack[callDepth - 1];
+          lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+          result[parent] |= result[node];
+        }
+        if (lowLink[node] == order[node]) {
+          // Close the component: node is its root and has collected the
+          // accessed status of all members and of all successor components.
+          boolean accessed = false;
+          for (int i = componentDepth - 1; ; --i) {
+            accessed |= result[componentStack[i]];
+            if (componentStack[i] == node) {
+              break;
+            }
+          }
+          int member;
+          do {
+            member = componentStack[--componentDepth];
+            onStack[member] = false;
+            result[member] = accessed;
+          } while (member != node);
+        }
+      }
+    }
+    return result;
+  }
+  
+  private static ValueGraphNode[] ensureCapacity(ValueGraphNode[] array, int size) {
+    if (size < array.length) {
+      return array;
+    }
+    return Arrays.copyOf(array, array.length * 2);
+  }
+  
+  public static boolean isObjectNode(ValueGraphNode value) {
+    return value instanceof ReflectedObjectRepr || value instanceof ArrayRepr;
+  }
+}
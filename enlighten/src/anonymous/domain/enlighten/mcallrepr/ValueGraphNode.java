@@ -46,28 +46,31 @@ public abstract class ValueGraphNode implements Serializable, Annotatable {
   
   private static final long serialVersionUID = 1L;
   
-  private DefaultAnnotationList annotations = new DefaultAnnotationList();
+  private DefaultAnnotationList annotations;
   
   private Integer cachedHashCode;
   
   @Override
   public void addAnnotation(ValueAnnotation annotation) {
+    if (annotations == null) {
+      annotations = new DefaultAnnotationList();
+    }
     annotations.addAnnotation(annotation);
   }
   
   @Override
   public <T extends ValueAnnotation> T getAnnotation(Class<T> annotationClass) {
-    return annotations.getAnnotation(annotationClass);
+    return annotations != null ? annotations.getAnnotation(annotationClass) : null;
   }
   
   @Override
   public boolean removeAnnotation(ValueAnnotation annotation) {
-    return annotations.removeAnnotation(annotation);
+    return annotations != null && annotations.removeAnnotation(annotation);
   }
   
   @Override
   public boolean removeAnnotation(Class<? extends ValueAnnotation> annotationClass) {
-    return annotations.removeAnnotation(annotationClass);
+    return annotations != null && annotations.removeAnnotation(annotationClass);
   }
   
   public int getValueHash() {
@@ -58,6 +58,7 @@ import anonymous.domain.enlighten.data.TestName;
 import anonymous.domain.enlighten.data.TestOutcomes;
 import anonymous.domain.enlighten.exec.CompileSubjectProgram;
 import anonymous.domain.enlighten.exec.RunTestsWithCoverage;
+import anonymous.domain.enlighten.exec.TestResultCache;
 import anonymous.domain.enlighten.files.CopyDirTree;
 import anonymous.domain.enlighten.files.LookupFilesByNameVisitor;
 import anonymous.domain.enlighten.files.RemoveDirTreeFileVisitor;
@@ -85,6 +86,7 @@ public class GenMutants {
   private Path selectedMutantsDir;
   
   private Map<SourceLocation, Set<TestName>> reversedCovMap = new HashMap<>();
+  private TestResultCache resultCache;
   
   
   public GenMutants(SubjectProgram subject) throws IOException, InterruptedException {
@@ -94,6 +96,7 @@ public class GenMutants {
     mutantsRoot = subject.getRootDir().resolve("mutants");
     testMutantsProjectPath = subject.getRootDir().resolve("test_mutants");
     selectedMutantsDir = subject.getRootDir().resolve("selected_mutation");
+    resultCache = new TestResultCache(subject.getResultCacheDir());
     initSubject();
   }
   
@@ -256,6 +259,7 @@ public class GenMutants {
     }
 
     RunTestsWithCoverage testsRunner = new RunTestsWithCoverage(subject);
+    testsRunner.setResultCache(resultCache);
     Path covDir = subject.getCoverageDir();
     if (!Files.exists(covDir)) {
       testsRunner.generateCoverageData();
@@ -372,6 +376,7 @@ public class GenMutants {
         Files.copy(changedClassFile, destClassFile, StandardCopyOption.REPLACE_EXISTING);
       }
       MutationTestRunner testRunner = new MutationTestRunner(testMutantProject, affectedTests);
+      testRunner.setResultCache(resultCache);
       testRunner.generateCoverageData();
       TestOutcomes testResult = testRunner.getTestOutcomes();
       TestName anyFailedTest = null;
@@ -56,6 +56,7 @@ import anonymous.domain.enlighten.data.SourceLocation;
 import anonymous.domain.enlighten.data.TestName;
 import anonymous.domain.enlighten.data.TestOutcomes;
 import anonymous.domain.enlighten.files.CopyDirTree;
+import anonymous.domain.enlighten.publish.PhaseTelemetry;
 import anonymous.domain.enlighten.subjectmodel.MutantSubject;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
 import anonymous.domain.enlighten.util.ErrorUtils;
@@ -104,12 +105,17 @@ public class MutationIterativeFL {
   private void runOnMutantVersion(MutantVersionId mutant) {
     processedMutants.add(mutant);
     System.out.println("Running on mutant version " + mutant.toString());
+    PhaseTelemetry.start();
     try {
+      PhaseTelemetry.Span span = PhaseTelemetry.startSpan("mutant.setup");
       SubjectProgram mutantVersion = setUpMutantVersion(mutant);
+      span.end();
+      span = PhaseTelemetry.startSpan("mutant.localize");
       SimulatedFeedbackDirectedFL simulatedFlCore = 
           new SimulatedFeedbackDirectedFL(mutantVersion, subject);
       simulatedFlCore.requireAnswerToMostSuspicousValue();
       int numAnswers = simulatedFlCore.localizeFault();
+      span.end();
       if (numAnswers != -1) {
         System.out.println("Fault identified with answers to " + numAnswers + " values");
       } else {
@@ -119,6 +125,12 @@ public class MutationIterativeFL {
       System.out.println("Failed to run Fl on mutant version " + mutant.toString());
       Path failureLogPath = outputRoot.resolve(mutant.toString()).resolve("failure_trace.log");
       ErrorUtils.writeExceptionTrace(ex, failureLogPath);
+    } finally {
+      Path mutantOutPath = outputRoot.resolve(mutant.toString());
+      if (Files.isDirectory(mutantOutPath)) {
+        PhaseTelemetry.writeReports(mutantOutPath);
+      }
+      PhaseTelemetry.shutdown();
     }
   }
   
@@ -35,18 +35,18 @@
 package anonymous.domain.enlighten.mutation;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import anonymous.domain.enlighten.data.CoverageMatrix;
 import anonymous.domain.enlighten.data.ExecutionProfile;
 import anonymous.domain.enlighten.data.FSTSerialization;
 import anonymous.domain.enlighten.data.MethodCoverage;
@@ -55,11 +55,13 @@ import anonymous.domain.enlighten.data.TestName;
 import anonymous.domain.enlighten.data.TestOutcomes;
 import anonymous.domain.enlighten.exec.ExternalProgramInvocation;
 import anonymous.domain.enlighten.exec.InstrumentationJars;
+import anonymous.domain.enlighten.exec.TestResultCache;
 import anonymous.domain.enlighten.files.RemoveDirTreeFileVisitor;
 import anonymous.domain.enlighten.subjectmodel.SubjectProgram;
 import anonymous.domain.enlighten.util.ProcessTimeoutKiller;
 import anonymous.domain.enlighten.util.StringUtils;
 import instr.agent.InstrumenterConfig;
+import instr.agent.InstrumenterConfig.CoverageMode;
 import instr.agent.InstrumenterConfig.InstrumenterType;
 import instr.runner.TestRunner;
 
@@ -76,6 +78,8 @@ public class MutationTestRunner extends ExternalProgramInvocation {
   private boolean writeMemAccessWithInvocationTree = false;
   private boolean writeTrace = false;
   
+  private TestResultCache resultCache;
+  
   private TestOutcomes testOutcomes;
   private Map<TestName, MethodCoverage> methodCoverageMatrix;
   private Map<TestName, SourceLocationCoverage> sourceCoverageMatrix;
@@ -112,6 +116,14 @@ public class MutationTestRunner extends ExternalProgramInvocation {
   public void writeTraceFiles(boolean write) {
     writeTrace = write;
   }
+  
+  /**
+   * Only runs the tests whose results are not in the cache, see 
+   * RunTestsWithCoverage.setResultCache.
+   */
+  public void setResultCache(TestResultCache cache) {
+    resultCache = cache;
+  }
 
   public void generateCoverageData() throws IOException {
     Path logFilePath = getLogFilePath();
@@ -138,12 +150,65 @@ public class MutationTestRunner extends ExternalProgramInvocation {
         new InstrumenterConfig(InstrumenterType.TRACE_INSTRUMENTER);
     instrumenterConfig.setInstrumentedPackage(subjectProgram.getAppPackage());
     instrumenterConfig.instrumentLineNumber(true);
+    instrumenterConfig.setCoverageMode(
+        writeTrace ? CoverageMode.EVERY_HIT : CoverageMode.FIRST_HIT);
     instrumenterConfig.instrumentMemoryAccess(false);
     instrumenterConfig.instrumentStateCapture(false);
     instrumenterConfig.storeToFile(instrumenterConfigFile.toFile());
 
+    if (resultCache == null || writeTrace) {
+      runTests(testsToRun, instrumenterConfigFile, false);
+    } else {
+      InstrumenterConfig coverageConfig = writeCoverage ? instrumenterConfig : null;
+      try (TestResultCache.Session cacheSession = resultCache.openSession(subjectProgram)) {
+        TestResultCache.Plan plan = cacheSession.planTests(testsToRun, coverageConfig);
+        cacheSession.writeCachedResults(plan, coverageConfig, subjectCovDataDir);
+        if (plan.hasTestsToRun()) {
+          runTests(plan.getTestsToRun(), instrumenterConfigFile, true);
+          cacheSession.storeResults(
+              subjectCovDataDir, coverageConfig, Collections.emptyList());
+        }
+      }
+    }
+    
+
+    if (!writeInvocationTreeForFailures) {
+      return;
+    }
+    instrumenterConfig.instrumentMemoryAccess(writeMemAccessWithInvocationTree);
+    instrumenterConfig.instrumentStateCapture(true);
+    instrumenterConfig.storeToFile(instrumenterConfigFile.toFile());
+    readTestOutcomes();
+    List<TestName> failingTests = new ArrayList<>();
+    for (TestName test: testOutcomes.getTestSet()) {
+      if (!testOutcomes.isPassed(test)) {
+        failingTests.add(test);
+      }
+    }
+    if (resultCache == null) {
+      writeInvocationTrees(failingTests, instrumenterConfigFile);
+      return;
+    }
+    try (TestResultCache.Session cacheSession = resultCache.openSession(subjectProgram)) {
+      List<TestName> uncachedTests = new ArrayList<>();
+      for (TestName test : failingTests) {
+        if (!cacheSession.restoreExecutionProfile(
+            test, instrumenterConfig, subjectCovDataDir)) {
+          uncachedTests.add(test);
+        }
+      }
+      writeInvocationTrees(uncachedTests, instrumenterConfigFile);
+      for (TestName test : uncachedTests) {
+        cacheSession.storeExecutionProfile(test, instrumenterConfig, subjectCovDataDir);
+      }
+    }
+  }
+  
+  private void runTests(Collection<TestName> tests, Path instrumenterConfigFile, 
+      boolean writeDependencies) throws IOException {
+    Path subjectCovDataDir = subjectProgram.getCoverageDir();
     List<String> testNamesToRun = new ArrayList<>();
-    for (TestName test : testsToRun) {
+    for (TestName test : tests) {
       testNamesToRun.add(test.getTestMethodLongName());
     }
     String testMethodsStr = StringUtils.concat(testNamesToRun, ",");
@@ -178,6 +243,9 @@ public class MutationTestRunner extends ExternalProgramInvocation {
     if (writeTrace) {
       commandComponents.add("--write_trace");
     }
+    if (writeDependencies) {
+      commandComponents.add("--write_dependencies");
+    }
     int retVal = 1;
     try {
       Process runnerProcess = runCovProc.command(commandComponents).start();
@@ -190,33 +258,27 @@ public class MutationTestRunner extends ExternalProgramInvocation {
       throw new RuntimeException(
           "Error generating coverage data for subject program at " + subjectProgram.getRootDir());
     }
-    
-
-    if (!writeInvocationTreeForFailures) {
-      return;
-    }
-    instrumenterConfig.instrumentMemoryAccess(writeMemAccessWithInvocationTree);
-    instrumenterConfig.instrumentStateCapture(true);
-    instrumenterConfig.storeToFile(instrumenterConfigFile.toFile());
-    readTestOutcomes();
+  }
+  
+  private void writeInvocationTrees(List<TestName> tests, Path instrumenterConfigFile) 
+      throws IOException {
+    Path subjectCovDataDir = subjectProgram.getCoverageDir();
     Set<String> testMethodsToWriteTree = new HashSet<>();
-    for (TestName test: testOutcomes.getTestSet()) {
-      if (!testOutcomes.isPassed(test)) {
-        testMethodsToWriteTree.add(test.getTestClassName() + "." + test.getTestMethodName());
-      }
+    for (TestName test : tests) {
+      testMethodsToWriteTree.add(test.getTestClassName() + "." + test.getTestMethodName());
     }
     for (String testLongName : testMethodsToWriteTree) {
       ProcessBuilder genInvocationTreeProc = newOutputRedirectedProcessBuilder();
-      commandComponents = new ArrayList<>();
+      List<String> commandComponents = new ArrayList<>();
       commandComponents.add("java");
       commandComponents.add("-cp");
-      runtimePaths = new ArrayList<>();
+      List<Path> runtimePaths = new ArrayList<>();
       runtimePaths.addAll(subjectProgram.getLibPaths());
       runtimePaths.addAll(subjectProgram.getAppSourceDirs());
       runtimePaths.addAll(subjectProgram.getTestSourceDirs());
 
 
-      classpath = concatPaths(runtimePaths, File.pathSeparator) 
+      String classpath = concatPaths(runtimePaths, File.pathSeparator) 
           + getFrameworkClasspathString();
       commandComponents.add(classpath);
       commandComponents.add("-Xbootclasspath/a:" 
@@ -229,7 +291,7 @@ public class MutationTestRunner extends ExternalProgramInvocation {
       commandComponents.add("--test_methods=" + testLongName);
       commandComponents.add("--data_dir=" + subjectCovDataDir.toAbsolutePath());
       commandComponents.add("--write_invocation_tree");
-      retVal = 1;
+      int retVal = 1;
       try {
         Process runnerProcess = genInvocationTreeProc.command(commandComponents).start();
         new ProcessTimeoutKiller(runnerProcess, 1000);
@@ -293,44 +355,10 @@ public class MutationTestRunner extends ExternalProgramInvocation {
   }
   
   private void readTestsCoverage() throws IOException {
-    methodCoverageMatrix = new HashMap<>();
-    File[] covDataFiles = subjectProgram.getCoverageDir().toFile().listFiles(new FileFilter() {
-      @Override
-      public boolean accept(File pathname) {
-        return pathname.getName().endsWith(".method.cov");
-      }
-    });
-    for (File covDataFile : covDataFiles) {
-      String dataFileName = covDataFile.getName();
-
-      String testDescription = dataFileName.substring(0, dataFileName.length() - 11);
-      TestName test = TestName.parseFromDescription(testDescription);
-      if (!excludedTests.contains(test)) {
-        MethodCoverage coverage = 
-            FSTSerialization.readObjectFromFile(MethodCoverage.class, covDataFile.toPath());
-        coverage.filterCoverageByAppClasses(subjectProgram);
-        methodCoverageMatrix.put(test, coverage);
-      }
-    }
-    
-    sourceCoverageMatrix = new HashMap<>();
-    covDataFiles = subjectProgram.getCoverageDir().toFile().listFiles(new FileFilter() {
-      @Override
-      public boolean accept(File pathname) {
-        return pathname.getName().endsWith(".line.cov");
-      }
-    });
-    for (File covDataFile : covDataFiles) {
-      String dataFileName = covDataFile.getName();
-
-      String testDescription = dataFileName.substring(0, dataFileName.length() - 9);
-      TestName test = TestName.parseFromDescription(testDescription);
-      if (!excludedTests.contains(test)) {
-        SourceLocationCoverage coverage = 
-            FSTSerialization.readObjectFromFile(SourceLocationCoverage.class, covDataFile.toPath());
-        coverage.filterCoverageByAppClasses(subjectProgram);
-        sourceCoverageMatrix.put(test, coverage);
-      }
-    }
+    Path covDataDir = subjectProgram.getCoverageDir();
+    methodCoverageMatrix = CoverageMatrix.readMethodCoverageMatrix(
+        covDataDir, subjectProgram, excludedTests);
+    sourceCoverageMatrix = CoverageMatrix.readSourceLocationCoverageMatrix(
+        covDataDir, subjectProgram, excludedTests);
   }
 }
@@ -43,23 +43,23 @@ public class ExtraStatsPublisher {
 
   private static ExtraStatsBundle statsBundle;
   
-  public static void startPublisher() {
+  public static synchronized void startPublisher() {
     statsBundle = new ExtraStatsBundle();
   }
   
-  public static void shutdown() {
+  public static synchronized void shutdown() {
     statsBundle = null;
   }
   
-  public static boolean isAcceptingReports() {
+  public static synchronized boolean isAcceptingReports() {
     return statsBundle != null;
   }
   
-  public static void report(ExtraStats stats) {
+  public static synchronized void report(ExtraStats stats) {
     statsBundle.add(stats);
   }
   
-  public static void writeToFile(Path dataFile) {
+  public static synchronized void writeToFile(Path dataFile) {
     if (statsBundle != null && !statsBundle.isEmpty()) {
       try {
         FSTSerialization.writeObjectTofile(ExtraStatsBundle.class, dataFile, statsBundle);
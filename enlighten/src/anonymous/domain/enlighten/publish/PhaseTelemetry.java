@@ -0,0 +1,267 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package anonymous.domain.enlighten.publish;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Phase-level timing, allocation, counter and histogram telemetry. Like
+ * {@link ExtraStatsPublisher}, it is off until started, and while it is off
+ * spans are a shared no-op and counters are ignored. All methods are safe
+ * to call from any thread.
+ * 
+ * A span times one execution of a phase and, where the JVM supports it,
+ * counts the bytes the calling thread allocated meanwhile. Spans must be
+ * ended on the thread that started them. The total time of a phase includes
+ * that of the spans nested in it; its self time excludes them.
+ */
+public class PhaseTelemetry {
+  
+  public static final String JSON_REPORT_FILE_NAME = "telemetry.json";
+  public static final String SUMMARY_FILE_NAME = "telemetry.txt";
+  
+  private static final com.sun.management.ThreadMXBean threadBean = getThreadBean();
+  
+  private static volatile Recorder recorder;
+  
+  private static final ThreadLocal<Span> openSpan = new ThreadLocal<>();
+  
+  public static void start() {
+    recorder = new Recorder();
+  }
+  
+  public static void shutdown() {
+    recorder = null;
+  }
+  
+  public static boolean isEnabled() {
+    return recorder != null;
+  }
+  
+  public static Span startSpan(String phase) {
+    Recorder currentRecorder = recorder;
+    if (currentRecorder == null) {
+      return Span.NONE;
+    }
+    return new Span(currentRecorder, phase);
+  }
+  
+  public static void count(String counter, long delta) {
+    Recorder currentRecorder = recorder;
+    if (currentRecorder != null) {
+      currentRecorder.getCounter(counter).addAndGet(delta);
+    }
+  }
+  
+  public static void recordValue(String histogram, long value) {
+    Recorder currentRecorder = recorder;
+    if (currentRecorder != null) {
+      currentRecorder.getHistogram(histogram).record(value);
+    }
+  }
+  
+  /**
+   * @return a snapshot of everything recorded since the telemetry was
+   * started, or null if it is not running
+   */
+  public static PhaseTelemetryReport getReport() {
+    Recorder currentRecorder = recorder;
+    if (currentRecorder == null) {
+      return null;
+    }
+    return currentRecorder.snapshot();
+  }
+  
+  /**
+   * Reports a snapshot to the {@link ExtraStatsPublisher}, if both are
+   * running.
+   */
+  public static void publish() {
+    PhaseTelemetryReport report = getReport();
+    if (report != null) {
+      publish(report);
+    }
+  }
+  
+  private static void publish(PhaseTelemetryReport report) {
+    if (ExtraStatsPublisher.isAcceptingReports()) {
+      ExtraStatsPublisher.report(report);
+    }
+  }
+  
+  /**
+   * Publishes a snapshot and writes it to the given directory, both as
+   * telemetry.json and as a human readable telemetry.txt.
+   */
+  public static void writeReports(Path dataDir) {
+    PhaseTelemetryReport report = getReport();
+    if (report == null) {
+      return;
+    }
+    publish(report);
+    try {
+      report.writeJson(dataDir.resolve(JSON_REPORT_FILE_NAME));
+      report.writeSummary(dataDir.resolve(SUMMARY_FILE_NAME));
+    } catch (IOException ex) {
+      System.err.println("Warning: cannot write telemetry reports to " + dataDir);
+    }
+  }
+  
+  private static com.sun.management.ThreadMXBean getThreadBean() {
+    try {
+      com.sun.management.ThreadMXBean bean = 
+          (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      if (!bean.isThreadAllocatedMemorySupported()) {
+        return null;
+      }
+      if (!bean.isThreadAllocatedMemoryEnabled()) {
+        bean.setThreadAllocatedMemoryEnabled(true);
+      }
+      return bean;
+    } catch (ClassCastException | UnsupportedOperationException ex) {
+      return null;
+    }
+  }
+  
+  private static long getAllocatedBytes(long threadId) {
+    return threadBean != null ? threadBean.getThreadAllocatedBytes(threadId) : -1;
+  }
+  
+  public static class Span implements AutoCloseable {
+    
+    private static final Span NONE = new Span(null, null);
+    
+    private Recorder owner;
+    private String phase;
+    private long threadId;
+    private long startBytes;
+    private long startNanos;
+    private long childNanos;
+    private Span parent;
+    
+    private Span(Recorder owner, String phase) {
+      this.owner = owner;
+      this.phase = phase;
+      if (owner != null) {
+        parent = openSpan.get();
+        openSpan.set(this);
+        threadId = Thread.currentThread().getId();
+        startBytes = getAllocatedBytes(threadId);
+        startNanos = System.nanoTime();
+      }
+    }
+    
+    public void end() {
+      if (owner == null) {
+        return;
+      }
+      long nanos = System.nanoTime() - startNanos;
+      long allocatedBytes = -1;
+      if (startBytes >= 0) {
+        allocatedBytes = getAllocatedBytes(threadId) - startBytes;
+      }
+      if (openSpan.get() == this) {
+        openSpan.set(parent);
+      }
+      if (parent != null && parent.owner == owner) {
+        parent.childNanos += nanos;
+      }
+      owner.recordSpan(phase, nanos, nanos - childNanos, allocatedBytes);
+      owner = null;
+      parent = null;
+    }
+
+    @Override
+    public void close() {
+      end();
+    }
+  }
+  
+  private static class Recorder {
+    
+    private long startTimeMillis = System.currentTimeMillis();
+    private long startNanos = System.nanoTime();
+    private Map<String, TelemetryHistogram> spanNanos = new ConcurrentHashMap<>();
+    private Map<String, AtomicLong> spanSelfNanos = new ConcurrentHashMap<>();
+    private Map<String, AtomicLong> spanAllocatedBytes = new ConcurrentHashMap<>();
+    private Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private Map<String, TelemetryHistogram> histograms = new ConcurrentHashMap<>();
+    
+    void recordSpan(String phase, long nanos, long selfNanos, long allocatedBytes) {
+      spanNanos.computeIfAbsent(phase, key -> new TelemetryHistogram()).record(nanos);
+      spanSelfNanos.computeIfAbsent(phase, key -> new AtomicLong()).addAndGet(selfNanos);
+      if (allocatedBytes >= 0) {
+        spanAllocatedBytes.computeIfAbsent(phase, key -> new AtomicLong())
+            .addAndGet(allocatedBytes);
+      }
+    }
+    
+    AtomicLong getCounter(String counter) {
+      return counters.computeIfAbsent(counter, key -> new AtomicLong());
+    }
+    
+    TelemetryHistogram getHistogram(String histogram) {
+      return histograms.computeIfAbsent(histogram, key -> new TelemetryHistogram());
+    }
+    
+    PhaseTelemetryReport snapshot() {
+      PhaseTelemetryReport report = new PhaseTelemetryReport(
+          startTimeMillis, System.nanoTime() - startNanos);
+      for (Map.Entry<String, TelemetryHistogram> entry : spanNanos.entrySet()) {
+        AtomicLong selfNanos = spanSelfNanos.get(entry.getKey());
+        AtomicLong allocatedBytes = spanAllocatedBytes.get(entry.getKey());
+        report.addPhase(entry.getKey(), entry.getValue().copy(), 
+            selfNanos != null ? selfNanos.get() : entry.getValue().getSum(), 
+            allocatedBytes != null ? allocatedBytes.get() : -1);
+      }
+      Map<String, Long> counterValues = new TreeMap<>();
+      for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+        counterValues.put(entry.getKey(), entry.getValue().get());
+      }
+      report.setCounters(counterValues);
+      for (Map.Entry<String, TelemetryHistogram> entry : histograms.entrySet()) {
+        report.addHistogram(entry.getKey(), entry.getValue().copy());
+      }
+      return report;
+    }
+  }
+}
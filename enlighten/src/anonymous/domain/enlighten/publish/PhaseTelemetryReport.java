@@ -0,0 +1,225 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package anonymous.domain.enlighten.publish;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A snapshot of {@link PhaseTelemetry}. It can be published as extra stats,
+ * and exported as JSON for tools or as a plain text table for people.
+ */
+public class PhaseTelemetryReport implements ExtraStats {
+
+  private static final long serialVersionUID = 1L;
+  
+  private long startTimeMillis;
+  private long elapsedNanos;
+  private Map<String, TelemetryHistogram> phaseNanos = new TreeMap<>();
+  private Map<String, Long> phaseSelfNanos = new TreeMap<>();
+  private Map<String, Long> phaseAllocatedBytes = new TreeMap<>();
+  private Map<String, Long> counters = new TreeMap<>();
+  private Map<String, TelemetryHistogram> histograms = new TreeMap<>();
+  
+  PhaseTelemetryReport(long startTimeMillis, long elapsedNanos) {
+    this.startTimeMillis = startTimeMillis;
+    this.elapsedNanos = elapsedNanos;
+  }
+  
+  void addPhase(
+      String phase, TelemetryHistogram nanos, long selfNanos, long allocatedBytes) {
+    phaseNanos.put(phase, nanos);
+    phaseSelfNanos.put(phase, selfNanos);
+    phaseAllocatedBytes.put(phase, allocatedBytes);
+  }
+  
+  void setCounters(Map<String, Long> counters) {
+    this.counters = counters;
+  }
+  
+  void addHistogram(String name, TelemetryHistogram histogram) {
+    histograms.put(name, histogram);
+  }
+  
+  public long getStartTimeMillis() {
+    return startTimeMillis;
+  }
+  
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+  
+  public Map<String, TelemetryHistogram> getPhaseNanos() {
+    return Collections.unmodifiableMap(phaseNanos);
+  }
+  
+  /**
+   * @return the total time of the spans of the phase, excluding the spans
+   * nested in them
+   */
+  public long getPhaseSelfNanos(String phase) {
+    Long selfNanos = phaseSelfNanos.get(phase);
+    if (selfNanos != null) {
+      return selfNanos;
+    }
+    TelemetryHistogram nanos = phaseNanos.get(phase);
+    return nanos != null ? nanos.getSum() : 0;
+  }
+  
+  /**
+   * @return the bytes allocated during the spans of the phase, or -1 if the
+   * JVM does not count allocations
+   */
+  public long getPhaseAllocatedBytes(String phase) {
+    Long allocatedBytes = phaseAllocatedBytes.get(phase);
+    return allocatedBytes != null ? allocatedBytes : -1;
+  }
+  
+  public Map<String, Long> getCounters() {
+    return Collections.unmodifiableMap(counters);
+  }
+  
+  public Map<String, TelemetryHistogram> getHistograms() {
+    return Collections.unmodifiableMap(histograms);
+  }
+  
+  public String toJson() {
+    StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"startTimeMillis\": ").append(startTimeMillis).append(",\n");
+    json.append("  \"elapsedNanos\": ").append(elapsedNanos).append(",\n");
+    json.append("  \"phases\": {");
+    String separator = "\n";
+    for (String phase : phaseNanos.keySet()) {
+      json.append(separator).append("    ").append(quote(phase)).append(": ");
+      appendHistogram(json, phaseNanos.get(phase), 
+          ", \"selfNanos\": " + getPhaseSelfNanos(phase) 
+          + ", \"allocatedBytes\": " + getPhaseAllocatedBytes(phase));
+      separator = ",\n";
+    }
+    json.append("\n  },\n");
+    json.append("  \"counters\": {");
+    separator = "\n";
+    for (String counter : counters.keySet()) {
+      json.append(separator).append("    ").append(quote(counter)).append(": ")
+          .append(counters.get(counter));
+      separator = ",\n";
+    }
+    json.append("\n  },\n");
+    json.append("  \"histograms\": {");
+    separator = "\n";
+    for (String name : histograms.keySet()) {
+      json.append(separator).append("    ").append(quote(name)).append(": ");
+      appendHistogram(json, histograms.get(name), "");
+      separator = ",\n";
+    }
+    json.append("\n  }\n");
+    json.append("}\n");
+    return json.toString();
+  }
+  
+  public String toSummary() {
+    StringBuilder summary = new StringBuilder();
+    summary.append(String.format("Telemetry over %.3f s\n", elapsedNanos / 1e9));
+    summary.append(String.format("%-32s %8s %12s %12s %10s %10s %10s %12s\n", 
+        "phase", "count", "total(ms)", "self(ms)", "mean(ms)", "p90(ms)", "max(ms)", 
+        "alloc(MB)"));
+    for (String phase : phaseNanos.keySet()) {
+      TelemetryHistogram nanos = phaseNanos.get(phase);
+      long allocatedBytes = getPhaseAllocatedBytes(phase);
+      summary.append(String.format("%-32s %8d %12.2f %12.2f %10.2f %10.2f %10.2f %12s\n", 
+          phase, nanos.getCount(), nanos.getSum() / 1e6, getPhaseSelfNanos(phase) / 1e6, 
+          nanos.getMean() / 1e6, 
+          nanos.getQuantile(0.9) / 1e6, nanos.getMax() / 1e6, 
+          allocatedBytes >= 0 ? String.format("%.2f", allocatedBytes / 1048576.0) : "n/a"));
+    }
+    if (!counters.isEmpty()) {
+      summary.append(String.format("%-32s %12s\n", "counter", "value"));
+      for (String counter : counters.keySet()) {
+        summary.append(String.format("%-32s %12d\n", counter, counters.get(counter)));
+      }
+    }
+    if (!histograms.isEmpty()) {
+      summary.append(String.format("%-32s %8s %12s %10s %10s\n", 
+          "histogram", "count", "mean", "p90", "max"));
+      for (String name : histograms.keySet()) {
+        TelemetryHistogram histogram = histograms.get(name);
+        summary.append(String.format("%-32s %8d %12.2f %10d %10d\n", name, 
+            histogram.getCount(), histogram.getMean(), 
+            histogram.getQuantile(0.9), histogram.getMax()));
+      }
+    }
+    return summary.toString();
+  }
+  
+  public void writeJson(Path file) throws IOException {
+    Files.write(file, toJson().getBytes(StandardCharsets.UTF_8));
+  }
+  
+  public void writeSummary(Path file) throws IOException {
+    Files.write(file, toSummary().getBytes(StandardCharsets.UTF_8));
+  }
+  
+  private static void appendHistogram(
+      StringBuilder json, TelemetryHistogram histogram, String extraFields) {
+    json.append(String.format(Locale.ROOT, 
+        "{\"count\": %d, \"sum\": %d, \"min\": %d, \"max\": %d, \"mean\": %.1f, "
+        + "\"p50\": %d, \"p90\": %d, \"p99\": %d%s}", 
+        histogram.getCount(), histogram.getSum(), histogram.getMin(), histogram.getMax(), 
+        histogram.getMean(), histogram.getQuantile(0.5), histogram.getQuantile(0.9), 
+        histogram.getQuantile(0.99), extraFields));
+  }
+  
+  private static String quote(String str) {
+    StringBuilder quoted = new StringBuilder("\"");
+    for (char c : str.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        quoted.append('\\').append(c);
+      } else if (c < 0x20) {
+        quoted.append(String.format("\\u%04x", (int) c));
+      } else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+}
@@ -0,0 +1,115 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package anonymous.domain.enlighten.publish;
+
+import java.io.Serializable;
+
+/**
+ * A histogram of non-negative values with one bucket per power of two. It
+ * keeps the exact count, sum, min and max, and quantiles to within a factor
+ * of two.
+ */
+public class TelemetryHistogram implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+  
+  private static final int NUM_BUCKETS = Long.SIZE;
+  
+  private long count;
+  private long sum;
+  private long min = Long.MAX_VALUE;
+  private long max = Long.MIN_VALUE;
+  private long[] buckets = new long[NUM_BUCKETS];
+  
+  public synchronized void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    ++count;
+    sum += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+    ++buckets[Long.SIZE - Long.numberOfLeadingZeros(value)];
+  }
+  
+  public synchronized TelemetryHistogram copy() {
+    TelemetryHistogram copy = new TelemetryHistogram();
+    copy.count = count;
+    copy.sum = sum;
+    copy.min = min;
+    copy.max = max;
+    copy.buckets = buckets.clone();
+    return copy;
+  }
+  
+  public synchronized long getCount() {
+    return count;
+  }
+  
+  public synchronized long getSum() {
+    return sum;
+  }
+  
+  public synchronized long getMin() {
+    return count > 0 ? min : 0;
+  }
+  
+  public synchronized long getMax() {
+    return count > 0 ? max : 0;
+  }
+  
+  public synchronized double getMean() {
+    return count > 0 ? (double) sum / count : 0;
+  }
+  
+  /**
+   * Upper bound of the bucket holding the given quantile, capped by the max.
+   */
+  public synchronized long getQuantile(double quantile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(quantile * count);
+    long seen = 0;
+    for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+      seen += buckets[bucket];
+      if (seen >= rank && buckets[bucket] > 0) {
+        return Math.min((1L << bucket) - 1, max);
+      }
+    }
+    return max;
+  }
+}
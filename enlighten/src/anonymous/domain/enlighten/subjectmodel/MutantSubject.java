@@ -37,6 +37,7 @@ package anonymous.domain.enlighten.subjectmodel;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class MutantSubject extends SubjectProgram {
@@ -60,15 +61,18 @@ public class MutantSubject extends SubjectProgram {
     return baseVersion.isAppClass(className);
   }
 
+  @Override
+  public List<String> listTestClassNames() throws IOException {
+    return baseVersion.listTestClassNames();
+  }
+
   @Override
   public Set<Class<?>> listTestClasses() throws IOException {
     if (testClasses != null) {
       return testClasses;
     }
     testClasses = new HashSet<>();
-    Set<Class<?>> baseVersionTestClasses = baseVersion.listTestClasses();
-    for (Class<?> testClass : baseVersionTestClasses) {
-      String testClassName = testClass.getName();
+    for (String testClassName : listTestClassNames()) {
       try {
         testClasses.add(loadClass(testClassName));
       } catch (ClassNotFoundException ex) {
@@ -0,0 +1,354 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package anonymous.domain.enlighten.subjectmodel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import anonymous.domain.enlighten.data.FSTSerialization;
+
+/**
+ * Persistent index of the class files of a subject program: the app classes
+ * with their paths, and for the classes in the test directories the facts
+ * needed to find JUnit tests. Class files are read with ASM and never loaded.
+ * 
+ * An index read back from disk is revalidated against the class directories.
+ * Entries whose file size and modification time are unchanged are reused,
+ * changed files are hashed and only re-read if their content differs. If a
+ * class is found in several directories, the last one wins.
+ */
+public class SubjectIndex implements Serializable {
+  
+  private static final long serialVersionUID = 1L;
+  
+  private static final String JUNIT4_TEST_DESC = "Lorg/junit/Test;";
+  private static final String JUNIT3_TEST_CASE = "junit/framework/TestCase";
+  
+  private Map<String, ClassFileEntry> appClasses = new HashMap<>();
+  private Map<String, ClassFileEntry> testDirClasses = new HashMap<>();
+  
+  private transient boolean modified;
+  private transient Map<String, ClassFacts> externalClassFacts;
+  
+  public static SubjectIndex loadOrCreate(
+      Path indexFile, List<Path> appClassDirs, List<Path> testClassDirs) throws IOException {
+    SubjectIndex index = null;
+    if (Files.isRegularFile(indexFile)) {
+      try {
+        index = FSTSerialization.readObjectFromFile(SubjectIndex.class, indexFile);
+      } catch (IOException e) {
+        System.err.println("Warning: discarding unreadable subject index " + indexFile);
+      }
+    }
+    if (index == null) {
+      index = new SubjectIndex();
+      index.modified = true;
+    }
+    index.appClasses = index.revalidate(index.appClasses, appClassDirs, false);
+    index.testDirClasses = index.revalidate(index.testDirClasses, testClassDirs, true);
+    if (index.modified) {
+      Path indexDir = indexFile.toAbsolutePath().getParent();
+      Path tempFile = null;
+      try {
+        Files.createDirectories(indexDir);
+        tempFile = Files.createTempFile(indexDir, indexFile.getFileName().toString(), ".tmp");
+        FSTSerialization.writeObjectTofile(SubjectIndex.class, tempFile, index);
+        Files.move(tempFile, indexFile, 
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        System.err.println("Warning: could not write subject index " + indexFile);
+        if (tempFile != null) {
+          Files.deleteIfExists(tempFile);
+        }
+      }
+      index.modified = false;
+    }
+    return index;
+  }
+  
+  public int getAppClassCount() {
+    return appClasses.size();
+  }
+  
+  public int getTestDirClassCount() {
+    return testDirClasses.size();
+  }
+  
+  public Map<String, Path> getAppClassFilePaths() {
+    Map<String, Path> appClassFilePaths = new HashMap<>();
+    for (Map.Entry<String, ClassFileEntry> entry : appClasses.entrySet()) {
+      appClassFilePaths.put(entry.getKey(), Paths.get(entry.getValue().filePath));
+    }
+    return appClassFilePaths;
+  }
+  
+  public byte[] getContentHash(String className) {
+    ClassFileEntry entry = appClasses.get(className);
+    if (entry == null) {
+      entry = testDirClasses.get(className);
+    }
+    return entry != null ? entry.contentHash.clone() : null;
+  }
+  
+  /**
+   * Names of the classes in the test directories that have at least one test
+   * method, sorted. Superclasses outside the test directories are read through
+   * {@code classpathLoader} as resources.
+   */
+  public List<String> getTestClassNames(ClassLoader classpathLoader) {
+    List<String> testClassNames = new ArrayList<>();
+    for (String className : testDirClasses.keySet()) {
+      if (!getTestMethodNames(className, classpathLoader).isEmpty()) {
+        testClassNames.add(className);
+      }
+    }
+    Collections.sort(testClassNames);
+    return testClassNames;
+  }
+  
+  /**
+   * The public methods a JUnit runner would run for the class: methods annotated
+   * with {@code @org.junit.Test}, and for subclasses of
+   * {@code junit.framework.TestCase} also public void no-argument methods whose
+   * names start with "test". Overridden methods count once. Empty for abstract
+   * classes and classes that cannot be read.
+   */
+  public List<String> getTestMethodNames(String className, ClassLoader classpathLoader) {
+    ClassFacts facts = getClassFacts(className.replace('.', '/'), classpathLoader);
+    if (facts == null || (facts.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE)) != 0) {
+      return Collections.emptyList();
+    }
+    List<ClassFacts> hierarchy = new ArrayList<>();
+    boolean isJUnit3TestClass = false;
+    for (ClassFacts current = facts; current != null; 
+        current = getClassFacts(current.superName, classpathLoader)) {
+      hierarchy.add(current);
+      if (JUNIT3_TEST_CASE.equals(current.superName)) {
+        isJUnit3TestClass = true;
+      }
+    }
+    List<String> testMethodNames = new ArrayList<>();
+    Set<String> seenMethods = new HashSet<>();
+    for (ClassFacts current : hierarchy) {
+      for (MethodFacts method : current.publicMethods) {
+        if (!seenMethods.add(method.name + method.desc)) {
+          continue;
+        }
+        if (method.isJUnit4Test || (isJUnit3TestClass && method.name.startsWith("test") 
+            && method.desc.equals("()V"))) {
+          testMethodNames.add(method.name);
+        }
+      }
+    }
+    return testMethodNames;
+  }
+  
+  private ClassFacts getClassFacts(String internalName, ClassLoader classpathLoader) {
+    if (internalName == null) {
+      return null;
+    }
+    ClassFileEntry entry = testDirClasses.get(internalName.replace('/', '.'));
+    if (entry != null) {
+      return entry.facts;
+    }
+    if (externalClassFacts == null) {
+      externalClassFacts = new HashMap<>();
+    }
+    if (externalClassFacts.containsKey(internalName)) {
+      return externalClassFacts.get(internalName);
+    }
+    ClassFacts facts = null;
+    try (InputStream classFileStream = 
+        classpathLoader.getResourceAsStream(internalName + ".class")) {
+      if (classFileStream != null) {
+        facts = ClassFacts.read(new ClassReader(classFileStream));
+      }
+    } catch (IOException e) {
+      System.err.println("Warning: could not read class file of " + internalName);
+    }
+    externalClassFacts.put(internalName, facts);
+    return facts;
+  }
+  
+  private Map<String, ClassFileEntry> revalidate(Map<String, ClassFileEntry> entries, 
+      List<Path> classDirs, boolean readFacts) throws IOException {
+    Map<String, ClassFileEntry> validated = new HashMap<>();
+    Set<ClassFileEntry> updated = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Path classDir : classDirs) {
+      if (!Files.isDirectory(classDir)) {
+        continue;
+      }
+      Files.walkFileTree(classDir, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) 
+            throws IOException {
+          if (!attrs.isRegularFile() || !file.toString().endsWith(".class")) {
+            return FileVisitResult.CONTINUE;
+          }
+          String relativePath = classDir.relativize(file).toString();
+          String className = relativePath.substring(0, relativePath.length() - 6)
+              .replaceAll(Pattern.quote(File.separator), ".");
+          String filePath = file.toAbsolutePath().toString();
+          long lastModified = attrs.lastModifiedTime().toMillis();
+          ClassFileEntry entry = entries.get(className);
+          if (entry == null || !entry.filePath.equals(filePath) 
+              || entry.size != attrs.size() || entry.lastModified != lastModified) {
+            byte[] content = Files.readAllBytes(file);
+            byte[] contentHash = hash(content);
+            if (entry == null || !entry.filePath.equals(filePath) 
+                || !Arrays.equals(entry.contentHash, contentHash)) {
+              entry = new ClassFileEntry();
+              entry.filePath = filePath;
+              entry.contentHash = contentHash;
+              if (readFacts) {
+                entry.facts = ClassFacts.read(new ClassReader(content));
+              }
+            }
+            entry.size = attrs.size();
+            entry.lastModified = lastModified;
+            updated.add(entry);
+          }
+          validated.put(className, entry);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    }
+    if (validated.size() != entries.size()) {
+      modified = true;
+    }
+    for (Map.Entry<String, ClassFileEntry> entry : validated.entrySet()) {
+      if (updated.contains(entry.getValue()) || entries.get(entry.getKey()) != entry.getValue()) {
+        modified = true;
+      }
+    }
+    return validated;
+  }
+  
+  private static byte[] hash(byte[] content) {
+    try {
+      return MessageDigest.getInstance("SHA-1").digest(content);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+  
+  private static class ClassFileEntry implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private String filePath;
+    private long size;
+    private long lastModified;
+    private byte[] contentHash;
+    private ClassFacts facts;
+  }
+  
+  private static class ClassFacts implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private int access;
+    private String superName;
+    private List<MethodFacts> publicMethods = new ArrayList<>();
+    
+    private static ClassFacts read(ClassReader classReader) {
+      ClassFacts facts = new ClassFacts();
+      classReader.accept(new ClassVisitor(Opcodes.ASM5) {
+        @Override
+        public void visit(int version, int access, String name, String signature,
+            String superName, String[] interfaces) {
+          facts.access = access;
+          facts.superName = superName;
+        }
+        
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, 
+            String signature, String[] exceptions) {
+          if ((access & Opcodes.ACC_PUBLIC) == 0 || name.startsWith("<")) {
+            return null;
+          }
+          MethodFacts method = new MethodFacts();
+          method.name = name;
+          method.desc = desc;
+          facts.publicMethods.add(method);
+          return new MethodVisitor(Opcodes.ASM5) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String annotationDesc, boolean visible) {
+              if (JUNIT4_TEST_DESC.equals(annotationDesc)) {
+                method.isJUnit4Test = true;
+              }
+              return null;
+            }
+          };
+        }
+      }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+      return facts;
+    }
+  }
+  
+  private static class MethodFacts implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private String name;
+    private String desc;
+    private boolean isJUnit4Test;
+  }
+}
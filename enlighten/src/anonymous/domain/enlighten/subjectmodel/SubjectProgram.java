@@ -43,16 +43,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 import anonymous.domain.enlighten.ExtProperties;
 import anonymous.domain.enlighten.data.SourceLocation;
-import anonymous.domain.enlighten.files.LookupFilesByNameVisitor;
 
 public class SubjectProgram {
   
@@ -63,6 +60,8 @@ public class SubjectProgram {
   private URLClassLoader subjectProgramClassesLoader;
   
   private Set<Class<?>> testClasses;
+  private List<String> testClassNames;
+  private SubjectIndex subjectIndex;
   private Map<String, Path> appClassNamePathMap;
   
   
@@ -136,6 +135,10 @@ public class SubjectProgram {
     return getDataDirRoot().resolve("exec_profile");
   }
   
+  public Path getResultCacheDir() {
+    return getDataDirRoot().resolve("result_cache");
+  }
+  
   public Class<?> loadClass(String className) throws ClassNotFoundException {
     return subjectProgramClassesLoader.loadClass(className);
   }
@@ -146,55 +149,50 @@ public class SubjectProgram {
       return testClasses;
     }
     testClasses = new HashSet<>();
-    
-
-    List<String> testClassNames = programInfo.getTestClassNames();
-    if (testClassNames != null && !testClassNames.isEmpty()) {
-      for (String testClassName : testClassNames) {
-        Class<?> classObj = null;
-        try {
-          classObj = loadClass(testClassName);
-        } catch (ClassNotFoundException e) {
-          throw new RuntimeException("Fatal: Could not load class " + testClassName);
-        }
-        testClasses.add(classObj);
+    for (String testClassName : listTestClassNames()) {
+      Class<?> classObj = null;
+      try {
+        classObj = loadClass(testClassName);
+      } catch (ClassNotFoundException e) {
+        throw new RuntimeException("Fatal: Could not load class " + testClassName);
       }
-      return testClasses;
+      testClasses.add(classObj);
+    }
+    return testClasses;
+  }
+  
+  public List<String> listTestClassNames() throws IOException {
+    if (testClassNames != null) {
+      return testClassNames;
     }
     
 
-
-    int classFileNumTracking = 0;
-    for (Path testSourceDir : getTestSourceDirs()) {
-      LookupFilesByNameVisitor lookupClassFiles = new LookupFilesByNameVisitor(".*\\.class");
-      Files.walkFileTree(testSourceDir, lookupClassFiles);
-      List<Path> classFilePaths = lookupClassFiles.getMatchedFilesPaths();
-      classFileNumTracking += classFilePaths.size();
-      for (Path classFilePath : classFilePaths) {
-        String relativePath = testSourceDir.relativize(classFilePath).toString();
-        String className = relativePath.substring(0, relativePath.length() - 6)
-            .replaceAll(Pattern.quote(File.separator), ".");
-        Class<?> classObj = null;
-        try {
-          classObj = loadClass(className);
-        } catch (ClassNotFoundException e) {
-          throw new RuntimeException("Internal error: Could not load class " + className);
-        }
-        JUnitTestClassModel testModel = JUnitTestClassModel.getJUnitTestClassModel(classObj);
-
-
-
-        if (testModel != null && testModel.getTestMethods().size() != 0) {
-          testClasses.add(classObj);
-        }
-      }
+    List<String> configuredTestClassNames = programInfo.getTestClassNames();
+    if (configuredTestClassNames != null && !configuredTestClassNames.isEmpty()) {
+      testClassNames = configuredTestClassNames;
+      return testClassNames;
     }
-    if (classFileNumTracking == 0) {
+    
+    SubjectIndex index = getSubjectIndex();
+    if (index.getTestDirClassCount() == 0) {
       System.err.println("Warning: No class files found in the test directory "
           + "of the subject program " + rootDir.toString());
       System.err.println("Forgot to compile it first?");
     }
-    return testClasses;
+    testClassNames = index.getTestClassNames(subjectProgramClassesLoader);
+    return testClassNames;
+  }
+  
+  public SubjectIndex getSubjectIndex() throws IOException {
+    if (subjectIndex == null) {
+      subjectIndex = SubjectIndex.loadOrCreate(
+          getSubjectIndexFilePath(), getAppSourceDirs(), getTestSourceDirs());
+    }
+    return subjectIndex;
+  }
+  
+  public Path getSubjectIndexFilePath() {
+    return getDataDirRoot().resolve("subject.index");
   }
   
   public boolean isAppClass(String className) {
@@ -265,18 +263,7 @@ public class SubjectProgram {
   }
   
   private void initAppClassNameSet() throws IOException {
-    appClassNamePathMap = new HashMap<>();
-    for (Path appSourceDir : getAppSourceDirs()) {
-      LookupFilesByNameVisitor lookupClassFiles = new LookupFilesByNameVisitor(".*\\.class");
-      Files.walkFileTree(appSourceDir, lookupClassFiles);
-      List<Path> classFilePaths = lookupClassFiles.getMatchedFilesPaths();
-      for (Path classFilePath : classFilePaths) {
-        String relativePath = appSourceDir.relativize(classFilePath).toString();
-        String className = relativePath.substring(0, relativePath.length() - 6)
-            .replaceAll(Pattern.quote(File.separator), ".");
-        appClassNamePathMap.put(className, classFilePath.toAbsolutePath());
-      }
-    }
+    appClassNamePathMap = getSubjectIndex().getAppClassFilePaths();
     if (appClassNamePathMap.size() == 0) {
       System.err.println("Warning: No class files found in the app source directory "
           + "of the subject program " + rootDir.toString());
@@ -34,25 +34,18 @@
 
 package anonymous.domain.enlighten.susp;
 
-import java.util.HashSet;
 import java.util.Set;
 
+import anonymous.domain.enlighten.data.ExecutionProfile;
+import anonymous.domain.enlighten.data.InvocationTreeIndex;
 import anonymous.domain.enlighten.data.MethodInvocation;
 import anonymous.domain.enlighten.data.SourceLocation;
 
 public class CoverageUtils {
   
-  public static Set<SourceLocation> getFullStatementCoverage(MethodInvocation invocation) {
-    Set<SourceLocation> fullCov = new HashSet<>();
-    populateStatementCovRecursively(fullCov, invocation);
-    return fullCov;
-  }
-
-  private static void populateStatementCovRecursively(
-      Set<SourceLocation> cov, MethodInvocation node) {
-    cov.addAll(node.getStatementsExecCountMap().keySet());
-    for (MethodInvocation child : node.getEnclosedInvocations()) {
-      populateStatementCovRecursively(cov, child);
-    }
+  public static Set<SourceLocation> getFullStatementCoverage(
+      ExecutionProfile profile, MethodInvocation invocation) {
+    InvocationTreeIndex treeIndex = profile.getTreeIndex();
+    return treeIndex.toLocationSet(treeIndex.getSubtreeCoverage(invocation));
   }
 }
@@ -44,6 +44,7 @@ import java.util.Map;
 import anonymous.domain.enlighten.data.Coverage;
 import anonymous.domain.enlighten.data.TestName;
 import anonymous.domain.enlighten.data.TestOutcomes;
+import anonymous.domain.enlighten.publish.PhaseTelemetry;
 import anonymous.domain.enlighten.util.FloatComparison;
 
 public abstract class FaultLocalization<EntityType extends Serializable> {
@@ -155,9 +156,12 @@ public abstract class FaultLocalization<EntityType extends Serializable> {
   protected abstract Map<EntityType, Double> doSuspiciousnessComputation();
   
   private void computeSuspiciousness() {
+    PhaseTelemetry.Span span = PhaseTelemetry.startSpan("fl.suspiciousness");
     suspiciousnessMap = doSuspiciousnessComputation();
     rankedList = new ArrayList<>(suspiciousnessMap.keySet());
     Collections.sort(rankedList, new SortBySuspiciousnessReversed());
+    span.end();
+    PhaseTelemetry.recordValue("fl.ranked_entities", rankedList.size());
   }
   
   private int computeRank(EntityType entity, boolean includeSameSuspElems) {
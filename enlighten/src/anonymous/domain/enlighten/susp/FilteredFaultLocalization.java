@@ -39,6 +39,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import anonymous.domain.enlighten.data.ExecutionProfile;
 import anonymous.domain.enlighten.data.MethodInvocation;
 import anonymous.domain.enlighten.data.SourceLocation;
 
@@ -48,9 +49,10 @@ public class FilteredFaultLocalization<E extends Serializable> extends FaultLoca
   private Set<E> filter;
   
   public static FilteredFaultLocalization<SourceLocation> filteredSrcLocFlByInvocationCov(
-      FaultLocalization<SourceLocation> fl, MethodInvocation invocation) {
+      FaultLocalization<SourceLocation> fl, ExecutionProfile profile, 
+      MethodInvocation invocation) {
     return new FilteredFaultLocalization<SourceLocation>(
-        fl, CoverageUtils.getFullStatementCoverage(invocation));
+        fl, CoverageUtils.getFullStatementCoverage(profile, invocation));
   }
 
   public FilteredFaultLocalization(FaultLocalization<E> fl, Set<E> filter) {
@@ -0,0 +1,80 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.deptrack;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Composite dependency with exactly two data dependencies, e.g. one operand and
+ * the instruction source of a one-operand instruction, without a separate
+ * array to hold them.
+ */
+final class BinaryDynamicDependency extends CompositeDynamicDependency {
+	
+	private final DynamicDependency dataDep0;
+	private final DynamicDependency dataDep1;
+	
+	BinaryDynamicDependency(
+			DynamicDependency dataDep0, DynamicDependency dataDep1, DynamicDependency controlDep) {
+		super(controlDep);
+		this.dataDep0 = dataDep0;
+		this.dataDep1 = dataDep1;
+		notifyDependencyGenerated();
+	}
+	
+	@Override
+	public int getNumDataDependencies() {
+		return 2;
+	}
+	
+	@Override
+	public DynamicDependency getDataDependency(int index) {
+		switch (index) {
+		case 0:
+			return dataDep0;
+		case 1:
+			return dataDep1;
+		default:
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: 2");
+		}
+	}
+	
+	@Override
+	public List<DynamicDependency> getDataDependencies() {
+		return Collections.unmodifiableList(Arrays.asList(dataDep0, dataDep1));
+	}
+}
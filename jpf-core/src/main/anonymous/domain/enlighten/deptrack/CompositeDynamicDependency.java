@@ -53,6 +53,28 @@ public class CompositeDynamicDependency extends DynamicDependency {
     init(dataDeps, controlDep);
   }
   
+  CompositeDynamicDependency(DynamicDependency[] dataDeps, DynamicDependency controlDep) {
+  	this.dataDeps = dataDeps;
+  	this.controlDep = controlDep;
+  	notifyDependencyGenerated();
+  }
+  
+  /**
+   * For the fixed-arity subclasses, which keep their data dependencies in fields
+   * and notify the creation listeners once these are set.
+   */
+  CompositeDynamicDependency(DynamicDependency controlDep) {
+  	this.controlDep = controlDep;
+  }
+  
+  public int getNumDataDependencies() {
+  	return dataDeps.length;
+  }
+  
+  public DynamicDependency getDataDependency(int index) {
+  	return dataDeps[index];
+  }
+  
   public List<DynamicDependency> getDataDependencies() {
     return Collections.unmodifiableList(Arrays.asList(dataDeps));
   }
@@ -62,8 +84,11 @@ public class CompositeDynamicDependency extends DynamicDependency {
   }
   
   public List<DynamicDependency> getAllDependencies() {
-  	List<DynamicDependency> allDeps = new ArrayList<>();
-  	allDeps.addAll(getDataDependencies());
+  	int numDataDeps = getNumDataDependencies();
+  	List<DynamicDependency> allDeps = new ArrayList<>(numDataDeps + 1);
+  	for (int i = 0; i < numDataDeps; ++i) {
+  		allDeps.add(getDataDependency(i));
+  	}
   	if (controlDep != null) {
   		allDeps.add(controlDep);
   	}
@@ -71,13 +96,7 @@ public class CompositeDynamicDependency extends DynamicDependency {
   }
   
   public String toString() {
-  	DependencyTrackingInstruction sourceInsn = null;
-  	for (DynamicDependency dataDep : dataDeps) {
-  		if (dataDep instanceof InstructionDependencySource) {
-  			sourceInsn = ((InstructionDependencySource) dataDep).getSourceInstruction();
-  			break;
-  		}
-  	}
+  	DependencyTrackingInstruction sourceInsn = DynDepUtils.getSourceInstruction(this);
   	if (sourceInsn != null) {
   		return sourceInsn.getMnemonic() + " at " + sourceInsn.getFileLocation();
   	} else {
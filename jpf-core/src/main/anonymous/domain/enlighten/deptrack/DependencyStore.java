@@ -0,0 +1,161 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.deptrack;
+
+import java.util.Arrays;
+
+/**
+ * Maps compact long ids to dependency nodes, so that stack frames can keep
+ * primitive ids in their slots instead of references to the nodes (see
+ * "vm.deptrack.compact_attrs"). Nodes are registered the first time they are
+ * stored in a slot. Once enough nodes have been registered since the last
+ * sweep, StackFrame visits the frames of all live threads and of all states on
+ * the backtrack stack, the store keeps only the nodes whose ids are still in a
+ * slot, and chunks left without nodes are dropped. States handed out through
+ * VM.getRestorableState() cannot be tracked, so they turn sweeping off until
+ * the store is cleared.
+ * 
+ * An id holds the store generation in its upper bits, so that nodes surviving
+ * from a previous VM are registered again instead of aliasing new nodes. Zero
+ * is never a valid id.
+ */
+public class DependencyStore {
+	
+	private static final int CHUNK_BITS = 12;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int INDEX_BITS = 44;
+	private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+	private static final long MIN_SWEEP_THRESHOLD = 1 << 16;
+	
+	private static DynamicDependency[][] chunks = new DynamicDependency[16][];
+	private static long nextIndex = 1;
+	private static long generation = 1;
+	private static long liveCount = 0;
+	private static long sweepThreshold = MIN_SWEEP_THRESHOLD;
+	
+	private static DynamicDependency[][] retained;
+	private static boolean sweepDisabled;
+	
+	public static long getId(DynamicDependency dep) {
+		long id = dep.storeId;
+		if (id != 0 && resolve(id) == dep) {
+			return id;
+		}
+		long index = nextIndex++;
+		if (index > INDEX_MASK) {
+			throw new RuntimeException("Maximum number of stored dynamic dependencies exceeded.");
+		}
+		int chunkIndex = (int) (index >>> CHUNK_BITS);
+		if (chunkIndex >= chunks.length) {
+			chunks = Arrays.copyOf(chunks, Math.max(chunks.length * 2, chunkIndex + 1));
+		}
+		DynamicDependency[] chunk = chunks[chunkIndex];
+		if (chunk == null) {
+			chunk = chunks[chunkIndex] = new DynamicDependency[CHUNK_SIZE];
+		}
+		chunk[(int) (index & CHUNK_MASK)] = dep;
+		++liveCount;
+		id = (generation << INDEX_BITS) | index;
+		dep.storeId = id;
+		return id;
+	}
+	
+	public static DynamicDependency resolve(long id) {
+		if (id == 0 || (id >>> INDEX_BITS) != generation) {
+			return null;
+		}
+		long index = id & INDEX_MASK;
+		DynamicDependency[] chunk = chunks[(int) (index >>> CHUNK_BITS)];
+		return chunk != null ? chunk[(int) (index & CHUNK_MASK)] : null;
+	}
+	
+	public static long size() {
+		return liveCount;
+	}
+	
+	public static boolean needsSweep() {
+		return liveCount >= sweepThreshold && retained == null && !sweepDisabled;
+	}
+	
+	public static void disableSweep() {
+		sweepDisabled = true;
+	}
+	
+	public static void beginSweep() {
+		retained = new DynamicDependency[chunks.length][];
+		liveCount = 0;
+	}
+	
+	public static void retain(long id) {
+		DynamicDependency dep = resolve(id);
+		if (dep == null) {
+			return;
+		}
+		long index = id & INDEX_MASK;
+		int chunkIndex = (int) (index >>> CHUNK_BITS);
+		DynamicDependency[] chunk = retained[chunkIndex];
+		if (chunk == null) {
+			chunk = retained[chunkIndex] = new DynamicDependency[CHUNK_SIZE];
+		}
+		int offset = (int) (index & CHUNK_MASK);
+		if (chunk[offset] == null) {
+			chunk[offset] = dep;
+			++liveCount;
+		}
+	}
+	
+	public static void endSweep() {
+		chunks = retained;
+		retained = null;
+		sweepThreshold = Math.max(MIN_SWEEP_THRESHOLD, liveCount * 2);
+	}
+	
+	public static void clear() {
+		sweepDisabled = false;
+		if (nextIndex == 1) {
+			return;
+		}
+		chunks = new DynamicDependency[16][];
+		nextIndex = 1;
+		liveCount = 0;
+		sweepThreshold = MIN_SWEEP_THRESHOLD;
+		retained = null;
+		generation = (generation + 1) & ((1L << (64 - INDEX_BITS)) - 1);
+		if (generation == 0) {
+			generation = 1;
+		}
+	}
+}
@@ -34,34 +34,74 @@
 
 package anonymous.domain.enlighten.deptrack;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 public class DynDepBuilder {
 	
-	private List<DynamicDependency> dataDeps = new ArrayList<>();
+	// Below this many data dependencies a linear identity scan is cheaper than hashing.
+	private static final int HASHED_DEDUP_THRESHOLD = 8;
+	
+	private static final ThreadLocal<DynDepBuilder> threadBuilder = new ThreadLocal<DynDepBuilder>() {
+		@Override
+		protected DynDepBuilder initialValue() {
+			return new DynDepBuilder();
+		}
+	};
+	
+	private DynamicDependency[] dataDeps = new DynamicDependency[4];
+	private int numDataDeps;
+	private Set<DynamicDependency> dataDepSet;
 	private DynamicDependency controlDep;
+	private boolean inUse;
 
+	/**
+	 * Returns the builder of the current thread, which is reused across
+	 * instructions. A fresh builder is handed out only if the thread builder is
+	 * still in use, e.g. when a dependency creation listener builds dependencies
+	 * of its own.
+	 */
 	public static DynDepBuilder newBuilder() {
-		return new DynDepBuilder();
+		DynDepBuilder builder = threadBuilder.get();
+		if (builder.inUse) {
+			builder = new DynDepBuilder();
+		}
+		builder.inUse = true;
+		return builder;
 	}
 	
 	private DynDepBuilder() {}
 	
 	public DynDepBuilder appendDataDependency(Iterable<DynamicDependency> deps) {
 		for (DynamicDependency dep : deps) {
-			if (dep != null && !dataDeps.contains(dep)) {
-				dataDeps.add(dep);
-			}
+			addDataDependency(dep);
 		}
 		return this;
 	}
 	
+	public DynDepBuilder appendDataDependency(Object attr) {
+		addDataDependency((DynamicDependency) attr);
+		return this;
+	}
+	
+	public DynDepBuilder appendDataDependency(Object attr1, Object attr2) {
+		addDataDependency((DynamicDependency) attr1);
+		addDataDependency((DynamicDependency) attr2);
+		return this;
+	}
+	
+	public DynDepBuilder appendDataDependency(Object attr1, Object attr2, Object attr3) {
+		addDataDependency((DynamicDependency) attr1);
+		addDataDependency((DynamicDependency) attr2);
+		addDataDependency((DynamicDependency) attr3);
+		return this;
+	}
+	
 	public DynDepBuilder appendDataDependency(Object... attrs) {
 		for (Object attr : attrs) {
-			if (attr != null && !dataDeps.contains(attr)) {
-				dataDeps.add((DynamicDependency) attr);
-			}
+			addDataDependency((DynamicDependency) attr);
 		}
 		return this;
 	}
@@ -71,14 +111,70 @@ public class DynDepBuilder {
 		return this;
 	}
 	
+	/**
+	 * Builds the dependency of one instruction execution. A lone instruction
+	 * source is still wrapped, since the source itself is shared by all
+	 * executions of the instruction.
+	 */
 	public DynamicDependency build() {
-		if (controlDep == null && dataDeps.size() == 0) {
-			return null;
+		try {
+			if (controlDep == null && numDataDeps == 0) {
+				return null;
+			}
+			if (controlDep == null && numDataDeps == 1 
+					&& !(dataDeps[0] instanceof InstructionDependencySource)) {
+				return dataDeps[0];
+			}
+			switch (numDataDeps) {
+			case 1:
+				return new UnaryDynamicDependency(dataDeps[0], controlDep);
+			case 2:
+				return new BinaryDynamicDependency(dataDeps[0], dataDeps[1], controlDep);
+			case 3:
+				return new TernaryDynamicDependency(
+						dataDeps[0], dataDeps[1], dataDeps[2], controlDep);
+			default:
+				return new CompositeDynamicDependency(
+						Arrays.copyOf(dataDeps, numDataDeps), controlDep);
+			}
+		} finally {
+			reset();
 		}
-		if (controlDep == null && dataDeps.size() == 1) {
-			return dataDeps.get(0);
+	}
+	
+	private void addDataDependency(DynamicDependency dep) {
+		if (dep == null) {
+			return;
 		}
-		CompositeDynamicDependency compositeDep = new CompositeDynamicDependency(dataDeps, controlDep);
-		return compositeDep;
+		if (dataDepSet != null) {
+			if (!dataDepSet.add(dep)) {
+				return;
+			}
+		} else {
+			for (int i = 0; i < numDataDeps; ++i) {
+				if (dataDeps[i] == dep) {
+					return;
+				}
+			}
+			if (numDataDeps == HASHED_DEDUP_THRESHOLD) {
+				dataDepSet = Collections.newSetFromMap(new IdentityHashMap<DynamicDependency, Boolean>());
+				for (int i = 0; i < numDataDeps; ++i) {
+					dataDepSet.add(dataDeps[i]);
+				}
+				dataDepSet.add(dep);
+			}
+		}
+		if (numDataDeps == dataDeps.length) {
+			dataDeps = Arrays.copyOf(dataDeps, numDataDeps * 2);
+		}
+		dataDeps[numDataDeps++] = dep;
+	}
+	
+	private void reset() {
+		Arrays.fill(dataDeps, 0, numDataDeps, null);
+		numDataDeps = 0;
+		dataDepSet = null;
+		controlDep = null;
+		inUse = false;
 	}
 }
@@ -34,6 +34,7 @@
 
 package anonymous.domain.enlighten.deptrack;
 
+import gov.nasa.jpf.vm.DependencyTrackingInstruction;
 import gov.nasa.jpf.vm.ElementInfo;
 import gov.nasa.jpf.vm.FieldInfo;
 import gov.nasa.jpf.vm.ThreadInfo;
@@ -50,5 +51,24 @@ public class DynDepUtils {
 			charArray.setElementAttr(i, dep);
 		}
 	}
+	
+	/**
+	 * Returns the instruction whose execution created the given dependency, or
+	 * null if the dependency does not combine an instruction source.
+	 */
+	public static DependencyTrackingInstruction getSourceInstruction(DynamicDependency dep) {
+		if (!(dep instanceof CompositeDynamicDependency)) {
+			return null;
+		}
+		CompositeDynamicDependency composite = (CompositeDynamicDependency) dep;
+		int numDataDeps = composite.getNumDataDependencies();
+		for (int i = 0; i < numDataDeps; ++i) {
+			DynamicDependency dataDep = composite.getDataDependency(i);
+			if (dataDep instanceof InstructionDependencySource) {
+				return ((InstructionDependencySource) dataDep).getSourceInstruction();
+			}
+		}
+		return null;
+	}
 
 }
@@ -48,8 +48,10 @@ public abstract class DynamicDependency implements Annotatable {
 	private static long instanceIndexCounter = 0;
 	
 	private long instanceIndex;
+	
+	long storeId;
 
-  private DefaultAnnotationList annotations = new DefaultAnnotationList();
+  private DefaultAnnotationList annotations;
   
   public static void addDependencyCreationListener(DependencyCreationListener listener) {
   	if (!depCreationListeners.contains(listener)) {
@@ -76,6 +78,14 @@ public abstract class DynamicDependency implements Annotatable {
   	instanceIndex = instanceIndexCounter++;
   }
   
+  /**
+   * For nodes shared across executions, which take no instance index and thus
+   * fall outside every instance index range.
+   */
+  DynamicDependency(long instanceIndex) {
+  	this.instanceIndex = instanceIndex;
+  }
+  
   
   public long getInstanceIndex() {
   	return instanceIndex;
@@ -83,27 +93,30 @@ public abstract class DynamicDependency implements Annotatable {
   
   @Override
   public void addAnnotation(ValueAnnotation annotation) {
+    if (annotations == null) {
+      annotations = new DefaultAnnotationList();
+    }
     annotations.addAnnotation(annotation);
   }
   
   @Override
   public <T extends ValueAnnotation> T getAnnotation(Class<T> annotationClass) {
-    return annotations.getAnnotation(annotationClass);
+    return annotations != null ? annotations.getAnnotation(annotationClass) : null;
   }
   
   @Override
   public boolean removeAnnotation(ValueAnnotation annotation) {
-    return annotations.removeAnnotation(annotation);
+    return annotations != null && annotations.removeAnnotation(annotation);
   }
   
   @Override
   public boolean removeAnnotation(Class<? extends ValueAnnotation> annotationClass) {
-    return annotations.removeAnnotation(annotationClass);
+    return annotations != null && annotations.removeAnnotation(annotationClass);
   }
   
   protected void notifyDependencyGenerated() {
-  	for (DependencyCreationListener listener : depCreationListeners) {
-  		listener.dependencyCreated(this);
+  	for (int i = 0; i < depCreationListeners.size(); ++i) {
+  		depCreationListeners.get(i).dependencyCreated(this);
   	}
   }
 }
@@ -36,4 +36,9 @@ package anonymous.domain.enlighten.deptrack;
 
 public class DynamicDependencySource extends DynamicDependency {
 
+	public DynamicDependencySource() {}
+	
+	DynamicDependencySource(long instanceIndex) {
+		super(instanceIndex);
+	}
 }
@@ -38,6 +38,10 @@ import gov.nasa.jpf.vm.DependencyTrackingInstruction;
 
 public interface InstructionDependencyListener {
 	
+	/**
+	 * Called on every execution of the instruction. The source is shared by all
+	 * executions of the instruction.
+	 */
 	void instructionDependencySourceGenerated(
 			DependencyTrackingInstruction insn, InstructionDependencySource depNode);
 }
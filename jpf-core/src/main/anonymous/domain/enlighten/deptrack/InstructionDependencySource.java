@@ -36,13 +36,21 @@ package anonymous.domain.enlighten.deptrack;
 
 import gov.nasa.jpf.vm.DependencyTrackingInstruction;
 
+/**
+ * Source of the dependencies created by an instruction. There is one source per
+ * instruction, shared by all of its executions, so it has no instance index and
+ * carries no per-execution annotations. The dependency built around the source
+ * stands for a single execution, see {@link DynDepUtils#getSourceInstruction}.
+ */
 public class InstructionDependencySource extends DynamicDependencySource {
 	
+	private static final long NO_INSTANCE_INDEX = -1;
+	
 	private transient DependencyTrackingInstruction sourceInstruction;
 	
 	public InstructionDependencySource(DependencyTrackingInstruction sourceInstruction) {
+		super(NO_INSTANCE_INDEX);
 		this.sourceInstruction = sourceInstruction;
-		notifyDependencyGenerated();
 	}
 
 	public DependencyTrackingInstruction getSourceInstruction() {
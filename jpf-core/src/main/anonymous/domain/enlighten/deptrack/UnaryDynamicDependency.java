@@ -0,0 +1,71 @@
+/* 
+ * Copyright 2019 Georgia Institute of Technology
+ * All rights reserved.
+ *
+ * Author(s): Xiangyu Li <xiangyu.li@cc.gatech.edu>
+ *
+ * 
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ * 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation and/or
+ * other materials provided with the distribution.
+ * 
+ * 3. Neither the name of the copyright holder nor the names of its contributors
+ * may be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package anonymous.domain.enlighten.deptrack;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Composite dependency with exactly one data dependency, which is the common
+ * case of an instruction source combined with a control dependency.
+ */
+final class UnaryDynamicDependency extends CompositeDynamicDependency {
+	
+	private final DynamicDependency dataDep;
+	
+	UnaryDynamicDependency(DynamicDependency dataDep, DynamicDependency controlDep) {
+		super(controlDep);
+		this.dataDep = dataDep;
+		notifyDependencyGenerated();
+	}
+	
+	@Override
+	public int getNumDataDependencies() {
+		return 1;
+	}
+	
+	@Override
+	public DynamicDependency getDataDependency(int index) {
+		if (index != 0) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: 1");
+		}
+		return dataDep;
+	}
+	
+	@Override
+	public List<DynamicDependency> getDataDependencies() {
+		return Collections.singletonList(dataDep);
+	}
+}
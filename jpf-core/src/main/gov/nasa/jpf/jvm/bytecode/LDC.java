@@ -76,6 +76,8 @@ public class LDC extends DependencyTrackingInstruction implements JVMInstruction
       case STRING:
 
         ElementInfo eiValue = ti.getHeap().newInternString(string, ti); 
+        // the interned string can be frozen in a stored state
+        eiValue = ti.getModifiableElementInfo(eiValue.getObjectRef());
 
 
 
@@ -87,7 +89,7 @@ public class LDC extends DependencyTrackingInstruction implements JVMInstruction
         		.appendDataDependency(eiValue.getFieldAttr(valueField), instrDep)
         		.setControlDependency(getControlDependencyCondition(ti)).build();
         eiValue.setFieldAttr(valueField, valueFieldDep);
-        ElementInfo strCharArray = ti.getElementInfo(eiValue.getReferenceField(valueField));
+        ElementInfo strCharArray = ti.getModifiableElementInfo(eiValue.getReferenceField(valueField));
         int charArrayLength = strCharArray.getArrayFields().arrayLength();
         for (int i = 0; i < charArrayLength; ++i) {
         	DynamicDependency charDep = DynDepBuilder.newBuilder()
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+
+package gov.nasa.jpf.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.NoSuchElementException;
+
+/**
+ * allocation free alternative to the linked Step list of a Transition.
+ *
+ * Executed instructions are stored as runs of consecutive instruction indices
+ * within one method, each run taking two ints in chunked int arrays: the
+ * method id and the packed (startIndex << 16 | length-1). Straight line code
+ * just increments the length of the current run. Method ids are handed out
+ * by a MethodTable that is shared by all transitions of a VM. The index of
+ * the first step of each run is kept in a separate array, so that indexed
+ * lookups binary search the runs instead of scanning them.
+ *
+ * enabled with 'vm.compact_steps = true'
+ */
+public class CompactStepTrail {
+
+  public static class MethodTable {
+    private final IdentityHashMap<MethodInfo,Integer> ids = new IdentityHashMap<MethodInfo,Integer>();
+    private final ArrayList<MethodInfo> methods = new ArrayList<MethodInfo>();
+
+    public int getId (MethodInfo mi) {
+      Integer id = ids.get(mi);
+      if (id == null) {
+        id = methods.size();
+        methods.add(mi);
+        ids.put(mi, id);
+      }
+      return id;
+    }
+
+    public MethodInfo getMethodInfo (int id) {
+      return methods.get(id);
+    }
+
+    public int size () {
+      return methods.size();
+    }
+  }
+
+  static final int CHUNK_SIZE = 1024; // ints, i.e. 512 runs per chunk
+  static final int MAX_RUN_LENGTH = 0x10000;
+
+  final MethodTable methodTable;
+
+  int[][] chunks = new int[4][];
+  int nChunks;
+  int pos = CHUNK_SIZE; // next free slot in the last chunk
+
+  int nRuns;
+  int nSteps;
+
+  // step index of the first step of each run
+  int[] runStarts = new int[16];
+
+  // the last recorded instruction, to extend runs without decoding
+  MethodInfo lastMi;
+  int lastMethodId;
+  int lastInsnIndex;
+  int[] lastChunk;
+  int lastRunPos;
+
+  public CompactStepTrail (MethodTable methodTable) {
+    this.methodTable = methodTable;
+  }
+
+  public void add (Instruction insn) {
+    MethodInfo mi = insn.getMethodInfo();
+    int insnIndex = insn.getInstructionIndex();
+
+    if (mi == lastMi && nRuns > 0 && insnIndex == lastInsnIndex + 1
+        && (lastChunk[lastRunPos + 1] & 0xffff) < MAX_RUN_LENGTH - 1) {
+      lastChunk[lastRunPos + 1]++;
+
+    } else {
+      if (mi != lastMi) {
+        lastMethodId = methodTable.getId(mi);
+        lastMi = mi;
+      }
+
+      if (pos == CHUNK_SIZE) {
+        if (nChunks == chunks.length) {
+          int[][] newChunks = new int[nChunks * 2][];
+          System.arraycopy(chunks, 0, newChunks, 0, nChunks);
+          chunks = newChunks;
+        }
+        lastChunk = chunks[nChunks++] = new int[CHUNK_SIZE];
+        pos = 0;
+      }
+
+      if (nRuns == runStarts.length) {
+        runStarts = Arrays.copyOf(runStarts, nRuns * 2);
+      }
+      runStarts[nRuns] = nSteps;
+
+      lastRunPos = pos;
+      lastChunk[pos++] = lastMethodId;
+      lastChunk[pos++] = insnIndex << 16;
+      nRuns++;
+    }
+
+    lastInsnIndex = insnIndex;
+    nSteps++;
+  }
+
+  public int size () {
+    return nSteps;
+  }
+
+  public int getRunCount () {
+    return nRuns;
+  }
+
+  /**
+   * heap bytes used by the run storage (without the shared MethodTable)
+   */
+  public long getStorageSize () {
+    return (long)nChunks * (CHUNK_SIZE * 4 + 16) + chunks.length * 4 + 16
+        + runStarts.length * 4 + 16;
+  }
+
+  public Instruction getLastInstruction () {
+    if (nSteps == 0) {
+      return null;
+    }
+    return lastMi.getInstruction(lastInsnIndex);
+  }
+
+  public Instruction getInstruction (int stepIndex) {
+    if (stepIndex < 0 || stepIndex >= nSteps) {
+      return null;
+    }
+    if (stepIndex == nSteps - 1) {
+      return getLastInstruction();
+    }
+
+    int run = Arrays.binarySearch(runStarts, 0, nRuns, stepIndex);
+    if (run < 0) {
+      run = -run - 2; // the run starting before stepIndex
+    }
+    int[] chunk = chunks[(run * 2) / CHUNK_SIZE];
+    int p = (run * 2) % CHUNK_SIZE;
+    MethodInfo mi = methodTable.getMethodInfo(chunk[p]);
+    return mi.getInstruction((chunk[p + 1] >>> 16) + (stepIndex - runStarts[run]));
+  }
+
+  public InstructionIterator iterator () {
+    return new InstructionIterator();
+  }
+
+  public class InstructionIterator {
+    int run;
+    int offset;   // within the current run
+    int stepIndex;
+
+    public boolean hasNext () {
+      return stepIndex < nSteps;
+    }
+
+    public int getStepIndex () {
+      return stepIndex;
+    }
+
+    public Instruction next () {
+      if (stepIndex >= nSteps) {
+        throw new NoSuchElementException();
+      }
+
+      int[] chunk = chunks[(run * 2) / CHUNK_SIZE];
+      int p = (run * 2) % CHUNK_SIZE;
+      int packed = chunk[p + 1];
+      Instruction insn = methodTable.getMethodInfo(chunk[p]).getInstruction((packed >>> 16) + offset);
+
+      if (offset == (packed & 0xffff)) {
+        run++;
+        offset = 0;
+      } else {
+        offset++;
+      }
+      stepIndex++;
+
+      return insn;
+    }
+  }
+}
@@ -35,6 +35,8 @@ public abstract class DependencyTrackingInstruction extends Instruction {
 	
 	private List<DependencyTrackingInstruction> controlDependencies;
 	
+	private InstructionDependencySource depSource;
+	
 	public static void addInstructionDependencyListener(InstructionDependencyListener listener) {
 		if (!insnDepListeners.contains(listener)) {
 			insnDepListeners.add(listener);
@@ -72,38 +74,33 @@ public abstract class DependencyTrackingInstruction extends Instruction {
 	protected DynamicDependencySource getInstructionDepSource(StackFrame frame) {
 		MethodInvocationAttr frameAttr = frame.getFrameAttr(MethodInvocationAttr.class);
 		if (frameAttr != null && frameAttr.getGenInstrDep()) {
-			InstructionDependencySource depNode = new InstructionDependencySource(this);
-			notifyInstructionDependencyListeners(depNode);
-			return depNode;
+			if (depSource == null) {
+				depSource = new InstructionDependencySource(this);
+			}
+			notifyInstructionDependencyListeners(depSource);
+			return depSource;
 		} else {
 			return null;
 		}
 	}
 	
 	protected DynamicDependency getControlDependencyCondition(ThreadInfo ti) {
-		List<DependencyTrackingInstruction> cdList = getControlDependencyInstructions();
-		if (cdList.size() > 0) {
-			List<ActiveCondition> candidateDeps = new ArrayList<>();
-			for (DependencyTrackingInstruction cd : cdList) {
-				ActiveCondition activeCondition = cd.getActiveCondition(ti);
-				if (activeCondition != null) {
-					candidateDeps.add(activeCondition);
-				}
-			}
-			if (candidateDeps.size() == 0) {
+		if (controlDependencies != null && controlDependencies.size() > 0) {
+			MethodInvocationAttr frameAttr = 
+					ti.getTopFrame().getFrameAttr(MethodInvocationAttr.class);
+			if (frameAttr == null) {
 				return null;
-			} else if (candidateDeps.size() == 1) {
-				return candidateDeps.get(0).getDependency();
 			}
-			long mostRecentSerial = -1;
 			ActiveCondition mostRecentCondition = null;
-			for (ActiveCondition current : candidateDeps) {
-				if (current.getSerialNum() > mostRecentSerial) {
-					mostRecentCondition = current;
-					mostRecentSerial = current.getSerialNum();
+			for (int i = 0; i < controlDependencies.size(); ++i) {
+				ActiveCondition activeCondition = 
+						frameAttr.getInstrActiveCondition(controlDependencies.get(i));
+				if (activeCondition != null && (mostRecentCondition == null 
+						|| activeCondition.getSerialNum() > mostRecentCondition.getSerialNum())) {
+					mostRecentCondition = activeCondition;
 				}
 			}
-			return mostRecentCondition.getDependency();
+			return mostRecentCondition != null ? mostRecentCondition.getDependency() : null;
 		} else {
 			MethodInvocationAttr frameAttr = 
 					ti.getTopFrame().getFrameAttr(MethodInvocationAttr.class);
@@ -139,8 +136,8 @@ public abstract class DependencyTrackingInstruction extends Instruction {
 	}
 	
 	private void notifyInstructionDependencyListeners(InstructionDependencySource dep) {
-		for (InstructionDependencyListener listener : insnDepListeners) {
-			listener.instructionDependencySourceGenerated(this, dep);
+		for (int i = 0; i < insnDepListeners.size(); ++i) {
+			insnDepListeners.get(i).instructionDependencySourceGenerated(this, dep);
 		}
 	}
 }
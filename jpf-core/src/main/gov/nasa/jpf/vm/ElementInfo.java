@@ -888,7 +888,9 @@ public abstract class ElementInfo implements Cloneable {
   public void set1SlotField(FieldInfo fi, int newValue) {
     checkIsModifiable();
 
-    if (fi.is1SlotField()) {
+    if (fi.isReference()) {
+      fields.setReferenceValue( fi.getStorageOffset(), newValue);
+    } else if (fi.is1SlotField()) {
       int offset = fi.getStorageOffset();
       fields.setIntValue( offset, newValue);
     } else {
@@ -1170,6 +1172,9 @@ public abstract class ElementInfo implements Cloneable {
 
     Object srcVals = ((ArrayFields)eiSrc.getFields()).getValues();
     Object dstVals = ((ArrayFields)fields).getValues();
+    if (isRefArray) {
+      fields.recordReferenceStore();
+    }
 
 
     System.arraycopy(srcVals, srcIdx, dstVals, dstIdx, length);
@@ -1423,6 +1428,8 @@ public abstract class ElementInfo implements Cloneable {
 
   public int[] asReferenceArray() {
     if (fields instanceof ArrayFields){
+      // callers may store into the returned slots
+      fields.recordReferenceStore();
       return ((ArrayFields)fields).asReferenceArray();
     } else {
       throw new JPFException("not an array: " + ci.getName());
@@ -34,9 +34,24 @@ public abstract class Fields implements Cloneable {
   
   protected Object objectAttr;
 
+  // objref of the owner once a GenerationalOVHeap promoted it to the old generation,
+  // negated after the first reference store since the last collection
+  protected int promotedRef;
+
 
   protected Fields() {}
 
+  public void setPromotedRef (int objref) {
+    promotedRef = objref;
+  }
+
+  protected final void recordReferenceStore () {
+    if (promotedRef > 0) {
+      GenerationalOVHeap.rememberStore(promotedRef);
+      promotedRef = -promotedRef;
+    }
+  }
+
   public boolean hasFieldAttr() {
     return fieldAttrs != null;
   }
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+
+package gov.nasa.jpf.vm;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.util.IntVector;
+
+import java.util.BitSet;
+
+/**
+ * an OVHeap that collects in two generations. Objects allocated since the last
+ * collection form the nursery, everything that survived a collection is old.
+ * Minor collections only mark and sweep the nursery, treating old objects as
+ * live and scanning the old objects that had reference stores since the last
+ * collection (recorded by the Fields write barrier) as additional roots.
+ *
+ * A full collection is done every 'vm.gc.major_interval' collections, on
+ * System.gc(), on thread termination and after the heap got restored, so
+ * unreachable old objects still get released and finalized, just later.
+ *
+ * select with 'vm.heap.class = gov.nasa.jpf.vm.GenerationalOVHeap'
+ */
+public class GenerationalOVHeap extends OVHeap {
+
+  static class GenerationalMemento extends OVMemento {
+    GenerationalMemento (GenerationalOVHeap heap) {
+      super(heap);
+    }
+
+    @Override
+    public Heap restore (Heap inSitu) {
+      super.restore(inSitu);
+
+      // nursery and remembered set don't match the restored objects anymore
+      ((GenerationalOVHeap)inSitu).requestFullCollection();
+      return inSitu;
+    }
+  }
+
+  protected BitSet nursery = new BitSet();
+  protected IntVector rememberedSet = new IntVector(256);
+
+  protected boolean isMinorCollection;
+  protected boolean isFullCollectionRequested = true;
+  protected int majorInterval;
+  protected int nMinorCollections;
+
+  public GenerationalOVHeap (Config config, KernelState ks) {
+    super(config, ks);
+
+    majorInterval = config.getInt("vm.gc.major_interval", 8);
+  }
+
+  static void rememberStore (int objref) {
+    Heap heap = VM.getVM().getHeap();
+    if (heap instanceof GenerationalOVHeap) {
+      ((GenerationalOVHeap)heap).rememberedSet.add(objref);
+    }
+  }
+
+  public void requestFullCollection () {
+    isFullCollectionRequested = true;
+  }
+
+  public int getNurserySize () {
+    return nursery.cardinality();
+  }
+
+  @Override
+  protected void set (int index, ElementInfo ei) {
+    super.set(index, ei);
+    nursery.set(index);
+  }
+
+  @Override
+  protected void remove (int ref) {
+    super.remove(ref);
+    nursery.clear(ref);
+  }
+
+  @Override
+  public void queueMark (int objref) {
+    if (isMinorCollection && !nursery.get(objref)) {
+      return;
+    }
+    super.queueMark(objref);
+  }
+
+  @Override
+  public void gc () {
+    if (isFullCollectionRequested || nMinorCollections >= majorInterval
+        || vm.getCurrentThread().isTerminated()) {
+      fullGc();
+    } else {
+      minorGc();
+    }
+  }
+
+  protected void fullGc () {
+    super.gc();
+
+    for (ElementInfo ei : this) {
+      ei.getFields().setPromotedRef(ei.getObjectRef());
+    }
+    nursery.clear();
+    rememberedSet.clear();
+    nMinorCollections = 0;
+    isFullCollectionRequested = false;
+  }
+
+  protected void minorGc () {
+    vm.notifyGCBegin();
+
+    weakRefs = null;
+    isMinorCollection = true;
+
+    markQueue.clear();
+    markPinDownList();
+    vm.getThreadList().markRoots(this);
+    vm.getClassLoaderList().markRoots(this);
+    markRememberedSet();
+    markQueue.process(elementInfoMarker);
+
+    sweepNursery();
+    isMinorCollection = false;
+    nMinorCollections++;
+
+    cleanupWeakRefs();
+
+    vm.processPostGcActions();
+    vm.notifyGCEnd();
+  }
+
+  protected void markRememberedSet () {
+    int len = rememberedSet.size();
+    for (int i=0; i<len; i++) {
+      int objref = rememberedSet.get(i);
+      if (!nursery.get(objref)) {
+        ElementInfo ei = get(objref);
+        if (ei != null) {
+          ei.markRecursive(this);
+          ei.getFields().setPromotedRef(objref);
+        }
+      }
+    }
+    rememberedSet.clear();
+  }
+
+  protected void sweepNursery () {
+    ThreadInfo ti = vm.getCurrentThread();
+    int tid = ti.getId();
+    boolean isThreadTermination = ti.isTerminated();
+    int n = 0;
+
+    if (vm.finalizersEnabled()) {
+      markFinalizableNursery();
+    }
+
+    // snapshot, releasing objects must not see nursery updates
+    BitSet young = nursery;
+    nursery = new BitSet(young.length());
+
+    for (int objref = young.nextSetBit(0); objref >= 0; objref = young.nextSetBit(objref+1)) {
+      ElementInfo ei = get(objref);
+      if (ei == null) {
+        continue;
+      }
+
+      if (ei.isMarked()) {
+        ei.setUnmarked();
+        ei.setAlive(liveBitValue);
+
+        ei.cleanUp(this, isThreadTermination, tid);
+        ei.getFields().setPromotedRef(objref);
+        n++;
+
+      } else {
+        ei.processReleaseActions();
+
+        vm.notifyObjectReleased(ti, ei);
+        remove(objref);
+      }
+    }
+
+    nLiveObjects += n;
+  }
+
+  protected void markFinalizableNursery () {
+    FinalizerThreadInfo tiFinalizer = vm.getFinalizerThread();
+
+    if (tiFinalizer != null) {
+      for (int objref = nursery.nextSetBit(0); objref >= 0; objref = nursery.nextSetBit(objref+1)) {
+        ElementInfo ei = get(objref);
+        if (ei != null && !ei.isMarked() && ei.hasFinalizer() && !ei.isFinalized()) {
+          ei = tiFinalizer.getFinalizerQueuedInstance(ei);
+          ei.setMarked();
+          ei.markRecursive(this);
+        }
+      }
+    }
+  }
+
+  @Override
+  public Memento<Heap> getMemento () {
+    return new GenerationalMemento(this);
+  }
+}
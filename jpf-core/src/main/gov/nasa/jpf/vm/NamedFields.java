@@ -113,6 +113,7 @@ public class NamedFields extends Fields {
 
   @Override
   public void setReferenceValue (int index, int newValue) {
+    recordReferenceStore();
     values[index] = newValue;
   }
 
@@ -44,6 +44,7 @@ public class ReferenceArrayFields extends ArrayFields {
   @Override
   public void copyElements (ArrayFields src, int srcPos, int dstPos, int len){
     ReferenceArrayFields a = (ReferenceArrayFields) src;
+    recordReferenceStore();
     System.arraycopy(a.values, srcPos, values, dstPos, len);
   }
 
@@ -111,6 +112,7 @@ public class ReferenceArrayFields extends ArrayFields {
 
   @Override
   public void setReferenceValue(int pos, int newValue) {
+    recordReferenceStore();
     values[pos] = newValue;
   }
 
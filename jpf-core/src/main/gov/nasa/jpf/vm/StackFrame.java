@@ -19,6 +19,9 @@
 
 package gov.nasa.jpf.vm;
 
+import anonymous.domain.enlighten.deptrack.DependencyStore;
+import anonymous.domain.enlighten.deptrack.DynamicDependency;
+import gov.nasa.jpf.Config;
 import gov.nasa.jpf.JPFException;
 import gov.nasa.jpf.util.BitSetN;
 import gov.nasa.jpf.util.BitSet1024;
@@ -26,6 +29,7 @@ import gov.nasa.jpf.util.BitSet256;
 import gov.nasa.jpf.util.BitSet64;
 import gov.nasa.jpf.util.FixedBitSet;
 import gov.nasa.jpf.util.HashData;
+import gov.nasa.jpf.util.ImmutableList;
 import gov.nasa.jpf.util.Misc;
 import gov.nasa.jpf.util.OATHash;
 import gov.nasa.jpf.util.ObjectList;
@@ -35,7 +39,10 @@ import gov.nasa.jpf.vm.bytecode.InvokeInstruction;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Set;
 
 
 
@@ -65,12 +72,29 @@ public abstract class StackFrame implements Cloneable {
   
   protected Object[] attrs = null;  
 
+  // slot attributes that are single dependency nodes, kept as DependencyStore ids
+  // if vm.deptrack.compact_attrs is set. A slot uses either attrs or depIds
+  protected long[] depIds = null;
+  
+  static boolean compactDepAttrs;
+  
+  // the top frames of all threads for each state on the backtrack stack. Stored
+  // frames are frozen, so their ids stay valid until the state is backtracked
+  static ImmutableList<StackFrame[]> storedTopFrames;
+
   protected Instruction pc;         
   protected MethodInfo mi;          
 
   static final int[] EMPTY_ARRAY = new int[0];
   static final FixedBitSet EMPTY_BITSET = new BitSet64();
 
+  static boolean init (Config config) {
+    compactDepAttrs = config.getBoolean("vm.deptrack.compact_attrs", false);
+    DependencyStore.clear();
+    storedTopFrames = null;
+    return true;
+  }
+
   protected StackFrame (MethodInfo callee, int nLocals, int nOperands){
     mi = callee;
     pc = mi.getInstruction(0);
@@ -313,7 +337,111 @@ public abstract class StackFrame implements Cloneable {
 
 
   public boolean hasAttrs () {
-    return attrs != null;
+    return attrs != null || depIds != null;
+  }
+
+  protected Object getAttr (int i){
+    if (depIds != null && depIds[i] != 0){
+      return DependencyStore.resolve(depIds[i]);
+    }
+    return (attrs != null) ? attrs[i] : null;
+  }
+  
+  protected void setAttr (int i, Object a){
+    if (compactDepAttrs && a instanceof DynamicDependency){
+      if (depIds == null){
+        depIds = new long[slots.length];
+      }
+      if (DependencyStore.needsSweep()){
+        sweepDependencyStore(this);
+      }
+      depIds[i] = DependencyStore.getId((DynamicDependency) a);
+      if (attrs != null){
+        attrs[i] = null;
+      }
+    } else {
+      if (depIds != null){
+        depIds[i] = 0;
+      }
+      if (attrs == null){
+        if (a == null) return;
+        attrs = new Object[slots.length];
+      }
+      attrs[i] = a;
+    }
+  }
+  
+  // keeps only the stored dependencies that are still in a slot of the given
+  // frame, of a frame on a live thread stack or of a frame in a stored state
+  static void sweepDependencyStore (StackFrame current){
+    DependencyStore.beginSweep();
+    current.retainDepIds();
+    Set<StackFrame> visited = Collections.newSetFromMap(new IdentityHashMap<StackFrame,Boolean>());
+    VM vm = VM.getVM();
+    if (vm != null){
+      for (ThreadInfo ti : vm.getThreadList()){
+        retainDepIds(ti.getTopFrame(), visited);
+      }
+    }
+    for (ImmutableList<StackFrame[]> l = storedTopFrames; l != null; l = l.tail){
+      for (StackFrame top : l.head){
+        retainDepIds(top, visited);
+      }
+    }
+    DependencyStore.endSweep();
+  }
+  
+  static void retainDepIds (StackFrame top, Set<StackFrame> visited){
+    for (StackFrame f = top; f != null && visited.add(f); f = f.getPrevious()){
+      f.retainDepIds();
+    }
+  }
+  
+  // called when the VM stores a state it can backtrack to
+  static void pinStoredDepIds (VM vm){
+    if (compactDepAttrs){
+      ThreadInfo[] threads = vm.getThreadList().getThreads();
+      StackFrame[] tops = new StackFrame[threads.length];
+      for (int i=0; i<threads.length; i++){
+        tops[i] = threads[i].getTopFrame();
+      }
+      storedTopFrames = new ImmutableList<StackFrame[]>(tops, storedTopFrames);
+    }
+  }
+  
+  // called when the VM backtracked to the last stored state
+  static void unpinStoredDepIds (){
+    if (storedTopFrames != null){
+      storedTopFrames = storedTopFrames.tail;
+    }
+  }
+  
+  void retainDepIds (){
+    if (depIds != null){
+      for (int i=0; i<depIds.length; i++){
+        if (depIds[i] != 0){
+          DependencyStore.retain(depIds[i]);
+        }
+      }
+    }
+  }
+  
+  protected void copyAttr (int src, int dst){
+    if (attrs != null){
+      attrs[dst] = attrs[src];
+    }
+    if (depIds != null){
+      depIds[dst] = depIds[src];
+    }
+  }
+  
+  protected void clearAttr (int i){
+    if (attrs != null){
+      attrs[i] = null;
+    }
+    if (depIds != null){
+      depIds[i] = 0;
+    }
   }
 
   public boolean hasFrameAttr(){
@@ -381,22 +509,22 @@ public abstract class StackFrame implements Cloneable {
 
 
   public boolean hasOperandAttr(){
-    if ((top >= stackBase) && (attrs != null)){
-      return (attrs[top] != null);
+    if ((top >= stackBase) && hasAttrs()){
+      return (getAttr(top) != null);
     }
     return false;
   }
   public boolean hasOperandAttr(Class<?> type){
-    if ((top >= stackBase) && (attrs != null)){
-      return ObjectList.containsType(attrs[top], type);
+    if ((top >= stackBase) && hasAttrs()){
+      return ObjectList.containsType(getAttr(top), type);
     }
     return false;
   }
   
   
   public Object getOperandAttr () {
-    if ((top >= stackBase) && (attrs != null)){
-      return attrs[top];
+    if ((top >= stackBase) && hasAttrs()){
+      return getAttr(top);
     }
     return null;
   }
@@ -404,11 +532,7 @@ public abstract class StackFrame implements Cloneable {
   
   public void setOperandAttr (Object a){
     assert (top >= stackBase);
-    if (attrs == null) {
-      if (a == null) return;
-      attrs = new Object[slots.length];
-    }
-    attrs[top] = a;
+    setAttr(top, a);
   }
 
   
@@ -416,26 +540,26 @@ public abstract class StackFrame implements Cloneable {
   public <T> T getOperandAttr (Class<T> attrType){
     assert (top >= stackBase);
     
-    if ((attrs != null)){
-      return ObjectList.getFirst(attrs[top], attrType);
+    if (hasAttrs()){
+      return ObjectList.getFirst(getAttr(top), attrType);
     }
     return null;
   }
   public <T> T getNextOperandAttr (Class<T> attrType, Object prev){
     assert (top >= stackBase);
-    if (attrs != null){
-      return ObjectList.getNext( attrs[top], attrType, prev);
+    if (hasAttrs()){
+      return ObjectList.getNext( getAttr(top), attrType, prev);
     }
     return null;
   }
   public Iterator operandAttrIterator(){
     assert (top >= stackBase);
-    Object a = (attrs != null) ? attrs[top] : null;
+    Object a = getAttr(top);
     return ObjectList.iterator(a);
   }
   public <T> Iterator<T> operandAttrIterator(Class<T> attrType){
     assert (top >= stackBase);
-    Object a = (attrs != null) ? attrs[top] : null;
+    Object a = getAttr(top);
     return ObjectList.typedIterator(a, attrType);
   }
   
@@ -443,25 +567,21 @@ public abstract class StackFrame implements Cloneable {
   public void addOperandAttr (Object a){
     assert (top >= stackBase);
     if (a != null){
-      if (attrs == null) {
-        attrs = new Object[slots.length];
-      }
-
-      attrs[top] = ObjectList.add(attrs[top], a);
+      setAttr(top, ObjectList.add(getAttr(top), a));
     }        
   }
   
   public void removeOperandAttr (Object a){
     assert (top >= stackBase) && (a != null);
-    if (attrs != null){
-      attrs[top] = ObjectList.remove(attrs[top], a);
+    if (hasAttrs()){
+      setAttr(top, ObjectList.remove(getAttr(top), a));
     }        
   }
   
   public void replaceOperandAttr (Object oldAttr, Object newAttr){
     assert (top >= stackBase) && (oldAttr != null) && (newAttr != null);
-    if (attrs != null){
-      attrs[top] = ObjectList.replace(attrs[top], oldAttr, newAttr);
+    if (hasAttrs()){
+      setAttr(top, ObjectList.replace(getAttr(top), oldAttr, newAttr));
     }        
   }
   
@@ -471,16 +591,16 @@ public abstract class StackFrame implements Cloneable {
   public boolean hasOperandAttr(int offset){
     int i = top-offset;
     assert (i >= stackBase);
-    if (attrs != null){
-      return (attrs[i] != null);
+    if (hasAttrs()){
+      return (getAttr(i) != null);
     }
     return false;
   }
   public boolean hasOperandAttr(int offset, Class<?> type){
     int i = top-offset;
     assert (i >= stackBase);
-    if (attrs != null){
-      return ObjectList.containsType(attrs[i], type);
+    if (hasAttrs()){
+      return ObjectList.containsType(getAttr(i), type);
     }
     return false;
   }
@@ -490,8 +610,8 @@ public abstract class StackFrame implements Cloneable {
     int i = top-offset;
     assert (i >= stackBase);
     
-    if (attrs != null) {
-      return attrs[i];
+    if (hasAttrs()) {
+      return getAttr(i);
     }
     return null;
   }
@@ -501,40 +621,36 @@ public abstract class StackFrame implements Cloneable {
     int i = top-offset;
     assert (i >= stackBase);
 
-    if (attrs == null) {
-      if (a == null) return;
-      attrs = new Object[slots.length];
-    }
-    attrs[i] = a;
+    setAttr(i, a);
   }
 
   
   public <T> T getOperandAttr (int offset, Class<T> attrType){
     int i = top-offset;
     assert (i >= stackBase) : this;
-    if (attrs != null){
-      return ObjectList.getFirst(attrs[i], attrType);
+    if (hasAttrs()){
+      return ObjectList.getFirst(getAttr(i), attrType);
     }
     return null;
   }
   public <T> T getNextOperandAttr (int offset, Class<T> attrType, Object prev){
     int i = top-offset;
     assert (i >= stackBase);
-    if (attrs != null){
-      return ObjectList.getNext( attrs[i], attrType, prev);
+    if (hasAttrs()){
+      return ObjectList.getNext( getAttr(i), attrType, prev);
     }
     return null;
   }
   public ObjectList.Iterator operandAttrIterator(int offset){
     int i = top-offset;
     assert (i >= stackBase);
-    Object a = (attrs != null) ? attrs[i] : null;
+    Object a = getAttr(i);
     return ObjectList.iterator(a);
   }
   public <T> ObjectList.TypedIterator<T> operandAttrIterator(int offset, Class<T> attrType){
     int i = top-offset;
     assert (i >= stackBase);
-    Object a = (attrs != null) ? attrs[i] : null;
+    Object a = getAttr(i);
     return ObjectList.typedIterator(a, attrType);
   }
 
@@ -544,26 +660,23 @@ public abstract class StackFrame implements Cloneable {
     assert (i >= stackBase);
 
     if (a != null){
-      if (attrs == null) {
-        attrs = new Object[slots.length];
-      }
-      attrs[i] = ObjectList.add(attrs[i],a);
+      setAttr(i, ObjectList.add(getAttr(i), a));
     }    
   }
 
   public void removeOperandAttr (int offset, Object a){
     int i = top-offset;
     assert (i >= stackBase) && (a != null);
-    if (attrs != null){
-      attrs[i] = ObjectList.remove(attrs[i], a);
+    if (hasAttrs()){
+      setAttr(i, ObjectList.remove(getAttr(i), a));
     }        
   }
   
   public void replaceOperandAttr (int offset, Object oldAttr, Object newAttr){
     int i = top-offset;
     assert (i >= stackBase) && (oldAttr != null) && (newAttr != null);
-    if (attrs != null){
-      attrs[i] = ObjectList.replace(attrs[i], oldAttr, newAttr);
+    if (hasAttrs()){
+      setAttr(i, ObjectList.replace(getAttr(i), oldAttr, newAttr));
     }        
   }
   
@@ -621,15 +734,15 @@ public abstract class StackFrame implements Cloneable {
   
   public boolean hasLocalAttr(int index){
     assert index < stackBase;
-    if (attrs != null){
-      return (attrs[index] != null);
+    if (hasAttrs()){
+      return (getAttr(index) != null);
     }
     return false;
   }
   public boolean hasLocalAttr(int index, Class<?> type){
     assert index < stackBase;
-    if (attrs != null){
-      return ObjectList.containsType(attrs[index], type);
+    if (hasAttrs()){
+      return ObjectList.containsType(getAttr(index), type);
     }
     return false;
   }
@@ -637,8 +750,8 @@ public abstract class StackFrame implements Cloneable {
   
   public Object getLocalAttr (int index){
     assert index < stackBase;
-    if (attrs != null){
-      return attrs[index];
+    if (hasAttrs()){
+      return getAttr(index);
     }
     return null;
   }
@@ -650,11 +763,7 @@ public abstract class StackFrame implements Cloneable {
     
   public void setLocalAttr (int index, Object a) {
     assert index < stackBase;
-    if (attrs == null){
-      if (a == null) return;
-      attrs = new Object[slots.length];
-    }
-    attrs[index] = a;
+    setAttr(index, a);
   }
 
   public void setLongLocalAttr (int index, Object a){
@@ -668,50 +777,46 @@ public abstract class StackFrame implements Cloneable {
   
   public <T> T getLocalAttr (int index, Class<T> attrType){
     assert index < stackBase;
-    if (attrs != null){
-      return ObjectList.getFirst( attrs[index], attrType);
+    if (hasAttrs()){
+      return ObjectList.getFirst( getAttr(index), attrType);
     }
     return null;
   }
   public <T> T getNextLocalAttr (int index, Class<T> attrType, Object prev){
     assert index < stackBase;
-    if (attrs != null){
-      return ObjectList.getNext( attrs[index], attrType, prev);
+    if (hasAttrs()){
+      return ObjectList.getNext( getAttr(index), attrType, prev);
     }
     return null;
   }
   public ObjectList.Iterator localAttrIterator(int index){
     assert index < stackBase;
-    Object a = (attrs != null) ? attrs[index] : null;
+    Object a = getAttr(index);
     return ObjectList.iterator(a);
   }
   public <T> ObjectList.TypedIterator<T> localAttrIterator(int index, Class<T> attrType){
     assert index < stackBase;
-    Object a = (attrs != null) ? attrs[index] : null;
+    Object a = getAttr(index);
     return ObjectList.typedIterator(a, attrType);
   }
   
 
   public void addLocalAttr (int index, Object attr){
     assert index < stackBase;
-    if (attrs == null){
-      if (attr == null) return;
-      attrs = new Object[slots.length];
-    }
-    attrs[index] = ObjectList.add(attrs[index], attr);
+    setAttr(index, ObjectList.add(getAttr(index), attr));
   }
   
   public void removeLocalAttr (int index, Object attr){
     assert index < stackBase && attr != null;
     if (attr != null){
-      attrs[index] = ObjectList.remove(attrs[index], attr);    
+      setAttr(index, ObjectList.remove(getAttr(index), attr));    
     }
   }
 
   public void replaceLocalAttr (int index, Object oldAttr, Object newAttr){
     assert index < stackBase && oldAttr != null && newAttr != null;
-    if (attrs == null){
-      attrs[index] = ObjectList.replace(attrs[index], oldAttr, newAttr);    
+    if (hasAttrs()){
+      setAttr(index, ObjectList.replace(getAttr(index), oldAttr, newAttr));    
     }
   }
   
@@ -719,9 +824,9 @@ public abstract class StackFrame implements Cloneable {
 
   
   public int getLocalAttrIndex (Class<?> attrType, int startIdx){
-    if (attrs != null){
+    if (hasAttrs()){
       for (int i=startIdx; i<stackBase; i++){
-        Object a = attrs[i];
+        Object a = getAttr(i);
         if (ObjectList.containsType(a, attrType)){
           return i;
         }
@@ -829,7 +934,7 @@ public abstract class StackFrame implements Cloneable {
     } else {
     	a = new Object[nArgs];
     }
-    if (attrs != null) {
+    if (hasAttrs()) {
       byte[] at = miCallee.getArgumentTypes();
       if (!miCallee.isStatic()) {
         a[0] = getOperandAttr(miCallee.getArgumentsSize()-1);
@@ -850,7 +955,7 @@ public abstract class StackFrame implements Cloneable {
 
   
   public boolean hasArgumentAttr (MethodInfo miCallee, Class<?> attrType){
-    if (attrs != null) {
+    if (hasAttrs()) {
       int nArgSlots = miCallee.getArgumentsSize();
 
       for (int i=0; i<nArgSlots; i++){
@@ -992,38 +1097,38 @@ public abstract class StackFrame implements Cloneable {
     return slots; 
   }
   public Object[] getSlotAttrs(){
-    return attrs;
+    if (depIds == null){
+      return attrs;
+    }
+    Object[] a = new Object[slots.length];
+    for (int i=0; i<a.length; i++){
+      a[i] = getAttr(i);
+    }
+    return a;
   }
   public Object getSlotAttr (int i){
-    if (attrs != null){
-      return attrs[i];
+    if (hasAttrs()){
+      return getAttr(i);
     }
     return null;
   }
   public <T> T getSlotAttr (int i, Class<T> attrType){
-    if (attrs != null){
-      return ObjectList.getFirst( attrs[i], attrType);
+    if (hasAttrs()){
+      return ObjectList.getFirst( getAttr(i), attrType);
     }
     return null;
   }  
   public void setSlotAttr (int i, Object a){
-    if (attrs == null){
-      attrs = new Object[slots.length];
-    }
-    attrs[i] = a;
+    setAttr(i, a);
   }
   public void addSlotAttr (int i, Object a){
     if (a != null){
-      if (attrs == null) {
-        attrs = new Object[slots.length];
-      }
-
-      attrs[i] = ObjectList.add(attrs[i], a);
+      setAttr(i, ObjectList.add(getAttr(i), a));
     }        
   }  
   public void replaceSlotAttr (int i, Object oldAttr, Object newAttr){
-    if (attrs != null){
-      attrs[i] = ObjectList.replace(attrs[i], oldAttr, newAttr);
+    if (hasAttrs()){
+      setAttr(i, ObjectList.replace(getAttr(i), oldAttr, newAttr));
     }        
   }
   
@@ -1157,9 +1262,9 @@ public abstract class StackFrame implements Cloneable {
 
 
   public void clearOperandStack () {
-    if (attrs != null){
+    if (hasAttrs()){
       for (int i=stackBase; i<= top; i++){
-        attrs[i] = null;
+        clearAttr(i);
       }
     }
     
@@ -1180,6 +1285,9 @@ public abstract class StackFrame implements Cloneable {
       if (attrs != null){
         sf.attrs = attrs.clone();
       }
+      if (depIds != null){
+        sf.depIds = depIds.clone();
+      }
 
 
 
@@ -1232,8 +1340,8 @@ public abstract class StackFrame implements Cloneable {
     slots[td] = slots[t];
     isRef.set(td, isRef.get(t));
 
-    if (attrs != null){
-      attrs[td] = attrs[t];
+    if (hasAttrs()){
+      copyAttr(t, td);
     }
 
     top = td;
@@ -1251,16 +1359,16 @@ public abstract class StackFrame implements Cloneable {
     td = t+1; ts = t-1;
     slots[td] = slots[ts];
     isRef.set(td, isRef.get(ts));
-    if (attrs != null){
-      attrs[td] = attrs[ts];
+    if (hasAttrs()){
+      copyAttr(ts, td);
     }
 
 
     td++; ts=t;
     slots[td] = slots[ts];
     isRef.set(td, isRef.get(ts));
-    if (attrs != null){
-      attrs[td] = attrs[ts];
+    if (hasAttrs()){
+      copyAttr(ts, td);
     }
 
     top = td;
@@ -1282,8 +1390,9 @@ public abstract class StackFrame implements Cloneable {
     slots[td] = c = slots[ts];
     cRef = isRef.get(ts);
     isRef.set(td,cRef);
-    if (attrs != null){
-      attrs[td] = cAnn = attrs[ts];
+    if (hasAttrs()){
+      cAnn = getAttr(ts);
+      copyAttr(ts, td);
     }
 
 
@@ -1291,32 +1400,33 @@ public abstract class StackFrame implements Cloneable {
     slots[td] = b = slots[ts];
     bRef = isRef.get(ts);
     isRef.set(td, bRef);
-    if (attrs != null){
-      attrs[td] = bAnn = attrs[ts];
+    if (hasAttrs()){
+      bAnn = getAttr(ts);
+      copyAttr(ts, td);
     }
 
 
     ts=t-2; td=t;                                
     slots[td] = slots[ts];
     isRef.set(td, isRef.get(ts));
-    if (attrs != null){
-      attrs[td] = attrs[ts];
+    if (hasAttrs()){
+      copyAttr(ts, td);
     }
 
 
     td = ts;                                     
     slots[td] = b;
     isRef.set(td, bRef);
-    if (attrs != null){
-      attrs[td] = bAnn;
+    if (hasAttrs()){
+      setAttr(td, bAnn);
     }
 
 
     td++;                                        
     slots[td] = c;
     isRef.set(td, cRef);
-    if (attrs != null){
-      attrs[td] = cAnn;
+    if (hasAttrs()){
+      setAttr(td, cAnn);
     }
 
     top += 2;
@@ -1338,8 +1448,9 @@ public abstract class StackFrame implements Cloneable {
     slots[td] = c = slots[ts];
     cRef = isRef.get(ts);
     isRef.set(td, cRef);
-    if (attrs != null){
-      attrs[td] = cAnn = attrs[ts];
+    if (hasAttrs()){
+      cAnn = getAttr(ts);
+      copyAttr(ts, td);
     }
 
 
@@ -1347,40 +1458,41 @@ public abstract class StackFrame implements Cloneable {
     slots[td] = d = slots[ts];
     dRef = isRef.get(ts);
     isRef.set(td, dRef);
-    if (attrs != null){
-      attrs[td] = dAnn = attrs[ts];
+    if (hasAttrs()){
+      dAnn = getAttr(ts);
+      copyAttr(ts, td);
     }
 
 
     ts = t-3; td = t-1;                          
     slots[td] = slots[ts];
     isRef.set( td, isRef.get(ts));
-    if (attrs != null){
-      attrs[td] = attrs[ts];
+    if (hasAttrs()){
+      copyAttr(ts, td);
     }
 
 
     ts++; td = t;                                
     slots[td] = slots[ts];
     isRef.set( td, isRef.get(ts));
-    if (attrs != null){
-      attrs[td] = attrs[ts];
+    if (hasAttrs()){
+      copyAttr(ts, td);
     }
 
 
     td = ts;                                     
     slots[td] = d;
     isRef.set( td, dRef);
-    if (attrs != null){
-      attrs[td] = dAnn;
+    if (hasAttrs()){
+      setAttr(td, dAnn);
     }
 
 
     td--;                                        
     slots[td] = c;
     isRef.set(td, cRef);
-    if (attrs != null){
-      attrs[td] = cAnn;
+    if (hasAttrs()){
+      setAttr(td, cAnn);
     }
 
     top += 2;
@@ -1402,24 +1514,25 @@ public abstract class StackFrame implements Cloneable {
     slots[td] = b = slots[ts];
     bRef = isRef.get(ts);
     isRef.set(td, bRef);
-    if (attrs != null){
-      attrs[td] = bAnn = attrs[ts];
+    if (hasAttrs()){
+      bAnn = getAttr(ts);
+      copyAttr(ts, td);
     }
 
 
     ts--; td = t;       
     slots[td] = slots[ts];
     isRef.set( td, isRef.get(ts));
-    if (attrs != null){
-      attrs[td] = attrs[ts];
+    if (hasAttrs()){
+      copyAttr(ts, td);
     }
 
 
     td = ts;            
     slots[td] = b;
     isRef.set( td, bRef);
-    if (attrs != null){
-      attrs[td] = bAnn;
+    if (hasAttrs()){
+      setAttr(td, bAnn);
     }
 
     top++;
@@ -1441,32 +1554,33 @@ public abstract class StackFrame implements Cloneable {
     slots[td] = c = slots[ts];
     cRef = isRef.get(ts);
     isRef.set( td, cRef);
-    if (attrs != null){
-      attrs[td] = cAnn = attrs[ts];
+    if (hasAttrs()){
+      cAnn = getAttr(ts);
+      copyAttr(ts, td);
     }
 
 
     td = ts; ts--;               
     slots[td] = slots[ts];
     isRef.set( td, isRef.get(ts));
-    if (attrs != null){
-      attrs[td] = attrs[ts];
+    if (hasAttrs()){
+      copyAttr(ts, td);
     }
 
 
     td=ts; ts--;                 
     slots[td] = slots[ts];
     isRef.set( td, isRef.get(ts));
-    if (attrs != null){
-      attrs[td] = attrs[ts];
+    if (hasAttrs()){
+      copyAttr(ts, td);
     }
 
 
     td = ts;                     
     slots[td] = c;
     isRef.set(td, cRef);
-    if (attrs != null){
-      attrs[td] = cAnn;
+    if (hasAttrs()){
+      setAttr(td, cAnn);
     }
 
     top++;
@@ -1519,6 +1633,15 @@ public abstract class StackFrame implements Cloneable {
       if (!Misc.compare(top,attrs,other.attrs)){
         return false;
       }
+      if (depIds != null || other.depIds != null){
+        for (int i=0; i<=top; i++){
+          long id = (depIds != null) ? depIds[i] : 0;
+          long otherId = (other.depIds != null) ? other.depIds[i] : 0;
+          if (id != otherId){
+            return false;
+          }
+        }
+      }
       
       if (!ObjectList.equals(frameAttr, other.frameAttr)){
         return false;
@@ -1567,9 +1690,9 @@ public abstract class StackFrame implements Cloneable {
 
 
 
-    if (attrs != null){
+    if (hasAttrs()){
       for (int i=0; i<=top; i++){
-        ObjectList.hash( attrs[i], hd);
+        ObjectList.hash( getAttr(i), hd);
       }
     }
     
@@ -1651,9 +1774,9 @@ public abstract class StackFrame implements Cloneable {
       }
       pw.print( slots[i]);
 
-      if (attrs != null){
+      if (hasAttrs()){
         pw.print("  attr=");
-        pw.print(attrs[i]);
+        pw.print(getAttr(i));
       }
 
       pw.println();
@@ -1676,10 +1799,10 @@ public abstract class StackFrame implements Cloneable {
     slots[t] = v;
     isRef.set( t, isTopRef);
 
-    if (attrs != null){
-      Object a = attrs[top];
-      attrs[top] = attrs[t];
-      attrs[t] = a;
+    if (hasAttrs()){
+      Object a = getAttr(top);
+      copyAttr(t, top);
+      setAttr(t, a);
     }
   }
 
@@ -1705,9 +1828,9 @@ public abstract class StackFrame implements Cloneable {
       }
       pw.print(slots[i]);
 
-      if (attrs != null && attrs[i] != null) {
+      if (getAttr(i) != null) {
         pw.print('(');
-        pw.print(attrs[i]);
+        pw.print(getAttr(i));
         pw.print(')');
       }
     }
@@ -1814,10 +1937,10 @@ public abstract class StackFrame implements Cloneable {
     int lo = slots[i--];
     int hi = slots[i--];
 
-    if (attrs != null){
+    if (hasAttrs()){
       i = top;
-      attrs[i--] = null; 
-      attrs[i--] = null; 
+      clearAttr(i--); 
+      clearAttr(i--); 
     }
 
     top = i;
@@ -1830,10 +1953,10 @@ public abstract class StackFrame implements Cloneable {
     int lo = slots[i--];
     int hi = slots[i--];
 
-    if (attrs != null){
+    if (hasAttrs()){
       i = top;
-      attrs[i--] = null; 
-      attrs[i--] = null; 
+      clearAttr(i--); 
+      clearAttr(i--); 
     }
 
     top = i;
@@ -1869,9 +1992,9 @@ public abstract class StackFrame implements Cloneable {
       }
     }
 
-    if (attrs != null){  
+    if (hasAttrs()){
       for (int i=top; i>t; i--){
-        attrs[i] = null;
+        clearAttr(i);
       }
     }
 
@@ -1881,8 +2004,8 @@ public abstract class StackFrame implements Cloneable {
   public float popFloat() {    
     int v = slots[top];
 
-    if (attrs != null){ 
-      attrs[top] = null;
+    if (hasAttrs()){
+      clearAttr(top);
     }
 
     top--;
@@ -1902,8 +2025,8 @@ public abstract class StackFrame implements Cloneable {
       }
     }
 
-    if (attrs != null){ 
-      attrs[top] = null;
+    if (hasAttrs()){
+      clearAttr(top);
     }
 
     top--;
@@ -1920,8 +2043,8 @@ public abstract class StackFrame implements Cloneable {
     slots[top] = slots[index];
     isRef.set(top, isRef.get(index));
 
-    if (attrs != null){
-      attrs[top] = attrs[index];
+    if (hasAttrs()){
+      copyAttr(index, top);
     }
   }
 
@@ -1933,9 +2056,9 @@ public abstract class StackFrame implements Cloneable {
     slots[++t] = slots[index+1];
     isRef.clear(t);
 
-    if (attrs != null){
-      attrs[t-1] = attrs[index];
-      attrs[t] = null;
+    if (hasAttrs()){
+      copyAttr(index, t-1);
+      clearAttr(t);
     }
 
     top = t;
@@ -1945,9 +2068,9 @@ public abstract class StackFrame implements Cloneable {
     slots[index] = slots[top];
     isRef.set( index, isRef.get(top));
 
-    if (attrs != null){
-      attrs[index] = attrs[top];
-      attrs[top] = null;
+    if (hasAttrs()){
+      copyAttr(top, index);
+      clearAttr(top);
     }
 
     top--;
@@ -1963,12 +2086,12 @@ public abstract class StackFrame implements Cloneable {
     slots[++i] = slots[t+1];
     isRef.clear(i);
 
-    if (attrs != null){
-      attrs[index] = attrs[t]; 
-      attrs[i] = null;
+    if (hasAttrs()){
+      copyAttr(t, index); 
+      clearAttr(i);
 
-      attrs[t] = null;
-      attrs[t+1] = null;
+      clearAttr(t);
+      clearAttr(t+1);
     }
 
     top -=2;
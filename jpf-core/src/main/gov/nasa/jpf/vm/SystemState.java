@@ -172,6 +172,9 @@ public class SystemState {
   
   boolean recordSteps;
 
+  // shared method ids of compact step trails, null if Step objects are recorded
+  CompactStepTrail.MethodTable stepMethods;
+
   
   TypeSpecMatcher extendTransitions;
   
@@ -191,6 +194,10 @@ public class SystemState {
 
     extendTransitions = TypeSpecMatcher.create(config.getStringArray("vm.extend_transitions"));
 
+    if (config.getBoolean("vm.compact_steps", false)) {
+      stepMethods = new CompactStepTrail.MethodTable();
+    }
+
   }
 
   protected SystemState() {
@@ -199,7 +206,15 @@ public class SystemState {
 
   public void setStartThread (ThreadInfo ti) {
     execThread = ti;
-    trail = new Transition(nextCg, execThread);
+    trail = createTransition(nextCg, execThread);
+  }
+
+  protected Transition createTransition (ChoiceGenerator<?> cg, ThreadInfo ti) {
+    if (stepMethods != null) {
+      return new Transition(cg, ti, stepMethods);
+    } else {
+      return new Transition(cg, ti);
+    }
   }
 
   public int getId () {
@@ -646,7 +661,7 @@ public class SystemState {
 
     assert execThread.isRunnable() : "next transition thread not runnable: " + execThread.getStateDescription();
 
-    trail = new Transition(curCg, execThread);
+    trail = createTransition(curCg, execThread);
     entryAtomicLevel = atomicLevel; 
 
     execThread.executeTransition(this);    
@@ -793,8 +808,12 @@ public class SystemState {
 
 
     if (recordSteps) {
-      Step step = new Step(pc);
-      trail.addStep( step);
+      if (stepMethods != null) {
+        trail.addStep( pc);
+      } else {
+        Step step = new Step(pc);
+        trail.addStep( step);
+      }
     } else {
       trail.incStepCount();
     }
@@ -19,6 +19,7 @@
 
 package gov.nasa.jpf.vm;
 
+import java.util.HashMap;
 import java.util.Iterator;
 
 
@@ -30,6 +31,12 @@ public class Transition implements Iterable<Step>, Cloneable {
   private Step   first, last;
   int nSteps;
 
+  // non-null if steps are recorded as instruction runs instead of Step objects
+  private CompactStepTrail.MethodTable stepMethods;
+  private CompactStepTrail compactSteps;
+  // Step objects handed out for compact steps, so that comments stick
+  private HashMap<Integer,Step> stepViews;
+
   private Object annotation;
   String         output;
 
@@ -40,6 +47,11 @@ public class Transition implements Iterable<Step>, Cloneable {
     this.ti = ti;
   }
 
+  public Transition (ChoiceGenerator<?> cg, ThreadInfo ti, CompactStepTrail.MethodTable stepMethods) {
+    this(cg, ti);
+    this.stepMethods = stepMethods;
+  }
+
   @Override
   public Object clone() {
     try {
@@ -57,6 +69,7 @@ public class Transition implements Iterable<Step>, Cloneable {
   }
   
   public String getLabel () {
+    Step last = getLastStep();
     if (last != null) {
       return last.getLineString();
     } else {
@@ -90,15 +103,42 @@ public class Transition implements Iterable<Step>, Cloneable {
 
 
   public Step getStep (int index) {
+    if (compactSteps != null) {
+      return getStepView(index);
+    }
+
     Step s = first;
     for (int i=0; s != null && i < index; i++) s = s.next;
     return s;
   }
 
   public Step getLastStep () {
+    if (compactSteps != null) {
+      return getStepView(compactSteps.size() - 1);
+    }
     return last;
   }
 
+  public CompactStepTrail getCompactSteps () {
+    return compactSteps;
+  }
+
+  private Step getStepView (int index) {
+    Step s = (stepViews != null) ? stepViews.get(index) : null;
+    if (s == null) {
+      Instruction insn = compactSteps.getInstruction(index);
+      if (insn == null) {
+        return null;
+      }
+      s = new Step(insn);
+      if (stepViews == null) {
+        stepViews = new HashMap<Integer,Step>();
+      }
+      stepViews.put(index, s);
+    }
+    return s;
+  }
+
   public int getStepCount () {
     return nSteps;
   }
@@ -134,6 +174,14 @@ public class Transition implements Iterable<Step>, Cloneable {
     nSteps++;
   }
 
+  void addStep (Instruction insn) {
+    if (compactSteps == null) {
+      compactSteps = new CompactStepTrail(stepMethods);
+    }
+    compactSteps.add(insn);
+    nSteps++;
+  }
+
   public class StepIterator implements Iterator<Step> {
     Step cur;
 
@@ -169,8 +217,37 @@ public class Transition implements Iterable<Step>, Cloneable {
     }
   }
 
+  public class CompactStepIterator implements Iterator<Step> {
+    CompactStepTrail.InstructionIterator it = compactSteps.iterator();
+
+    @Override
+    public boolean hasNext () {
+      return it.hasNext();
+    }
+
+    @Override
+    public Step next () {
+      if (stepViews != null) {
+        Step s = stepViews.get(it.getStepIndex());
+        if (s != null) {
+          it.next();
+          return s;
+        }
+      }
+      return new Step(it.next());
+    }
+
+    @Override
+    public void remove () {
+      throw new UnsupportedOperationException("compact step trails are append-only");
+    }
+  }
+
   @Override
   public Iterator<Step> iterator () {
+    if (compactSteps != null) {
+      return new CompactStepIterator();
+    }
     return new StepIterator();
   }
 }
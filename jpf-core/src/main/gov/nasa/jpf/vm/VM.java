@@ -19,6 +19,7 @@
 
 package gov.nasa.jpf.vm;
 
+import anonymous.domain.enlighten.deptrack.DependencyStore;
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.JPF;
 import gov.nasa.jpf.JPFConfigException;
@@ -221,6 +222,7 @@ public abstract class VM {
     ClassLoaderInfo.init(config);
     ClassInfo.init(config);
     ThreadInfo.init(config);
+    StackFrame.init(config);
     ElementInfo.init(config);
     MethodInfo.init(config);
     NativePeer.init(config);
@@ -1183,6 +1185,7 @@ public abstract class VM {
   
   
   public RestorableVMState getRestorableState () {
+    DependencyStore.disableSweep();
     return new RestorableVMState(this);
   }
 
@@ -1529,6 +1532,7 @@ public abstract class VM {
 
     boolean success = backtracker.backtrack();
     if (success) {
+      StackFrame.unpinStoredDepIds();
       if (CHECK_CONSISTENCY) checkConsistency(false);
       
 
@@ -1590,6 +1594,7 @@ public abstract class VM {
       }
 
       backtracker.pushKernelState();
+      StackFrame.pinStoredDepIds(this);
 
 
       lastTrailInfo = path.getLast();
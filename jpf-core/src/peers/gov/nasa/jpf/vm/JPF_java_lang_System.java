@@ -340,6 +340,10 @@ public class JPF_java_lang_System extends NativePeer {
 
   @MJI
   public void gc____V (MJIEnv env, int clsObjRef) {
+    Heap heap = env.getHeap();
+    if (heap instanceof GenerationalOVHeap) {
+      ((GenerationalOVHeap)heap).requestFullCollection();
+    }
     env.getSystemState().activateGC();
   }
 
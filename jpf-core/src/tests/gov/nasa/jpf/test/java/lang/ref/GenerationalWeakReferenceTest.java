@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+
+
+package gov.nasa.jpf.test.java.lang.ref;
+
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+public class GenerationalWeakReferenceTest extends TestJPF
+{
+   private static final String HEAP = "+vm.heap.class=.vm.GenerationalOVHeap";
+   private static final String MAJOR_INTERVAL = "+vm.gc.major_interval=100";
+
+   @Test
+   public void testGCClearsRef()
+   {
+      WeakReference<Target> ref;
+
+      if (verifyNoPropertyViolation(HEAP))
+      {
+         ref = new WeakReference<Target>(new Target());
+
+         forceGC();
+         
+         assertNull(ref.get());
+      }
+   }
+
+   @Test
+   public void testStrongReferenceKeepsWeakReference()
+   {
+      WeakReference<Target> ref;
+      Target target;
+
+      if (verifyNoPropertyViolation(HEAP))
+      {
+         target = new Target();
+         ref    = new WeakReference<Target>(target);
+
+         forceGC();
+
+         assertSame(target, ref.get());
+      }
+   }
+
+   @Test
+   public void testMinorGCClearsYoungRef()
+   {
+      WeakReference<Target> ref;
+
+      if (verifyNoPropertyViolation(HEAP, MAJOR_INTERVAL))
+      {
+         forceGC();
+         ref = new WeakReference<Target>(new Target());
+
+         Runtime.getRuntime().gc();
+
+         assertNull(ref.get());
+      }
+   }
+
+   @Test
+   public void testMinorGCKeepsOldReferent()
+   {
+      WeakReference<Target> ref;
+      Target target;
+
+      if (verifyNoPropertyViolation(HEAP, MAJOR_INTERVAL))
+      {
+         target = new Target();
+         forceGC();
+
+         // a young reference to an old referent that is not marked
+         ref    = new WeakReference<Target>(target);
+         target = null;
+
+         Runtime.getRuntime().gc();
+
+         assertNotNull(ref.get());
+      }
+   }
+
+   @Test
+   public void testMinorGCKeepsRememberedReferent()
+   {
+      WeakReference<Target> ref;
+      Target[] holder;
+
+      if (verifyNoPropertyViolation(HEAP, MAJOR_INTERVAL))
+      {
+         holder = new Target[1];
+         forceGC();
+
+         holder[0] = new Target();
+         ref       = new WeakReference<Target>(holder[0]);
+
+         Runtime.getRuntime().gc();
+
+         assertSame(holder[0], ref.get());
+      }
+   }
+   
+   private static void forceGC()
+   {
+      System.gc();         
+      Verify.breakTransition("testForceGC"); 
+   }
+   
+   private static class Target   
+   {
+   }
+}
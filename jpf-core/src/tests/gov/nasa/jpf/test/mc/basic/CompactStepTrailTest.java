@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+
+package gov.nasa.jpf.test.mc.basic;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.Step;
+import gov.nasa.jpf.vm.Transition;
+import gov.nasa.jpf.vm.Verify;
+
+
+public class CompactStepTrailTest extends TestJPF {
+
+  static final String LISTENER = "+listener=.test.mc.basic.CompactStepTrailTest$StepRecorder";
+
+  public static class StepRecorder extends ListenerAdapter {
+    static List<String> steps;
+    static int nMismatches;
+    static int nTransitions;
+
+    public StepRecorder (){
+      steps = new ArrayList<String>();
+      nMismatches = 0;
+      nTransitions = 0;
+    }
+
+    @Override
+    public void stateAdvanced (Search search){
+      Transition t = search.getVM().getLastTransition();
+      if (t == null){
+        return;
+      }
+      nTransitions++;
+
+      int i = 0;
+      for (Iterator<Step> it = t.iterator(); it.hasNext(); i++){
+        Step s = it.next();
+        Step indexed = t.getStep(i);
+        if (indexed == null || s.getInstruction() != indexed.getInstruction()){
+          nMismatches++;
+        }
+        steps.add(toString(s.getInstruction()));
+      }
+      if (i != t.getStepCount()){
+        nMismatches++;
+      }
+    }
+
+    static String toString (Instruction insn){
+      return insn.getMethodInfo().getFullName() + '@' + insn.getInstructionIndex();
+    }
+  }
+
+  static int fib (int n){
+    return (n < 2) ? n : fib(n-1) + fib(n-2);
+  }
+
+  static void run (){
+    int sum = 0;
+    for (int i=0; i<10; i++){
+      sum += fib(i);
+    }
+
+    if (Verify.getBoolean()){
+      sum += fib(12);
+    } else {
+      for (int i=0; i<200; i++){
+        sum += i;
+      }
+    }
+    assert sum > 0;
+  }
+
+  @Test
+  public void testCompactStepsMatchLinkedSteps (){
+    if (verifyNoPropertyViolation(LISTENER, "+vm.store_steps=true", "+vm.compact_steps=false")){
+      run();
+      return;
+    }
+    List<String> linkedSteps = StepRecorder.steps;
+    assertTrue("linked getStep() differs from iteration", StepRecorder.nMismatches == 0);
+
+    if (verifyNoPropertyViolation(LISTENER, "+vm.store_steps=true", "+vm.compact_steps=true")){
+      run();
+      return;
+    }
+    assertTrue("compact getStep() differs from iteration", StepRecorder.nMismatches == 0);
+    assertTrue("no transitions recorded", StepRecorder.nTransitions > 1);
+    assertTrue("no steps recorded", linkedSteps.size() > 1000);
+    assertEquals(linkedSteps, StepRecorder.steps);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+
+
+package gov.nasa.jpf.test.mc.basic;
+
+import org.junit.Test;
+
+import anonymous.domain.enlighten.deptrack.DependencyStore;
+import anonymous.domain.enlighten.deptrack.DynamicDependency;
+import anonymous.domain.enlighten.deptrack.DynamicDependencySource;
+import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.jvm.bytecode.JVMInvokeInstruction;
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.ThreadInfo;
+import gov.nasa.jpf.vm.VM;
+import gov.nasa.jpf.vm.Verify;
+
+
+public class DependencyStoreTest extends TestJPF {
+
+  static final int CHURN = 70000;
+
+  public static class DepListener extends ListenerAdapter {
+    static DynamicDependency tagged;
+    static boolean swept;
+    static int nChecked;
+    static int nLost;
+
+    public DepListener (){
+      tagged = null;
+      swept = false;
+      nChecked = 0;
+      nLost = 0;
+    }
+
+    @Override
+    public void executeInstruction (VM vm, ThreadInfo ti, Instruction insn){
+      if (insn instanceof JVMInvokeInstruction){
+        String mname = ((JVMInvokeInstruction) insn).getInvokedMethodName();
+
+        if (mname.equals("tag()V")){
+          tagged = new DynamicDependencySource();
+          ti.getModifiableTopFrame().setLocalAttr(0, tagged);
+
+        } else if (mname.equals("churn()V")){
+          for (int i=0; i<CHURN; i++){
+            DependencyStore.getId(new DynamicDependencySource());
+          }
+          long before = DependencyStore.size();
+          ti.getModifiableTopFrame().setLocalAttr(0, new DynamicDependencySource());
+          if (DependencyStore.size() < before){
+            swept = true;
+          }
+
+        } else if (mname.equals("check()V")){
+          nChecked++;
+          if (!swept || ti.getTopFrame().getLocalAttr(0) != tagged){
+            nLost++;
+          }
+        }
+      }
+    }
+  }
+
+  static void tag(){}
+  static void churn(){}
+  static void check(){}
+
+  static void helper(){
+    int x = 42;
+    tag();
+    if (Verify.getBoolean()){
+      check();
+    }
+  }
+
+  @Test
+  public void testBacktrackAcrossSweep (){
+    if (verifyNoPropertyViolation("+vm.deptrack.compact_attrs=true",
+                                  "+cg.boolean.false_first=true",
+                                  "+listener=.test.mc.basic.DependencyStoreTest$DepListener")){
+      helper();
+      churn();
+
+    } else {
+      assertTrue("dependency store was not swept", DepListener.swept);
+      assertTrue("check() not reached", DepListener.nChecked == 1);
+      assertTrue("dependency lost after backtracking", DepListener.nLost == 0);
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2014, United States Government, as represented by the
+ * Administrator of the National Aeronautics and Space Administration.
+ * All rights reserved.
+ *
+ * The Java Pathfinder core (jpf-core) platform is licensed under the
+ * Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ *        http://www.apache.org/licenses/LICENSE-2.0. 
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ */
+package gov.nasa.jpf.test.mc.basic;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.Verify;
+
+/**
+ * OVHeapTest for the GenerationalOVHeap, plus the cases that depend on the
+ * generations: objects surviving a minor collection get promoted, and old
+ * objects that had reference stores keep their young referents alive
+ */
+public class GenerationalOVHeapTest extends TestJPF {
+  
+  static final String HEAP = "+vm.heap.class=.vm.GenerationalOVHeap";
+  
+  // no major collections unless requested by the test
+  static final String MAJOR_INTERVAL = "+vm.gc.major_interval=100";
+  
+  static class Node {
+    int value;
+    Node next;
+    
+    Node (int value) {
+      this.value = value;
+    }
+  }
+  
+  static void fullGC() {
+    System.gc();
+    Verify.breakTransition("fullGC");
+  }
+  
+  static void minorGC() {
+    Runtime.getRuntime().gc();
+  }
+  
+  @Test
+  public void testSGOIDs() {
+    if (verifyNoPropertyViolation(HEAP)) {
+      OVHeapTest.checkSGOIDs();
+    }
+  }
+  
+  @Test
+  public void testMinorGCReleasesUnreachableYoungObjects() {
+    if (verifyNoPropertyViolation(HEAP, MAJOR_INTERVAL)) {
+      fullGC();
+      WeakReference<Node> ref = new WeakReference<Node>(new Node(1));
+      
+      minorGC();
+      assertNull(ref.get());
+    }
+  }
+  
+  @Test
+  public void testNurseryPromotion() {
+    if (verifyNoPropertyViolation(HEAP, MAJOR_INTERVAL)) {
+      fullGC();
+      Node node = new Node(42);
+      WeakReference<Node> ref = new WeakReference<Node>(node);
+      
+      minorGC();
+      assertSame(node, ref.get());
+      
+      // old objects are only released by full collections
+      node = null;
+      minorGC();
+      assertNotNull(ref.get());
+      assertEquals(42, ref.get().value);
+      
+      fullGC();
+      assertNull(ref.get());
+    }
+  }
+  
+  @Test
+  public void testPromotionAfterMajorInterval() {
+    if (verifyNoPropertyViolation(HEAP, "+vm.gc.major_interval=1")) {
+      fullGC();
+      Node node = new Node(42);
+      WeakReference<Node> ref = new WeakReference<Node>(node);
+      
+      minorGC();
+      assertSame(node, ref.get());
+      
+      // the next collection is a major one
+      node = null;
+      minorGC();
+      assertNull(ref.get());
+    }
+  }
+  
+  @Test
+  public void testRememberedSetKeepsYoungReferents() {
+    if (verifyNoPropertyViolation(HEAP, MAJOR_INTERVAL)) {
+      fullGC();
+      Node old = new Node(0);
+      minorGC();
+      
+      // the only reference to the young object is stored in an old one
+      old.next = new Node(1);
+      WeakReference<Node> ref = new WeakReference<Node>(old.next);
+      
+      minorGC();
+      assertSame(old.next, ref.get());
+      assertEquals(1, old.next.value);
+      
+      // the remembered set is cleared, the referent is old by now
+      minorGC();
+      assertSame(old.next, ref.get());
+      
+      old.next = null;
+      fullGC();
+      assertNull(ref.get());
+    }
+  }
+  
+  @Test
+  public void testRememberedSetAfterRepeatedStores() {
+    if (verifyNoPropertyViolation(HEAP, MAJOR_INTERVAL)) {
+      fullGC();
+      Node old = new Node(0);
+      minorGC();
+      
+      old.next = new Node(1);
+      minorGC();
+      
+      // the old object has to be remembered again after its last collection
+      old.next = new Node(2);
+      WeakReference<Node> ref = new WeakReference<Node>(old.next);
+      
+      minorGC();
+      assertSame(old.next, ref.get());
+      assertEquals(2, old.next.value);
+    }
+  }
+  
+  @Test
+  public void testRememberedSetOfArrays() {
+    if (verifyNoPropertyViolation(HEAP, MAJOR_INTERVAL)) {
+      fullGC();
+      Node[] old = new Node[2];
+      minorGC();
+      
+      old[1] = new Node(1);
+      WeakReference<Node> ref = new WeakReference<Node>(old[1]);
+      
+      minorGC();
+      assertSame(old[1], ref.get());
+      assertEquals(1, old[1].value);
+    }
+  }
+}
@@ -70,43 +70,48 @@ public class OVHeapTest extends TestJPF {
   @Test
   public void testSGOIDs() {
     if (verifyNoPropertyViolation("+vm.heap.class=.vm.OVHeap")) {
-      Thread t = new Thread() {
-        @Override
+      checkSGOIDs();
+    }
+  }
+  
+  // also run against the other OVHeap based heaps
+  static void checkSGOIDs() {
+    Thread t = new Thread() {
+      @Override
 		public void run() {
-          Class<?> cls = X.class;
-          checkRef("from T ", "X.class", getReferenceValue(cls));
-          
-          X x1 = new X("t-x1");
-          checkRef("from T ", x1.id, getReferenceValue(x1));
-          
-          Thread.yield(); 
-          
-          Y y1 = new Y("t-y1");
-          checkRef("from T ", y1.id, getReferenceValue(y1));
-        }
-      };
-      
-      t.start();  
-      
-      Class<?> clsY = Y.class;
-      checkRef("from M ", "Y.class", getReferenceValue(clsY));
-      
-      Class<?> clsX = X.class;
-      checkRef("from M ", "X.class", getReferenceValue(clsX));
-      
-      int n = Verify.getInt(1, 3); 
-      System.out.println("-- M next X[] arraysize = " + n);
-      X[] xs = new X[n];
-      for (int i=0; i<xs.length; i++) {
-        xs[i] = new X("xs-" + i);
-        checkRef("from M ", xs[i].id, getReferenceValue(xs[i]));
+        Class<?> cls = X.class;
+        checkRef("from T ", "X.class", getReferenceValue(cls));
+        
+        X x1 = new X("t-x1");
+        checkRef("from T ", x1.id, getReferenceValue(x1));
+        
+        Thread.yield(); 
+        
+        Y y1 = new Y("t-y1");
+        checkRef("from T ", y1.id, getReferenceValue(y1));
       }
-      
-      Y y1 = new Y("m-y1");
-      checkRef("from M ", y1.id, getReferenceValue(y1));
-      
-      X x1 = new Y("m-x1");
-      checkRef("from M ", x1.id, getReferenceValue(x1));
+    };
+    
+    t.start();  
+    
+    Class<?> clsY = Y.class;
+    checkRef("from M ", "Y.class", getReferenceValue(clsY));
+    
+    Class<?> clsX = X.class;
+    checkRef("from M ", "X.class", getReferenceValue(clsX));
+    
+    int n = Verify.getInt(1, 3); 
+    System.out.println("-- M next X[] arraysize = " + n);
+    X[] xs = new X[n];
+    for (int i=0; i<xs.length; i++) {
+      xs[i] = new X("xs-" + i);
+      checkRef("from M ", xs[i].id, getReferenceValue(xs[i]));
     }
+    
+    Y y1 = new Y("m-y1");
+    checkRef("from M ", y1.id, getReferenceValue(y1));
+    
+    X x1 = new Y("m-x1");
+    checkRef("from M ", x1.id, getReferenceValue(x1));
   }
 }
@@ -223,20 +223,22 @@ public class JVMForwarder extends PropertyListenerAdapter {
   }
 
   /**
-   * at the searchStarted event, if the option nhandler.reset is set to true,
-   * all the peer classes created on the fly are removed. 
+   * at the searchStarted event, if the option nhandler.clean is set to true,
+   * all the peer classes created on the fly are removed, unless the option
+   * nhandler.peerCache is set to true. The cached peers are reused as long as
+   * their model classes and jpf-nhandler have not changed.
    */
   @Override
   public void searchStarted(Search search){
     Config config = search.getConfig();
-    boolean reset = config.getBoolean("nhandler.clean");
+    boolean reset = config.getBoolean("nhandler.clean") && !config.getBoolean("nhandler.peerCache", false);
     if(reset) {
       String path = config.getPath("jpf-nhandler") + "/onthefly";
       File onthefly = new File(path);
       String[] peers = onthefly.list();
 
       for(String name: peers) {
-    	if((reset && name.startsWith("OTF_JPF_") && (name.endsWith(".class") || name.endsWith(".java")))) {
+    	if((reset && name.startsWith("OTF_JPF_") && (name.endsWith(".class") || name.endsWith(".java") || name.endsWith(".key")))) {
           File peer = new File(onthefly, name);
           peer.delete();
     	}
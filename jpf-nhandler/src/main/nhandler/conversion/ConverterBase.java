@@ -18,10 +18,12 @@
 package nhandler.conversion;
 
 import gov.nasa.jpf.vm.ElementInfo;
+import gov.nasa.jpf.vm.Fields;
 import gov.nasa.jpf.vm.MJIEnv;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Set;
 
 import nhandler.util.ValueIdentityHashMap;
@@ -42,6 +44,32 @@ public class ConverterBase {
    */
   protected static ValueIdentityHashMap<Integer, Object> objMapJPF2JVM = new ValueIdentityHashMap<Integer, Object>();
 
+  /**
+   * The inverse of objMapJPF2JVM. It is used to look up the JPF object that
+   * corresponds to a given JVM object without scanning objMapJPF2JVM
+   */
+  protected static IdentityHashMap<Object, Integer> objMapJVM2JPF = new IdentityHashMap<Object, Integer>();
+
+  /**
+   * Keeps the state of the JPF objects in objMapJPF2JVM as of their last
+   * synchronization with their JVM mirrors. This is only maintained if the
+   * VM state is not reset between native calls
+   */
+  protected static HashMap<Integer, SyncRecord> syncRecords = new HashMap<Integer, SyncRecord>();
+
+  /**
+   * Incremented at the beginning of every native call. A JPF object whose
+   * SyncRecord carries the current epoch is not validated again
+   */
+  protected static int syncEpoch;
+
+  static final int MIN_SWEEP_THRESHOLD = 1024;
+
+  /**
+   * The size of objMapJPF2JVM above which the stale entries are swept
+   */
+  static int sweepThreshold = MIN_SWEEP_THRESHOLD;
+
   /**
    * Keeps track of the JVM classes that have been already created from their
    * corresponding JPF classes, while performing conversion from JPF to JVM
@@ -80,20 +108,22 @@ public class ConverterBase {
       // these are reset on-demond by setting the nhandler.resetVMState
       // property in the properties file
       ConverterBase.objMapJPF2JVM.clear();
+      ConverterBase.objMapJVM2JPF.clear();
+      ConverterBase.syncRecords.clear();
       ConverterBase.classMapJPF2JVM.clear();
     } 
     // for the cases that nhandler is configured to re-use existing maps (that
-    // is "nhandler.resetVMState" is set to false) we need to identify and remove 
-    // those objects that have been garbage collected or don't exist anymore due 
-    // to bracktracking - note that this is provided that SGOIDs are unique.
+    // is "nhandler.resetVMState" is set to false) the JVM objects are kept alive
+    // and are validated lazily, the first time they are reached in a new epoch.
+    // That is also where the objects that have been garbage collected or don't
+    // exist anymore due to bracktracking are removed - note that this is provided
+    // that SGOIDs are unique. Entries that are never reached again are swept
+    // once the map has doubled in size since the last sweep.
     else {
-      Integer[] keys = objMapJPF2JVM.keySet().toArray(new Integer[objMapJPF2JVM.size()]);
-      for(int i=0; i<keys.length; i++){
-        int key = keys[i];
-        ElementInfo ei = env.getElementInfo(key);
-        if(ei==null) {
-          ConverterBase.objMapJPF2JVM.remove(key);
-        }
+      ConverterBase.syncEpoch++;
+      if (ConverterBase.objMapJPF2JVM.size() > ConverterBase.sweepThreshold) {
+        sweep(env);
+        ConverterBase.sweepThreshold = Math.max(MIN_SWEEP_THRESHOLD, 2 * ConverterBase.objMapJPF2JVM.size());
       }
     }
 
@@ -101,4 +131,105 @@ public class ConverterBase {
     ConverterBase.updatedJPFObj.clear();
     ConverterBase.updatedJPFCls.clear();
   }
+
+  /**
+   * Removes the JVM objects whose corresponding JPF objects do not exist anymore
+   */
+  static void sweep(MJIEnv env) {
+    Integer[] keys = objMapJPF2JVM.keySet().toArray(new Integer[objMapJPF2JVM.size()]);
+    for(int i=0; i<keys.length; i++){
+      int key = keys[i];
+      ElementInfo ei = env.getElementInfo(key);
+      SyncRecord rec = syncRecords.get(key);
+      if(ei==null || (rec!=null && rec.ci!=ei.getClassInfo())) {
+        removeJVMObj(key);
+      }
+    }
+  }
+
+  /**
+   * Registers the given JVM object as the counterpart of the given JPF object
+   */
+  public static void putJVMObj(int JPFRef, Object JVMObj) {
+    Object old = objMapJPF2JVM.put(JPFRef, JVMObj);
+    if (old != null && old != JVMObj) {
+      removeInverse(old, JPFRef);
+    }
+    objMapJVM2JPF.put(JVMObj, JPFRef);
+  }
+
+  /**
+   * Removes the JVM counterpart of the given JPF object, if there is one
+   */
+  public static void removeJVMObj(int JPFRef) {
+    Object JVMObj = objMapJPF2JVM.remove(JPFRef);
+    if (JVMObj != null) {
+      removeInverse(JVMObj, JPFRef);
+    }
+    syncRecords.remove(JPFRef);
+  }
+
+  private static void removeInverse(Object JVMObj, int JPFRef) {
+    Integer ref = objMapJVM2JPF.get(JVMObj);
+    if (ref != null && ref == JPFRef) {
+      objMapJVM2JPF.remove(JVMObj);
+    }
+  }
+
+  /**
+   * Returns the JPF object that corresponds to the given JVM object, or
+   * MJIEnv.NULL if there is no such object
+   */
+  public static int getJPFRef(Object JVMObj) {
+    Integer ref = objMapJVM2JPF.get(JVMObj);
+    return (ref != null) ? ref : MJIEnv.NULL;
+  }
+
+  /**
+   * Records that the given JPF object and its JVM counterpart are in sync. If
+   * the VM state is reset between native calls, this does nothing.
+   * 
+   * @param ei
+   *          the JPF object
+   * @param copyFields
+   *          false if the JVM counterpart shares its storage with the JPF
+   *          object, in which case there is nothing to compare against
+   */
+  public static void recordSync(ElementInfo ei, boolean copyFields) {
+    if (!resetState) {
+      SyncRecord rec = syncRecords.get(ei.getObjectRef());
+      Fields fields = null;
+      if (copyFields) {
+        // the recorded copy is kept if the object has not changed since
+        if (rec != null && rec.ci == ei.getClassInfo() && rec.fields != null 
+            && rec.fields.equals(ei.getFields())) {
+          fields = rec.fields;
+        } else {
+          fields = ei.getFields().clone();
+        }
+      }
+      if (rec == null) {
+        syncRecords.put(ei.getObjectRef(), new SyncRecord(ei.getClassInfo(), fields, syncEpoch));
+      } else {
+        rec.ci = ei.getClassInfo();
+        rec.fields = fields;
+        rec.epoch = syncEpoch;
+      }
+    }
+  }
+
+  /**
+   * Records that the given JPF object, which has not changed since its last
+   * synchronization, has been validated in the current epoch
+   */
+  public static void markSynced(ElementInfo ei) {
+    if (!resetState) {
+      SyncRecord rec = syncRecords.get(ei.getObjectRef());
+      if (rec == null) {
+        recordSync(ei, true);
+      } else {
+        rec.epoch = syncEpoch;
+      }
+    }
+  }
 }
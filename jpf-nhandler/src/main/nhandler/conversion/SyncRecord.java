@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2013  Nastaran Shafiei and Franck van Breugel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package nhandler.conversion;
+
+import gov.nasa.jpf.vm.ClassInfo;
+import gov.nasa.jpf.vm.Fields;
+
+/**
+ * Keeps the state of a JPF object as of the last time it was synchronized with
+ * its JVM mirror. This is only used if the VM state is not reset between native
+ * calls (that is "nhandler.resetVMState" is set to false), in which case the
+ * JVM mirrors are kept alive and only the JPF objects whose fields differ from
+ * the recorded ones are converted again.
+ */
+public class SyncRecord {
+
+  /**
+   * The class of the JPF object at the time of the synchronization. A different
+   * class means that the reference has been recycled for a new object.
+   */
+  ClassInfo ci;
+
+  /**
+   * A copy of the fields of the JPF object right after the last synchronization.
+   * This is null for arrays of primitive type, whose JVM mirrors share the
+   * storage of the JPF arrays.
+   */
+  Fields fields;
+
+  /**
+   * The conversion epoch in which the JPF object was last validated
+   */
+  int epoch;
+
+  SyncRecord (ClassInfo ci, Fields fields, int epoch) {
+    this.ci = ci;
+    this.fields = fields;
+    this.epoch = epoch;
+  }
+
+  public ClassInfo getClassInfo () {
+    return ci;
+  }
+
+  public Fields getFields () {
+    return fields;
+  }
+
+  public int getEpoch () {
+    return epoch;
+  }
+}
@@ -19,7 +19,9 @@ package nhandler.conversion.jpf2jvm;
 
 import gov.nasa.jpf.vm.ClassInfo;
 import gov.nasa.jpf.vm.DynamicElementInfo;
+import gov.nasa.jpf.vm.ElementInfo;
 import gov.nasa.jpf.vm.FieldInfo;
+import gov.nasa.jpf.vm.Fields;
 import gov.nasa.jpf.vm.MJIEnv;
 import gov.nasa.jpf.vm.ReferenceArrayFields;
 import gov.nasa.jpf.vm.StaticElementInfo;
@@ -28,6 +30,7 @@ import java.lang.reflect.Array;
 
 import nhandler.conversion.ConversionException;
 import nhandler.conversion.ConverterBase;
+import nhandler.conversion.SyncRecord;
 
 /**
  * This class is used to converter objects and classes from JPF to JVM
@@ -126,6 +129,9 @@ public abstract class JPF2JVMConverter extends ConverterBase {
     if (JPFRef != MJIEnv.NULL) {
       // First check if the object has been already created
       JVMObj = ConverterBase.objMapJPF2JVM.get(JPFRef);
+      if (JVMObj != null && !ConverterBase.isResetState()) {
+        JVMObj = this.syncJVMObj(JPFRef, JVMObj, env);
+      }
       /**
        * If the object has not been created & the given JPF object is not NULL,
        * the corresponding JVM object is created from JPFRef
@@ -165,7 +171,8 @@ public abstract class JPF2JVMConverter extends ConverterBase {
             JVMObj = instantiateFrom(JVMCl, JPFRef, env);
           }
 
-          ConverterBase.objMapJPF2JVM.put(JPFRef, JVMObj);
+          ConverterBase.putJVMObj(JPFRef, JVMObj);
+          ConverterBase.recordSync(dei, true);
           setInstanceFields(JVMObj, dei, env);
         }
       }
@@ -192,6 +199,9 @@ public abstract class JPF2JVMConverter extends ConverterBase {
     if (JPFRef != MJIEnv.NULL) {
       // First check if the array has been already created
       JVMArr = ConverterBase.objMapJPF2JVM.get(JPFRef);
+      if (JVMArr != null && !ConverterBase.isResetState()) {
+        JVMArr = this.syncJVMObj(JPFRef, JVMArr, env);
+      }
 
       /**
        * If the array has not been created & the given JPF array is not NULL,
@@ -204,6 +214,8 @@ public abstract class JPF2JVMConverter extends ConverterBase {
         // Array of primitive type
         if (dei.getClassInfo().getComponentClassInfo().isPrimitive()) {
           JVMArr = JPF2JVMUtilities.createJVMPrimitiveArr(dei);
+          ConverterBase.putJVMObj(JPFRef, JVMArr);
+          ConverterBase.recordSync(dei, false);
         }
         // Array of Non-primitives
         else {
@@ -218,18 +230,97 @@ public abstract class JPF2JVMConverter extends ConverterBase {
           }
 
           Object[] arrObj = (Object[]) Array.newInstance(compType, arrSize);
+          // registered before the elements are converted, so that cycles
+          // through this array end here
+          ConverterBase.putJVMObj(JPFRef, arrObj);
+          ConverterBase.recordSync(dei, true);
 
           for (int i = 0; i < arrSize; i++) {
             arrObj[i] = obtainJVMObj(JPFArr[i], env);
           }
           JVMArr = arrObj;
         }
-        ConverterBase.objMapJPF2JVM.put(JPFRef, JVMArr);
       }
     }
     return JVMArr;
   }
 
+  /**
+   * Brings the existing JVM counterpart of the given JPF object up to date. This
+   * is only used if the VM state is not reset between native calls.
+   * 
+   * If the JPF object has not been modified since it was last synchronized, its
+   * JVM counterpart is returned as is, and only the objects that it refers to
+   * are visited. Otherwise the JVM counterpart is updated in place, so that JVM
+   * objects referring to it remain valid.
+   * 
+   * @return the up-to-date JVM counterpart of the given JPF object, or null if
+   *         the JPF object does not exist anymore
+   */
+  protected Object syncJVMObj (int JPFRef, Object JVMObj, MJIEnv env) throws ConversionException {
+    SyncRecord rec = ConverterBase.syncRecords.get(JPFRef);
+    if (rec != null && rec.getEpoch() == ConverterBase.syncEpoch) {
+      // already validated in this epoch
+      return JVMObj;
+    }
+
+    ElementInfo ei = env.getElementInfo(JPFRef);
+    if (ei == null || (rec != null && rec.getClassInfo() != ei.getClassInfo())) {
+      // the object has been garbage collected, or its reference has been reused
+      ConverterBase.removeJVMObj(JPFRef);
+      return null;
+    }
+
+    DynamicElementInfo dei = (DynamicElementInfo) ei;
+    Fields fields = dei.getFields();
+    boolean isDirty = (rec == null || rec.getFields() == null || !fields.equals(rec.getFields()));
+
+    if (JVMObj.getClass().isArray()) {
+      if (dei.getClassInfo().getComponentClassInfo().isPrimitive()) {
+        // JVM arrays of primitive type share their storage with the JPF arrays
+        // they were created from, unless the JPF array has been copied since
+        Object storage = JPF2JVMUtilities.createJVMPrimitiveArr(dei);
+        ConverterBase.recordSync(dei, false);
+        if (storage != JVMObj) {
+          System.arraycopy(storage, 0, JVMObj, 0, Array.getLength(JVMObj));
+        }
+      } else {
+        if (isDirty) {
+          ConverterBase.recordSync(dei, true);
+        } else {
+          ConverterBase.markSynced(dei);
+        }
+        int[] JPFArr = ((ReferenceArrayFields) fields).asReferenceArray();
+        Object[] arrObj = (Object[]) JVMObj;
+        for (int i = 0; i < JPFArr.length; i++) {
+          arrObj[i] = obtainJVMObj(JPFArr[i], env);
+        }
+      }
+    } else {
+      if (isDirty) {
+        ConverterBase.recordSync(dei, true);
+      } else {
+        ConverterBase.markSynced(dei);
+        // the object is clean, but the objects it refers to might not be
+        ClassInfo ci = dei.getClassInfo();
+        for (int i = 0; i < ci.getNumberOfInstanceFields(); i++) {
+          FieldInfo fi = ci.getInstanceField(i);
+          if (fi.isReference()) {
+            int ref = fields.getReferenceValue(fi.getStorageOffset());
+            Object child = ConverterBase.objMapJPF2JVM.get(ref);
+            if (child != null && obtainJVMObj(ref, env) != child) {
+              isDirty = true;
+            }
+          }
+        }
+      }
+      if (isDirty) {
+        setInstanceFields(JVMObj, dei, env);
+      }
+    }
+    return JVMObj;
+  }
+
   protected abstract Object instantiateFrom (Class<?> cl, int JPFRef, MJIEnv env);
 
   protected Object createStringObject(int JPFRef, MJIEnv env) throws ConversionException {
@@ -244,7 +335,7 @@ public abstract class JPF2JVMConverter extends ConverterBase {
     // this is String.value which is of type of char[]
     Object value = this.getJVMObj(fieldValueRef, env);
     Object JVMObj = new String((char[])value);
-    ConverterBase.objMapJPF2JVM.put(JPFRef, JVMObj);
+    ConverterBase.putJVMObj(JPFRef, JVMObj);
     return JVMObj;
   }
 
@@ -26,10 +26,9 @@ import gov.nasa.jpf.vm.ElementInfo;
 import gov.nasa.jpf.vm.MJIEnv;
 import gov.nasa.jpf.vm.StaticElementInfo;
 
-import java.util.Iterator;
-
 import nhandler.conversion.ConversionException;
 import nhandler.conversion.ConverterBase;
+import nhandler.conversion.jpf2jvm.JPF2JVMUtilities;
 
 /**
  * This class is used to converter objects and classes from JVM to JPF
@@ -246,7 +245,7 @@ public abstract class JVM2JPFConverter extends ConverterBase {
       // First check if the JPF object has been already updated
       if (!ConverterBase.updatedJPFObj.containsKey(JPFObj)){
         ConverterBase.updatedJPFObj.put(JPFObj, JVMObj);
-        ConverterBase.objMapJPF2JVM.put(JPFObj, JVMObj);
+        ConverterBase.putJVMObj(JPFObj, JVMObj);
 
         // Why do we need that? Because JPF might have not leaded the class
         // before! JPF classloader does not recognize them!
@@ -265,6 +264,7 @@ public abstract class JVM2JPFConverter extends ConverterBase {
         DynamicElementInfo dei = (DynamicElementInfo) env.getHeap().getModifiable(JPFObj);
 
         setInstanceFields(JVMObj, dei, env);
+        ConverterBase.recordSync(dei, true);
       }
     }
   }
@@ -287,7 +287,7 @@ public abstract class JVM2JPFConverter extends ConverterBase {
       // First check if the JPF array has been already updated
       if (!ConverterBase.updatedJPFObj.containsKey(JPFArr)){
         ConverterBase.updatedJPFObj.put(JPFArr, JVMArr);
-        ConverterBase.objMapJPF2JVM.put(JPFArr, JVMArr);
+        ConverterBase.putJVMObj(JPFArr, JVMArr);
 
         DynamicElementInfo dei = (DynamicElementInfo) env.getHeap().getModifiable(JPFArr);
 
@@ -295,7 +295,13 @@ public abstract class JVM2JPFConverter extends ConverterBase {
 
         // Array of primitive type
         if (dei.getClassInfo().getComponentClassInfo().isPrimitive()){
-          JVM2JPFUtilities.setJPFPrimitiveArr(dei, JVMArr, env);
+          // if the JVM array shares its storage with the JPF array, the native
+          // method has already updated the JPF array in place
+          boolean isShared = (JPF2JVMUtilities.createJVMPrimitiveArr(dei) == JVMArr);
+          if (!isShared){
+            JVM2JPFUtilities.setJPFPrimitiveArr(dei, JVMArr, env);
+          }
+          ConverterBase.recordSync(dei, false);
         }
         // Array of Non-primitives
         else{
@@ -316,6 +322,7 @@ public abstract class JVM2JPFConverter extends ConverterBase {
             }
             dei.setReferenceElement(i, elementValueRef);
           }
+          ConverterBase.recordSync(dei, true);
         }
       }
     }
@@ -336,34 +343,16 @@ public abstract class JVM2JPFConverter extends ConverterBase {
    *           if any incorrect input parameter is observed
    */
   protected int getExistingJPFRef (Object JVMObj, boolean update, MJIEnv env) throws ConversionException{
-    int JPFRef = MJIEnv.NULL;
-    boolean found = false;
-    if (ConverterBase.updatedJPFObj.containsValue(JVMObj)){
-      Iterator<Integer> iterator = (ConverterBase.updatedJPFObj.keySet()).iterator();
-      Integer key;
-      while (!found && iterator.hasNext()){
-        key = iterator.next();
-        Object value = ConverterBase.updatedJPFObj.get(key);
-        if (value == JVMObj){
-          found = true;
-          JPFRef = key;
-        }
-      }
-    }
-
-    if (!found && ConverterBase.objMapJPF2JVM.containsValue(JVMObj)){
-      Iterator<Integer> iterator = (ConverterBase.objMapJPF2JVM.keySet()).iterator();
-      Integer key;
-      while (!found && iterator.hasNext()){
-        key = iterator.next();
-        Object value = ConverterBase.objMapJPF2JVM.get(key);
-        if (value == JVMObj){
-          found = true;
-          JPFRef = key;
-          if (update == true){
-            getUpdatedJPFObj(JVMObj, JPFRef, env);
-          }
-        }
+    int JPFRef = ConverterBase.getJPFRef(JVMObj);
+
+    if (JPFRef != MJIEnv.NULL){
+      if (env.getElementInfo(JPFRef) == null){
+        // the JVM object outlived its JPF counterpart
+        ConverterBase.removeJVMObj(JPFRef);
+        JPFRef = MJIEnv.NULL;
+      } else if (update == true){
+        // this is a no-op if the JPF object has been already updated
+        getUpdatedJPFObj(JVMObj, JPFRef, env);
       }
     }
     return JPFRef;
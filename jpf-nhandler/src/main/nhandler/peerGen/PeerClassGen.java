@@ -19,19 +19,29 @@ package nhandler.peerGen;
 
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.vm.ClassInfo;
+import gov.nasa.jpf.vm.HandledMethodInfo;
 import gov.nasa.jpf.vm.MJIEnv;
+import gov.nasa.jpf.vm.MethodInfo;
 import gov.nasa.jpf.vm.NativeMethodInfo;
+import gov.nasa.jpf.vm.SkippedMethodInfo;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 
 import org.apache.bcel.Constants;
@@ -79,16 +89,51 @@ public class PeerClassGen implements Constants {
    */
   private static final String prefix = "OTF_";
 
+  /**
+   * The classes that generate the on-the-fly native peers. The digest of their
+   * class files identifies the version of jpf-nhandler that a cached peer was
+   * generated by.
+   */
+  private static final Class<?>[] generatorClasses = {
+    PeerClassGen.class, PeerMethodGen.class, PeerSourceGen.class, PeerSourceGen.MethodGen.class };
+
+  /**
+   * Digest of the class files of the generator classes, computed on first use
+   */
+  private static String generatorVersion;
+
+  /**
+   * If true, the on-the-fly native peers are cached across runs, keyed by
+   * their model classes and the version of jpf-nhandler
+   */
+  protected static boolean peerCache = false;
+
   /**
    * Stores the native peer class.
    */
   private Class<?> peer;
 
+  /**
+   * The methods of the native peer class, indexed by their JNI names
+   */
+  private HashMap<String, Method> methods = new HashMap<String, Method>();
+
   /**
    * The complete path of the class.
    */
   private String path;
 
+  /**
+   * The complete path of the file keeping the key of the cached class.
+   */
+  private String keyPath;
+
+  /**
+   * Identifies the model class and the version of jpf-nhandler that the
+   * native peer class is created from.
+   */
+  private String cacheKey;
+
   private MJIEnv env;
 
   private static void init(Config config) {
@@ -97,6 +142,7 @@ public class PeerClassGen implements Constants {
       PeerSourceGen.genSource = config.getBoolean("nhandler.genSource");
       PeerSourceGen.addComment = config.getBoolean("nhandler.addComment");
       PeerMethodGen.updateJPFState = config.getBoolean("nhandler.updateJPFState", true);
+      PeerClassGen.peerCache = config.getBoolean("nhandler.peerCache", false);
     }
   }
 
@@ -112,12 +158,27 @@ public class PeerClassGen implements Constants {
     this.env = env;
     String peerName = PeerClassGen.getNativePeerClsName(className);
     this.path = PeerClassGen.peersLocation + peerName + ".class";
+    this.keyPath = PeerClassGen.peersLocation + peerName + ".key";
+
+    // cached native peers which have been created from a different version of
+    // the model class, or by a different version of jpf-nhandler, are discarded
+    boolean reuse = true;
+    if (PeerClassGen.peerCache){
+      this.cacheKey = PeerClassGen.getCacheKey(ci);
+      reuse = this.cacheKey.equals(this.readCacheKey());
+      if (!reuse){
+        new File(this.path).delete();
+        new File(PeerClassGen.peersLocation + peerName + ".java").delete();
+      }
+    }
 
-    try{
-      this.peer = this.loadClass(peerName);
-      _cg = new ClassGen(Repository.lookupClass(this.loadClass(peerName)));
-    } catch (ClassNotFoundException e){
-      // do nothing!
+    if (reuse){
+      try{
+        this.setPeer(this.loadClass(peerName));
+        _cg = new ClassGen(Repository.lookupClass(this.peer));
+      } catch (ClassNotFoundException e){
+        // do nothing!
+      }
     }
 
     if (this.peer == null){
@@ -133,11 +194,21 @@ public class PeerClassGen implements Constants {
 
     PeerClassGen.Peers.put(className, this);
     
-    if(PeerSourceGen.genSource) {
+    // the source of a peer that is reused is left as is, it is only updated
+    // once methods are added to the peer
+    if(PeerSourceGen.genSource && this.peer == null) {
       sourceGen = new PeerSourceGen(peerName);
     }
   }
 
+  /**
+   * Forgets the PeerClassCreator objects created so far, so that the native 
+   * peers are looked up in the onthefly directory again when they are needed.
+   */
+  public static void reset (){
+    PeerClassGen.Peers.clear();
+  }
+
   /**
    * Returns a PeerClassCreator object corresponding to the given class. If the
    * PeerClassCreator object has been already created, it is returned. OW a new
@@ -179,14 +250,7 @@ public class PeerClassGen implements Constants {
    *         NativeMethodInfo object
    */
   private Method getExistingMethod (NativeMethodInfo mi){
-    if (this.peer != null){
-      for (Method nm : this.peer.getMethods()){
-        if (nm.getName().equals(PeerMethodGen.getJNIName(mi))) {
-          return nm;
-        }
-      }
-    }
-    return null;
+    return this.methods.get(PeerMethodGen.getJNIName(mi));
   }
 
   /**
@@ -200,33 +264,10 @@ public class PeerClassGen implements Constants {
    */
   public Method createMethod (NativeMethodInfo mi){
     Method method = this.getExistingMethod(mi);
-    if (method != null) {
-      return method;
+    if (method == null) {
+      this.createMethods(mi, false);
+      method = this.getExistingMethod(mi);
     }
-
-    PeerMethodGen nmthCreator = new PeerMethodGen(mi, env, this, sourceGen);
-    nmthCreator.create();
-
-    OutputStream out;
-    try{
-      out = new FileOutputStream(this.path);
-      this._cg.getJavaClass().dump(out);
-      out.close();
-    } catch (FileNotFoundException e){
-      e.printStackTrace();
-    } catch (IOException e){
-      e.printStackTrace();
-    }
-
-    Class<?> peerClass = null;
-    try{
-      peerClass = this.loadClass(this._cg.getClassName());
-    } catch (ClassNotFoundException e1){
-      e1.printStackTrace();
-    }
-    this.peer = peerClass;
-    method = this.getExistingMethod(mi);
-
     return method;
   }
 
@@ -241,34 +282,214 @@ public class PeerClassGen implements Constants {
    */
   public Method createEmptyMethod (NativeMethodInfo mi){
     Method method = this.getExistingMethod(mi);
-    if (method != null) {
-      return method;
+    if (method == null) {
+      this.createMethods(mi, true);
+      method = this.getExistingMethod(mi);
     }
+    return method;
+  }
 
-    PeerMethodGen nmthCreator = new PeerMethodGen(mi, env, this, sourceGen);
-    nmthCreator.createEmpty();
+  /**
+   * Creates the given method together with all the other methods of its class
+   * that are handled by jpf-nhandler and are not in the native peer class yet,
+   * so that the class is only written and loaded once for all of them.
+   * 
+   * @param mi
+   *          an object that represents the native method that is requested
+   * @param isEmpty
+   *          true if the requested method is to be created with an empty body
+   */
+  private void createMethods (NativeMethodInfo mi, boolean isEmpty){
+    if (PeerSourceGen.genSource && this.sourceGen == null){
+      try{
+        this.sourceGen = new PeerSourceGen(this._cg.getClassName());
+      } catch (IOException e){
+        e.printStackTrace();
+      }
+    }
+
+    this.createMethod(mi, isEmpty);
+
+    for (MethodInfo m : mi.getClassInfo().getDeclaredMethodInfos()){
+      if (m != mi && m instanceof HandledMethodInfo && !this.hasMethod(m)){
+        this.createMethod((NativeMethodInfo) m, m instanceof SkippedMethodInfo);
+      }
+    }
 
     OutputStream out;
     try{
       out = new FileOutputStream(this.path);
       this._cg.getJavaClass().dump(out);
       out.close();
+      if (PeerClassGen.peerCache){
+        this.writeCacheKey();
+      }
     } catch (FileNotFoundException e){
       e.printStackTrace();
     } catch (IOException e){
       e.printStackTrace();
     }
 
-    Class<?> peerClass = null;
     try{
-      peerClass = this.loadClass(this._cg.getClassName());
+      this.setPeer(this.loadClass(this._cg.getClassName()));
     } catch (ClassNotFoundException e1){
       e1.printStackTrace();
     }
-    this.peer = peerClass;
-    method = this.getExistingMethod(mi);
+  }
 
-    return method;
+  private void createMethod (NativeMethodInfo mi, boolean isEmpty){
+    PeerMethodGen nmthCreator = new PeerMethodGen(mi, env, this, sourceGen);
+    if (isEmpty){
+      nmthCreator.createEmpty();
+    } else {
+      nmthCreator.create();
+    }
+  }
+
+  /**
+   * Checks if the class being generated already includes a method 
+   * corresponding to the given MethodInfo object
+   */
+  private boolean hasMethod (MethodInfo mi){
+    String name = PeerMethodGen.getJNIName(mi);
+    for (org.apache.bcel.classfile.Method m : this._cg.getMethods()){
+      if (m.getName().equals(name)){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void setPeer (Class<?> peer){
+    this.peer = peer;
+    this.methods.clear();
+    if (peer != null){
+      for (Method m : peer.getMethods()){
+        this.methods.put(m.getName(), m);
+      }
+    }
+  }
+
+  private String readCacheKey (){
+    File keyFile = new File(this.keyPath);
+    if (!keyFile.exists() || !new File(this.path).exists()){
+      return null;
+    }
+    try{
+      return new String(Files.readAllBytes(keyFile.toPath()), StandardCharsets.UTF_8).trim();
+    } catch (IOException e){
+      return null;
+    }
+  }
+
+  private void writeCacheKey () throws IOException{
+    Files.write(new File(this.keyPath).toPath(), this.cacheKey.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Computes the key under which the native peer of the given class is cached.
+   * It is a digest of the class file of the model class, the version of 
+   * jpf-nhandler and the options that affect the generated code. If the class file
+   * cannot be read, the signatures of the methods of the class are used instead.
+   * 
+   * @param ci
+   *          a class that its native peer is going to be created
+   * 
+   * @return the key under which the native peer of the given class is cached
+   */
+  protected static String getCacheKey (ClassInfo ci){
+    MessageDigest md;
+    try{
+      md = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e){
+      throw new IllegalStateException(e);
+    }
+
+    md.update((PeerClassGen.getGeneratorVersion() + ":" + PeerMethodGen.updateJPFState + ":" + ci.getName()).getBytes(StandardCharsets.UTF_8));
+
+    byte[] classFile = PeerClassGen.readClassFile(ci.getClassFileUrl());
+    if (classFile != null){
+      md.update(classFile);
+    } else {
+      for (MethodInfo mi : ci.getDeclaredMethodInfos()){
+        md.update((mi.getUniqueName() + ";").getBytes(StandardCharsets.UTF_8));
+      }
+    }
+
+    return PeerClassGen.toHex(md.digest());
+  }
+
+  /**
+   * Returns the digest of the class files of the classes that generate the
+   * native peers, so that the cached peers are regenerated whenever 
+   * jpf-nhandler is rebuilt with a different generator.
+   */
+  private static synchronized String getGeneratorVersion (){
+    if (generatorVersion == null){
+      MessageDigest md;
+      try{
+        md = MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e){
+        throw new IllegalStateException(e);
+      }
+
+      for (Class<?> cls : generatorClasses){
+        String name = cls.getName();
+        byte[] classFile = PeerClassGen.readBytes(
+            cls.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class"));
+        if (classFile == null){
+          throw new IllegalStateException("cannot read the class file of " + name);
+        }
+        md.update(classFile);
+      }
+      generatorVersion = PeerClassGen.toHex(md.digest());
+    }
+    return generatorVersion;
+  }
+
+  private static String toHex (byte[] digest){
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest){
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  private static byte[] readClassFile (String url){
+    if (url == null){
+      return null;
+    }
+
+    try{
+      File file = new File(url);
+      return PeerClassGen.readBytes(file.isFile() ? new FileInputStream(file) : new URL(url).openStream());
+    } catch (IOException e){
+      return null;
+    }
+  }
+
+  private static byte[] readBytes (InputStream in){
+    if (in == null){
+      return null;
+    }
+
+    try{
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buf = new byte[8192];
+      int n;
+      while ((n = in.read(buf)) > 0){
+        bytes.write(buf, 0, n);
+      }
+      return bytes.toByteArray();
+    } catch (IOException e){
+      return null;
+    } finally {
+      try{
+        in.close();
+      } catch (IOException e){
+        // do nothing!
+      }
+    }
   }
 
   /**
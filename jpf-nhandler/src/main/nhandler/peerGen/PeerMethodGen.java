@@ -502,8 +502,10 @@ public class PeerMethodGen {
     if (this.mi.isStatic())
       callerClass = caller;
     else{
-      // the class of the last invoked method
-      String className = env.getVM().getCurrentThread().getTopFrameMethodInfo().getClassName();
+      // the class declaring the native method, which is also the class of the
+      // method on top of the stack when it is invoked. It is not obtained from
+      // the stack, since methods are created before they are invoked
+      String className = mi.getClassName();
       this.il.append(new PUSH(peerClassGen._cp, className));
       this.il.append(peerClassGen._factory.createInvoke("java.lang.Class", "forName", new ObjectType("java.lang.Class"), new Type[] { Type.STRING }, Constants.INVOKESTATIC));
       LocalVariableGen lg = this.nativeMth.addLocalVariable("callerClass", new ObjectType("java.lang.Class"), null, null);
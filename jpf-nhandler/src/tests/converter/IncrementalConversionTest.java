@@ -0,0 +1,97 @@
+/* 
+ * Copyright (C) 2013  Nastaran Shafiei and Franck van Breugel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package converter;
+
+import gov.nasa.jpf.util.test.TestJPF;
+
+import org.junit.Test;
+
+/**
+ * This class tests the conversion of objects that are passed to several native
+ * calls while the VM state is not reset in between, in which case the JVM
+ * objects are kept alive and only the modified JPF objects are converted again.
+ * It works along its corresponding native peer which is
+ * JPF_converter_IncrementalConversionTest.
+ */
+public class IncrementalConversionTest extends TestJPF {
+  private final static String[] JPF_ARGS = {"+nhandler.delegateUnhandledNative = true", "+nhandler.resetVMState = false"};
+
+  public static void main (String[] args){
+    runTestsOfThisClass(args);
+  }
+
+  public static class Node {
+    int value;
+    int[] data = new int[3];
+    Node next;
+  }
+
+  private native void rememberNode (Node n);
+
+  private native void checkNode (Node n, int value, int data0, int nextValue);
+
+  private native void incNode (Node n);
+
+  @Test
+  public void cleanObjectTest (){
+    if (verifyNoPropertyViolation(JPF_ARGS)){
+      Node n = new Node();
+      n.value = 1;
+      rememberNode(n);
+      checkNode(n, 1, 0, -1);
+    }
+  }
+
+  @Test
+  public void dirtyObjectTest (){
+    if (verifyNoPropertyViolation(JPF_ARGS)){
+      Node n = new Node();
+      n.next = new Node();
+      rememberNode(n);
+
+      n.value = 2;
+      n.data[0] = 5;
+      n.next.value = 7;
+      checkNode(n, 2, 5, 7);
+
+      n.next = new Node();
+      n.next.value = 3;
+      checkNode(n, 2, 5, 3);
+    }
+  }
+
+  @Test
+  public void roundTripTest (){
+    if (verifyNoPropertyViolation(JPF_ARGS)){
+      Node n = new Node();
+      n.next = new Node();
+      rememberNode(n);
+
+      incNode(n);
+      assertEquals(1, n.value);
+      assertEquals(1, n.data[0]);
+      assertEquals(1, n.next.value);
+
+      n.value = 10;
+      incNode(n);
+      assertEquals(11, n.value);
+      assertEquals(2, n.data[0]);
+      assertEquals(2, n.next.value);
+      checkNode(n, 11, 2, 2);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/* 
+ * Copyright (C) 2013  Nastaran Shafiei and Franck van Breugel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package converter;
+
+import gov.nasa.jpf.annotation.MJI;
+import gov.nasa.jpf.util.test.TestJPF;
+import gov.nasa.jpf.vm.MJIEnv;
+import gov.nasa.jpf.vm.NativePeer;
+import nhandler.conversion.ConversionException;
+import nhandler.conversion.ConverterBase;
+import nhandler.conversion.jpf2jvm.JPF2JVMConverter;
+import nhandler.conversion.jvm2jpf.JVM2JPFConverter;
+
+import converter.IncrementalConversionTest.Node;
+
+/**
+ * This is a native peer class which is used to test the conversion of objects
+ * across several native calls. It works along with the test class 
+ * IncrementalConversionTest.
+ */
+public class JPF_converter_IncrementalConversionTest extends NativePeer {
+
+  private static Node remembered;
+
+  @MJI
+  public static void rememberNode__Lconverter_IncrementalConversionTest$Node_2__V (MJIEnv env, int objRef, int jpfNode) throws ConversionException{
+    ConverterBase.reset(env);
+
+    remembered = (Node) JPF2JVMConverter.obtainJVMObj(jpfNode, env);
+  }
+
+  @MJI
+  public static void checkNode__Lconverter_IncrementalConversionTest$Node_2III__V (MJIEnv env, int objRef, int jpfNode, int value, int data0, int nextValue) throws ConversionException{
+    ConverterBase.reset(env);
+
+    Node n = (Node) JPF2JVMConverter.obtainJVMObj(jpfNode, env);
+
+    // the JVM object is kept alive across native calls
+    TestJPF.assertSame(remembered, n);
+    TestJPF.assertEquals(value, n.value);
+    TestJPF.assertEquals(data0, n.data[0]);
+    if (nextValue < 0) {
+      TestJPF.assertNull(n.next);
+    } else {
+      TestJPF.assertEquals(nextValue, n.next.value);
+    }
+  }
+
+  @MJI
+  public static void incNode__Lconverter_IncrementalConversionTest$Node_2__V (MJIEnv env, int objRef, int jpfNode) throws ConversionException{
+    ConverterBase.reset(env);
+
+    Node n = (Node) JPF2JVMConverter.obtainJVMObj(jpfNode, env);
+    TestJPF.assertSame(remembered, n);
+
+    n.value++;
+    n.data[0]++;
+    n.next.value++;
+
+    JVM2JPFConverter.updateJPFObj(n, jpfNode, env);
+  }
+}
@@ -0,0 +1,109 @@
+/* 
+ * Copyright (C) 2013  Nastaran Shafiei and Franck van Breugel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package on_the_fly;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.util.test.TestJPF;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import nhandler.peerGen.PeerClassGen;
+
+import org.junit.Test;
+
+public class PeerCacheTest extends TestJPF {
+
+  private final static String[] JPF_ARGS = { "+nhandler.delegateUnhandledNative = true",
+                                             "+nhandler.spec.delegate = on_the_fly.Adder.*",
+                                             "+nhandler.peerCache = true" };
+
+  private final static String PEER = "OTF_JPF_on_the_fly_Adder";
+
+  private final static long STAMP = 1000000000000L;
+
+  public static void main (String[] args){
+    runTestsOfThisClass(args);
+  }
+
+  private static File getPeerFile (String extension){
+    Config config = new Config(new String[0]);
+    return new File(config.getPath("jpf-nhandler") + "/onthefly/" + PEER + extension);
+  }
+
+  @Test
+  public void testCacheMissAndHit () throws IOException{
+    File peer = null;
+    File key = null;
+    File source = null;
+    long sourceLength = 0;
+
+    if (!isJPFRun()){
+      peer = getPeerFile(".class");
+      key = getPeerFile(".key");
+      peer.delete();
+      key.delete();
+      source = getPeerFile(".java");
+      source.delete();
+      PeerClassGen.reset();
+    }
+
+    // there is no cached peer, it is generated
+    if (verifyNoPropertyViolation(JPF_ARGS)){
+      assertEquals(5, new Adder().add(2, 3));
+    }
+
+    if (!isJPFRun()){
+      assertTrue(peer.exists());
+      assertTrue(key.exists());
+      assertTrue(peer.setLastModified(STAMP));
+      sourceLength = source.length();
+      PeerClassGen.reset();
+    }
+
+    // the cached peer is loaded as is
+    if (verifyNoPropertyViolation(JPF_ARGS)){
+      assertEquals(7, new Adder().add(3, 4));
+    }
+
+    if (!isJPFRun()){
+      assertEquals(STAMP, peer.lastModified());
+      assertEquals(sourceLength, source.length());
+      Files.write(key.toPath(), "stale".getBytes(StandardCharsets.UTF_8));
+      PeerClassGen.reset();
+    }
+
+    // the key does not match anymore, the peer is generated again
+    if (verifyNoPropertyViolation(JPF_ARGS)){
+      assertEquals(9, new Adder().add(4, 5));
+    }
+
+    if (!isJPFRun()){
+      assertTrue(peer.lastModified() != STAMP);
+      assertFalse("stale".equals(new String(Files.readAllBytes(key.toPath()), StandardCharsets.UTF_8)));
+    }
+  }
+}
+
+class Adder {
+  public int add (int a, int b){
+    return a + b;
+  }
+}